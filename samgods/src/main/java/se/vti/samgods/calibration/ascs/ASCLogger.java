@@ -19,6 +19,9 @@
  */
 package se.vti.samgods.calibration.ascs;
 
+import java.io.File;
+import java.util.function.Function;
+
 import org.matsim.vehicles.VehicleType;
 import org.matsim.vehicles.Vehicles;
 
@@ -35,12 +38,14 @@ class ASCLogger {
 
 	private final LogWriter<TransportWorkAscCalibrator> vehicleASCWriter;
 	private final LogWriter<TransportWorkAscCalibrator> railCommodityASCWriter;
+	private final LogWriter<TransportWorkAscCalibrator> convergenceWriter;
 //	private final LogWriter<TransportWorkAscCalibrator> modeASCWriter;
 
-	ASCLogger(Vehicles vehicles) {
+	ASCLogger(Vehicles vehicles, String ascDirectory) {
 
-		this.vehicleASCWriter = new LogWriter<>("./results/calibratedASCs/vehicleGroupASCs.txt", false);
-		this.railCommodityASCWriter = new LogWriter<>("./results/calibratedASCs/railASCs.txt", false);
+		this.vehicleASCWriter = new LogWriter<>(new File(ascDirectory, "vehicleGroupASCs.txt").getPath(), false);
+		this.railCommodityASCWriter = new LogWriter<>(new File(ascDirectory, "railASCs.txt").getPath(), false);
+		this.convergenceWriter = new LogWriter<>(new File(ascDirectory, "convergence.txt").getPath(), false);
 //		this.modeASCWriter = new LogWriter<>("./results/calibratedASCs/modeASCs.txt", false);
 
 		for (VehicleType vehicleType : vehicles.getVehicleTypes().values()) {
@@ -72,6 +77,9 @@ class ASCLogger {
 				}
 			});
 		}
+		this.addConvergenceEntries("Group", c -> c.getVehicleGroupAscTuner());
+		this.addConvergenceEntries("RailCommodity", c -> c.getCommodityRailAscTuner());
+
 //		for (TransportMode mode : TransportMode.values()) {
 //			this.modeASCWriter.addEntry(new LogEntry<>() {
 //				@Override
@@ -87,6 +95,33 @@ class ASCLogger {
 //		}
 	}
 
+	private void addConvergenceEntry(String label, Function<TransportWorkAscCalibrator, Object> value) {
+		this.convergenceWriter.addEntry(new LogEntry<>() {
+			@Override
+			public String label() {
+				return label;
+			}
+
+			@Override
+			public String value(TransportWorkAscCalibrator fleetCalibrator) {
+				return LogEntry.toString(value.apply(fleetCalibrator));
+			}
+		});
+	}
+
+	private void addConvergenceEntries(String prefix,
+			Function<TransportWorkAscCalibrator, ASCTuner<?>> tuner) {
+		this.addConvergenceEntry(prefix + "Update", c -> tuner.apply(c).getLastUpdateType());
+		this.addConvergenceEntry(prefix + "MaxAbsLogRatio", c -> tuner.apply(c).getLastMaxAbsResidual());
+		this.addConvergenceEntry(prefix + "RmsLogRatio", c -> tuner.apply(c).getLastRmsResidual());
+		this.addConvergenceEntry(prefix + "MaxRelDeviation", c -> tuner.apply(c).getLastMaxRelativeDeviation());
+		this.addConvergenceEntry(prefix + "MaxAbsStep", c -> tuner.apply(c).getLastMaxAbsStep());
+	}
+
+	public void logConvergence(TransportWorkAscCalibrator fleetCalibr) {
+		this.convergenceWriter.writeToFile(fleetCalibr);
+	}
+
 	public void log(TransportWorkAscCalibrator fleetCalibr) {
 		this.vehicleASCWriter.writeToFile(fleetCalibr);
 		this.railCommodityASCWriter.writeToFile(fleetCalibr);
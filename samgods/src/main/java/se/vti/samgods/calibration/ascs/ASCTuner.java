@@ -19,11 +19,24 @@
  */
 package se.vti.samgods.calibration.ascs;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 /**
+ * Moves the ASCs towards the log-ratio of target and realized values,
+ * centered over all alternatives. By default, this is a fixed-step update.
+ *
+ * With a positive Anderson depth, the update is Anderson-accelerated: it
+ * combines the last (at most depth) ASC and residual changes such that the
+ * residual extrapolates to zero, which with depth one amounts to a secant
+ * step. The history is dropped whenever the residual grows by more than a
+ * factor andersonResetFactor, and every step may be limited in its largest
+ * ASC change.
  * 
  * @author GunnarF
  *
@@ -40,12 +53,35 @@ public class ASCTuner<A> {
 
 	private final double updateStepSize;
 
+	private final double andersonResetFactor = 1.5;
+
+	private final double andersonRegularization = 1e-8;
+
 	// -------------------- MEMBERS --------------------
 
 	private final Map<A, Double> alternative2asc = new LinkedHashMap<>();
 
 	private final Map<A, Double> alternative2target = new LinkedHashMap<>();
 
+	private int andersonDepth = 0;
+
+	private double maxStepSize = Double.POSITIVE_INFINITY;
+
+	private final LinkedList<double[]> ascChanges = new LinkedList<>();
+	private final LinkedList<double[]> stepChanges = new LinkedList<>();
+	private double[] previousASCs = null;
+	private double[] previousFixedStep = null;
+	private double previousRmsResidual = Double.POSITIVE_INFINITY;
+
+	// -------------------- DIAGNOSTICS OF LAST UPDATE --------------------
+
+	private int updateCnt = 0;
+	private String lastUpdateType = null;
+	private double lastMaxAbsResidual = Double.NaN;
+	private double lastRmsResidual = Double.NaN;
+	private double lastMaxRelativeDeviation = Double.NaN;
+	private double lastMaxAbsStep = Double.NaN;
+
 	// -------------------- CONSTRUCTION --------------------
 
 	public ASCTuner(Double targetTotal, double updateStepSize) {
@@ -53,13 +89,178 @@ public class ASCTuner<A> {
 		this.updateStepSize = updateStepSize;
 	}
 
-	// -------------------- IMPLEMENTATION --------------------
+	// -------------------- SETTERS AND GETTERS --------------------
+
+	public ASCTuner<A> setAndersonDepth(int andersonDepth) {
+		this.andersonDepth = andersonDepth;
+		return this;
+	}
+
+	public ASCTuner<A> setMaxStepSize(double maxStepSize) {
+		this.maxStepSize = maxStepSize;
+		return this;
+	}
 
 	public void setTarget(A alternative, Double target) {
 		this.alternative2target.put(alternative, target);
 		this.alternative2asc.put(alternative, 0.0);
+		this.resetHistory();
+	}
+
+	public Map<A, Double> getAlternative2target() {
+		return this.alternative2target;
+	}
+
+	public int getUpdateCnt() {
+		return this.updateCnt;
+	}
+
+	// "fixed", "anderson" or "reset"
+	public String getLastUpdateType() {
+		return this.lastUpdateType;
+	}
+
+	// Largest absolute centered log-ratio of target and realized value.
+	public double getLastMaxAbsResidual() {
+		return this.lastMaxAbsResidual;
+	}
+
+	public double getLastRmsResidual() {
+		return this.lastRmsResidual;
+	}
+
+	// Largest |realized / target - 1|.
+	public double getLastMaxRelativeDeviation() {
+		return this.lastMaxRelativeDeviation;
+	}
+
+	// Largest absolute ASC change.
+	public double getLastMaxAbsStep() {
+		return this.lastMaxAbsStep;
 	}
 
+	// -------------------- HISTORY --------------------
+
+	/*
+	 * Snapshot of the Anderson history. Allows a nested sequence of updates (e.g.
+	 * against a surrogate) without disturbing the history of the outer sequence.
+	 */
+	static class History {
+
+		private final List<double[]> ascChanges;
+		private final List<double[]> stepChanges;
+		private final double[] previousASCs;
+		private final double[] previousFixedStep;
+		private final double previousRmsResidual;
+
+		private History(ASCTuner<?> tuner) {
+			this.ascChanges = new ArrayList<>(tuner.ascChanges);
+			this.stepChanges = new ArrayList<>(tuner.stepChanges);
+			this.previousASCs = tuner.previousASCs;
+			this.previousFixedStep = tuner.previousFixedStep;
+			this.previousRmsResidual = tuner.previousRmsResidual;
+		}
+	}
+
+	// History arrays are never modified in place, hence shallow copies suffice.
+	History saveHistory() {
+		return new History(this);
+	}
+
+	void restoreHistory(History history) {
+		this.ascChanges.clear();
+		this.ascChanges.addAll(history.ascChanges);
+		this.stepChanges.clear();
+		this.stepChanges.addAll(history.stepChanges);
+		this.previousASCs = history.previousASCs;
+		this.previousFixedStep = history.previousFixedStep;
+		this.previousRmsResidual = history.previousRmsResidual;
+	}
+
+	/*
+	 * Forgets the Anderson history, e.g. when the function that realizes the
+	 * values changes.
+	 */
+	void resetHistory() {
+		this.ascChanges.clear();
+		this.stepChanges.clear();
+		this.previousASCs = null;
+		this.previousFixedStep = null;
+		this.previousRmsResidual = Double.POSITIVE_INFINITY;
+	}
+
+	// -------------------- INTERNALS --------------------
+
+	private static double[] minus(double[] a, double[] b) {
+		final double[] result = new double[a.length];
+		for (int i = 0; i < a.length; i++) {
+			result[i] = a[i] - b[i];
+		}
+		return result;
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double result = 0.0;
+		for (int i = 0; i < a.length; i++) {
+			result += a[i] * b[i];
+		}
+		return result;
+	}
+
+	/*
+	 * Solves the (regularized) normal equations of min_gamma || f - sum_j gamma_j
+	 * dF_j ||, by Gaussian elimination. Returns null if singular.
+	 */
+	private double[] solveLeastSquares(List<double[]> dF, double[] f) {
+		final int m = dF.size();
+		final double[][] a = new double[m][m + 1];
+		double trace = 0.0;
+		for (int i = 0; i < m; i++) {
+			for (int j = 0; j < m; j++) {
+				a[i][j] = dot(dF.get(i), dF.get(j));
+			}
+			a[i][m] = dot(dF.get(i), f);
+			trace += a[i][i];
+		}
+		if (trace <= 0.0) {
+			return null;
+		}
+		for (int i = 0; i < m; i++) {
+			a[i][i] += this.andersonRegularization * trace;
+		}
+		for (int col = 0; col < m; col++) {
+			int pivot = col;
+			for (int row = col + 1; row < m; row++) {
+				if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+					pivot = row;
+				}
+			}
+			if (Math.abs(a[pivot][col]) < 1e-300) {
+				return null;
+			}
+			final double[] tmp = a[col];
+			a[col] = a[pivot];
+			a[pivot] = tmp;
+			for (int row = col + 1; row < m; row++) {
+				final double factor = a[row][col] / a[col][col];
+				for (int k = col; k <= m; k++) {
+					a[row][k] -= factor * a[col][k];
+				}
+			}
+		}
+		final double[] gamma = new double[m];
+		for (int row = m - 1; row >= 0; row--) {
+			double sum = a[row][m];
+			for (int k = row + 1; k < m; k++) {
+				sum -= a[row][k] * gamma[k];
+			}
+			gamma[row] = sum / a[row][row];
+		}
+		return gamma;
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
 	public Map<A, Double> getAlternative2asc() {
 		return this.alternative2asc;
 	}
@@ -84,21 +285,83 @@ public class ASCTuner<A> {
 //		}
 
 		final Map<A, Double> alternative2deltaASC = new LinkedHashMap<>();
+		double maxRelativeDeviation = 0.0;
 		for (Map.Entry<A, Double> e : this.alternative2target.entrySet()) {
 			final A alternative = e.getKey();
+			final double realized = alternative2realized.apply(alternative);
 			final double lnT = Math.log(Math.max(this.minProba, e.getValue()));
-			final double lnP = Math.log(Math.max(this.minProba, alternative2realized.apply(alternative)));
+			final double lnP = Math.log(Math.max(this.minProba, realized));
 			final double deltaASC = (lnT - lnP); // - (lnT0 - lnP0); // TODO same slack offset for all alternatives			
 			alternative2deltaASC.put(alternative, deltaASC);
 //			this.alternative2asc.compute(alternative, (alt, asc) -> asc + this.updateStepSize * deltaASC);
+			maxRelativeDeviation = Math.max(maxRelativeDeviation,
+					Math.abs(realized / Math.max(this.minProba, e.getValue()) - 1.0));
 		}
 
 		final double meanASC = alternative2deltaASC.values().stream().mapToDouble(v -> v).average().getAsDouble();
-		for (Map.Entry<A, Double> e : alternative2deltaASC.entrySet()) {
-			final A alternative = e.getKey();
-			final double deltaASC = e.getValue();
-			this.alternative2asc.compute(alternative, (alt, asc) -> asc + this.updateStepSize * (deltaASC - meanASC));
+
+		/*
+		 * Fixed-step update (residual times step size) and current ASCs, in the order
+		 * of the alternatives.
+		 */
+		final List<A> alternatives = new ArrayList<>(alternative2deltaASC.keySet());
+		final double[] residual = new double[alternatives.size()];
+		final double[] fixedStep = new double[alternatives.size()];
+		final double[] ascs = new double[alternatives.size()];
+		for (int i = 0; i < alternatives.size(); i++) {
+			residual[i] = alternative2deltaASC.get(alternatives.get(i)) - meanASC;
+			fixedStep[i] = this.updateStepSize * residual[i];
+			ascs[i] = this.alternative2asc.get(alternatives.get(i));
+		}
+		final double rmsResidual = Math.sqrt(dot(residual, residual) / Math.max(1, residual.length));
+
+		double[] step = fixedStep;
+		String updateType = "fixed";
+		if (this.andersonDepth > 0 && this.previousASCs != null) {
+			if (rmsResidual > this.andersonResetFactor * this.previousRmsResidual) {
+				this.ascChanges.clear();
+				this.stepChanges.clear();
+				updateType = "reset";
+			} else {
+				this.ascChanges.addLast(minus(ascs, this.previousASCs));
+				this.stepChanges.addLast(minus(fixedStep, this.previousFixedStep));
+				while (this.ascChanges.size() > this.andersonDepth) {
+					this.ascChanges.removeFirst();
+					this.stepChanges.removeFirst();
+				}
+				final double[] gamma = this.solveLeastSquares(this.stepChanges, fixedStep);
+				if (gamma != null) {
+					step = fixedStep.clone();
+					for (int j = 0; j < gamma.length; j++) {
+						final double[] ascChange = this.ascChanges.get(j);
+						final double[] stepChange = this.stepChanges.get(j);
+						for (int i = 0; i < step.length; i++) {
+							step[i] -= gamma[j] * (ascChange[i] + stepChange[i]);
+						}
+					}
+					updateType = "anderson";
+				}
+			}
+		}
+
+		double maxAbsStep = 0.0;
+		for (double s : step) {
+			maxAbsStep = Math.max(maxAbsStep, Math.abs(s));
+		}
+		final double stepScale = (maxAbsStep > this.maxStepSize) ? this.maxStepSize / maxAbsStep : 1.0;
+
+		this.previousASCs = ascs;
+		this.previousFixedStep = fixedStep;
+		this.previousRmsResidual = rmsResidual;
+		for (int i = 0; i < alternatives.size(); i++) {
+			this.alternative2asc.put(alternatives.get(i), ascs[i] + stepScale * step[i]);
 		}
 
+		this.updateCnt++;
+		this.lastUpdateType = updateType;
+		this.lastMaxAbsResidual = Arrays.stream(residual).map(Math::abs).max().orElse(0.0);
+		this.lastRmsResidual = rmsResidual;
+		this.lastMaxRelativeDeviation = maxRelativeDeviation;
+		this.lastMaxAbsStep = stepScale * maxAbsStep;
 	}
 }
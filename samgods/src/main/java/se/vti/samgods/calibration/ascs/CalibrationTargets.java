@@ -0,0 +1,186 @@
+/**
+ * se.vti.samgods.calibration.ascs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.calibration.ascs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import se.vti.samgods.calibration.ascs.TransportWorkAscCalibrator.VehicleGroup;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+
+/**
+ * Domestic transport work targets of the ASC calibration, in GTonKm, together
+ * with the assignment of vehicle types (by name) to vehicle groups. Read from
+ * a json file of the form
+ *
+ * { "vehicleType2group" : { "HGV40" : "HGV40_X", ... },
+ * "vehicleGroup2target_GTonKm" : { "HGV40_X" : 12.2, ... },
+ * "railCommodity2target_GTonKm" : { "WOOD" : 4.345, ... } }
+ *
+ * Missing sections are left empty.
+ *
+ * @author GunnarF
+ *
+ */
+public class CalibrationTargets {
+
+	// -------------------- MEMBERS --------------------
+
+	private final Map<String, VehicleGroup> vehicleTypeName2group = new LinkedHashMap<>();
+
+	private final Map<VehicleGroup, Double> vehicleGroup2target_GTonKm = new LinkedHashMap<>();
+
+	private final Map<Commodity, Double> railCommodity2target_GTonKm = new LinkedHashMap<>();
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public CalibrationTargets() {
+	}
+
+	/**
+	 * The targets that were previously hardcoded in TransportWorkAscCalibrator.
+	 */
+	public static CalibrationTargets createDefault() {
+		final CalibrationTargets targets = new CalibrationTargets();
+
+		for (String name : new String[] { "MGV16", "MGV24", "HGV40", "HGV60" }) {
+			final VehicleGroup group = VehicleGroup.valueOf(name + "_X");
+			targets.setVehicleGroup(name, group);
+			targets.setVehicleGroup(name + "_CONTAINER", group);
+		}
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.MGV16_X, 0.3);
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.MGV24_X, 0.4);
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.HGV40_X, 12.2);
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.HGV60_X, 39.1);
+
+		for (String name : new String[] { "KOMBI" }) {
+			targets.setVehicleGroup(name, VehicleGroup.RAIL_COMBI);
+			targets.setVehicleGroup(name + "_CONTAINER", VehicleGroup.RAIL_COMBI);
+		}
+		for (String name : new String[] { "SYS22", "SYS25", "SYS30" }) {
+			targets.setVehicleGroup(name, VehicleGroup.RAIL_SYSTEM);
+			targets.setVehicleGroup(name + "_CONTAINER", VehicleGroup.RAIL_SYSTEM);
+		}
+		for (String name : new String[] { "WG550", "WG750" }) {
+			targets.setVehicleGroup(name, VehicleGroup.RAIL_WAGON);
+			targets.setVehicleGroup(name + "_CONTAINER", VehicleGroup.RAIL_WAGON);
+		}
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.RAIL_COMBI, 5.96);
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.RAIL_SYSTEM, 8.61);
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.RAIL_WAGON, 8.25);
+
+		for (String name : new String[] { "CV5", "CV16", "CV27", "CV100", "OV1", "OV2", "OV3", "OV5", "OV10", "OV20",
+				"OV40", "OV80", "OV100", "OV250", "RO3", "RO6", "RO10" }) {
+			targets.setVehicleGroup(name, VehicleGroup.SEA);
+			targets.setVehicleGroup(name + "_CONTAINER", VehicleGroup.SEA);
+		}
+		targets.setVehicleGroupTarget_GTonKm(VehicleGroup.SEA, 29.61);
+
+		// No targets for TEXTILES and FURNITURE.
+		targets.setRailCommodityTarget_GTonKm(Commodity.AGRICULTURE, 0.356);
+		targets.setRailCommodityTarget_GTonKm(Commodity.COAL, 0.071);
+		targets.setRailCommodityTarget_GTonKm(Commodity.METAL, 5.195);
+		targets.setRailCommodityTarget_GTonKm(Commodity.FOOD, 2.307);
+		targets.setRailCommodityTarget_GTonKm(Commodity.WOOD, 4.345);
+		targets.setRailCommodityTarget_GTonKm(Commodity.COKE, 0.345);
+		targets.setRailCommodityTarget_GTonKm(Commodity.CHEMICALS, 1.001);
+		targets.setRailCommodityTarget_GTonKm(Commodity.OTHERMINERAL, 0.297);
+		targets.setRailCommodityTarget_GTonKm(Commodity.BASICMETALS, 3.156);
+		targets.setRailCommodityTarget_GTonKm(Commodity.MACHINERY, 0.037);
+		targets.setRailCommodityTarget_GTonKm(Commodity.TRANSPORT, 2.028);
+		targets.setRailCommodityTarget_GTonKm(Commodity.SECONDARYRAW, 1.118);
+		targets.setRailCommodityTarget_GTonKm(Commodity.TIMBER, 2.321);
+
+		return targets;
+	}
+
+	// -------------------- SETTERS AND GETTERS --------------------
+
+	public CalibrationTargets setVehicleGroup(String vehicleTypeName, VehicleGroup group) {
+		this.vehicleTypeName2group.put(vehicleTypeName, group);
+		return this;
+	}
+
+	public CalibrationTargets setVehicleGroupTarget_GTonKm(VehicleGroup group, double target_GTonKm) {
+		this.vehicleGroup2target_GTonKm.put(group, target_GTonKm);
+		return this;
+	}
+
+	public CalibrationTargets setRailCommodityTarget_GTonKm(Commodity commodity, double target_GTonKm) {
+		this.railCommodity2target_GTonKm.put(commodity, target_GTonKm);
+		return this;
+	}
+
+	public Map<String, VehicleGroup> getVehicleTypeName2group() {
+		return Collections.unmodifiableMap(this.vehicleTypeName2group);
+	}
+
+	public Map<VehicleGroup, Double> getVehicleGroup2target_GTonKm() {
+		return Collections.unmodifiableMap(this.vehicleGroup2target_GTonKm);
+	}
+
+	public Map<Commodity, Double> getRailCommodity2target_GTonKm() {
+		return Collections.unmodifiableMap(this.railCommodity2target_GTonKm);
+	}
+
+	// -------------------- FILE IO --------------------
+
+	public void writeToFile(String fileName) throws IOException {
+		final ObjectMapper mapper = new ObjectMapper();
+		final ObjectNode root = mapper.createObjectNode();
+		final ObjectNode vehicleTypes = root.putObject("vehicleType2group");
+		this.vehicleTypeName2group.forEach((n, g) -> vehicleTypes.put(n, g.toString()));
+		final ObjectNode groups = root.putObject("vehicleGroup2target_GTonKm");
+		this.vehicleGroup2target_GTonKm.forEach((g, t) -> groups.put(g.toString(), t));
+		final ObjectNode commodities = root.putObject("railCommodity2target_GTonKm");
+		this.railCommodity2target_GTonKm.forEach((c, t) -> commodities.put(c.toString(), t));
+		mapper.enable(SerializationFeature.INDENT_OUTPUT);
+		mapper.writeValue(new File(fileName), root);
+	}
+
+	public static CalibrationTargets createFromFile(String fileName) throws IOException {
+		final JsonNode root = new ObjectMapper().readTree(new File(fileName));
+		final CalibrationTargets targets = new CalibrationTargets();
+		final JsonNode vehicleTypes = root.get("vehicleType2group");
+		if (vehicleTypes != null) {
+			vehicleTypes.fields().forEachRemaining(
+					e -> targets.setVehicleGroup(e.getKey(), VehicleGroup.valueOf(e.getValue().asText())));
+		}
+		final JsonNode groups = root.get("vehicleGroup2target_GTonKm");
+		if (groups != null) {
+			groups.fields().forEachRemaining(e -> targets.setVehicleGroupTarget_GTonKm(VehicleGroup.valueOf(e.getKey()),
+					e.getValue().asDouble()));
+		}
+		final JsonNode commodities = root.get("railCommodity2target_GTonKm");
+		if (commodities != null) {
+			commodities.fields().forEachRemaining(e -> targets
+					.setRailCommodityTarget_GTonKm(Commodity.valueOf(e.getKey()), e.getValue().asDouble()));
+		}
+		return targets;
+	}
+}
@@ -19,10 +19,13 @@
  */
 package se.vti.samgods.calibration.ascs;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.vehicles.VehicleType;
 import org.matsim.vehicles.Vehicles;
@@ -40,6 +43,8 @@ public class TransportWorkAscCalibrator {
 
 	// -------------------- CONSTANTS --------------------
 
+	private static final Logger log = LogManager.getLogger(TransportWorkAscCalibrator.class);
+
 	public static enum VehicleGroup {
 		MGV16_X, MGV24_X, HGV40_X, HGV60_X, RAIL_COMBI, RAIL_SYSTEM, RAIL_WAGON, SEA
 	};
@@ -55,8 +60,15 @@ public class TransportWorkAscCalibrator {
 
 	private final ASCLogger ascLogger;
 
+	private final String ascDirectory;
+
+	// Inner loop stops once all centered log-ratios are below this.
+	private final double innerTolerance = 1e-4;
+
 	// -------------------- MEMBERS --------------------
 
+	private int innerIterations = 0;
+
 //	final Map<VehicleGroup, Double> group2targetDomesticGTonKm;
 //	final Map<TransportMode, Double> mode2targetDomesticGTonKm;
 //	final Map<Commodity, Double> commodity2railTargetDomesticGTonKm;
@@ -64,196 +76,71 @@ public class TransportWorkAscCalibrator {
 	// -------------------- CONSTRUCTION --------------------
 
 	public TransportWorkAscCalibrator(Vehicles vehicles, double eta) {
+		this(vehicles, eta, "./results");
+	}
 
-		this.ascLogger = new ASCLogger(vehicles);
-
-		this.vehicles = vehicles;
-		this.vehicleType2group = new LinkedHashMap<>(vehicles.getVehicleTypes().size());
-//		this.group2mode = new LinkedHashMap<>();
-//		this.group2targetDomesticGTonKm = new LinkedHashMap<>();
-		this.vehicleGroupAscTuner = new ASCTuner<>(null, eta);
-
-		/*
-		 * ROAD
-		 */
+	public TransportWorkAscCalibrator(Vehicles vehicles, double eta, String outputDirectory) {
+		this(vehicles, eta, outputDirectory, CalibrationTargets.createDefault());
+	}
 
-		this.vehicleType2group.put(this.name2type("MGV16"), VehicleGroup.MGV16_X);
-		this.vehicleType2group.put(this.name2type("MGV16_CONTAINER"), VehicleGroup.MGV16_X);
-		this.vehicleType2group.put(this.name2type("MGV24"), VehicleGroup.MGV24_X);
-		this.vehicleType2group.put(this.name2type("MGV24_CONTAINER"), VehicleGroup.MGV24_X);
-		this.vehicleType2group.put(this.name2type("HGV40"), VehicleGroup.HGV40_X);
-		this.vehicleType2group.put(this.name2type("HGV40_CONTAINER"), VehicleGroup.HGV40_X);
-		this.vehicleType2group.put(this.name2type("HGV60"), VehicleGroup.HGV60_X);
-		this.vehicleType2group.put(this.name2type("HGV60_CONTAINER"), VehicleGroup.HGV60_X);
-
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.MGV16_X, 0.3);
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.MGV24_X, 0.4);
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.HGV40_X, 12.2);
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.HGV60_X, 39.1);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.MGV16_X, 0.3);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.MGV24_X, 0.4);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.HGV40_X, 12.2);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.HGV60_X, 39.1);
-
-//		this.group2mode.put(VehicleGroup.MGV16_X, TransportMode.Road);
-//		this.group2mode.put(VehicleGroup.MGV24_X, TransportMode.Road);
-//		this.group2mode.put(VehicleGroup.HGV40_X, TransportMode.Road);
-//		this.group2mode.put(VehicleGroup.HGV60_X, TransportMode.Road);
+	public TransportWorkAscCalibrator(Vehicles vehicles, double eta, String outputDirectory,
+			CalibrationTargets targets) {
 
-		/*
-		 * RAIL
-		 */
+		this.ascDirectory = new File(outputDirectory, "calibratedASCs").getPath();
+		this.ascLogger = new ASCLogger(vehicles, this.ascDirectory);
 
-		this.vehicleType2group.put(this.name2type("KOMBI"), VehicleGroup.RAIL_COMBI);
-		this.vehicleType2group.put(this.name2type("KOMBI_CONTAINER"), VehicleGroup.RAIL_COMBI);
-		this.vehicleType2group.put(this.name2type("SYS22"), VehicleGroup.RAIL_SYSTEM);
-		this.vehicleType2group.put(this.name2type("SYS22_CONTAINER"), VehicleGroup.RAIL_SYSTEM);
-		this.vehicleType2group.put(this.name2type("SYS25"), VehicleGroup.RAIL_SYSTEM);
-		this.vehicleType2group.put(this.name2type("SYS25_CONTAINER"), VehicleGroup.RAIL_SYSTEM);
-		this.vehicleType2group.put(this.name2type("SYS30"), VehicleGroup.RAIL_SYSTEM);
-		this.vehicleType2group.put(this.name2type("SYS30_CONTAINER"), VehicleGroup.RAIL_SYSTEM);
-		this.vehicleType2group.put(this.name2type("WG550"), VehicleGroup.RAIL_WAGON);
-		this.vehicleType2group.put(this.name2type("WG550_CONTAINER"), VehicleGroup.RAIL_WAGON);
-		this.vehicleType2group.put(this.name2type("WG750"), VehicleGroup.RAIL_WAGON);
-		this.vehicleType2group.put(this.name2type("WG750_CONTAINER"), VehicleGroup.RAIL_WAGON);
-
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.RAIL_COMBI, 5.96);
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.RAIL_SYSTEM, 8.61);
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.RAIL_WAGON, 8.25);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.RAIL_COMBI, 5.96);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.RAIL_SYSTEM, 8.61);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.RAIL_WAGON, 8.25);
-
-//		this.group2mode.put(VehicleGroup.RAIL_COMBI, TransportMode.Rail);
-//		this.group2mode.put(VehicleGroup.RAIL_SYSTEM, TransportMode.Rail);
-//		this.group2mode.put(VehicleGroup.RAIL_WAGON, TransportMode.Rail);
+		this.vehicles = vehicles;
+		this.vehicleType2group = new LinkedHashMap<>(vehicles.getVehicleTypes().size());
+		for (Map.Entry<String, VehicleGroup> e : targets.getVehicleTypeName2group().entrySet()) {
+			final VehicleType type = this.vehicles.getVehicleTypes().get(Id.create(e.getKey(), VehicleType.class));
+			if (type != null) {
+				this.vehicleType2group.put(type, e.getValue());
+			} else {
+				log.warn("Calibration targets refer to unknown vehicle type " + e.getKey() + ".");
+			}
+		}
 
-		/*
-		 * SEA
-		 */
+		this.vehicleGroupAscTuner = new ASCTuner<>(null, eta);
+		targets.getVehicleGroup2target_GTonKm().forEach((g, t) -> this.vehicleGroupAscTuner.setTarget(g, t));
 
-		this.vehicleType2group.put(this.name2type("CV5"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("CV5_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("CV16"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("CV16_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("CV27"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("CV27_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("CV100"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("CV100_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV1"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV1_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV2"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV2_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV3"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV3_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV5"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV5_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV10"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV10_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV20"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV20_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV40"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV40_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV80"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV80_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV100"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV100_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV250"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("OV250_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("RO3"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("RO3_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("RO6"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("RO6_CONTAINER"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("RO10"), VehicleGroup.SEA);
-		this.vehicleType2group.put(this.name2type("RO10_CONTAINER"), VehicleGroup.SEA);
-
-//		this.group2targetDomesticGTonKm.put(VehicleGroup.SEA, 29.61);
-		this.vehicleGroupAscTuner.setTarget(VehicleGroup.SEA, 29.61);
-
-//		this.group2mode.put(VehicleGroup.SEA, TransportMode.Sea);
+		this.commodityRailAscTuner = new ASCTuner<>(null, eta);
+		targets.getRailCommodity2target_GTonKm().forEach((c, t) -> this.commodityRailAscTuner.setTarget(c, t));
+	}
 
-		/*
-		 * TARGETS AND ASC TUNERS.
-		 */
+	/*
+	 * See ASCTuner. An Anderson depth of zero gives the plain fixed-step update.
+	 */
+	public TransportWorkAscCalibrator setAndersonDepth(int andersonDepth) {
+		this.vehicleGroupAscTuner.setAndersonDepth(andersonDepth);
+		this.commodityRailAscTuner.setAndersonDepth(andersonDepth);
+		return this;
+	}
 
-//		this.mode2targetDomesticGTonKm = new LinkedHashMap<>();
-//		for (Map.Entry<VehicleGroup, Double> e : this.group2targetDomesticGTonKm.entrySet()) {
-//			final VehicleGroup group = e.getKey();
-//			final double groupTarget = e.getValue();
-//			this.mode2targetDomesticGTonKm.compute(this.group2mode.get(group),
-//					(m, t) -> t == null ? groupTarget : t + groupTarget);
-//		}
-//
-//		this.modeAscTuner = new ASCTuner<>(null, eta);
-//		for (Map.Entry<TransportMode, Double> e : this.mode2targetDomesticGTonKm.entrySet()) {
-//			final TransportMode mode = e.getKey();
-//			final Double target_GTonKm = e.getValue();
-//			this.modeAscTuner.setTarget(mode, target_GTonKm);
-//		}
-//
-//		this.mode2groupAscTuner = new LinkedHashMap<>();
-//		for (Map.Entry<VehicleGroup, Double> e : this.group2targetDomesticGTonKm.entrySet()) {
-//			final VehicleGroup group = e.getKey();
-//			final Double target_GTonKm = e.getValue();
-//			final TransportMode mode = this.group2mode.get(group);
-//			this.mode2groupAscTuner.computeIfAbsent(mode, m -> new ASCTuner<>(null, eta)).setTarget(group,
-//					target_GTonKm);
-//		}
+	public TransportWorkAscCalibrator setMaxStepSize(double maxStepSize) {
+		this.vehicleGroupAscTuner.setMaxStepSize(maxStepSize);
+		this.commodityRailAscTuner.setMaxStepSize(maxStepSize);
+		return this;
+	}
 
-		/*
-		 * RAIL TARGETS BY COMMODITY
-		 */
+	/*
+	 * Number of approximate ASC updates, based on a TransportWorkSurrogate, after
+	 * each simulated update. Zero disables the inner loop.
+	 */
+	public TransportWorkAscCalibrator setInnerIterations(int innerIterations) {
+		this.innerIterations = innerIterations;
+		return this;
+	}
 
-		this.commodityRailAscTuner = new ASCTuner<>(null, eta);
+	ASCTuner<VehicleGroup> getVehicleGroupAscTuner() {
+		return this.vehicleGroupAscTuner;
+	}
 
-//		this.commodity2railTargetDomesticGTonKm = new LinkedHashMap<>();
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.AGRICULTURE, 0.356);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.COAL, 0.071);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.METAL, 5.195);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.FOOD, 2.307);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.TEXTILES, 0.001 /* null */);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.WOOD, 4.345);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.COKE, 0.345);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.CHEMICALS, 1.001);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.OTHERMINERAL, 0.297);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.BASICMETALS, 3.156);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.MACHINERY, 0.037);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.TRANSPORT, 2.028);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.FURNITURE, 0.001 /* null */);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.SECONDARYRAW, 1.118);
-//		this.commodity2railTargetDomesticGTonKm.put(Commodity.TIMBER, 2.321);
-		
-		this.commodityRailAscTuner.setTarget(Commodity.AGRICULTURE, 0.356);
-		this.commodityRailAscTuner.setTarget(Commodity.COAL, 0.071);
-		this.commodityRailAscTuner.setTarget(Commodity.METAL, 5.195);
-		this.commodityRailAscTuner.setTarget(Commodity.FOOD, 2.307);
-		// this.commodityRailAscTuner.setTarget(Commodity.TEXTILES, 0.001 /* null */);
-		this.commodityRailAscTuner.setTarget(Commodity.WOOD, 4.345);
-		this.commodityRailAscTuner.setTarget(Commodity.COKE, 0.345);
-		this.commodityRailAscTuner.setTarget(Commodity.CHEMICALS, 1.001);
-		this.commodityRailAscTuner.setTarget(Commodity.OTHERMINERAL, 0.297);
-		this.commodityRailAscTuner.setTarget(Commodity.BASICMETALS, 3.156);
-		this.commodityRailAscTuner.setTarget(Commodity.MACHINERY, 0.037);
-		this.commodityRailAscTuner.setTarget(Commodity.TRANSPORT, 2.028);
-		// this.commodityRailAscTuner.setTarget(Commodity.FURNITURE, 0.001 /* null */);
-		this.commodityRailAscTuner.setTarget(Commodity.SECONDARYRAW, 1.118);
-		this.commodityRailAscTuner.setTarget(Commodity.TIMBER, 2.321);
-
-//		for (Map.Entry<Commodity, Double> e : this.commodity2railTargetDomesticGTonKm.entrySet()) {
-//			final Commodity commodity = e.getKey();
-//			final Double target_GTonKm = e.getValue();
-//			this.commodityRailAscTuner.setTarget(commodity, target_GTonKm);
-//		}
+	ASCTuner<Commodity> getCommodityRailAscTuner() {
+		return this.commodityRailAscTuner;
 	}
 
 	// -------------------- INTERNALS --------------------
 
-	private VehicleType name2type(String name) {
-		final VehicleType type = this.vehicles.getVehicleTypes().get(Id.create(name, VehicleType.class));
-		assert (type != null);
-		return type;
-	}
-
 //	private Map<TransportMode, Double> createMode2asc() {
 //		final Map<TransportMode, Double> mode2asc = new LinkedHashMap<>();
 //		for (TransportMode mode : TransportMode.values()) {
@@ -285,6 +172,80 @@ public class TransportWorkAscCalibrator {
 		return railCommodity2asc;
 	}
 
+	private Map<VehicleGroup, Double> createGroup2domesticGTonKm(Map<VehicleType, Double> vehicleType2domesticGTonKm) {
+		final Map<VehicleGroup, Double> group2domesticGTonKm = new LinkedHashMap<>();
+		for (VehicleType vehicleType : this.vehicles.getVehicleTypes().values()) {
+			final double realized_GTonKm = vehicleType2domesticGTonKm.getOrDefault(vehicleType, 0.0);
+			final VehicleGroup group = this.vehicleType2group.get(vehicleType);
+			if (group != null) {
+				group2domesticGTonKm.compute(group, (g, r) -> r == null ? realized_GTonKm : r + realized_GTonKm);
+			}
+		}
+		return group2domesticGTonKm;
+	}
+
+	// Ratio of simulated and predicted value, one if undefined. Package-private for testing.
+	static <K> Map<K, Double> createCorrections(Map<K, Double> simulated, Map<K, Double> predicted,
+			Iterable<K> keys) {
+		final Map<K, Double> corrections = new LinkedHashMap<>();
+		for (K key : keys) {
+			final double s = simulated.getOrDefault(key, 0.0);
+			final double p = predicted.getOrDefault(key, 0.0);
+			corrections.put(key, (s > 0.0 && p > 0.0) ? s / p : 1.0);
+		}
+		return corrections;
+	}
+
+	/*
+	 * Further ASC updates against the surrogate, without simulation. The surrogate
+	 * is multiplicatively corrected such that it reproduces the simulated transport
+	 * work at the simulated ASCs.
+	 */
+	private void updateWithSurrogate(TransportWorkSurrogate surrogate, ASCDataProvider simulatedASCs,
+			Map<VehicleGroup, Double> group2simulatedDomesticGTonKm,
+			Map<Commodity, Double> commodity2simulatedRailDomesticGTonKm, int iteration) {
+		surrogate.evaluate(simulatedASCs);
+		final Map<VehicleGroup, Double> group2correction = createCorrections(group2simulatedDomesticGTonKm,
+				this.createGroup2domesticGTonKm(surrogate.getVehicleType2domesticGTonKm()),
+				this.vehicleGroupAscTuner.getAlternative2target().keySet());
+		final Map<Commodity, Double> commodity2correction = createCorrections(commodity2simulatedRailDomesticGTonKm,
+				surrogate.getCommodity2railDomesticGTonKm(), this.commodityRailAscTuner.getAlternative2target().keySet());
+
+		/*
+		 * The surrogate updates run on their own Anderson history. The history of the
+		 * simulated updates is set aside meanwhile and then restored, such that the
+		 * next simulated update neither extrapolates from surrogate updates nor loses
+		 * its own history.
+		 */
+		final ASCTuner.History vehicleGroupHistory = this.vehicleGroupAscTuner.saveHistory();
+		final ASCTuner.History commodityRailHistory = this.commodityRailAscTuner.saveHistory();
+		this.vehicleGroupAscTuner.resetHistory();
+		this.commodityRailAscTuner.resetHistory();
+		int innerIteration = 0;
+		boolean converged = false;
+		while (innerIteration < this.innerIterations && !converged) {
+			surrogate.evaluate(this.createASCDataProvider());
+			final Map<VehicleGroup, Double> group2predicted = this
+					.createGroup2domesticGTonKm(surrogate.getVehicleType2domesticGTonKm());
+			final Map<Commodity, Double> commodity2predicted = surrogate.getCommodity2railDomesticGTonKm();
+			this.vehicleGroupAscTuner.update(g -> group2correction.get(g) * group2predicted.getOrDefault(g, 0.0));
+			this.commodityRailAscTuner
+					.update(c -> commodity2correction.get(c) * commodity2predicted.getOrDefault(c, 0.0));
+			innerIteration++;
+			converged = (this.vehicleGroupAscTuner.getLastMaxAbsResidual() < this.innerTolerance)
+					&& (this.commodityRailAscTuner.getLastMaxAbsResidual() < this.innerTolerance);
+		}
+		this.vehicleGroupAscTuner.restoreHistory(vehicleGroupHistory);
+		this.commodityRailAscTuner.restoreHistory(commodityRailHistory);
+
+		log.info("ASC calibration iteration " + iteration + ": " + innerIteration + " surrogate updates over "
+				+ surrogate.getConsolidationUnitCnt() + " consolidation units, "
+				+ (converged ? "converged" : "not converged") + " with max |ln(target/predicted)| = "
+				+ Math.max(this.vehicleGroupAscTuner.getLastMaxAbsResidual(),
+						this.commodityRailAscTuner.getLastMaxAbsResidual())
+				+ ".");
+	}
+
 	// -------------------- IMPLEMENTATION --------------------
 
 	boolean updated = false;
@@ -293,21 +254,29 @@ public class TransportWorkAscCalibrator {
 			Map<VehicleType, Double> vehicleType2lastRealizedDomesticGTonKm,
 			Map<TransportMode, Double> mode2lastRealizedDomesticGTonKm,
 			Map<Commodity, Double> commodity2lastRealizedRailDomesticGTonKm, int iteration) {
+		this.update(vehicleType2lastRealizedDomesticGTonKm, mode2lastRealizedDomesticGTonKm,
+				commodity2lastRealizedRailDomesticGTonKm, iteration, null, null);
+	}
+
+	/**
+	 * One ASC update from the simulated transport work. If a surrogate is given
+	 * and inner iterations are set, this is followed by up to that many updates
+	 * from the surrogate's predictions. The simulated ASCs are those under which
+	 * the simulated transport work was realized.
+	 */
+	public void update(
+			Map<VehicleType, Double> vehicleType2lastRealizedDomesticGTonKm,
+			Map<TransportMode, Double> mode2lastRealizedDomesticGTonKm,
+			Map<Commodity, Double> commodity2lastRealizedRailDomesticGTonKm, int iteration,
+			TransportWorkSurrogate surrogate, ASCDataProvider simulatedASCs) {
 
 		if (!this.updated) {
-			MiscUtils.ensureEmptyFolder("./results/calibratedASCs");
+			MiscUtils.ensureEmptyFolder(this.ascDirectory);
 			this.updated = true;
 		}
 
-		final Map<VehicleGroup, Double> group2lastRealizedDomesticGTonKm = new LinkedHashMap<>();
-		for (VehicleType vehicleType : this.vehicles.getVehicleTypes().values()) {
-			final double realized_GTonKm = vehicleType2lastRealizedDomesticGTonKm.getOrDefault(vehicleType, 0.0);
-			final VehicleGroup group = this.vehicleType2group.get(vehicleType);
-			if (group != null) {
-				group2lastRealizedDomesticGTonKm.compute(group,
-						(g, r) -> r == null ? realized_GTonKm : r + realized_GTonKm);
-			}
-		}
+		final Map<VehicleGroup, Double> group2lastRealizedDomesticGTonKm = this
+				.createGroup2domesticGTonKm(vehicleType2lastRealizedDomesticGTonKm);
 		this.vehicleGroupAscTuner.update(g -> group2lastRealizedDomesticGTonKm.getOrDefault(g, 0.0));
 		
 //		this.modeAscTuner.update(m -> mode2lastRealizedDomesticGTonKm.getOrDefault(m, 0.0));
@@ -317,8 +286,21 @@ public class TransportWorkAscCalibrator {
 		
 		this.commodityRailAscTuner.update(c -> commodity2lastRealizedRailDomesticGTonKm.getOrDefault(c, 0.0));
 
+		// Convergence diagnostics refer to the simulated transport work.
+		this.ascLogger.logConvergence(this);
+		log.info("ASC calibration iteration " + iteration + ": vehicle groups "
+				+ this.vehicleGroupAscTuner.getLastUpdateType() + " update, max |ln(target/realized)| = "
+				+ this.vehicleGroupAscTuner.getLastMaxAbsResidual() + "; rail commodities "
+				+ this.commodityRailAscTuner.getLastUpdateType() + " update, max |ln(target/realized)| = "
+				+ this.commodityRailAscTuner.getLastMaxAbsResidual() + ".");
+
+		if (surrogate != null && this.innerIterations > 0) {
+			this.updateWithSurrogate(surrogate, simulatedASCs, group2lastRealizedDomesticGTonKm,
+					commodity2lastRealizedRailDomesticGTonKm, iteration);
+		}
+
 		try {
-			this.createASCDataProvider().writeToFile("./results/calibratedASCs/" + iteration + ".ascs.json");
+			this.createASCDataProvider().writeToFile(new File(this.ascDirectory, iteration + ".ascs.json").getPath());
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
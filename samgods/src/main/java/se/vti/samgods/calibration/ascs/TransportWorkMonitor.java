@@ -19,6 +19,7 @@
  */
 package se.vti.samgods.calibration.ascs;
 
+import java.io.File;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -49,8 +50,13 @@ public class TransportWorkMonitor {
 	private Map<Commodity, Double> commodity2lastRealizedRailDomesticGTonKm = null;
 
 	public TransportWorkMonitor(Vehicles vehicles) {
+		this(vehicles, "./results");
+	}
+
+	public TransportWorkMonitor(Vehicles vehicles, String outputDirectory) {
 
-		this.vehicleTypeGTonKmWriter = new LogWriter<>("./results/vehicleTypeGTonKm.txt", false);
+		this.vehicleTypeGTonKmWriter = new LogWriter<>(new File(outputDirectory, "vehicleTypeGTonKm.txt").getPath(),
+				false);
 		for (VehicleType vehicleType : vehicles.getVehicleTypes().values()) {
 			this.vehicleTypeGTonKmWriter.addEntry(new LogEntry<>() {
 				@Override
@@ -66,7 +72,7 @@ public class TransportWorkMonitor {
 			});
 		}
 
-		this.modeGTonKmWriter = new LogWriter<>("./results/modeGTonKm.txt", false);
+		this.modeGTonKmWriter = new LogWriter<>(new File(outputDirectory, "modeGTonKm.txt").getPath(), false);
 		for (TransportMode mode : TransportMode.values()) {
 			this.modeGTonKmWriter.addEntry(new LogEntry<>() {
 				@Override
@@ -81,7 +87,8 @@ public class TransportWorkMonitor {
 			});
 		}
 
-		this.railCommodityGTonKmWriter = new LogWriter<>("./results/railCommodityGTonKm.txt", false);
+		this.railCommodityGTonKmWriter = new LogWriter<>(
+				new File(outputDirectory, "railCommodityGTonKm.txt").getPath(), false);
 		for (Commodity commodity : Commodity.values()) {
 			this.railCommodityGTonKmWriter.addEntry(new LogEntry<>() {
 				@Override
@@ -0,0 +1,242 @@
+/**
+ * se.vti.samgods.calibration.ascs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.calibration.ascs;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.matsim.vehicles.VehicleType;
+
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.common.SamgodsExecutor;
+import se.vti.samgods.logistics.AnnualShipment;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.logistics.choice.BatchUtilityEvaluator;
+import se.vti.samgods.logistics.choice.ChoiceJob;
+import se.vti.samgods.logistics.choice.LogisticChoiceData;
+import se.vti.samgods.logistics.choice.LogisticChoiceDataProvider;
+import se.vti.samgods.logistics.choice.MonetaryChainAndShipmentSizeUtilityFunction;
+import se.vti.samgods.logistics.costs.NonTransportCostModel_v1_22;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.consolidation.FleetAssignmentCache;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+import se.vti.samgods.transportation.costs.DetailedTransportCost;
+import se.vti.utils.misc.math.LogitChoiceModel;
+
+/**
+ * Cheap approximation of the domestic transport work that a full choice and
+ * consolidation pass would realize for given ASCs. Chain and shipment size
+ * choices are re-evaluated against the transport unit costs cached at
+ * construction, and vehicle types are chosen among the candidate fleet
+ * assignments of the last consolidation, with their unit costs kept fixed.
+ * Expected values replace the random draws of the simulation.
+ *
+ * Consolidation units without cached candidates do not contribute. The
+ * prediction is hence biased; TransportWorkAscCalibrator corrects it against
+ * the last simulated transport work.
+ *
+ * @author GunnarF
+ *
+ */
+public class TransportWorkSurrogate {
+
+	// -------------------- CONSTANTS --------------------
+
+	private final List<ChoiceJob> choiceJobs;
+
+	// Per job, in the order of the job's chains.
+	private final List<List<DetailedTransportCost>> jobIndex2chainUnitCosts_1_ton;
+
+	private final Map<ConsolidationUnit, List<FleetAssignment>> consolidationUnit2candidates = new LinkedHashMap<>();
+
+	private final Map<Commodity, Double> commodity2scale;
+
+	private final SamgodsExecutor executor;
+
+	private final NonTransportCostModel_v1_22 nonTransportCostModel = new NonTransportCostModel_v1_22();
+
+	// Only used for its (stateless) probability computation, hence shareable.
+	private static final LogitChoiceModel logitChoiceModel = new LogitChoiceModel();
+
+	// -------------------- MEMBERS --------------------
+
+	private Map<VehicleType, Double> vehicleType2domesticGTonKm = null;
+	private Map<TransportMode, Double> mode2domesticGTonKm = null;
+	private Map<Commodity, Double> commodity2railDomesticGTonKm = null;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public TransportWorkSurrogate(List<ChoiceJob> choiceJobs, LogisticChoiceDataProvider logisticChoiceDataProvider,
+			FleetAssignmentCache fleetAssignmentCache, Map<Commodity, Double> commodity2scale,
+			SamgodsExecutor executor) {
+		this.choiceJobs = choiceJobs;
+		this.commodity2scale = new LinkedHashMap<>(commodity2scale);
+		this.executor = executor;
+
+		final List<List<DetailedTransportCost>> jobIndex2chainUnitCosts_1_ton = new ArrayList<>(choiceJobs.size());
+		choiceJobs.forEach(j -> jobIndex2chainUnitCosts_1_ton.add(null));
+		final SamgodsExecutor.WorkerLocal<LogisticChoiceData> choiceData = new SamgodsExecutor.WorkerLocal<>(
+				() -> logisticChoiceDataProvider.createLogisticChoiceData());
+		executor.processAll("surrogate costs", IntStream.range(0, choiceJobs.size()).boxed().toList(), jobIndex -> {
+			final List<DetailedTransportCost> unitCosts = new ArrayList<>();
+			for (TransportChain chain : choiceJobs.get(jobIndex).transportChains) {
+				unitCosts.add(choiceData.get().computeChain2transportUnitCost_1_ton(chain));
+			}
+			// Distinct indices, hence no concurrent writes to the same slot.
+			jobIndex2chainUnitCosts_1_ton.set(jobIndex, unitCosts);
+		});
+		this.jobIndex2chainUnitCosts_1_ton = jobIndex2chainUnitCosts_1_ton;
+
+		for (ChoiceJob job : choiceJobs) {
+			for (TransportChain chain : job.transportChains) {
+				for (TransportEpisode episode : chain.getEpisodes()) {
+					for (ConsolidationUnit consolidationUnit : episode.getConsolidationUnits()) {
+						final List<FleetAssignment> candidates = fleetAssignmentCache.getCandidates(consolidationUnit);
+						if (candidates != null && candidates.size() > 0) {
+							this.consolidationUnit2candidates.put(consolidationUnit, candidates);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// -------------------- INTERNALS --------------------
+
+	/*
+	 * Expected annual amount per chain of one job, in the order of the job's
+	 * chains. Package-private for testing.
+	 */
+	static double[] computeExpectedChainAmounts_ton(BatchUtilityEvaluator evaluator, ChoiceJob job,
+			List<DetailedTransportCost> chainUnitCosts_1_ton) {
+		final List<TransportChain> chains = new ArrayList<>(job.transportChains);
+		final double[] chainAmounts_ton = new double[chains.size()];
+		if (chains.size() == 0) {
+			return chainAmounts_ton;
+		}
+		evaluator.prepare(job.commodity, chains, chainUnitCosts_1_ton);
+		for (AnnualShipment annualShipment : job.annualShipments) {
+			final int sizeCnt = evaluator.computeFeasibleSizeCnt(annualShipment.getSingleInstanceAnnualAmount_ton());
+			// Utilities are ordered as utility[chain * sizeCnt + size].
+			final double[] probas = logitChoiceModel.computeLogitProbabilities(
+					evaluator.computeUtilities(annualShipment.getSingleInstanceAnnualAmount_ton(), sizeCnt));
+			for (int i = 0; i < probas.length; i++) {
+				chainAmounts_ton[i / sizeCnt] += probas[i] * annualShipment.getTotalAmount_ton();
+			}
+		}
+		return chainAmounts_ton;
+	}
+
+	/*
+	 * Expected vehicle type choice probabilities of one consolidation unit, in the
+	 * order of the candidates. Package-private for testing.
+	 */
+	static double[] computeExpectedVehicleTypeShares(List<FleetAssignment> candidates, double demand_ton,
+			double scale, Map<VehicleType, Double> vehicleType2asc) {
+		final double[] utilities = new double[candidates.size()];
+		for (int i = 0; i < candidates.size(); i++) {
+			utilities[i] = HalfLoopConsolidationJobProcessor.computeUtility(candidates.get(i), demand_ton, scale,
+					vehicleType2asc);
+		}
+		return logitChoiceModel.computeLogitProbabilities(utilities);
+	}
+
+	private static <K> void add(Map<K, Double> map, K key, double value) {
+		map.compute(key, (k, v) -> v == null ? value : v + value);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public int getConsolidationUnitCnt() {
+		return this.consolidationUnit2candidates.size();
+	}
+
+	public void evaluate(ASCDataProvider ascDataProvider) {
+
+		/*
+		 * Expected annual demand per consolidation unit, from the chain and shipment
+		 * size choice probabilities.
+		 */
+		final MonetaryChainAndShipmentSizeUtilityFunction utilityFunction = new MonetaryChainAndShipmentSizeUtilityFunction(
+				this.commodity2scale, ascDataProvider.getConcurrentRailCommodity2ASC());
+		final SamgodsExecutor.WorkerLocal<BatchUtilityEvaluator> evaluator = new SamgodsExecutor.WorkerLocal<>(
+				() -> new BatchUtilityEvaluator(this.nonTransportCostModel, utilityFunction));
+		final double[][] jobIndex2chainAmounts_ton = new double[this.choiceJobs.size()][];
+		this.executor.processAll("surrogate choice", IntStream.range(0, this.choiceJobs.size()).boxed().toList(),
+				jobIndex -> jobIndex2chainAmounts_ton[jobIndex] = computeExpectedChainAmounts_ton(evaluator.get(),
+						this.choiceJobs.get(jobIndex), this.jobIndex2chainUnitCosts_1_ton.get(jobIndex)));
+
+		// Summed in job order, such that the result does not depend on the threads.
+		final Map<ConsolidationUnit, Double> consolidationUnit2demand_ton = new LinkedHashMap<>();
+		for (int jobIndex = 0; jobIndex < this.choiceJobs.size(); jobIndex++) {
+			int chainIndex = 0;
+			for (TransportChain chain : this.choiceJobs.get(jobIndex).transportChains) {
+				final double amount_ton = jobIndex2chainAmounts_ton[jobIndex][chainIndex++];
+				for (TransportEpisode episode : chain.getEpisodes()) {
+					for (ConsolidationUnit consolidationUnit : episode.getConsolidationUnits()) {
+						add(consolidationUnit2demand_ton, consolidationUnit, amount_ton);
+					}
+				}
+			}
+		}
+
+		// Expected transport work from the vehicle type choice probabilities.
+		this.vehicleType2domesticGTonKm = new LinkedHashMap<>();
+		this.mode2domesticGTonKm = new LinkedHashMap<>();
+		this.commodity2railDomesticGTonKm = new LinkedHashMap<>();
+		for (Map.Entry<ConsolidationUnit, List<FleetAssignment>> e : this.consolidationUnit2candidates.entrySet()) {
+			final ConsolidationUnit consolidationUnit = e.getKey();
+			final List<FleetAssignment> candidates = e.getValue();
+			final double demand_ton = consolidationUnit2demand_ton.getOrDefault(consolidationUnit, 0.0);
+			if (demand_ton < 1e-3) {
+				continue;
+			}
+			final double[] probas = computeExpectedVehicleTypeShares(candidates, demand_ton,
+					this.commodity2scale.get(consolidationUnit.commodity),
+					ascDataProvider.getConcurrentVehicleType2ASC());
+			for (int i = 0; i < candidates.size(); i++) {
+				final double gTonKm = probas[i] * 1e-9 * demand_ton * 0.5 * candidates.get(i).domesticLoopLength_km;
+				add(this.vehicleType2domesticGTonKm, candidates.get(i).vehicleType, gTonKm);
+				add(this.mode2domesticGTonKm, consolidationUnit.samgodsMode, gTonKm);
+				if (TransportMode.Rail.equals(consolidationUnit.samgodsMode)) {
+					add(this.commodity2railDomesticGTonKm, consolidationUnit.commodity, gTonKm);
+				}
+			}
+		}
+	}
+
+	public Map<VehicleType, Double> getVehicleType2domesticGTonKm() {
+		return this.vehicleType2domesticGTonKm;
+	}
+
+	public Map<TransportMode, Double> getMode2domesticGTonKm() {
+		return this.mode2domesticGTonKm;
+	}
+
+	public Map<Commodity, Double> getCommodity2railDomesticGTonKm() {
+		return this.commodity2railDomesticGTonKm;
+	}
+}
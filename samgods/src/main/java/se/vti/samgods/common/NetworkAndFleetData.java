@@ -20,8 +20,11 @@ package se.vti.samgods.common;
  * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
  */
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -41,8 +44,7 @@ import org.matsim.vehicles.VehicleType;
 
 import se.vti.samgods.common.SamgodsConstants.Commodity;
 import se.vti.samgods.common.SamgodsConstants.TransportMode;
-import se.vti.samgods.network.SamgodsLinkAttributes;
-import se.vti.samgods.transportation.costs.BasicTransportCost;
+import se.vti.samgods.transportation.costs.LinkUnitCostTable;
 import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
 import se.vti.utils.misc.Units;
 
@@ -57,13 +59,9 @@ public class NetworkAndFleetData {
 
 	private final NetworkAndFleetDataProvider dataProvider;
 
-	private final Map<VehicleType, Network> vehicleType2network = new LinkedHashMap<>();
-
 	private final double minMonetaryCost = 1e-3;
-	private final Map<VehicleType, TravelDisutility> vehicleType2travelDisutility = new LinkedHashMap<>();
 
 	private final double minTravelTime_s = 1e-3;
-	private final Map<VehicleType, TravelTime> vehicleType2travelTime = new LinkedHashMap<>();
 
 	// -------------------- CONSTRUCTION --------------------
 
@@ -73,43 +71,8 @@ public class NetworkAndFleetData {
 
 	// -------------------- CREATE NOT YET CACHED DATA --------------------
 
-	private ConcurrentMap<Id<Link>, BasicTransportCost> createLinkId2unitCost(VehicleType vehicleType) {
-		final ConcurrentHashMap<Id<Link>, BasicTransportCost> result = new ConcurrentHashMap<>(
-				this.dataProvider.getLinks().size());
-		final SamgodsVehicleAttributes vehicleAttrs = (SamgodsVehicleAttributes) vehicleType.getAttributes()
-				.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME);
-		for (Link link : this.dataProvider.getLinks().values()) {
-			final SamgodsLinkAttributes linkAttrs = ((SamgodsLinkAttributes) link.getAttributes()
-					.getAttribute(SamgodsLinkAttributes.ATTRIBUTE_NAME));
-
-			if (linkAttrs.samgodsMode.equals(vehicleAttrs.samgodsMode)
-					|| (linkAttrs.samgodsMode.isFerry() && vehicleAttrs.isFerryCompatible())) {
-				final double speed_km_h;
-				if (vehicleAttrs.speed_km_h != null) {
-					speed_km_h = Math.min(vehicleAttrs.speed_km_h, Units.KM_H_PER_M_S * link.getFreespeed());
-				} else {
-					speed_km_h = Units.KM_H_PER_M_S * link.getFreespeed();
-				}
-				assert (speed_km_h > 0 && Double.isFinite(speed_km_h));
-				final double length_km = Units.KM_PER_M * link.getLength();
-				final double duration_h = length_km / speed_km_h;
-				if (linkAttrs.samgodsMode.isFerry()) {
-					result.put(link.getId(), new BasicTransportCost(1.0,
-							duration_h * vehicleAttrs.onFerryCost_1_h + length_km * vehicleAttrs.onFerryCost_1_km,
-							duration_h, length_km));
-				} else {
-					result.put(link.getId(),
-							new BasicTransportCost(1.0,
-									duration_h * vehicleAttrs.cost_1_h + length_km * vehicleAttrs.cost_1_km, duration_h,
-									length_km));
-				}
-			}
-		}
-		return result;
-	}
-
 	private TravelDisutility createTravelDisutility(VehicleType vehicleType) {
-		final Map<Id<Link>, BasicTransportCost> linkId2representativeUnitCost = this.getLinkId2unitCost(vehicleType);
+		final LinkUnitCostTable linkUnitCostTable = this.getLinkUnitCostTable(vehicleType);
 		return new TravelDisutility() {
 			@Override
 			public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
@@ -120,20 +83,20 @@ public class NetworkAndFleetData {
 
 			@Override
 			public double getLinkMinimumTravelDisutility(Link link) {
-				return Math.max(minMonetaryCost, linkId2representativeUnitCost.get(link.getId()).monetaryCost);
+				return Math.max(minMonetaryCost, linkUnitCostTable.getMonetaryCost(link.getId().index()));
 			}
 		};
 	}
 
 	private TravelTime createTravelTime(VehicleType vehicleType) {
-		final Map<Id<Link>, BasicTransportCost> linkId2representativeUnitCost = this.getLinkId2unitCost(vehicleType);
+		final LinkUnitCostTable linkUnitCostTable = this.getLinkUnitCostTable(vehicleType);
 		return new TravelTime() {
 			@Override
 			public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
 				assert (person == null);
 				assert (vehicle == null);
 				return Math.max(minTravelTime_s,
-						Units.S_PER_H * linkId2representativeUnitCost.get(link.getId()).duration_h);
+						Units.S_PER_H * linkUnitCostTable.getDuration_h(link.getId().index()));
 			}
 		};
 	}
@@ -170,25 +133,36 @@ public class NetworkAndFleetData {
 		return this.dataProvider.getLinks();
 	}
 
-	public Map<Id<Link>, BasicTransportCost> getLinkId2unitCost(VehicleType vehicleType) {
-		return this.dataProvider.getVehicleType2linkId2unitCost().computeIfAbsent(vehicleType,
-				vt -> this.createLinkId2unitCost(vt));
+	/*
+	 * All data instances of one provider share the same network and cost data.
+	 */
+	public NetworkAndFleetDataProvider getDataProvider() {
+		return this.dataProvider;
+	}
+
+	/*
+	 * Shared by all data instances and by all vehicle types with equal cost
+	 * parameters, must not be modified.
+	 */
+	public LinkUnitCostTable getLinkUnitCostTable(VehicleType vehicleType) {
+		return this.dataProvider.getLinkUnitCostTable(vehicleType);
 	}
 
+	/*
+	 * Shared by all data instances, must not be modified.
+	 */
 	public Network getUnimodalNetwork(VehicleType vehicleType) {
-		return this.vehicleType2network.computeIfAbsent(vehicleType, vt -> {
-			SamgodsVehicleAttributes vehicleAttrs = (SamgodsVehicleAttributes) vt.getAttributes()
-					.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME);
-			return this.dataProvider.createNetwork(vehicleAttrs);
-		});
+		return this.dataProvider.getUnimodalNetwork(vehicleType);
 	}
 
 	public TravelDisutility getTravelDisutility(VehicleType vehicleType) {
-		return this.vehicleType2travelDisutility.computeIfAbsent(vehicleType, vt -> this.createTravelDisutility(vt));
+		return this.dataProvider.getVehicleType2travelDisutility().computeIfAbsent(vehicleType,
+				vt -> this.createTravelDisutility(vt));
 	}
 
 	public TravelTime getTravelTime(VehicleType vehicleType) {
-		return this.vehicleType2travelTime.computeIfAbsent(vehicleType, vt -> this.createTravelTime(vehicleType));
+		return this.dataProvider.getVehicleType2travelTime().computeIfAbsent(vehicleType,
+				vt -> this.createTravelTime(vt));
 	}
 
 	public Map<Id<Link>, CopyOnWriteArraySet<VehicleType>> getLinkId2allowedVehicleTypes() {
@@ -219,6 +193,23 @@ public class NetworkAndFleetData {
 						this.createCompatibleVehicleTypes(commodity, mode, isContainer)));
 	}
 
+	public VehicleType getRoutingRepresentative(VehicleType vehicleType) {
+		return this.dataProvider.getVehicleType2routingRepresentative().get(vehicleType);
+	}
+
+	/*
+	 * Groups the given vehicle types by their routing representatives. All members
+	 * of a group share the same least cost paths.
+	 */
+	public Map<VehicleType, List<VehicleType>> groupByRoutingRepresentative(Collection<VehicleType> vehicleTypes) {
+		final Map<VehicleType, List<VehicleType>> representative2members = new LinkedHashMap<>();
+		for (VehicleType vehicleType : vehicleTypes) {
+			representative2members.computeIfAbsent(this.getRoutingRepresentative(vehicleType), r -> new ArrayList<>())
+					.add(vehicleType);
+		}
+		return representative2members;
+	}
+
 	// TODO NEW
 	public Set<Set<VehicleType>> computeAllVehicleOnLinkGroups() {
 		final Set<Set<VehicleType>> allVehicleOnLinkGroups = new LinkedHashSet<>();
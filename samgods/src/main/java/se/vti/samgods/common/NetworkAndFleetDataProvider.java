@@ -19,9 +19,13 @@
  */
 package se.vti.samgods.common;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -37,6 +41,8 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
 import org.matsim.vehicles.VehicleType;
 import org.matsim.vehicles.Vehicles;
 
@@ -45,8 +51,9 @@ import se.vti.samgods.common.SamgodsConstants.TransportMode;
 import se.vti.samgods.network.SamgodsLinkAttributes;
 import se.vti.samgods.network.SamgodsNodeAttributes;
 import se.vti.samgods.network.TransportModes;
-import se.vti.samgods.transportation.costs.BasicTransportCost;
+import se.vti.samgods.transportation.costs.LinkUnitCostTable;
 import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
+import se.vti.utils.misc.Units;
 
 /**
  * 
@@ -70,7 +77,28 @@ public class NetworkAndFleetDataProvider {
 	private final ConcurrentMap<Id<Link>, CopyOnWriteArraySet<VehicleType>> linkId2allowedVehicleTypes;
 	private final ConcurrentMap<Commodity, ConcurrentMap<TransportMode, ConcurrentMap<Boolean, CopyOnWriteArraySet<VehicleType>>>> commodity2transportMode2isContainer2compatibleVehicleTypes = new ConcurrentHashMap<>();
 
-	private final ConcurrentMap<VehicleType, ConcurrentMap<Id<Link>, BasicTransportCost>> vehicleType2linkId2unitCost = new ConcurrentHashMap<>();
+	/*
+	 * Dense link unit cost tables, built once per cost signature (see
+	 * createCostSignature) and shared by all threads. Read-only once built.
+	 */
+	private final ConcurrentMap<List<Object>, LinkUnitCostTable> costSignature2linkUnitCostTable = new ConcurrentHashMap<>();
+
+	/*
+	 * Unimodal networks are built once per network signature (see
+	 * createNetworkSignature) and shared by all threads. They must be treated as
+	 * read-only.
+	 */
+	private final ConcurrentMap<List<Object>, Network> networkSignature2unimodalNetwork = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<VehicleType, TravelDisutility> vehicleType2travelDisutility = new ConcurrentHashMap<>();
+	private final ConcurrentMap<VehicleType, TravelTime> vehicleType2travelTime = new ConcurrentHashMap<>();
+
+	/*
+	 * Vehicle types with equal routing signatures (see createRoutingSignature)
+	 * operate on identical unimodal networks with identical link costs. They are
+	 * all mapped onto one representative, for which alone routes are computed.
+	 */
+	private final ConcurrentMap<VehicleType, VehicleType> vehicleType2routingRepresentative;
 
 //	private ConcurrentMap<VehicleType, Double> vehicleType2asc = new ConcurrentHashMap<>();
 //	private ConcurrentMap<TransportMode, Double> mode2asc = new ConcurrentHashMap<>();
@@ -177,11 +205,59 @@ public class NetworkAndFleetDataProvider {
 			}
 			this.linkId2allowedVehicleTypes.put(link.getId(), new CopyOnWriteArraySet<>(allowedTypes));
 		}
+
+		/*
+		 * Routing equivalence classes of vehicle types.
+		 */
+
+		final Map<List<Object>, VehicleType> routingSignature2representative = new LinkedHashMap<>();
+		this.vehicleType2routingRepresentative = new ConcurrentHashMap<>(this.vehicleType2attributes.size());
+		for (VehicleType vehicleType : vehicles.getVehicleTypes().values()) {
+			final VehicleType representative = routingSignature2representative.computeIfAbsent(
+					createRoutingSignature(this.vehicleType2attributes.get(vehicleType)), s -> vehicleType);
+			this.vehicleType2routingRepresentative.put(vehicleType, representative);
+		}
+		log.info("Identified " + routingSignature2representative.size() + " routing equivalence classes among "
+				+ this.vehicleType2routingRepresentative.size() + " vehicle types.");
 	}
 
-	// -------------------- CONTENT ACCESS --------------------
+	// -------------------- INTERNALS --------------------
+
+	/*
+	 * Contains every vehicle attribute that enters the unimodal network filtering
+	 * (createNetwork).
+	 */
+	private static List<Object> createNetworkSignature(SamgodsVehicleAttributes vehicleAttrs) {
+		return Arrays.asList(vehicleAttrs.samgodsMode, new HashSet<>(vehicleAttrs.networkModes));
+	}
+
+	/*
+	 * Contains every vehicle attribute that enters the link unit costs
+	 * (createLinkUnitCostTable).
+	 */
+	private static List<Object> createCostSignature(SamgodsVehicleAttributes vehicleAttrs) {
+		return Arrays.asList(vehicleAttrs.samgodsMode, vehicleAttrs.isFerryCompatible(), vehicleAttrs.speed_km_h,
+				vehicleAttrs.cost_1_h, vehicleAttrs.cost_1_km, vehicleAttrs.onFerryCost_1_h,
+				vehicleAttrs.onFerryCost_1_km);
+	}
+
+	/*
+	 * Contains every vehicle attribute that enters the unimodal network filtering
+	 * (createNetwork) or the link unit costs (createLinkUnitCostTable), hence
+	 * determining the least cost paths.
+	 */
+	private static List<Object> createRoutingSignature(SamgodsVehicleAttributes vehicleAttrs) {
+		return Arrays.asList(vehicleAttrs.samgodsMode, new HashSet<>(vehicleAttrs.networkModes),
+				vehicleAttrs.speed_km_h, vehicleAttrs.cost_1_h, vehicleAttrs.cost_1_km, vehicleAttrs.onFerryCost_1_h,
+				vehicleAttrs.onFerryCost_1_km);
+	}
 
-	synchronized Network createNetwork(SamgodsVehicleAttributes vehicleAttrs) {
+	// -------------------- UNIMODAL NETWORKS --------------------
+
+	/*
+	 * Only reads from the multimodal network, hence safe to call concurrently.
+	 */
+	private Network createNetwork(SamgodsVehicleAttributes vehicleAttrs) {
 		assert (!TransportMode.Ferry.equals(vehicleAttrs.samgodsMode));
 
 		final Network unimodalNetwork = NetworkUtils.createNetwork();
@@ -202,6 +278,78 @@ public class NetworkAndFleetDataProvider {
 		return unimodalNetwork;
 	}
 
+	Network getUnimodalNetwork(VehicleType vehicleType) {
+		final SamgodsVehicleAttributes vehicleAttrs = this.vehicleType2attributes.get(vehicleType);
+		return this.networkSignature2unimodalNetwork.computeIfAbsent(createNetworkSignature(vehicleAttrs),
+				s -> this.createNetwork(vehicleAttrs));
+	}
+
+	/**
+	 * Builds, in parallel, the unimodal networks of all given vehicle types that
+	 * are not yet available. Optional, networks are otherwise built on first
+	 * request.
+	 */
+	public void prepareUnimodalNetworks(Collection<VehicleType> vehicleTypes) {
+		final long start_ms = System.currentTimeMillis();
+		final Map<List<Object>, SamgodsVehicleAttributes> missingSignature2attributes = new LinkedHashMap<>();
+		for (VehicleType vehicleType : vehicleTypes) {
+			final SamgodsVehicleAttributes vehicleAttrs = this.vehicleType2attributes.get(vehicleType);
+			final List<Object> signature = createNetworkSignature(vehicleAttrs);
+			if (!this.networkSignature2unimodalNetwork.containsKey(signature)) {
+				missingSignature2attributes.putIfAbsent(signature, vehicleAttrs);
+			}
+		}
+		missingSignature2attributes.entrySet().parallelStream().forEach(e -> this.networkSignature2unimodalNetwork
+				.computeIfAbsent(e.getKey(), s -> this.createNetwork(e.getValue())));
+		log.info("Prepared " + missingSignature2attributes.size() + " unimodal networks in "
+				+ (System.currentTimeMillis() - start_ms) + " ms, in total " + this.networkSignature2unimodalNetwork.size()
+				+ " shared unimodal networks available.");
+	}
+
+	// -------------------- LINK UNIT COSTS --------------------
+
+	/*
+	 * Only reads from the link map, hence safe to call concurrently.
+	 */
+	private LinkUnitCostTable createLinkUnitCostTable(SamgodsVehicleAttributes vehicleAttrs) {
+		final int linkIndexCnt = 1 + this.links.keySet().stream().mapToInt(id -> id.index()).max().orElse(-1);
+		final LinkUnitCostTable result = new LinkUnitCostTable(linkIndexCnt);
+		for (Link link : this.links.values()) {
+			final SamgodsLinkAttributes linkAttrs = ((SamgodsLinkAttributes) link.getAttributes()
+					.getAttribute(SamgodsLinkAttributes.ATTRIBUTE_NAME));
+
+			if (linkAttrs.samgodsMode.equals(vehicleAttrs.samgodsMode)
+					|| (linkAttrs.samgodsMode.isFerry() && vehicleAttrs.isFerryCompatible())) {
+				final double speed_km_h;
+				if (vehicleAttrs.speed_km_h != null) {
+					speed_km_h = Math.min(vehicleAttrs.speed_km_h, Units.KM_H_PER_M_S * link.getFreespeed());
+				} else {
+					speed_km_h = Units.KM_H_PER_M_S * link.getFreespeed();
+				}
+				assert (speed_km_h > 0 && Double.isFinite(speed_km_h));
+				final double length_km = Units.KM_PER_M * link.getLength();
+				final double duration_h = length_km / speed_km_h;
+				if (linkAttrs.samgodsMode.isFerry()) {
+					result.set(link.getId(),
+							duration_h * vehicleAttrs.onFerryCost_1_h + length_km * vehicleAttrs.onFerryCost_1_km,
+							duration_h, length_km, true);
+				} else {
+					result.set(link.getId(), duration_h * vehicleAttrs.cost_1_h + length_km * vehicleAttrs.cost_1_km,
+							duration_h, length_km, false);
+				}
+			}
+		}
+		return result;
+	}
+
+	LinkUnitCostTable getLinkUnitCostTable(VehicleType vehicleType) {
+		final SamgodsVehicleAttributes vehicleAttrs = this.vehicleType2attributes.get(vehicleType);
+		return this.costSignature2linkUnitCostTable.computeIfAbsent(createCostSignature(vehicleAttrs),
+				s -> this.createLinkUnitCostTable(vehicleAttrs));
+	}
+
+	// -------------------- CONTENT ACCESS --------------------
+
 	Set<Id<Node>> getDomesticNodeIds() {
 		return this.domesticNodeIds;
 	}
@@ -218,8 +366,16 @@ public class NetworkAndFleetDataProvider {
 		return this.links;
 	}
 
-	ConcurrentMap<VehicleType, ConcurrentMap<Id<Link>, BasicTransportCost>> getVehicleType2linkId2unitCost() {
-		return this.vehicleType2linkId2unitCost;
+	ConcurrentMap<VehicleType, TravelDisutility> getVehicleType2travelDisutility() {
+		return this.vehicleType2travelDisutility;
+	}
+
+	ConcurrentMap<VehicleType, TravelTime> getVehicleType2travelTime() {
+		return this.vehicleType2travelTime;
+	}
+
+	ConcurrentMap<VehicleType, VehicleType> getVehicleType2routingRepresentative() {
+		return this.vehicleType2routingRepresentative;
 	}
 
 	ConcurrentMap<Id<Link>, CopyOnWriteArraySet<VehicleType>> getLinkId2allowedVehicleTypes() {
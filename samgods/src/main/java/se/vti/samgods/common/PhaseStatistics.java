@@ -0,0 +1,153 @@
+/**
+ * se.vti.samgods.common
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.common;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable measurements of one completed SamgodsExecutor.Phase. Job counts,
+ * times and allocations are given per job type, e.g. choice and consolidation
+ * jobs of a combined phase. Times are in nanoseconds, allocations in bytes.
+ *
+ * CPU time and allocations are measured per job on the thread that runs it;
+ * they are negative if the JVM does not support these measurements.
+ *
+ * A phase started from within a job of another phase is nested into that
+ * (enclosing) phase. Its measurements are excluded from the enclosing job, such
+ * that the statistics of all phases add up without double counting.
+ *
+ * @author GunnarF
+ *
+ */
+public class PhaseStatistics {
+
+	// -------------------- JOB TYPE STATISTICS --------------------
+
+	public static class JobTypeStatistics {
+
+		public final String jobType;
+		public final long jobCnt;
+		public final long busy_ns;
+		public final long maxJob_ns;
+		public final long cpu_ns;
+		public final long allocated_bytes;
+		public final long queueWait_ns;
+		public final long maxQueueWait_ns;
+
+		public JobTypeStatistics(String jobType, long jobCnt, long busy_ns, long maxJob_ns, long cpu_ns,
+				long allocated_bytes, long queueWait_ns, long maxQueueWait_ns) {
+			this.jobType = jobType;
+			this.jobCnt = jobCnt;
+			this.busy_ns = busy_ns;
+			this.maxJob_ns = maxJob_ns;
+			this.cpu_ns = cpu_ns;
+			this.allocated_bytes = allocated_bytes;
+			this.queueWait_ns = queueWait_ns;
+			this.maxQueueWait_ns = maxQueueWait_ns;
+		}
+	}
+
+	// -------------------- MEMBERS --------------------
+
+	public final String phase;
+
+	// Null unless this phase was started from within a job of that phase.
+	public final String enclosingPhase;
+
+	public final int parallelism;
+
+	public final long wall_ns;
+
+	// Estimated by the pool, which is shared with concurrently running phases.
+	public final long stealCnt;
+
+	public final List<JobTypeStatistics> jobTypeStatistics;
+
+	// Only threads that ran at least one job, ordered by thread name.
+	public final Map<String, Long> threadName2busy_ns;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public PhaseStatistics(String phase, String enclosingPhase, int parallelism, long wall_ns, long stealCnt,
+			List<JobTypeStatistics> jobTypeStatistics, Map<String, Long> threadName2busy_ns) {
+		this.phase = phase;
+		this.enclosingPhase = enclosingPhase;
+		this.parallelism = parallelism;
+		this.wall_ns = wall_ns;
+		this.stealCnt = stealCnt;
+		this.jobTypeStatistics = Collections.unmodifiableList(jobTypeStatistics);
+		this.threadName2busy_ns = Collections.unmodifiableMap(threadName2busy_ns);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public long getJobCnt() {
+		return this.jobTypeStatistics.stream().mapToLong(s -> s.jobCnt).sum();
+	}
+
+	public long getBusy_ns() {
+		return this.jobTypeStatistics.stream().mapToLong(s -> s.busy_ns).sum();
+	}
+
+	public long getMaxJob_ns() {
+		return this.jobTypeStatistics.stream().mapToLong(s -> s.maxJob_ns).max().orElse(0);
+	}
+
+	public long getCpu_ns() {
+		return sumIfAllMeasured(this.jobTypeStatistics.stream().mapToLong(s -> s.cpu_ns).toArray());
+	}
+
+	public long getAllocated_bytes() {
+		return sumIfAllMeasured(this.jobTypeStatistics.stream().mapToLong(s -> s.allocated_bytes).toArray());
+	}
+
+	public long getQueueWait_ns() {
+		return this.jobTypeStatistics.stream().mapToLong(s -> s.queueWait_ns).sum();
+	}
+
+	public long getMaxQueueWait_ns() {
+		return this.jobTypeStatistics.stream().mapToLong(s -> s.maxQueueWait_ns).max().orElse(0);
+	}
+
+	/**
+	 * Share of the available thread time (wall time times parallelism) that was
+	 * spent running jobs.
+	 */
+	public double getUtilization() {
+		return this.getBusy_ns() / Math.max(1.0, (double) this.wall_ns * this.parallelism);
+	}
+
+	public double getThreadUtilization(String threadName) {
+		return this.threadName2busy_ns.getOrDefault(threadName, 0L) / Math.max(1.0, (double) this.wall_ns);
+	}
+
+	private static long sumIfAllMeasured(long[] values) {
+		long sum = 0;
+		for (long value : values) {
+			if (value < 0) {
+				return -1;
+			}
+			sum += value;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * se.vti.samgods.common
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.common;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes the statistics of every completed phase as one JSON object per line,
+ * tagged with the iteration during which the phase completed (-1 before the
+ * first iteration). Times are in milliseconds, allocations in bytes, and
+ * utilizations are shares of the available thread time. Nested phases name
+ * their enclosing phase.
+ *
+ * Meant to be set as phase listener of a SamgodsExecutor. Lines are flushed as
+ * they are written, such that a running or aborted run can be inspected.
+ *
+ * @author GunnarF
+ *
+ */
+public class PhaseTelemetryWriter implements AutoCloseable {
+
+	// -------------------- MEMBERS --------------------
+
+	private final Writer writer;
+
+	private final JsonGenerator gen;
+
+	private volatile int iteration = -1;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public PhaseTelemetryWriter(Writer writer) throws IOException {
+		this.writer = writer;
+		this.gen = new JsonFactory().createGenerator(writer);
+		this.gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		// Objects are separated by explicit line breaks.
+		this.gen.setRootValueSeparator(null);
+	}
+
+	// Overwrites an existing file.
+	public PhaseTelemetryWriter(String fileName) throws IOException {
+		this(new FileWriter(fileName));
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public void setIteration(int iteration) {
+		this.iteration = iteration;
+	}
+
+	private static double ms(long ns) {
+		return 1e-6 * ns;
+	}
+
+	private void writeMeasurements(long jobCnt, long busy_ns, long maxJob_ns, long cpu_ns, long allocated_bytes,
+			long queueWait_ns, long maxQueueWait_ns) throws IOException {
+		this.gen.writeNumberField("jobs", jobCnt);
+		this.gen.writeNumberField("busy_ms", ms(busy_ns));
+		this.gen.writeNumberField("maxJob_ms", ms(maxJob_ns));
+		if (cpu_ns >= 0) {
+			this.gen.writeNumberField("cpu_ms", ms(cpu_ns));
+		}
+		if (allocated_bytes >= 0) {
+			this.gen.writeNumberField("allocated_bytes", allocated_bytes);
+		}
+		this.gen.writeNumberField("queueWait_ms", ms(queueWait_ns));
+		this.gen.writeNumberField("maxQueueWait_ms", ms(maxQueueWait_ns));
+	}
+
+	public synchronized void write(PhaseStatistics statistics) {
+		try {
+			this.gen.writeStartObject();
+			this.gen.writeNumberField("iteration", this.iteration);
+			this.gen.writeStringField("phase", statistics.phase);
+			if (statistics.enclosingPhase != null) {
+				this.gen.writeStringField("enclosingPhase", statistics.enclosingPhase);
+			}
+			this.gen.writeNumberField("wall_ms", ms(statistics.wall_ns));
+			this.gen.writeNumberField("threads", statistics.parallelism);
+			this.gen.writeNumberField("steals", statistics.stealCnt);
+			this.writeMeasurements(statistics.getJobCnt(), statistics.getBusy_ns(), statistics.getMaxJob_ns(),
+					statistics.getCpu_ns(), statistics.getAllocated_bytes(), statistics.getQueueWait_ns(),
+					statistics.getMaxQueueWait_ns());
+			this.gen.writeNumberField("utilization", statistics.getUtilization());
+
+			this.gen.writeObjectFieldStart("threadUtilization");
+			for (Map.Entry<String, Long> e : statistics.threadName2busy_ns.entrySet()) {
+				this.gen.writeNumberField(e.getKey(), statistics.getThreadUtilization(e.getKey()));
+			}
+			this.gen.writeEndObject();
+
+			if (statistics.jobTypeStatistics.size() > 1) {
+				this.gen.writeObjectFieldStart("jobTypes");
+				for (PhaseStatistics.JobTypeStatistics jobTypeStatistics : statistics.jobTypeStatistics) {
+					this.gen.writeObjectFieldStart(jobTypeStatistics.jobType);
+					this.writeMeasurements(jobTypeStatistics.jobCnt, jobTypeStatistics.busy_ns,
+							jobTypeStatistics.maxJob_ns, jobTypeStatistics.cpu_ns, jobTypeStatistics.allocated_bytes,
+							jobTypeStatistics.queueWait_ns, jobTypeStatistics.maxQueueWait_ns);
+					this.gen.writeEndObject();
+				}
+				this.gen.writeEndObject();
+			}
+
+			this.gen.writeEndObject();
+			this.gen.flush();
+			this.writer.write("\n");
+			this.writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.gen.close();
+		this.writer.close();
+	}
+}
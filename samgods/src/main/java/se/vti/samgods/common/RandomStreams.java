@@ -0,0 +1,115 @@
+/**
+ * se.vti.samgods.common
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.common;
+
+import java.util.Random;
+
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+
+/**
+ * Derives an independent random stream per job from the run seed and a stable
+ * job key (e.g. iteration, commodity, OD). A job hence draws the same numbers
+ * no matter which thread runs it and in which order, and no generator is ever
+ * shared between threads.
+ *
+ * Keys are hashed from names and id strings only, never from Object.hashCode(),
+ * which is not stable across JVM runs (e.g. for enums).
+ *
+ * Immutable and thread-safe. Each created Random must be used by a single
+ * thread.
+ *
+ * @author GunnarF
+ *
+ */
+public class RandomStreams {
+
+	// -------------------- CONSTANTS --------------------
+
+	private final long seed;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public RandomStreams(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Streams for one iteration, such that jobs repeated in later iterations draw
+	 * different numbers.
+	 */
+	public RandomStreams forIteration(int iteration) {
+		return new RandomStreams(mix(this.seed, key("iteration"), iteration));
+	}
+
+	// -------------------- INTERNALS --------------------
+
+	// Finalizer of SplitMix64: consecutive inputs give uncorrelated outputs.
+	static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	static long mix(long seed, long... keys) {
+		long result = mix64(seed);
+		for (long key : keys) {
+			result = mix64(result ^ key) + 0x9e3779b97f4a7c15L;
+		}
+		return result;
+	}
+
+	// 64-bit FNV-1a, stable across JVM runs.
+	static long key(String string) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < string.length(); i++) {
+			hash ^= string.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	static long key(OD od) {
+		return mix(key(od.origin.toString()), key(od.destination.toString()));
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public long getSeed() {
+		return this.seed;
+	}
+
+	public Random createRandom(String purpose) {
+		return new Random(mix(this.seed, key(purpose)));
+	}
+
+	public Random createRandom(String purpose, SamgodsConstants.Commodity commodity) {
+		return new Random(mix(this.seed, key(purpose), key(commodity.name())));
+	}
+
+	public Random createRandom(String purpose, SamgodsConstants.Commodity commodity, OD od) {
+		return new Random(mix(this.seed, key(purpose), key(commodity.name()), key(od)));
+	}
+
+	public Random createRandom(String purpose, ConsolidationUnit consolidationUnit) {
+		return new Random(mix(this.seed, key(purpose), key(consolidationUnit.commodity.name()),
+				key(consolidationUnit.od), key(consolidationUnit.samgodsMode.name()),
+				key(String.valueOf(consolidationUnit.isContainer))));
+	}
+}
@@ -55,6 +55,59 @@ public class SamgodsConfigGroup extends ReflectiveConfigGroup {
 
 	//
 
+	private Integer maxThreads = null;
+
+	@StringGetter("maxThreads")
+	public Integer getMaxThreads() {
+		return this.maxThreads;
+	}
+
+	@StringSetter("maxThreads")
+	public void setMaxThreads(Integer maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+
+	//
+
+	/*
+	 * Relative change of a consolidation unit's demand below which its fleet
+	 * assignment candidates are reused from the previous iteration.
+	 */
+	private Double reconsolidationTolerance = 0.0;
+
+	@StringGetter("reconsolidationTolerance")
+	public Double getReconsolidationTolerance() {
+		return this.reconsolidationTolerance;
+	}
+
+	@StringSetter("reconsolidationTolerance")
+	public void setReconsolidationTolerance(Double reconsolidationTolerance) {
+		this.reconsolidationTolerance = reconsolidationTolerance;
+	}
+
+	//
+
+	/*
+	 * If true, the logistic choice unit costs are kept across iterations and only
+	 * invalidated for consolidation units whose fleet assignment changed. A unit
+	 * that is not consolidated in an iteration then keeps its earlier fleet
+	 * assignment. If null or false, all unit costs are rebuilt in every iteration
+	 * from estimated payloads.
+	 */
+	private Boolean keepChoiceCostsAcrossIterations = null;
+
+	@StringGetter("keepChoiceCostsAcrossIterations")
+	public Boolean getKeepChoiceCostsAcrossIterations() {
+		return this.keepChoiceCostsAcrossIterations;
+	}
+
+	@StringSetter("keepChoiceCostsAcrossIterations")
+	public void setKeepChoiceCostsAcrossIterations(Boolean keepChoiceCostsAcrossIterations) {
+		this.keepChoiceCostsAcrossIterations = keepChoiceCostsAcrossIterations;
+	}
+
+	//
+
 	private String ascSourceFileName = null;
 
 	@StringGetter("ascSourceFileName")
@@ -83,6 +136,66 @@ public class SamgodsConfigGroup extends ReflectiveConfigGroup {
 
 	//
 
+	// If null, the default targets of CalibrationTargets are used.
+	private String ascCalibrationTargetsFileName = null;
+
+	@StringGetter("ascCalibrationTargetsFileName")
+	public String getAscCalibrationTargetsFileName() {
+		return this.ascCalibrationTargetsFileName;
+	}
+
+	@StringSetter("ascCalibrationTargetsFileName")
+	public void setAscCalibrationTargetsFileName(String ascCalibrationTargetsFileName) {
+		this.ascCalibrationTargetsFileName = ascCalibrationTargetsFileName;
+	}
+
+	//
+
+	// If null or zero, the ASCs are updated with a fixed step.
+	private Integer ascCalibrationAndersonDepth = null;
+
+	@StringGetter("ascCalibrationAndersonDepth")
+	public Integer getAscCalibrationAndersonDepth() {
+		return this.ascCalibrationAndersonDepth;
+	}
+
+	@StringSetter("ascCalibrationAndersonDepth")
+	public void setAscCalibrationAndersonDepth(Integer ascCalibrationAndersonDepth) {
+		this.ascCalibrationAndersonDepth = ascCalibrationAndersonDepth;
+	}
+
+	//
+
+	// Largest ASC change per calibration iteration, unbounded if null.
+	private Double ascCalibrationMaxStepSize = null;
+
+	@StringGetter("ascCalibrationMaxStepSize")
+	public Double getAscCalibrationMaxStepSize() {
+		return this.ascCalibrationMaxStepSize;
+	}
+
+	@StringSetter("ascCalibrationMaxStepSize")
+	public void setAscCalibrationMaxStepSize(Double ascCalibrationMaxStepSize) {
+		this.ascCalibrationMaxStepSize = ascCalibrationMaxStepSize;
+	}
+
+	//
+
+	// Surrogate-based ASC updates per simulated update. If null or zero, none.
+	private Integer ascCalibrationInnerIterations = null;
+
+	@StringGetter("ascCalibrationInnerIterations")
+	public Integer getAscCalibrationInnerIterations() {
+		return this.ascCalibrationInnerIterations;
+	}
+
+	@StringSetter("ascCalibrationInnerIterations")
+	public void setAscCalibrationInnerIterations(Integer ascCalibrationInnerIterations) {
+		this.ascCalibrationInnerIterations = ascCalibrationInnerIterations;
+	}
+
+	//
+
 	private String railVehicleParametersFileName = null;
 
 	@StringGetter("railVehicleParametersFileName")
@@ -209,6 +322,43 @@ public class SamgodsConfigGroup extends ReflectiveConfigGroup {
 
 	//
 
+	/*
+	 * Created if missing, existing content is not deleted. All iteration
+	 * statistics and calibration logs are written into this folder, overwriting
+	 * files of the same name from earlier runs.
+	 */
+	private String outputDirectory = "./results";
+
+	@StringGetter("outputDirectory")
+	public String getOutputDirectory() {
+		return this.outputDirectory;
+	}
+
+	@StringSetter("outputDirectory")
+	public void setOutputDirectory(String outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	//
+
+	/*
+	 * Prefix of the NTMCalc files written after the last iteration. No files are
+	 * written if null.
+	 */
+	private String ntmCalcFileNamePrefix = "Flows2NTM_";
+
+	@StringGetter("ntmCalcFileNamePrefix")
+	public String getNtmCalcFileNamePrefix() {
+		return this.ntmCalcFileNamePrefix;
+	}
+
+	@StringSetter("ntmCalcFileNamePrefix")
+	public void setNtmCalcFileNamePrefix(String ntmCalcFileNamePrefix) {
+		this.ntmCalcFileNamePrefix = ntmCalcFileNamePrefix;
+	}
+
+	//
+
 	public static void main(String[] args) {
 
 //		Config config = ConfigUtils.createConfig();
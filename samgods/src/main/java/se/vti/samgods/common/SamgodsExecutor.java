@@ -0,0 +1,403 @@
+/**
+ * se.vti.samgods.common
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.common;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * One long-lived work-stealing pool for all parallel phases of a run (routing,
+ * choice simulation, consolidation). Job lists are split down to single jobs
+ * such that idle workers steal from busy ones.
+ *
+ * Workers are reused across phases and iterations. Stateful job processors
+ * should hence be kept in a WorkerLocal that is created per phase, not in a
+ * ThreadLocal, whose values would stay attached to the workers.
+ *
+ * Every completed phase is logged and, if a phase listener is set, reported
+ * as PhaseStatistics. A phase may be started from within a job of another
+ * phase (e.g. input loading that loads several files in parallel). The time,
+ * CPU time and allocations of such a nested phase are then excluded from the
+ * enclosing job, such that nothing is counted twice.
+ *
+ * @author GunnarF
+ *
+ */
+public class SamgodsExecutor implements AutoCloseable {
+
+	// -------------------- CONSTANTS --------------------
+
+	private static final Logger log = LogManager.getLogger(SamgodsExecutor.class);
+
+	private final ForkJoinPool pool;
+
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	private static final boolean measureCpu = threadBean.isCurrentThreadCpuTimeSupported()
+			&& threadBean.isThreadCpuTimeEnabled();
+
+	// Null if per-thread allocations cannot be measured.
+	private static final com.sun.management.ThreadMXBean allocationBean = createAllocationBean();
+
+	// The job currently running on a thread, only set while the job runs.
+	private static final ThreadLocal<JobFrame> currentJob = new ThreadLocal<>();
+
+	// -------------------- MEMBERS --------------------
+
+	private volatile Consumer<PhaseStatistics> phaseListener = null;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public SamgodsExecutor(int parallelism) {
+		final AtomicInteger workerCnt = new AtomicInteger(0);
+		this.pool = new ForkJoinPool(Math.max(1, parallelism), p -> {
+			final ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			worker.setName("samgods-worker-" + workerCnt.getAndIncrement());
+			return worker;
+		}, null, false);
+		log.info("Created executor with parallelism " + this.pool.getParallelism() + ".");
+	}
+
+	private static com.sun.management.ThreadMXBean createAllocationBean() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()
+				&& bean.isThreadAllocatedMemoryEnabled()) {
+			return bean;
+		}
+		return null;
+	}
+
+	public static SamgodsExecutor createWithMaxThreads(int maxThreads) {
+		return new SamgodsExecutor(Math.min(maxThreads, Runtime.getRuntime().availableProcessors()));
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public int getParallelism() {
+		return this.pool.getParallelism();
+	}
+
+	/**
+	 * Receives the statistics of every completed phase, in the thread that
+	 * awaited it.
+	 */
+	public SamgodsExecutor setPhaseListener(Consumer<PhaseStatistics> phaseListener) {
+		this.phaseListener = phaseListener;
+		return this;
+	}
+
+	public Phase startPhase(String name) {
+		return new Phase(name, this.pool.getParallelism());
+	}
+
+	/**
+	 * Processes all jobs in parallel, blocks until all are done, and logs the
+	 * utilization of this phase.
+	 */
+	public <J> PhaseStatistics processAll(String phaseName, List<J> jobs, Consumer<J> processor) {
+		final Phase phase = this.startPhase(phaseName);
+		phase.submit(jobs, processor);
+		return phase.awaitCompletion();
+	}
+
+	/**
+	 * Runs a sequential phase in the calling thread, measured and reported like a
+	 * parallel phase with a single job. Parallel phases started from within the
+	 * runnable are reported separately and not included here.
+	 */
+	public PhaseStatistics runInCallingThread(String phaseName, Runnable runnable) {
+		final Phase phase = new Phase(phaseName, 1);
+		phase.run(phase.getJobTypeCounters(phaseName), System.nanoTime(), runnable);
+		return phase.awaitCompletion();
+	}
+
+	@Override
+	public void close() {
+		this.pool.shutdown();
+	}
+
+	// -------------------- PHASE --------------------
+
+	/**
+	 * A set of jobs that are awaited together. Jobs may be submitted from outside
+	 * the pool or from within running jobs, e.g. once the inputs of follow-up jobs
+	 * are complete. Jobs submitted with different job types are measured
+	 * separately.
+	 */
+	public class Phase {
+
+		private final String name;
+
+		private final int parallelism;
+
+		private final long start_ns = System.nanoTime();
+
+		// The pool only counts steals cumulatively.
+		private final long startStealCnt = pool.getStealCount();
+
+		// Non-null if this phase is started from within a job.
+		private final JobFrame enclosingJob = currentJob.get();
+		private final Thread startThread = Thread.currentThread();
+		private final long startCpu_ns = measureCpu ? threadBean.getCurrentThreadCpuTime() : 0;
+		private final long startAllocated_bytes = (allocationBean != null)
+				? allocationBean.getCurrentThreadAllocatedBytes()
+				: 0;
+
+		private final Queue<ForkJoinTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+
+		// Few job types, accessed once per submission.
+		private final Map<String, JobTypeCounters> jobType2counters = new LinkedHashMap<>();
+
+		private final Map<String, LongAdder> threadName2busy_ns = new ConcurrentHashMap<>();
+
+		private Phase(String name, int parallelism) {
+			this.name = name;
+			this.parallelism = parallelism;
+		}
+
+		private synchronized JobTypeCounters getJobTypeCounters(String jobType) {
+			return this.jobType2counters.computeIfAbsent(jobType, t -> new JobTypeCounters());
+		}
+
+		public <J> void submit(List<J> jobs, Consumer<J> processor) {
+			this.submit(this.name, jobs, processor);
+		}
+
+		public <J> void submit(String jobType, List<J> jobs, Consumer<J> processor) {
+			if (jobs.size() == 0) {
+				return;
+			}
+			final JobsAction<J> task = new JobsAction<>(jobs, 0, jobs.size(), processor, this,
+					this.getJobTypeCounters(jobType), System.nanoTime());
+			this.pendingTasks.add(task);
+			if (ForkJoinTask.getPool() == pool) {
+				task.fork();
+			} else {
+				pool.execute(task);
+			}
+		}
+
+		/**
+		 * Blocks until all jobs, including those submitted while waiting, are done.
+		 * Rethrows the first failure of any job.
+		 */
+		public PhaseStatistics awaitCompletion() {
+			ForkJoinTask<?> task;
+			while ((task = this.pendingTasks.poll()) != null) {
+				task.join();
+			}
+			final PhaseStatistics statistics = this.createStatistics();
+			this.logUtilization(statistics);
+			final Consumer<PhaseStatistics> listener = phaseListener;
+			if (listener != null) {
+				listener.accept(statistics);
+			}
+			// Including the reporting, which is part of this phase's overhead.
+			if (this.enclosingJob != null && Thread.currentThread() == this.startThread) {
+				this.enclosingJob.nested_ns += System.nanoTime() - this.start_ns;
+				if (measureCpu) {
+					this.enclosingJob.nestedCpu_ns += threadBean.getCurrentThreadCpuTime() - this.startCpu_ns;
+				}
+				if (allocationBean != null) {
+					this.enclosingJob.nestedAllocated_bytes += allocationBean.getCurrentThreadAllocatedBytes()
+							- this.startAllocated_bytes;
+				}
+			}
+			return statistics;
+		}
+
+		private void run(JobTypeCounters counters, long submitted_ns, Runnable job) {
+			final long start_ns = System.nanoTime();
+			final long startCpu_ns = measureCpu ? threadBean.getCurrentThreadCpuTime() : 0;
+			final long startAllocated_bytes = (allocationBean != null) ? allocationBean.getCurrentThreadAllocatedBytes()
+					: 0;
+			final JobFrame frame = new JobFrame(currentJob.get(), this.name);
+			currentJob.set(frame);
+			try {
+				job.run();
+			} finally {
+				if (frame.enclosing != null) {
+					currentJob.set(frame.enclosing);
+				} else {
+					currentJob.remove();
+				}
+			}
+			final long job_ns = System.nanoTime() - start_ns - frame.nested_ns;
+			counters.jobCnt.increment();
+			counters.busy_ns.add(job_ns);
+			counters.maxJob_ns.accumulate(job_ns);
+			if (measureCpu) {
+				counters.cpu_ns.add(threadBean.getCurrentThreadCpuTime() - startCpu_ns - frame.nestedCpu_ns);
+			}
+			if (allocationBean != null) {
+				counters.allocated_bytes.add(allocationBean.getCurrentThreadAllocatedBytes() - startAllocated_bytes
+						- frame.nestedAllocated_bytes);
+			}
+			counters.queueWait_ns.add(start_ns - submitted_ns);
+			counters.maxQueueWait_ns.accumulate(start_ns - submitted_ns);
+			this.threadName2busy_ns.computeIfAbsent(Thread.currentThread().getName(), n -> new LongAdder())
+					.add(job_ns);
+		}
+
+		public synchronized PhaseStatistics createStatistics() {
+			final List<PhaseStatistics.JobTypeStatistics> jobTypeStatistics = new ArrayList<>();
+			for (Map.Entry<String, JobTypeCounters> e : this.jobType2counters.entrySet()) {
+				final JobTypeCounters counters = e.getValue();
+				jobTypeStatistics.add(new PhaseStatistics.JobTypeStatistics(e.getKey(), counters.jobCnt.sum(),
+						counters.busy_ns.sum(), counters.maxJob_ns.get(), measureCpu ? counters.cpu_ns.sum() : -1,
+						(allocationBean != null) ? counters.allocated_bytes.sum() : -1, counters.queueWait_ns.sum(),
+						counters.maxQueueWait_ns.get()));
+			}
+			final Map<String, Long> threadName2busy_ns = new TreeMap<>();
+			this.threadName2busy_ns.forEach((n, b) -> threadName2busy_ns.put(n, b.sum()));
+			return new PhaseStatistics(this.name, (this.enclosingJob != null ? this.enclosingJob.phaseName : null),
+					this.parallelism, System.nanoTime() - this.start_ns, pool.getStealCount() - this.startStealCnt,
+					jobTypeStatistics, threadName2busy_ns);
+		}
+
+		public void logUtilization() {
+			this.logUtilization(this.createStatistics());
+		}
+
+		private void logUtilization(PhaseStatistics statistics) {
+			log.info(this.name + (statistics.enclosingPhase != null ? " (in " + statistics.enclosingPhase + ")" : "")
+					+ ": " + statistics.getJobCnt() + " jobs in " + Math.round(1e-6 * statistics.wall_ns)
+					+ " ms on " + statistics.parallelism + " threads, busy " + Math.round(1e-6 * statistics.getBusy_ns())
+					+ " ms, utilization " + Math.round(100.0 * statistics.getUtilization()) + "%, longest job "
+					+ Math.round(1e-6 * statistics.getMaxJob_ns()) + " ms, steals " + statistics.stealCnt + ".");
+		}
+	}
+
+	// -------------------- WORKER LOCAL --------------------
+
+	/**
+	 * One lazily created instance per thread, for stateful job processors. Unlike
+	 * with a ThreadLocal, the instances are not attached to the long-lived worker
+	 * threads but become unreachable together with this object, e.g. at the end
+	 * of a phase.
+	 */
+	public static class WorkerLocal<T> {
+
+		private final Supplier<T> factory;
+
+		private final ConcurrentHashMap<Thread, T> thread2instance = new ConcurrentHashMap<>();
+
+		public WorkerLocal(Supplier<T> factory) {
+			this.factory = factory;
+		}
+
+		public T get() {
+			final Thread thread = Thread.currentThread();
+			T instance = this.thread2instance.get(thread);
+			if (instance == null) {
+				// Only the calling thread creates its own instance, hence no race.
+				instance = this.factory.get();
+				this.thread2instance.put(thread, instance);
+			}
+			return instance;
+		}
+	}
+
+	/*
+	 * Only accessed by the thread that runs the job: nested phases are started
+	 * and awaited within it.
+	 */
+	private static class JobFrame {
+		private final JobFrame enclosing;
+		private final String phaseName;
+		private long nested_ns = 0;
+		private long nestedCpu_ns = 0;
+		private long nestedAllocated_bytes = 0;
+
+		private JobFrame(JobFrame enclosing, String phaseName) {
+			this.enclosing = enclosing;
+			this.phaseName = phaseName;
+		}
+	}
+
+	private static class JobTypeCounters {
+		private final LongAdder jobCnt = new LongAdder();
+		private final LongAdder busy_ns = new LongAdder();
+		private final LongAccumulator maxJob_ns = new LongAccumulator(Math::max, 0);
+		private final LongAdder cpu_ns = new LongAdder();
+		private final LongAdder allocated_bytes = new LongAdder();
+		private final LongAdder queueWait_ns = new LongAdder();
+		private final LongAccumulator maxQueueWait_ns = new LongAccumulator(Math::max, 0);
+	}
+
+	// -------------------- TASK SPLITTING --------------------
+
+	private static class JobsAction<J> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<J> jobs;
+		private final int from;
+		private final int to;
+		private final Consumer<J> processor;
+		private final Phase phase;
+		private final JobTypeCounters counters;
+		private final long submitted_ns;
+
+		private JobsAction(List<J> jobs, int from, int to, Consumer<J> processor, Phase phase,
+				JobTypeCounters counters, long submitted_ns) {
+			this.jobs = jobs;
+			this.from = from;
+			this.to = to;
+			this.processor = processor;
+			this.phase = phase;
+			this.counters = counters;
+			this.submitted_ns = submitted_ns;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from == 1) {
+				this.phase.run(this.counters, this.submitted_ns, () -> this.processor.accept(this.jobs.get(this.from)));
+			} else {
+				final int mid = (this.from + this.to) >>> 1;
+				invokeAll(
+						new JobsAction<>(this.jobs, this.from, mid, this.processor, this.phase, this.counters,
+								this.submitted_ns),
+						new JobsAction<>(this.jobs, mid, this.to, this.processor, this.phase, this.counters,
+								this.submitted_ns));
+			}
+		}
+	}
+}
@@ -20,21 +20,24 @@
 package se.vti.samgods.common;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -42,16 +45,11 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.vehicles.VehicleUtils;
 import org.matsim.vehicles.Vehicles;
 
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-
 import se.vti.samgods.calibration.ascs.ASCDataProvider;
+import se.vti.samgods.calibration.ascs.CalibrationTargets;
 import se.vti.samgods.calibration.ascs.TransportWorkAscCalibrator;
 import se.vti.samgods.calibration.ascs.TransportWorkMonitor;
+import se.vti.samgods.calibration.ascs.TransportWorkSurrogate;
 import se.vti.samgods.common.SamgodsConstants.Commodity;
 import se.vti.samgods.common.SamgodsConstants.TransportMode;
 import se.vti.samgods.external.gis.NetworkFlows;
@@ -74,16 +72,32 @@ import se.vti.samgods.network.NetworkReader;
 import se.vti.samgods.network.Router;
 import se.vti.samgods.transportation.consolidation.ConsolidationJob;
 import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnitsIO;
+import se.vti.samgods.transportation.consolidation.FleetAssignmentCache;
 import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor;
 import se.vti.samgods.transportation.fleet.VehiclesReader;
-import se.vti.utils.MiscUtils;
 
 /**
+ * The runner owns a thread pool, which is released by close() and at the end
+ * of run(). It is recreated if the runner is used again.
  * 
  * @author GunnarF
  *
  */
-public class SamgodsRunner {
+public class SamgodsRunner implements AutoCloseable {
+
+	// -------------------- INTERFACES --------------------
+
+	/**
+	 * Notified after the choices and the consolidation of each iteration. Choices
+	 * are in job order, fleet assignments in consolidation unit order.
+	 */
+	public interface IterationListener {
+
+		void notifyChoicesAndConsolidation(int iteration, List<ChainAndShipmentSize> choices,
+				Map<ConsolidationUnit, HalfLoopConsolidationJobProcessor.FleetAssignment> consolidationUnit2assignment);
+
+	}
 
 	// -------------------- CONSTANTS --------------------
 
@@ -101,6 +115,8 @@ public class SamgodsRunner {
 
 	private final static double defaultSamplingRate = 1.0;
 
+	public final static String PHASE_TELEMETRY_FILE_NAME = "phaseTelemetry.jsonl";
+
 	private final static Commodity[] defaultConsideredCommodities = Commodity.values();
 
 	private final static double defaultLogitScale = 1.0;
@@ -109,7 +125,7 @@ public class SamgodsRunner {
 
 	private final SamgodsConfigGroup config;
 
-	private Random rnd = new Random();
+	private long randomSeed;
 
 	private List<Commodity> consideredCommodities;
 
@@ -140,11 +156,55 @@ public class SamgodsRunner {
 
 	private String networkFlowsFileName = null;
 
+	private boolean writeNetworkFlowsEachIteration = false;
+
+	private boolean ntmCalcSharedLinkTable = false;
+
+	private boolean writePhaseTelemetry = true;
+
+	// Phases completed before the telemetry file is opened, e.g. routing.
+	private final List<PhaseStatistics> pendingPhaseStatistics = new ArrayList<>();
+
+	private PhaseTelemetryWriter phaseTelemetryWriter = null;
+
+	// Created on first use, shared by all parallel phases of all iterations.
+	private SamgodsExecutor executor = null;
+
+	private IterationListener iterationListener = null;
+
 	public SamgodsRunner setNetworkFlowsFileName(String networkFlowsFileName) {
 		this.networkFlowsFileName = networkFlowsFileName;
 		return this;
 	}
 
+	/*
+	 * If true, the flows of every iteration but the last are written to
+	 * "it<iteration>_<networkFlowsFileName>", in the same directory.
+	 */
+	public SamgodsRunner setWriteNetworkFlowsEachIteration(boolean writeNetworkFlowsEachIteration) {
+		this.writeNetworkFlowsEachIteration = writeNetworkFlowsEachIteration;
+		return this;
+	}
+
+	public SamgodsRunner setNTMCalcSharedLinkTable(boolean ntmCalcSharedLinkTable) {
+		this.ntmCalcSharedLinkTable = ntmCalcSharedLinkTable;
+		return this;
+	}
+
+	/*
+	 * If true, the statistics of all phases are written as JSON lines to
+	 * PHASE_TELEMETRY_FILE_NAME in the output directory.
+	 */
+	public SamgodsRunner setWritePhaseTelemetry(boolean writePhaseTelemetry) {
+		this.writePhaseTelemetry = writePhaseTelemetry;
+		return this;
+	}
+
+	public SamgodsRunner setIterationListener(IterationListener iterationListener) {
+		this.iterationListener = iterationListener;
+		return this;
+	}
+
 	// -------------------- CONSTRUCTION --------------------
 
 	public SamgodsRunner(SamgodsConfigGroup config) {
@@ -160,8 +220,12 @@ public class SamgodsRunner {
 
 	// -------------------- SETTERS --------------------
 
+	/*
+	 * All random draws derive from this seed through per-job streams, such that
+	 * results do not depend on the number of threads.
+	 */
 	public SamgodsRunner setRandomSeed(long seed) {
-		this.rnd = new Random(seed);
+		this.randomSeed = seed;
 		return this;
 	}
 
@@ -170,11 +234,59 @@ public class SamgodsRunner {
 		return this;
 	}
 
-	public SamgodsRunner setMaxThreads(int maxThreads) {
+	public synchronized SamgodsRunner setMaxThreads(int maxThreads) {
 		this.maxThreads = maxThreads;
+		// Recreated with the new setting on next use.
+		this.close();
 		return this;
 	}
 
+	/*
+	 * The number of threads is taken from the config if specified there,
+	 * otherwise from setMaxThreads(..).
+	 */
+	public synchronized SamgodsExecutor getExecutor() {
+		if (this.executor == null) {
+			this.executor = SamgodsExecutor
+					.createWithMaxThreads(
+							this.config.getMaxThreads() != null ? this.config.getMaxThreads() : this.maxThreads)
+					.setPhaseListener(this::registerPhaseStatistics);
+		}
+		return this.executor;
+	}
+
+	private synchronized void registerPhaseStatistics(PhaseStatistics statistics) {
+		if (this.phaseTelemetryWriter != null) {
+			this.phaseTelemetryWriter.write(statistics);
+		} else if (this.writePhaseTelemetry) {
+			this.pendingPhaseStatistics.add(statistics);
+		}
+	}
+
+	private synchronized void openPhaseTelemetry() {
+		if (this.writePhaseTelemetry) {
+			try {
+				this.phaseTelemetryWriter = new PhaseTelemetryWriter(
+						new File(this.config.getOutputDirectory(), PHASE_TELEMETRY_FILE_NAME).getPath());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.pendingPhaseStatistics.forEach(s -> this.phaseTelemetryWriter.write(s));
+		}
+		this.pendingPhaseStatistics.clear();
+	}
+
+	private synchronized void closePhaseTelemetry() {
+		if (this.phaseTelemetryWriter != null) {
+			try {
+				this.phaseTelemetryWriter.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.phaseTelemetryWriter = null;
+		}
+	}
+
 	public SamgodsRunner setServiceInterval_days(int serviceInterval_days) {
 		Arrays.stream(Commodity.values())
 				.forEach(c -> this.commodity2serviceInterval_days.put(c, serviceInterval_days));
@@ -203,43 +315,96 @@ public class SamgodsRunner {
 		return this;
 	}
 
+	// -------------------- IN-MEMORY INPUTS --------------------
+
+	/*
+	 * Alternatives to the file-based loading below, e.g. for synthetic scenarios
+	 * (see SyntheticScenario). The demand must only contain considered
+	 * commodities and refer to nodes of the network and types of the vehicles.
+	 */
+
+	public SamgodsRunner setNetwork(Network network) {
+		this.network = network;
+		return this;
+	}
+
+	public SamgodsRunner setVehicles(Vehicles vehicles) {
+		this.vehicles = vehicles;
+		return this;
+	}
+
+	public SamgodsRunner setTransportDemand(TransportDemandAndChains transportDemand) {
+		this.transportDemand = transportDemand;
+		return this;
+	}
+
 	// -------------------- GETTERS --------------------
 
 	public Network getNetwork() {
 		return this.network;
 	}
 
+	public Vehicles getVehicles() {
+		return this.vehicles;
+	}
+
+	public TransportDemandAndChains getTransportDemand() {
+		return this.transportDemand;
+	}
+
 	// -------------------- LOAD VEHICLE FLEET --------------------
 
-	private SamgodsRunner loadVehicles(String vehicleParametersFileName, String transferParametersFileName,
+	private Vehicles loadVehicles(String vehicleParametersFileName, String transferParametersFileName,
 			TransportMode samgodsMode, String... excludedIds) throws IOException {
-		if (this.vehicles == null) {
-			this.vehicles = VehicleUtils.createVehiclesContainer();
-		}
-		final VehiclesReader fleetReader = new VehiclesReader(this.vehicles);
+		final long start_ms = System.currentTimeMillis();
+		final Vehicles vehicles = VehicleUtils.createVehiclesContainer();
+		final VehiclesReader fleetReader = new VehiclesReader(vehicles);
 		for (String excludedId : excludedIds) {
 			fleetReader.addExcludedId(excludedId);
 		}
 		fleetReader.load_v12(vehicleParametersFileName, transferParametersFileName, samgodsMode);
-		return this;
+		log.info("Loaded " + vehicles.getVehicleTypes().size() + " " + samgodsMode + " vehicle types in "
+				+ (System.currentTimeMillis() - start_ms) + " ms.");
+		return vehicles;
 	}
 
+	/*
+	 * Modes are read in parallel, each into its own container, and then merged in
+	 * the order rail, road, sea.
+	 */
 	public SamgodsRunner loadVehiclesOtherThan(String... excludedIds) throws IOException {
+		final Map<TransportMode, String[]> mode2fileNames = new LinkedHashMap<>();
 		if (this.config.getRailVehicleParametersFileName() != null
 				&& this.config.getRailTransferParametersFileName() != null) {
-			this.loadVehicles("./input_2024/vehicleparameters_rail.csv", "./input_2024/transferparameters_rail.csv",
-					SamgodsConstants.TransportMode.Rail, excludedIds);
+			mode2fileNames.put(SamgodsConstants.TransportMode.Rail, new String[] {
+					this.config.getRailVehicleParametersFileName(), this.config.getRailTransferParametersFileName() });
 		}
 		if (this.config.getRoadVehicleParametersFileName() != null
 				&& this.config.getRoadTransferParametersFileName() != null) {
-			this.loadVehicles("./input_2024/vehicleparameters_road.csv", "./input_2024/transferparameters_road.csv",
-					SamgodsConstants.TransportMode.Road, excludedIds);
+			mode2fileNames.put(SamgodsConstants.TransportMode.Road, new String[] {
+					this.config.getRoadVehicleParametersFileName(), this.config.getRoadTransferParametersFileName() });
 		}
 		if (this.config.getSeaVehicleParametersFileName() != null
 				&& this.config.getSeaTransferParametersFileName() != null) {
-			this.loadVehicles("./input_2024/vehicleparameters_sea.csv", "./input_2024/transferparameters_sea.csv",
-					SamgodsConstants.TransportMode.Sea, excludedIds);
+			mode2fileNames.put(SamgodsConstants.TransportMode.Sea, new String[] {
+					this.config.getSeaVehicleParametersFileName(), this.config.getSeaTransferParametersFileName() });
+		}
 
+		final Map<TransportMode, Vehicles> mode2vehicles = new ConcurrentHashMap<>();
+		this.getExecutor().processAll("vehicle loading", new ArrayList<>(mode2fileNames.keySet()), mode -> {
+			try {
+				mode2vehicles.put(mode, this.loadVehicles(mode2fileNames.get(mode)[0], mode2fileNames.get(mode)[1],
+						mode, excludedIds));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+
+		if (this.vehicles == null) {
+			this.vehicles = VehicleUtils.createVehiclesContainer();
+		}
+		for (TransportMode mode : mode2fileNames.keySet()) {
+			mode2vehicles.get(mode).getVehicleTypes().values().forEach(type -> this.vehicles.addVehicleType(type));
 		}
 		return this;
 	}
@@ -247,30 +412,83 @@ public class SamgodsRunner {
 	// -------------------- LOAD NETWORK --------------------
 
 	public SamgodsRunner loadNetwork() throws IOException {
+		final long start_ms = System.currentTimeMillis();
 		this.network = new NetworkReader().load(this.config.getNetworkNodesFileName(),
 				this.config.getNetworkLinksFileName());
+		log.info("Loaded network with " + this.network.getNodes().size() + " nodes and "
+				+ this.network.getLinks().size() + " links in " + (System.currentTimeMillis() - start_ms) + " ms.");
+		return this;
+	}
+
+	// -------------------- LOAD ALL INPUTS --------------------
+
+	/**
+	 * Loads network, vehicles and transport demand. The network is loaded
+	 * concurrently with the vehicles and the demand, which needs the vehicles.
+	 * Vehicle modes and demand commodities are in turn loaded in parallel. Results
+	 * are merged in a fixed order and hence do not depend on the thread schedule.
+	 */
+	public SamgodsRunner loadInputs(String demandFilePrefix, String demandFileSuffix, String... excludedVehicleIds) {
+		final long start_ms = System.currentTimeMillis();
+		final List<Runnable> loaders = Arrays.asList(() -> {
+			try {
+				this.loadNetwork();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, () -> {
+			try {
+				this.loadVehiclesOtherThan(excludedVehicleIds);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			this.loadTransportDemand(demandFilePrefix, demandFileSuffix);
+		});
+		this.getExecutor().processAll("input loading", loaders, loader -> loader.run());
+		log.info("Loaded all inputs in " + (System.currentTimeMillis() - start_ms) + " ms.");
 		return this;
 	}
 
 	// -------------------- LOAD TRANSPORT DEMAND --------------------
 
+	/*
+	 * Commodity files are read in parallel, each into its own container, and then
+	 * merged in the order of the considered commodities.
+	 */
 	public SamgodsRunner loadTransportDemand(String demandFilePrefix, String demandFileSuffix) {
+		final long start_ms = System.currentTimeMillis();
+		final Map<Commodity, TransportDemandAndChains> commodity2demand = new ConcurrentHashMap<>();
+		final RandomStreams randomStreams = new RandomStreams(this.randomSeed);
+		this.getExecutor().processAll("demand loading", this.consideredCommodities, commodity -> {
+			final TransportDemandAndChains commodityDemand = new TransportDemandAndChains();
+			new ChainChoiReader(commodity, commodityDemand, this.vehicles)
+					.setSamplingRate(this.samplingRate, randomStreams.createRandom("sampling", commodity))
+					.parse(demandFilePrefix + commodity.twoDigitCode() + demandFileSuffix);
+			commodity2demand.put(commodity, commodityDemand);
+		});
 		this.transportDemand = new TransportDemandAndChains();
 		for (Commodity commodity : this.consideredCommodities) {
-			new ChainChoiReader(commodity, this.transportDemand, this.vehicles)
-					.setSamplingRate(this.samplingRate, new Random(4711))
-					.parse(demandFilePrefix + commodity.twoDigitCode() + demandFileSuffix);
+			this.transportDemand.addAll(commodity2demand.get(commodity));
 		}
+		log.info("Loaded transport demand of " + this.consideredCommodities.size() + " commodities in "
+				+ (System.currentTimeMillis() - start_ms) + " ms.");
 		return this;
 	}
 
 	// -------------------- PREPARE CONSOLIDATION UNITS --------------------
 
+	/*
+	 * Consolidation units are routed if rerouting is enforced or the
+	 * consolidation units file does not exist. They are only kept in memory if no
+	 * such file is configured.
+	 */
 	public void createOrLoadConsolidationUnits() throws IOException {
 
 		NetworkAndFleetDataProvider.initialize(this.network, this.vehicles);
 
-		if (this.enforceReroute || !(new File(this.config.getConsolidationUnitsFileName()).exists())) {
+		final String consolidationUnitsFileName = this.config.getConsolidationUnitsFileName();
+		if (this.enforceReroute || consolidationUnitsFileName == null
+				|| !(new File(consolidationUnitsFileName).exists())) {
 
 			/*
 			 * Several episodes may have consolidation units with the same routes. To reduce
@@ -302,29 +520,20 @@ public class SamgodsRunner {
 			 * ConsolidationUnit, but this should matter in the *values* of a HashMap.
 			 */
 			new Router(NetworkAndFleetDataProvider.getProviderInstance()).setLogProgress(true)
-					.setMaxThreads(this.maxThreads).route(consolidationUnitPattern2representativeUnit.values());
+					.setExecutor(this.getExecutor()).route(consolidationUnitPattern2representativeUnit.values());
 
 			/*
-			 * Stream routed consolidation units to json file.
+			 * Stream routed consolidation units to file, binary if the file name ends with
+			 * ConsolidationUnitsBinaryWriter.FILE_SUFFIX, otherwise json.
 			 */
-			long routedCnt = 0;
-			ObjectMapper mapper = new ObjectMapper();
-			mapper.enable(SerializationFeature.INDENT_OUTPUT);
-			mapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, true);
-			FileOutputStream fos = new FileOutputStream(new File(this.config.getConsolidationUnitsFileName()));
-			JsonGenerator gen = mapper.getFactory().createGenerator(fos);
-			for (ConsolidationUnit consolidationUnit : consolidationUnitPattern2representativeUnit.values()) {
-				if (consolidationUnit.vehicleType2route.size() > 0) {
-					mapper.writeValue(gen, consolidationUnit);
-					routedCnt++;
-				}
+			if (consolidationUnitsFileName != null) {
+				final long routedCnt = ConsolidationUnitsIO.write(consolidationUnitPattern2representativeUnit
+						.values().stream().filter(u -> u.vehicleType2route.size() > 0).toList(),
+						consolidationUnitsFileName);
+				log.info("Wrote " + routedCnt + " (out of in total "
+						+ consolidationUnitPattern2representativeUnit.size() + ") routed consolidation units to file "
+						+ consolidationUnitsFileName);
 			}
-			gen.flush();
-			gen.close();
-			fos.flush();
-			fos.close();
-			log.info("Wrote " + routedCnt + " (out of in total " + consolidationUnitPattern2representativeUnit.size()
-					+ ") routed consolidation units to file " + this.config.getConsolidationUnitsFileName());
 
 			/*
 			 * Attach representative consolidation units to the episodes. This means that
@@ -358,19 +567,12 @@ public class SamgodsRunner {
 			 * Load (routed!) consolidation units.
 			 */
 			log.info("Loading consolidation units from file " + this.config.getConsolidationUnitsFileName());
-			ObjectMapper mapper = new ObjectMapper();
-			SimpleModule module = (new SimpleModule()).addDeserializer(ConsolidationUnit.class,
-					new ConsolidationUnit.Deserializer(this.vehicles));
-			mapper.registerModule(module);
-			ObjectReader reader = mapper.readerFor(ConsolidationUnit.class);
-			JsonParser parser = mapper.getFactory().createParser(new File(this.config.getConsolidationUnitsFileName()));
-			Map<ConsolidationUnit, ConsolidationUnit> consolidationUnitPattern2representativeUnit = new LinkedHashMap<>();
-			while (parser.nextToken() != null) {
-				ConsolidationUnit unit = reader.readValue(parser);
-//				unit.compress(); // TODO not necessary when the file is already compressed
-				consolidationUnitPattern2representativeUnit.put(unit.cloneWithoutRoutes(), unit);
-			}
-			parser.close();
+			final long start_ms = System.currentTimeMillis();
+			final Map<ConsolidationUnit, ConsolidationUnit> consolidationUnitPattern2representativeUnit = new LinkedHashMap<>();
+			ConsolidationUnitsIO.read(this.config.getConsolidationUnitsFileName(), this.vehicles,
+					unit -> consolidationUnitPattern2representativeUnit.put(unit.cloneWithoutRoutes(), unit));
+			log.info("Loaded " + consolidationUnitPattern2representativeUnit.size() + " consolidation units in "
+					+ (System.currentTimeMillis() - start_ms) + " ms.");
 
 			/*
 			 * Attach representative consolidation units to episodes.
@@ -418,11 +620,79 @@ public class SamgodsRunner {
 
 	// -------------------- RUN ITERATIONS --------------------
 
+	/*
+	 * Groups the (complete) choices of one commodity by consolidation unit and
+	 * creates one consolidation job per consolidation unit.
+	 */
+	private List<ConsolidationJob> createConsolidationJobs(List<ChainAndShipmentSize> commodityChoices,
+			Map<ConsolidationUnit, List<ChainAndShipmentSize>> allConsolidationUnit2choices,
+			NetworkAndFleetData networkAndFleetData) {
+		final List<ConsolidationJob> result = new ArrayList<>();
+		final Map<ConsolidationUnit, List<ChainAndShipmentSize>> consolidationUnit2choices = new LinkedHashMap<>();
+		for (ChainAndShipmentSize choice : commodityChoices) {
+			for (TransportEpisode episode : choice.transportChain.getEpisodes()) {
+				for (ConsolidationUnit consolidationUnit : episode.getConsolidationUnits()) {
+					consolidationUnit2choices.computeIfAbsent(consolidationUnit, s -> new LinkedList<>()).add(choice);
+				}
+			}
+		}
+		allConsolidationUnit2choices.putAll(consolidationUnit2choices);
+
+		for (Map.Entry<ConsolidationUnit, List<ChainAndShipmentSize>> entry : consolidationUnit2choices.entrySet()) {
+			ConsolidationUnit consolidationUnit = entry.getKey();
+			List<ChainAndShipmentSize> choices = entry.getValue();
+			if ((choices != null) && (choices.size() > 0)) {
+				final double totalDemand_ton = choices.stream().mapToDouble(c -> c.annualShipment.getTotalAmount_ton())
+						.sum();
+				if (totalDemand_ton >= 1e-3
+						&& consolidationUnit.computeLengthStats_km(networkAndFleetData).getMean() >= 1e-3) {
+					ConsolidationJob job = new ConsolidationJob(consolidationUnit, choices,
+							this.commodity2serviceInterval_days.get(consolidationUnit.commodity));
+					result.add(job);
+				}
+			} else {
+				log.warn("No transport chains available for consolidation: " + consolidationUnit);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Never deletes anything: the configured folder may be shared with other
+	 * content. Files written by a run overwrite those of earlier runs.
+	 */
+	private void createOutputDirectory() {
+		try {
+			Files.createDirectories(Paths.get(this.config.getOutputDirectory()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	public void run() {
 
-		MiscUtils.ensureEmptyFolder("./results");
+		this.createOutputDirectory();
+		this.openPhaseTelemetry();
+		try {
+			this.runIterations();
+		} finally {
+			this.closePhaseTelemetry();
+			this.close();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (this.executor != null) {
+			this.executor.close();
+			this.executor = null;
+		}
+	}
+
+	private void runIterations() {
 
-		final TransportWorkMonitor transportWorkMonitor = new TransportWorkMonitor(this.vehicles);
+		final TransportWorkMonitor transportWorkMonitor = new TransportWorkMonitor(this.vehicles,
+				this.config.getOutputDirectory());
 
 		if (this.config.getAscSourceFileName() != null) {
 			try {
@@ -437,8 +707,25 @@ public class SamgodsRunner {
 //		NetworkAndFleetDataProvider.updateASCs(this.ascs);
 
 		if (this.config.getAscCalibrationStepSize() != null) {
+			final CalibrationTargets targets;
+			try {
+				targets = (this.config.getAscCalibrationTargetsFileName() != null)
+						? CalibrationTargets.createFromFile(this.config.getAscCalibrationTargetsFileName())
+						: CalibrationTargets.createDefault();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
 			this.fleetCalibrator = new TransportWorkAscCalibrator(this.vehicles,
-					this.config.getAscCalibrationStepSize());
+					this.config.getAscCalibrationStepSize(), this.config.getOutputDirectory(), targets);
+			if (this.config.getAscCalibrationAndersonDepth() != null) {
+				this.fleetCalibrator.setAndersonDepth(this.config.getAscCalibrationAndersonDepth());
+			}
+			if (this.config.getAscCalibrationMaxStepSize() != null) {
+				this.fleetCalibrator.setMaxStepSize(this.config.getAscCalibrationMaxStepSize());
+			}
+			if (this.config.getAscCalibrationInnerIterations() != null) {
+				this.fleetCalibrator.setInnerIterations(this.config.getAscCalibrationInnerIterations());
+			}
 		} else {
 			this.fleetCalibrator = null;
 		}
@@ -453,84 +740,122 @@ public class SamgodsRunner {
 			}
 		}
 
+		final FleetAssignmentCache fleetAssignmentCache = new FleetAssignmentCache(
+				this.config.getReconsolidationTolerance() != null ? this.config.getReconsolidationTolerance() : 0.0);
+
+		// If configured, unit costs are kept across iterations and updated after each
+		// consolidation. Otherwise, they are rebuilt in every iteration.
+		final LogisticChoiceDataProvider persistentLogisticChoiceDataProvider = Boolean.TRUE
+				.equals(this.config.getKeepChoiceCostsAcrossIterations())
+						? new LogisticChoiceDataProvider(NetworkAndFleetDataProvider.getProviderInstance(),
+								new RandomStreams(this.randomSeed))
+						: null;
+
 		for (int iteration = 0; iteration < this.config.getMaxIterations(); iteration++) {
 			log.info("STARTING ITERATION " + iteration);
 
+			final LogisticChoiceDataProvider logisticChoiceDataProvider = (persistentLogisticChoiceDataProvider != null
+					? persistentLogisticChoiceDataProvider
+					: new LogisticChoiceDataProvider(NetworkAndFleetDataProvider.getProviderInstance(),
+							new RandomStreams(this.randomSeed)));
+			if (this.phaseTelemetryWriter != null) {
+				this.phaseTelemetryWriter.setIteration(iteration);
+			}
+			final RandomStreams iterationRandomStreams = new RandomStreams(this.randomSeed).forIteration(iteration);
+
 			/*
-			 * Simulate choices.
+			 * Simulate choices and consolidate. A consolidation unit only receives
+			 * choices of its own commodity. All consolidation units of a commodity are
+			 * hence consolidated as soon as all choice jobs of that commodity are
+			 * completed, while choices of other commodities are still being simulated.
 			 */
 
-			final LogisticChoiceDataProvider logisticChoiceDataProvider = new LogisticChoiceDataProvider(
-					NetworkAndFleetDataProvider.getProviderInstance());
-			logisticChoiceDataProvider.update(null);
-
-			BlockingQueue<ChainAndShipmentSize> allChoices = new LinkedBlockingQueue<>();
-			{
-				final int threadCnt = Math.min(this.maxThreads, Runtime.getRuntime().availableProcessors());
-				BlockingQueue<ChoiceJob> jobQueue = new LinkedBlockingQueue<>(10 * threadCnt);
-				List<Thread> choiceThreads = new ArrayList<>();
-
-				log.info("Starting " + threadCnt + " choice simulation threads.");
-				try {
-					for (int i = 0; i < threadCnt; i++) {
-//						final NetworkAndFleetData networkAndFleetData = NetworkAndFleetDataProvider
-//								.getProviderInstance().createDataInstance();
-						final NonTransportCostModel nonTransportCostModel = new NonTransportCostModel_v1_22();
-						final ChainAndShipmentSizeUtilityFunction utilityFunction = new MonetaryChainAndShipmentSizeUtilityFunction(
-								new LinkedHashMap<>(this.commodity2scale),
-//								this.ascDataProvider.getConcurrentMode2ASC(),
-								this.ascDataProvider.getConcurrentRailCommodity2ASC());
-						final ChoiceJobProcessor choiceSimulator = new ChoiceJobProcessor(
-								logisticChoiceDataProvider.createLogisticChoiceData(), nonTransportCostModel,
-								utilityFunction, jobQueue, allChoices);
-						final Thread choiceThread = new Thread(choiceSimulator);
-						choiceThreads.add(choiceThread);
-						choiceThread.start();
-					}
-
-					log.info("Starting to populate choice job queue, continuing as threads progress.");
-					for (SamgodsConstants.Commodity commodity : this.consideredCommodities) {
-						for (Map.Entry<OD, List<AnnualShipment>> e : this.transportDemand
-								.getCommodity2od2annualShipments().get(commodity).entrySet()) {
-							final OD od = e.getKey();
-							final List<AnnualShipment> annualShipments = e.getValue();
-							final List<TransportChain> transportChains = this.transportDemand
-									.getCommodity2od2transportChains().get(commodity).get(od);
-							if (transportChains.size() > 0) {
-								jobQueue.put(new ChoiceJob(commodity, od, transportChains, annualShipments));
-							} else {
-								log.warn("No transport chains available for commodity=" + commodity + ",od=" + od);
-							}
-						}
-					}
-
-					log.info("Waiting for choice jobs to complete.");
-					for (int i = 0; i < choiceThreads.size(); i++) {
-						jobQueue.put(ChoiceJob.TERMINATE);
-					}
-					for (Thread choiceThread : choiceThreads) {
-						choiceThread.join();
+			/*
+			 * Results are stored per job index and concatenated in job order, such
+			 * that the choices of a commodity do not depend on the thread schedule.
+			 */
+			final List<ChoiceJob> choiceJobs = new ArrayList<>();
+			final Map<Commodity, AtomicInteger> commodity2pendingChoiceJobCnt = new LinkedHashMap<>();
+			final Map<Commodity, List<Integer>> commodity2jobIndices = new LinkedHashMap<>();
+			for (SamgodsConstants.Commodity commodity : this.consideredCommodities) {
+				commodity2pendingChoiceJobCnt.put(commodity, new AtomicInteger(0));
+				commodity2jobIndices.put(commodity, new ArrayList<>());
+				for (Map.Entry<OD, List<AnnualShipment>> e : this.transportDemand.getCommodity2od2annualShipments()
+						.get(commodity).entrySet()) {
+					final OD od = e.getKey();
+					final List<AnnualShipment> annualShipments = e.getValue();
+					final List<TransportChain> transportChains = this.transportDemand.getCommodity2od2transportChains()
+							.get(commodity).get(od);
+					if (transportChains.size() > 0) {
+						commodity2jobIndices.get(commodity).add(choiceJobs.size());
+						choiceJobs.add(new ChoiceJob(commodity, od, transportChains, annualShipments));
+						commodity2pendingChoiceJobCnt.get(commodity).incrementAndGet();
+					} else {
+						log.warn("No transport chains available for commodity=" + commodity + ",od=" + od);
 					}
-
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
 				}
 			}
 
-			log.info("Collecting data, calculating choice stats.");
-			Map<ConsolidationUnit, List<ChainAndShipmentSize>> consolidationUnit2choices = new LinkedHashMap<>();
-			ChainAndShipmentChoiceStats stats = new ChainAndShipmentChoiceStats(
-					NetworkAndFleetDataProvider.getProviderInstance().createDataInstance());
-			for (ChainAndShipmentSize choice : allChoices) {
-				stats.add(choice);
-				for (TransportEpisode episode : choice.transportChain.getEpisodes()) {
-					for (ConsolidationUnit consolidationUnit : episode.getConsolidationUnits()) {
-						consolidationUnit2choices.computeIfAbsent(consolidationUnit, s -> new LinkedList<>())
-								.add(choice);
-					}
+			final SamgodsExecutor.WorkerLocal<ChoiceJobProcessor> choiceProcessor = new SamgodsExecutor.WorkerLocal<>(
+					() -> new ChoiceJobProcessor(logisticChoiceDataProvider.createLogisticChoiceData(),
+							new NonTransportCostModel_v1_22(),
+							new MonetaryChainAndShipmentSizeUtilityFunction(new LinkedHashMap<>(this.commodity2scale),
+									this.ascDataProvider.getConcurrentRailCommodity2ASC()),
+							iterationRandomStreams));
+			final ConcurrentHashMap<ConsolidationUnit, HalfLoopConsolidationJobProcessor.FleetAssignment> consolidationUnit2assignment = new ConcurrentHashMap<>();
+			final SamgodsExecutor.WorkerLocal<HalfLoopConsolidationJobProcessor> consolidationProcessor = new SamgodsExecutor.WorkerLocal<>(
+					() -> new HalfLoopConsolidationJobProcessor(consolidationUnit2assignment,
+							NetworkAndFleetDataProvider.getProviderInstance().createDataInstance(),
+							new LinkedHashMap<>(this.commodity2scale), this.ascDataProvider, fleetAssignmentCache,
+							iterationRandomStreams));
+
+			final NetworkAndFleetData networkAndFleetData = NetworkAndFleetDataProvider.getProviderInstance()
+					.createDataInstance();
+			final Map<ConsolidationUnit, List<ChainAndShipmentSize>> consolidationUnit2choices = Collections
+					.synchronizedMap(new LinkedHashMap<>());
+
+			log.info("Simulating " + choiceJobs.size() + " choice jobs, consolidating as commodities complete.");
+			final SamgodsExecutor.Phase phase = this.getExecutor().startPhase("choice and consolidation");
+			// Written before and read after the pending job counter update.
+			final AtomicReferenceArray<List<ChainAndShipmentSize>> jobIndex2choices = new AtomicReferenceArray<>(
+					choiceJobs.size());
+			phase.submit("choice", IntStream.range(0, choiceJobs.size()).boxed().toList(), jobIndex -> {
+				final ChoiceJob job = choiceJobs.get(jobIndex);
+				jobIndex2choices.set(jobIndex, choiceProcessor.get().process(job));
+				if (commodity2pendingChoiceJobCnt.get(job.commodity).decrementAndGet() == 0) {
+					log.info(job.commodity + ": Choices completed, starting consolidation.");
+					final List<ChainAndShipmentSize> commodityChoices = commodity2jobIndices.get(job.commodity)
+							.stream().flatMap(i -> jobIndex2choices.get(i).stream()).toList();
+					phase.submit("consolidation", this.createConsolidationJobs(commodityChoices, consolidationUnit2choices,
+							networkAndFleetData), consolidationJob -> consolidationProcessor.get().process(consolidationJob));
+				}
+			});
+			phase.awaitCompletion();
+			log.info(fleetAssignmentCache.createStatisticsAndReset());
+
+			final List<ChainAndShipmentSize> allChoices = IntStream.range(0, choiceJobs.size())
+					.mapToObj(i -> jobIndex2choices.get(i)).flatMap(l -> l.stream()).toList();
+
+			// Iteration order of the concurrently filled map depends on the thread schedule.
+			final Map<ConsolidationUnit, HalfLoopConsolidationJobProcessor.FleetAssignment> orderedConsolidationUnit2assignment = new LinkedHashMap<>();
+			for (ConsolidationUnit consolidationUnit : allConsolidationUnits) {
+				final HalfLoopConsolidationJobProcessor.FleetAssignment assignment = consolidationUnit2assignment
+						.get(consolidationUnit);
+				if (assignment != null) {
+					orderedConsolidationUnit2assignment.put(consolidationUnit, assignment);
 				}
 			}
-			log.info(allChoices.stream().mapToLong(c -> c.transportChain.getEpisodes().size()).sum() + " episodes.");
+			if (this.iterationListener != null) {
+				this.iterationListener.notifyChoicesAndConsolidation(iteration, allChoices,
+						Collections.unmodifiableMap(orderedConsolidationUnit2assignment));
+			}
+			final ChainAndShipmentChoiceStats stats = new ChainAndShipmentChoiceStats(
+					NetworkAndFleetDataProvider.getProviderInstance().createDataInstance());
+			allChoices.forEach(c -> stats.add(c));
+
+			log.info(allChoices.stream()
+					.mapToLong(c -> ((long) c.getNumberOfInstances()) * c.transportChain.getEpisodes().size()).sum()
+					+ " episodes.");
 			log.info(consolidationUnit2choices.size() + " episode signatures.");
 			log.info(consolidationUnit2choices.values().stream().flatMap(l -> l.stream())
 					.mapToDouble(c -> c.annualShipment.getTotalAmount_ton() / c.sizeClass.getRepresentativeValue_ton())
@@ -547,91 +872,56 @@ public class SamgodsRunner {
 //			}
 //			populationCreator.writeToFile("./input_2024/shipmentPlans.xml");
 
-			/*
-			 * Consolidate.
-			 */
-			final ConcurrentHashMap<ConsolidationUnit, HalfLoopConsolidationJobProcessor.FleetAssignment> consolidationUnit2assignment = new ConcurrentHashMap<>();
-			{
-				final int threadCnt = Math.min(this.maxThreads, Runtime.getRuntime().availableProcessors());
-				BlockingQueue<ConsolidationJob> jobQueue = new LinkedBlockingQueue<>(10 * threadCnt);
-				List<Thread> consolidationThreads = new ArrayList<>();
-
-				try {
-
-					log.info("Starting " + threadCnt + " consolidation threads.");
-					for (int i = 0; i < threadCnt; i++) {
-						NetworkAndFleetData networkAndFleetData = NetworkAndFleetDataProvider.getProviderInstance()
-								.createDataInstance();
-						HalfLoopConsolidationJobProcessor consolidationProcessor = new HalfLoopConsolidationJobProcessor(
-								jobQueue, consolidationUnit2assignment, networkAndFleetData,
-								new LinkedHashMap<>(this.commodity2scale), this.ascDataProvider);
-						Thread choiceThread = new Thread(consolidationProcessor);
-						consolidationThreads.add(choiceThread);
-						choiceThread.start();
-					}
-
-					log.info("Starting to populate consolidation job queue, continuing as threads progress.");
-					final NetworkAndFleetData networkAndFleetData = NetworkAndFleetDataProvider.getProviderInstance()
-							.createDataInstance();
-					for (Map.Entry<ConsolidationUnit, List<ChainAndShipmentSize>> entry : consolidationUnit2choices
-							.entrySet()) {
-						ConsolidationUnit consolidationUnit = entry.getKey();
-						List<ChainAndShipmentSize> choices = entry.getValue();
-						if ((choices != null) && (choices.size() > 0)) {
-							final double totalDemand_ton = choices.stream()
-									.mapToDouble(c -> c.annualShipment.getTotalAmount_ton()).sum();
-							if (totalDemand_ton >= 1e-3
-									&& consolidationUnit.computeLengthStats_km(networkAndFleetData).getMean() >= 1e-3) {
-								ConsolidationJob job = new ConsolidationJob(consolidationUnit, choices,
-										this.commodity2serviceInterval_days.get(consolidationUnit.commodity));
-								jobQueue.put(job);
-							}
-						} else {
-							log.warn("No transport chains available for consolidation: " + consolidationUnit);
-						}
-					}
-
-					log.info("Waiting for choice jobs to complete.");
-					for (int i = 0; i < consolidationThreads.size(); i++) {
-						jobQueue.put(ConsolidationJob.TERMINATE);
-					}
-					for (Thread consolidationThread : consolidationThreads) {
-						consolidationThread.join();
-					}
-
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				}
-			}
-
 			/*
 			 * POSTPROCESSING, SUMMARY STATISTICS.
 			 */
 
-			logisticChoiceDataProvider.update(consolidationUnit2assignment);
-
-			log.info("Collecting fleet statistics");
-			transportWorkMonitor.update(consolidationUnit2assignment);
-			if (this.fleetCalibrator != null) {
-				this.fleetCalibrator.update(transportWorkMonitor.getVehicleType2lastRealizedDomesticGTonKm(),
-						transportWorkMonitor.getMode2lastRealizedDomesticGTonKm(),
-						transportWorkMonitor.getCommodity2lastRealizedRailDomesticGTonKm(), iteration);
-				this.ascDataProvider = this.fleetCalibrator.createASCDataProvider();
-			}
+			this.getExecutor().runInCallingThread("choice data update",
+					() -> logisticChoiceDataProvider.update(orderedConsolidationUnit2assignment));
+
+			final int currentIteration = iteration;
+			this.getExecutor().runInCallingThread("calibration", () -> {
+				log.info("Collecting fleet statistics");
+				transportWorkMonitor.update(orderedConsolidationUnit2assignment);
+				if (this.fleetCalibrator != null) {
+					/*
+					 * Cheap approximate ASC updates between simulations re-evaluate the choices
+					 * against the costs and fleet assignments of this iteration.
+					 */
+					final TransportWorkSurrogate surrogate = (this.config.getAscCalibrationInnerIterations() != null
+							&& this.config.getAscCalibrationInnerIterations() > 0)
+									? new TransportWorkSurrogate(choiceJobs, logisticChoiceDataProvider,
+											fleetAssignmentCache, this.commodity2scale, this.getExecutor())
+									: null;
+					this.fleetCalibrator.update(transportWorkMonitor.getVehicleType2lastRealizedDomesticGTonKm(),
+							transportWorkMonitor.getMode2lastRealizedDomesticGTonKm(),
+							transportWorkMonitor.getCommodity2lastRealizedRailDomesticGTonKm(), currentIteration,
+							surrogate, this.ascDataProvider);
+					this.ascDataProvider = this.fleetCalibrator.createASCDataProvider();
+				}
+			});
 
 //			NetworkAndFleetDataProvider.updateASCs(this.ascs);
 
-			if ((iteration == this.config.getMaxIterations() - 1)) {
-
-				if (this.networkFlowsFileName != null) {
-					new NetworkFlows().add(consolidationUnit2assignment).writeToFile(this.networkFlowsFileName);
+			final boolean lastIteration = (iteration == this.config.getMaxIterations() - 1);
+			this.getExecutor().runInCallingThread("output", () -> {
+				if (this.networkFlowsFileName != null && (lastIteration || this.writeNetworkFlowsEachIteration)) {
+					final File networkFlowsFile = new File(this.networkFlowsFileName);
+					final String fileName = lastIteration ? this.networkFlowsFileName
+							: new File(networkFlowsFile.getAbsoluteFile().getParentFile(),
+									"it" + currentIteration + "_" + networkFlowsFile.getName()).getPath();
+					new NetworkFlows().add(orderedConsolidationUnit2assignment, this.getExecutor())
+							.writeToFile(fileName);
 				}
 
-				new HalfLoopAssignment2NTMCalcWriter(
-						NetworkAndFleetDataProvider.getProviderInstance().createDataInstance())
-						.writeToFile("Flows2NTM_", consolidationUnit2assignment);
-				;
-			}
+				if (lastIteration && this.config.getNtmCalcFileNamePrefix() != null) {
+					new HalfLoopAssignment2NTMCalcWriter(
+							NetworkAndFleetDataProvider.getProviderInstance().createDataInstance())
+							.setSharedLinkTable(this.ntmCalcSharedLinkTable)
+							.writeToFile(this.config.getNtmCalcFileNamePrefix(), orderedConsolidationUnit2assignment,
+									this.getExecutor());
+				}
+			});
 		}
 	}
 }
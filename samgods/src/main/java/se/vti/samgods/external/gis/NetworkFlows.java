@@ -19,54 +19,242 @@
  */
 package se.vti.samgods.external.gis;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsExecutor;
 import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
 import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+import se.vti.samgods.transportation.consolidation.LinkIndexRoute;
 
 /**
- * 
+ * Annual flows per link and commodity, accumulated in one dense double array
+ * per commodity that is indexed by link Id index.
+ *
+ * Written in a format chosen by the file suffix: CSV_SUFFIX (one row per link,
+ * one column per commodity), BINARY_SUFFIX (see writeBinary), otherwise compact
+ * JSON of the form {linkId: {commodity: flow}}. Only links with flow are
+ * written, in the order of their Id index. Files are streamed, without
+ * creating per-link objects.
+ *
  * @author GunnarF
  *
  */
 public class NetworkFlows {
 
-	private final Map<Id<Link>, Map<Commodity, Double>> id2commodity2flow_ton = new LinkedHashMap<>();
+	// -------------------- CONSTANTS --------------------
+
+	public static final String CSV_SUFFIX = ".csv";
+	public static final String BINARY_SUFFIX = ".bin";
+
+	static final int MAGIC = 0x53474e46; // "SGNF"
+	static final int VERSION = 1;
+
+	private static final Commodity[] commodities = Commodity.values();
+
+	// -------------------- MEMBERS --------------------
+
+	// Indexed by commodity ordinal and link Id index, grown on demand.
+	private final double[][] commodity2linkIndex2flow_ton = new double[commodities.length][];
+
+	// -------------------- CONSTRUCTION --------------------
 
 	public NetworkFlows() {
+		final int linkCnt = Id.getNumberOfIds(Link.class);
+		for (Commodity commodity : commodities) {
+			this.commodity2linkIndex2flow_ton[commodity.ordinal()] = new double[linkCnt];
+		}
+	}
+
+	// -------------------- ACCUMULATION --------------------
+
+	/**
+	 * Not thread-safe for the same commodity.
+	 */
+	public NetworkFlows add(Commodity commodity, LinkIndexRoute route, double amount_ton) {
+		double[] linkIndex2flow_ton = this.commodity2linkIndex2flow_ton[commodity.ordinal()];
+		for (int i = 0; i < route.size(); i++) {
+			final int linkIndex = route.getLinkIndex(i);
+			if (linkIndex >= linkIndex2flow_ton.length) {
+				linkIndex2flow_ton = Arrays.copyOf(linkIndex2flow_ton,
+						Math.max(linkIndex + 1, Id.getNumberOfIds(Link.class)));
+				this.commodity2linkIndex2flow_ton[commodity.ordinal()] = linkIndex2flow_ton;
+			}
+			linkIndex2flow_ton[linkIndex] += amount_ton;
+		}
+		return this;
 	}
 
 	public NetworkFlows add(Map<ConsolidationUnit, FleetAssignment> consolidationUnit2assignment) {
 		for (Map.Entry<ConsolidationUnit, FleetAssignment> entry : consolidationUnit2assignment.entrySet()) {
-			final ConsolidationUnit consolidationUnit = entry.getKey();
-			final FleetAssignment fleetAssignment = entry.getValue();
-			for (Id<Link> linkId : consolidationUnit.getRoute(fleetAssignment.vehicleType)) {
-				this.id2commodity2flow_ton.computeIfAbsent(linkId, id -> new LinkedHashMap<>(Commodity.values().length))
-						.compute(consolidationUnit.commodity, (c, q) -> q == null ? fleetAssignment.annualDemand_ton
-								: q + fleetAssignment.annualDemand_ton);
-			}
+			this.add(entry.getKey(), entry.getValue());
+		}
+		return this;
+	}
+
+	/**
+	 * Accumulates the commodities in parallel. Every job owns the array of its
+	 * commodity, such that no merging or synchronization is needed, and adds its
+	 * units in map order. The result is hence identical to that of the sequential
+	 * add.
+	 */
+	public NetworkFlows add(Map<ConsolidationUnit, FleetAssignment> consolidationUnit2assignment,
+			SamgodsExecutor executor) {
+		final Map<Commodity, List<Map.Entry<ConsolidationUnit, FleetAssignment>>> commodity2entries = new LinkedHashMap<>();
+		for (Map.Entry<ConsolidationUnit, FleetAssignment> entry : consolidationUnit2assignment.entrySet()) {
+			commodity2entries.computeIfAbsent(entry.getKey().commodity, c -> new ArrayList<>()).add(entry);
 		}
+		executor.processAll("network flows", new ArrayList<>(commodity2entries.values()), entries -> {
+			for (Map.Entry<ConsolidationUnit, FleetAssignment> entry : entries) {
+				this.add(entry.getKey(), entry.getValue());
+			}
+		});
 		return this;
 	}
 
+	private void add(ConsolidationUnit consolidationUnit, FleetAssignment fleetAssignment) {
+		final LinkIndexRoute route = consolidationUnit.getLinkIndexRoute(fleetAssignment.vehicleType);
+		if (route != null) {
+			this.add(consolidationUnit.commodity, route, fleetAssignment.annualDemand_ton);
+		}
+	}
+
+	// -------------------- CONTENT ACCESS --------------------
+
+	public double getFlow_ton(Id<Link> linkId, Commodity commodity) {
+		final double[] linkIndex2flow_ton = this.commodity2linkIndex2flow_ton[commodity.ordinal()];
+		return (linkId.index() < linkIndex2flow_ton.length ? linkIndex2flow_ton[linkId.index()] : 0.0);
+	}
+
+	private int linkIndexCnt() {
+		int result = 0;
+		for (double[] linkIndex2flow_ton : this.commodity2linkIndex2flow_ton) {
+			result = Math.max(result, linkIndex2flow_ton.length);
+		}
+		return result;
+	}
+
+	private double flow_ton(int commodityIndex, int linkIndex) {
+		final double[] linkIndex2flow_ton = this.commodity2linkIndex2flow_ton[commodityIndex];
+		return (linkIndex < linkIndex2flow_ton.length ? linkIndex2flow_ton[linkIndex] : 0.0);
+	}
+
+	private boolean hasFlow(int linkIndex) {
+		for (int c = 0; c < commodities.length; c++) {
+			if (this.flow_ton(c, linkIndex) != 0.0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// -------------------- WRITING --------------------
+
 	public void writeToFile(String fileName) {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.enable(SerializationFeature.INDENT_OUTPUT);
-		mapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
-		try {
-			mapper.writeValue(new File(fileName), this.id2commodity2flow_ton);
+		final String lowerCaseFileName = fileName.toLowerCase();
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16)) {
+			if (lowerCaseFileName.endsWith(CSV_SUFFIX)) {
+				this.writeCsv(out);
+			} else if (lowerCaseFileName.endsWith(BINARY_SUFFIX)) {
+				this.writeBinary(out);
+			} else {
+				this.writeJson(out);
+			}
 		} catch (IOException e) {
-			throw new RuntimeException();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void writeJson(OutputStream out) throws IOException {
+		final JsonGenerator gen = new JsonFactory().createGenerator(out);
+		gen.writeStartObject();
+		final int linkIndexCnt = this.linkIndexCnt();
+		for (int linkIndex = 0; linkIndex < linkIndexCnt; linkIndex++) {
+			if (this.hasFlow(linkIndex)) {
+				gen.writeObjectFieldStart(Id.get(linkIndex, Link.class).toString());
+				for (int c = 0; c < commodities.length; c++) {
+					final double flow_ton = this.flow_ton(c, linkIndex);
+					if (flow_ton != 0.0) {
+						gen.writeNumberField(commodities[c].toString(), flow_ton);
+					}
+				}
+				gen.writeEndObject();
+			}
+		}
+		gen.writeEndObject();
+		gen.flush();
+	}
+
+	void writeCsv(OutputStream out) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		writer.write("linkId");
+		for (Commodity commodity : commodities) {
+			writer.write(",");
+			writer.write(commodity.toString());
+		}
+		writer.write("\n");
+		final int linkIndexCnt = this.linkIndexCnt();
+		for (int linkIndex = 0; linkIndex < linkIndexCnt; linkIndex++) {
+			if (this.hasFlow(linkIndex)) {
+				writer.write(Id.get(linkIndex, Link.class).toString());
+				for (int c = 0; c < commodities.length; c++) {
+					writer.write(",");
+					writer.write(Double.toString(this.flow_ton(c, linkIndex)));
+				}
+				writer.write("\n");
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * MAGIC, VERSION, number of commodities and their names, number of links,
+	 * then per link its id followed by one double per commodity.
+	 */
+	void writeBinary(OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(commodities.length);
+		for (Commodity commodity : commodities) {
+			data.writeUTF(commodity.toString());
+		}
+		final int linkIndexCnt = this.linkIndexCnt();
+		int linkCnt = 0;
+		for (int linkIndex = 0; linkIndex < linkIndexCnt; linkIndex++) {
+			if (this.hasFlow(linkIndex)) {
+				linkCnt++;
+			}
+		}
+		data.writeInt(linkCnt);
+		for (int linkIndex = 0; linkIndex < linkIndexCnt; linkIndex++) {
+			if (this.hasFlow(linkIndex)) {
+				data.writeUTF(Id.get(linkIndex, Link.class).toString());
+				for (int c = 0; c < commodities.length; c++) {
+					data.writeDouble(this.flow_ton(c, linkIndex));
+				}
+			}
 		}
+		data.flush();
 	}
 }
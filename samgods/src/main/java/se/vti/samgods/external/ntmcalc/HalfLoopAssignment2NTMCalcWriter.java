@@ -19,34 +19,45 @@
  */
 package se.vti.samgods.external.ntmcalc;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
-import org.matsim.vehicles.VehicleType;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
-import com.fasterxml.jackson.databind.module.SimpleModule;
 
 import se.vti.samgods.common.NetworkAndFleetData;
 import se.vti.samgods.common.SamgodsConstants;
+import se.vti.samgods.common.SamgodsExecutor;
 import se.vti.samgods.network.SamgodsLinkAttributes;
 import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
 import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+import se.vti.samgods.transportation.consolidation.LinkIndexRoute;
 import se.vti.utils.misc.Units;
 
 /**
- * 
+ * Writes one compact JSON file per (commodity, mode). The assignments are
+ * partitioned in a single pass and every file is streamed by its own job.
+ *
+ * With a shared link table, the link entries of the assignment files only
+ * contain the link id and mode. Their domestic flag, length and speed are then
+ * written once per link into fileNamePrefix + LINK_TABLE_SUFFIX.
+ *
  * @author GunnarF
  *
  */
@@ -54,6 +65,8 @@ import se.vti.utils.misc.Units;
 public class HalfLoopAssignment2NTMCalcWriter
 		extends JsonSerializer<HalfLoopAssignment2NTMCalcWriter.RoadHalfLoopAssignment> {
 
+	public static final String LINK_TABLE_SUFFIX = "_links.json";
+
 	class RoadHalfLoopAssignment {
 
 		final ConsolidationUnit consolidationUnit;
@@ -65,23 +78,37 @@ public class HalfLoopAssignment2NTMCalcWriter
 		}
 
 		List<Id<Link>> getAssignedRoute() {
-			for (Map.Entry<Set<VehicleType>, ? extends List<Id<Link>>> e : this.consolidationUnit.vehicleType2route
-					.entrySet()) {
-				if (e.getKey().contains(fleetAssignment.vehicleType)) {
-					return e.getValue();
-				}
-			}
-			return null;
+			return this.consolidationUnit.getRoute(this.fleetAssignment.vehicleType);
 		}
 
 	}
 
 	private final NetworkAndFleetData networkAndFleetData;
 
+	private final JsonFactory jsonFactory = new JsonFactory();
+
+	private boolean sharedLinkTable = false;
+
 	public HalfLoopAssignment2NTMCalcWriter(NetworkAndFleetData networkAndFleetData) {
 		this.networkAndFleetData = networkAndFleetData;
 	}
 
+	public HalfLoopAssignment2NTMCalcWriter setSharedLinkTable(boolean sharedLinkTable) {
+		this.sharedLinkTable = sharedLinkTable;
+		return this;
+	}
+
+	private SamgodsLinkAttributes getLinkAttributes(Link link) {
+		return (SamgodsLinkAttributes) link.getAttributes().getAttribute(SamgodsLinkAttributes.ATTRIBUTE_NAME);
+	}
+
+	private void writeLinkAttributes(Link link, SamgodsLinkAttributes linkAttrs, JsonGenerator gen)
+			throws IOException {
+		gen.writeStringField("domestic", linkAttrs.isDomestic ? "yes" : "no");
+		gen.writeNumberField("length_m", link.getLength());
+		gen.writeNumberField("maxSpeed_km_h", Math.round(link.getFreespeed() * Units.KM_H_PER_M_S));
+	}
+
 	@Override
 	public void serialize(RoadHalfLoopAssignment halfLoopAssignment, JsonGenerator gen, SerializerProvider serializers)
 			throws IOException {
@@ -97,13 +124,12 @@ public class HalfLoopAssignment2NTMCalcWriter
 
 		for (Id<Link> linkId : halfLoopAssignment.getAssignedRoute()) {
 			final Link link = this.networkAndFleetData.getLinks().get(linkId);
-			final SamgodsLinkAttributes linkAttrs = (SamgodsLinkAttributes) link.getAttributes()
-					.getAttribute(SamgodsLinkAttributes.ATTRIBUTE_NAME);
+			final SamgodsLinkAttributes linkAttrs = this.getLinkAttributes(link);
 			gen.writeStartObject();
 			gen.writeStringField("linkId", linkId.toString());
-			gen.writeStringField("domestic", linkAttrs.isDomestic ? "yes" : "no");
-			gen.writeNumberField("length_m", link.getLength());
-			gen.writeNumberField("maxSpeed_km_h", Math.round(link.getFreespeed() * Units.KM_H_PER_M_S));
+			if (!this.sharedLinkTable) {
+				this.writeLinkAttributes(link, linkAttrs, gen);
+			}
 			if (linkAttrs.isFerryLink()) {
 				assert (SamgodsConstants.TransportMode.Road.equals(halfLoopAssignment.consolidationUnit.samgodsMode)
 						|| SamgodsConstants.TransportMode.Rail
@@ -122,33 +148,100 @@ public class HalfLoopAssignment2NTMCalcWriter
 		gen.writeEndObject();
 	}
 
-	public void writeToFile(String fileNamePrefix,
+	// -------------------- FILE WRITING --------------------
+
+	private class FileJob {
+
+		private final String fileName;
+		private final List<RoadHalfLoopAssignment> assignments = new ArrayList<>();
+
+		private FileJob(String fileName) {
+			this.fileName = fileName;
+		}
+	}
+
+	private List<FileJob> createFileJobs(String fileNamePrefix,
 			Map<ConsolidationUnit, FleetAssignment> consolidationUnits2fleetAssignments) {
+		final Map<SamgodsConstants.Commodity, Map<SamgodsConstants.TransportMode, FileJob>> commodity2mode2job = new EnumMap<>(
+				SamgodsConstants.Commodity.class);
+		for (Map.Entry<ConsolidationUnit, FleetAssignment> entry : consolidationUnits2fleetAssignments.entrySet()) {
+			final ConsolidationUnit consolidationUnit = entry.getKey();
+			commodity2mode2job
+					.computeIfAbsent(consolidationUnit.commodity, c -> new EnumMap<>(SamgodsConstants.TransportMode.class))
+					.computeIfAbsent(consolidationUnit.samgodsMode,
+							m -> new FileJob(fileNamePrefix + "_" + consolidationUnit.commodity + "_" + m + ".json"))
+					.assignments.add(new RoadHalfLoopAssignment(consolidationUnit, entry.getValue()));
+		}
+		final List<FileJob> jobs = new ArrayList<>();
+		commodity2mode2job.values().forEach(mode2job -> jobs.addAll(mode2job.values()));
+		return jobs;
+	}
 
-		for (SamgodsConstants.Commodity commodity : SamgodsConstants.Commodity.values()) {
-			final List<RoadHalfLoopAssignment> dataForCommodity = consolidationUnits2fleetAssignments.entrySet()
-					.stream().filter(e -> commodity.equals(e.getKey().commodity))
-					.map(e -> new RoadHalfLoopAssignment(e.getKey(), e.getValue())).toList();
-
-			for (SamgodsConstants.TransportMode mode : SamgodsConstants.TransportMode.values()) {
-				final List<RoadHalfLoopAssignment> dataToWrite = dataForCommodity.stream()
-						.filter(e -> mode.equals(e.consolidationUnit.samgodsMode)).toList();
-
-				if (dataToWrite.size() > 0) {
-					final ObjectMapper mapper = new ObjectMapper();
-					mapper.enable(SerializationFeature.INDENT_OUTPUT);
-					mapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, false);
-					final SimpleModule module = new SimpleModule();
-					module.addSerializer(RoadHalfLoopAssignment.class, this);
-					mapper.registerModule(module);
-					try {
-						mapper.writeValue(new File(fileNamePrefix + "_" + commodity + "_" + mode + ".json"),
-								dataToWrite);
-					} catch (IOException e) {
-						throw new RuntimeException(e);
+	private void write(FileJob job, BitSet usedLinkIndices) {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(job.fileName), 1 << 16);
+				JsonGenerator gen = this.jsonFactory.createGenerator(out)) {
+			gen.writeStartArray();
+			for (RoadHalfLoopAssignment assignment : job.assignments) {
+				this.serialize(assignment, gen, null);
+				if (usedLinkIndices != null) {
+					final LinkIndexRoute route = assignment.consolidationUnit
+							.getLinkIndexRoute(assignment.fleetAssignment.vehicleType);
+					for (int i = 0; i < route.size(); i++) {
+						usedLinkIndices.set(route.getLinkIndex(i));
 					}
 				}
 			}
+			gen.writeEndArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeLinkTable(String fileName, BitSet usedLinkIndices) {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16);
+				JsonGenerator gen = this.jsonFactory.createGenerator(out)) {
+			gen.writeStartArray();
+			for (int linkIndex = usedLinkIndices.nextSetBit(0); linkIndex >= 0; linkIndex = usedLinkIndices
+					.nextSetBit(linkIndex + 1)) {
+				final Id<Link> linkId = Id.get(linkIndex, Link.class);
+				final Link link = this.networkAndFleetData.getLinks().get(linkId);
+				gen.writeStartObject();
+				gen.writeStringField("linkId", linkId.toString());
+				this.writeLinkAttributes(link, this.getLinkAttributes(link), gen);
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void writeToFile(String fileNamePrefix,
+			Map<ConsolidationUnit, FleetAssignment> consolidationUnits2fleetAssignments) {
+		final BitSet usedLinkIndices = this.sharedLinkTable ? new BitSet() : null;
+		for (FileJob job : this.createFileJobs(fileNamePrefix, consolidationUnits2fleetAssignments)) {
+			this.write(job, usedLinkIndices);
+		}
+		if (this.sharedLinkTable) {
+			this.writeLinkTable(fileNamePrefix + LINK_TABLE_SUFFIX, usedLinkIndices);
+		}
+	}
+
+	public void writeToFile(String fileNamePrefix,
+			Map<ConsolidationUnit, FleetAssignment> consolidationUnits2fleetAssignments, SamgodsExecutor executor) {
+		final Queue<BitSet> jobUsedLinkIndices = new ConcurrentLinkedQueue<>();
+		executor.processAll("NTMCalc writing", this.createFileJobs(fileNamePrefix, consolidationUnits2fleetAssignments),
+				job -> {
+					final BitSet usedLinkIndices = this.sharedLinkTable ? new BitSet() : null;
+					this.write(job, usedLinkIndices);
+					if (usedLinkIndices != null) {
+						jobUsedLinkIndices.add(usedLinkIndices);
+					}
+				});
+		if (this.sharedLinkTable) {
+			final BitSet usedLinkIndices = new BitSet();
+			jobUsedLinkIndices.forEach(usedLinkIndices::or);
+			this.writeLinkTable(fileNamePrefix + LINK_TABLE_SUFFIX, usedLinkIndices);
 		}
 	}
 }
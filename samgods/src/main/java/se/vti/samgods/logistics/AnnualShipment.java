@@ -53,7 +53,11 @@ public class AnnualShipment {
 	}
 
 	public AnnualShipment createSingleInstance() {
-		return new AnnualShipment(this.commodity, this.od, this.singleInstanceAnnualAmount_ton, 1);
+		return this.createInstances(1);
+	}
+
+	public AnnualShipment createInstances(int numberOfInstances) {
+		return new AnnualShipment(this.commodity, this.od, this.singleInstanceAnnualAmount_ton, numberOfInstances);
 	}
 
 	// -------------------- GETTERS --------------------
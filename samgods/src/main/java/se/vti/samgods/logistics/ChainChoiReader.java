@@ -19,9 +19,12 @@
  */
 package se.vti.samgods.logistics;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,21 +33,30 @@ import java.util.Random;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.vehicles.Vehicles;
 
 import se.vti.samgods.common.OD;
 import se.vti.samgods.common.SamgodsConstants;
 import se.vti.samgods.network.TransportModes;
 import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
-import se.vti.utils.misc.tabularfileparser.AbstractTabularFileHandlerWithHeaderLine;
-import se.vti.utils.misc.tabularfileparser.TabularFileParser;
 
 /**
- * 
+ * Streaming reader of one ChainChoi file. Column offsets are resolved once from
+ * the header line, rows are tokenized in place and integers are parsed without
+ * copying. Node ids, ODs and chain type patterns repeat heavily and are
+ * interned per reader.
+ *
+ * Column semantics are those of the earlier TabularFileParser-based reader:
+ * each single whitespace character separates two columns.
+ *
+ * One instance per commodity file. Instances for different commodities may run
+ * in parallel if each writes into its own TransportDemandAndChains.
+ *
  * @author GunnarF
  *
  */
-public class ChainChoiReader extends AbstractTabularFileHandlerWithHeaderLine {
+public class ChainChoiReader {
 
 	// -------------------- CONSTANTS --------------------
 
@@ -141,23 +153,180 @@ public class ChainChoiReader extends AbstractTabularFileHandlerWithHeaderLine {
 		this.od2proba = null;
 	}
 
-	// --------------- IMPLEMENTATION OF TabularFileHandler ---------------
+	// -------------------- INTERNALS: INTERNING --------------------
+
+	private final Map<Long, Id<Node>> nodeIdCache = new HashMap<>();
+
+	private final Map<OD, OD> odCache = new HashMap<>();
+
+	private final Map<String, ChainPattern> chainType2pattern = new HashMap<>();
+
+	private Id<Node> nodeId(long node) {
+		return this.nodeIdCache.computeIfAbsent(node, n -> Id.createNodeId(n));
+	}
+
+	private OD od(long origin, long destination) {
+		final OD od = new OD(this.nodeId(origin), this.nodeId(destination));
+		final OD cached = this.odCache.putIfAbsent(od, od);
+		return (cached != null ? cached : od);
+	}
+
+	/*
+	 * Everything that follows from a chain type alone: column offsets of the
+	 * segment ODs and segment modes, after removal of ferry segments.
+	 */
+	private static class ChainPattern {
+
+		private final int[] originColumns;
+		private final int[] destinationColumns;
+		private final SamgodsConstants.TransportMode[] modes;
+
+		private ChainPattern(String chainType, Map<String, Integer> label2index) {
+			{
+				final String oldChainType = chainType;
+				for (int i = 1; i < 10; i++) {
+					chainType = chainType.replace("" + i, "");
+				}
+				if (oldChainType.length() > chainType.length()) {
+					log.warn("Reduced chain type " + oldChainType + " to " + chainType + ".");
+				}
+			}
+
+			final List<String> originColumnLabels = originsColumnsByChainLength.get(chainType.length());
+			final List<String> destinationColumnLabels = destinationColumnsByChainLength.get(chainType.length());
+
+			final List<Integer> originColumns = new ArrayList<>(chainType.length());
+			final List<Integer> destinationColumns = new ArrayList<>(chainType.length());
+			final List<SamgodsConstants.TransportMode> modes = new ArrayList<>(chainType.length());
+			for (int i = 0; i < chainType.length(); i++) {
+				originColumns.add(label2index.get(originColumnLabels.get(i)));
+				destinationColumns.add(label2index.get(destinationColumnLabels.get(i)));
+				modes.add(TransportModes.CODE_2_SAMGODSMODE.get(chainType.charAt(i)));
+			}
+
+			// filter out ferry episodes
+
+			assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(0)));
+			assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(chainType.length() - 1)));
+
+			int i = 1;
+			while (i < originColumns.size() - 1) {
+				if (TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(i))) {
+					assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(i - 1)));
+					assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(i + 1)));
+					assert (modes.get(i - 1).equals(modes.get(i)));
+					assert (modes.get(i).equals(modes.get(i + 1)));
+
+					// condensed OD: origin of segment i-1, destination of segment i+1
+					destinationColumns.set(i - 1, destinationColumns.get(i + 1));
+					originColumns.remove(i + 1);
+					originColumns.remove(i);
+					destinationColumns.remove(i + 1);
+					destinationColumns.remove(i);
+
+					modes.remove(i + 1);
+					modes.remove(i);
+				} else {
+					i++;
+				}
+			}
+			assert (originColumns.size() == modes.size());
+
+			this.originColumns = originColumns.stream().mapToInt(c -> c).toArray();
+			this.destinationColumns = destinationColumns.stream().mapToInt(c -> c).toArray();
+			this.modes = modes.toArray(new SamgodsConstants.TransportMode[modes.size()]);
+		}
+	}
+
+	// -------------------- INTERNALS: TOKENIZING --------------------
+
+	private String line = null;
+	private int[] tokenStarts = new int[32];
+	private int[] tokenEnds = new int[32];
+	private int tokenCnt = 0;
 
-	@Override
-	public void startCurrentDataRow() {
+	// Same character class as the regular expression "\\s".
+	private static boolean isDelimiter(char c) {
+		return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\u000B') || (c == '\f') || (c == '\r');
+	}
 
-		if ((this.samplingRate < 1.0) && (this.rnd.nextDouble() >= this.samplingRate)) {
-			return; // Only for testing.
+	private void tokenize(String line) {
+		this.line = line;
+		this.tokenCnt = 0;
+		int start = 0;
+		for (int i = 0; i <= line.length(); i++) {
+			if ((i == line.length()) || isDelimiter(line.charAt(i))) {
+				if (this.tokenCnt == this.tokenStarts.length) {
+					this.tokenStarts = Arrays.copyOf(this.tokenStarts, 2 * this.tokenCnt);
+					this.tokenEnds = Arrays.copyOf(this.tokenEnds, 2 * this.tokenCnt);
+				}
+				this.tokenStarts[this.tokenCnt] = start;
+				this.tokenEnds[this.tokenCnt] = i;
+				this.tokenCnt++;
+				start = i + 1;
+			}
 		}
+	}
+
+	private String stringValue(int column) {
+		return this.line.substring(this.tokenStarts[column], this.tokenEnds[column]);
+	}
+
+	private long longValue(int column) {
+		return Long.parseLong(this.line, this.tokenStarts[column], this.tokenEnds[column], 10);
+	}
+
+	private int intValue(int column) {
+		return Integer.parseInt(this.line, this.tokenStarts[column], this.tokenEnds[column], 10);
+	}
+
+	private double doubleValue(int column) {
+		return Double.parseDouble(this.stringValue(column));
+	}
+
+	// -------------------- INTERNALS: ROW PROCESSING --------------------
+
+	private Map<String, Integer> label2index = null;
+
+	private int keyColumn;
+	private int probColumn;
+	private int volumeColumn;
+	private int nRelationsColumn;
+	private int origColumn;
+	private int destColumn;
+	private int chainTypeColumn;
+
+	private int column(String label) {
+		final Integer index = this.label2index.get(label);
+		if (index == null) {
+			throw new RuntimeException("Missing column " + label + " in ChainChoi file of commodity " + this.commodity);
+		}
+		return index;
+	}
+
+	private void processHeader() {
+		this.label2index = new LinkedHashMap<>();
+		for (int i = 0; i < this.tokenCnt; i++) {
+			this.label2index.put(this.stringValue(i), i);
+		}
+		this.keyColumn = this.column(Key);
+		this.probColumn = this.column(Prob);
+		this.volumeColumn = this.column(AnnualVolumeTonnesPerRelation);
+		this.nRelationsColumn = this.column(NRelations);
+		this.origColumn = this.column(Orig);
+		this.destColumn = this.column(Dest);
+		this.chainTypeColumn = this.column(ChainType);
+	}
+
+	private void processDataRow() {
 
 		// Load chain parameters.
 
-		final long key = Long.parseLong(this.getStringValue(Key));
-		final double proba = this.getDoubleValue(Prob);
-		final double singleInstanceVolume_ton_yr = this.getDoubleValue(AnnualVolumeTonnesPerRelation);
-		final int numberOfInstances = this.getIntValue(NRelations);
-		final OD od = new OD(Id.createNodeId(Long.parseLong(this.getStringValue(Orig))),
-				Id.createNodeId(Long.parseLong(this.getStringValue(Dest))));
+		final long key = this.longValue(this.keyColumn);
+		final double proba = this.doubleValue(this.probColumn);
+		final double singleInstanceVolume_ton_yr = this.doubleValue(this.volumeColumn);
+		final int numberOfInstances = this.intValue(this.nRelationsColumn);
+		final OD od = this.od(this.longValue(this.origColumn), this.longValue(this.destColumn));
 
 		// Load OD demand.
 
@@ -176,76 +345,34 @@ public class ChainChoiReader extends AbstractTabularFileHandlerWithHeaderLine {
 			this.od2proba.put(od, proba);
 		}
 
-		// Load transport legs.
-
-		String chainType = this.getStringValue(ChainType);
-		{
-			final String oldChainType = chainType;
-			for (int i = 1; i < 10; i++) {
-				chainType = chainType.replace("" + i, "");
-			}
-			if (oldChainType.length() > chainType.length()) {
-				log.warn("Reduced chain type " + oldChainType + " to " + chainType + ".");
-			}
-		}
-
-		final List<String> originColumns = originsColumnsByChainLength.get(chainType.length());
-		final List<String> destinationColumns = destinationColumnsByChainLength.get(chainType.length());
-
-		final List<OD> segmentODs = new ArrayList<>(chainType.length());
-		final List<SamgodsConstants.TransportMode> modes = new ArrayList<>(chainType.length());
-		for (int i = 0; i < chainType.length(); i++) {
-			final long intermedOrigin = Long.parseLong(this.getStringValue(originColumns.get(i)));
-			final long intermedDestination = Long.parseLong(this.getStringValue(destinationColumns.get(i)));
-			segmentODs.add(new OD(Id.createNodeId(intermedOrigin), Id.createNodeId(intermedDestination)));
-			modes.add(TransportModes.CODE_2_SAMGODSMODE.get(chainType.charAt(i)));
-		}
-
-		// filter out ferry episodes
-
-		assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(0)));
-		assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(chainType.length() - 1)));
+		// Load transport legs (ferry segments already removed).
 
-		int i = 1;
-		while (i < segmentODs.size() - 1) {
-			if (TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(i))) {
-				assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(i - 1)));
-				assert (!TransportModes.SAMGODS_FERRYMODES.contains(chainType.charAt(i + 1)));
-				assert (modes.get(i - 1).equals(modes.get(i)));
-				assert (modes.get(i).equals(modes.get(i + 1)));
-
-				final OD condensedOD = new OD(segmentODs.get(i - 1).origin, segmentODs.get(i + 1).destination);
-				segmentODs.remove(i + 1);
-				segmentODs.remove(i);
-				segmentODs.set(i - 1, condensedOD);
-
-				modes.remove(i + 1);
-				modes.remove(i);
-			} else {
-				i++;
-			}
-		}
-		assert (segmentODs.size() == modes.size());
+		final ChainPattern pattern = this.chainType2pattern.computeIfAbsent(this.stringValue(this.chainTypeColumn),
+				t -> new ChainPattern(t, this.label2index));
 
 		/*
 		 * Compose episodes from legs. The only case where an episode contains more than
 		 * one leg are rail legs in sequence.
 		 */
 
-		if (segmentODs.size() > 0) {
+		if (pattern.modes.length > 0) {
+			final OD[] segmentODs = new OD[pattern.modes.length];
+			for (int i = 0; i < segmentODs.length; i++) {
+				segmentODs[i] = this.od(this.longValue(pattern.originColumns[i]),
+						this.longValue(pattern.destinationColumns[i]));
+			}
 			for (boolean isContainer : this.feasibleIsContainerValues) {
 				var transportChain = new TransportChain(this.commodity, isContainer);
 				TransportEpisode currentEpisode = null;
-				for (int segmentIndex = 0; segmentIndex < segmentODs.size(); segmentIndex++) {
-					var segmentOD = segmentODs.get(segmentIndex);
-					var segmentMode = modes.get(segmentIndex);
+				for (int segmentIndex = 0; segmentIndex < segmentODs.length; segmentIndex++) {
+					var segmentOD = segmentODs[segmentIndex];
+					var segmentMode = pattern.modes[segmentIndex];
 					if ((currentEpisode == null)
 							|| !SamgodsConstants.TransportMode.Rail.equals(currentEpisode.getMode())
 							|| !SamgodsConstants.TransportMode.Rail.equals(segmentMode)) {
 						currentEpisode = new TransportEpisode(segmentMode);
 						transportChain.addEpisode(currentEpisode);
 					}
-//					assert (currentEpisode.getMode().equals(segmentMode));
 					currentEpisode.addSegmentOD(segmentOD);
 					if (!currentEpisode.getMode().equals(segmentMode)) {
 						log.warn(
@@ -259,26 +386,40 @@ public class ChainChoiReader extends AbstractTabularFileHandlerWithHeaderLine {
 		}
 	}
 
-	@Override
-	public void endDocument() {
-		if (this.key != null) {
-			this.addTmpDataToDemandAndReset();
-		}
-	}
-
 	// -------------------- IMPLEMENTATION --------------------
 
 	public ChainChoiReader parse(String fileName) {
 		log.info(
 				"Parsing file:" + fileName + (this.samplingRate < 1 ? " with sampling rate " + this.samplingRate : ""));
-		final TabularFileParser parser = new TabularFileParser();
-		parser.setDelimiterRegex("\\s");
-		parser.setOmitEmptyColumns(false);
-		try {
-			parser.parse(fileName, this);
+		final long start_ms = System.currentTimeMillis();
+		long rowCnt = 0;
+		try (BufferedReader reader = new BufferedReader(new FileReader(fileName), 1 << 16)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0) {
+					continue;
+				}
+				this.tokenize(line);
+				if (this.label2index == null) {
+					this.processHeader();
+				} else {
+					if ((this.samplingRate < 1.0) && (this.rnd.nextDouble() >= this.samplingRate)) {
+						continue; // Only for testing.
+					}
+					this.processDataRow();
+					rowCnt++;
+				}
+			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		if (this.key != null) {
+			this.addTmpDataToDemandAndReset();
+		}
+		log.info("Parsed " + rowCnt + " rows of commodity " + this.commodity + " in "
+				+ (System.currentTimeMillis() - start_ms) + " ms, " + this.odCache.size() + " distinct ODs, "
+				+ this.chainType2pattern.size() + " distinct chain types.");
 		return this;
 	}
 }
@@ -56,6 +56,25 @@ public class TransportDemandAndChains {
 				.add(new AnnualShipment(commodity, od, singleInstanceAmount_ton, numberOfInstances));
 	}
 
+	/*
+	 * Takes over all chains and shipments of the other instance, which must not
+	 * contain commodities already present in this instance. Allows to read
+	 * commodities in parallel into separate instances and to merge them in a
+	 * deterministic order.
+	 */
+	public void addAll(TransportDemandAndChains other) {
+		for (Map.Entry<Commodity, Map<OD, List<TransportChain>>> e : other.commodity2od2transportChains.entrySet()) {
+			if (this.commodity2od2transportChains.putIfAbsent(e.getKey(), e.getValue()) != null) {
+				throw new IllegalArgumentException("Chains of commodity " + e.getKey() + " already present.");
+			}
+		}
+		for (Map.Entry<Commodity, Map<OD, List<AnnualShipment>>> e : other.commodity2od2annualShipments.entrySet()) {
+			if (this.commodity2od2annualShipments.putIfAbsent(e.getKey(), e.getValue()) != null) {
+				throw new IllegalArgumentException("Shipments of commodity " + e.getKey() + " already present.");
+			}
+		}
+	}
+
 	// -------------------- GETTERS --------------------
 
 	public Map<Commodity, Map<OD, List<TransportChain>>> getCommodity2od2transportChains() {
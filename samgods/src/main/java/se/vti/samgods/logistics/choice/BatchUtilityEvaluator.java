@@ -0,0 +1,159 @@
+/**
+ * se.vti.samgods.logistics.choice
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.logistics.choice;
+
+import java.util.List;
+
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.ShipmentSize;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.costs.NonTransportCostModel_v1_22;
+import se.vti.samgods.transportation.costs.DetailedTransportCost;
+
+/**
+ * Evaluates the utilities of all (chain, shipment size) alternatives of one
+ * choice job in primitive arrays, without creating cost objects per
+ * alternative. Specific to NonTransportCostModel_v1_22 and
+ * MonetaryChainAndShipmentSizeUtilityFunction.
+ *
+ * The arithmetic follows these two classes operation by operation, such that
+ * utilities are identical to those computed per alternative.
+ *
+ * Not thread-safe, use one instance per thread.
+ *
+ * @author GunnarF
+ *
+ */
+public class BatchUtilityEvaluator {
+
+	// -------------------- CONSTANTS --------------------
+
+	private final NonTransportCostModel_v1_22 nonTransportCostModel;
+
+	private final MonetaryChainAndShipmentSizeUtilityFunction utilityFunction;
+
+	private final ShipmentSize[] sizes = ShipmentSize.values();
+
+	// Ascending, because the shipment sizes are ordered.
+	private final double[] sizeRepresentativeValue_ton;
+
+	// -------------------- MEMBERS, SET PER JOB --------------------
+
+	private int chainCnt = 0;
+
+	private double[] chainMonetaryUnitCost_1_ton = new double[0];
+	private double[] chainEnRouteLoss_1_ton = new double[0];
+	private double[] chainASC = new double[0];
+
+	private final double[] sizeInventoryCost_1_yr;
+
+	private double orderCost;
+	private double negativeScale;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public BatchUtilityEvaluator(NonTransportCostModel_v1_22 nonTransportCostModel,
+			MonetaryChainAndShipmentSizeUtilityFunction utilityFunction) {
+		this.nonTransportCostModel = nonTransportCostModel;
+		this.utilityFunction = utilityFunction;
+		this.sizeRepresentativeValue_ton = new double[this.sizes.length];
+		for (int s = 0; s < this.sizes.length; s++) {
+			this.sizeRepresentativeValue_ton[s] = this.sizes[s].getRepresentativeValue_ton();
+		}
+		this.sizeInventoryCost_1_yr = new double[this.sizes.length];
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	/**
+	 * Loads the chain- and commodity-specific parameters of one job. The
+	 * transport unit costs are given in the order of the chains.
+	 */
+	public void prepare(Commodity commodity, List<TransportChain> chains,
+			List<DetailedTransportCost> transportUnitCosts_1_ton) {
+		this.chainCnt = chains.size();
+		if (this.chainMonetaryUnitCost_1_ton.length < this.chainCnt) {
+			this.chainMonetaryUnitCost_1_ton = new double[this.chainCnt];
+			this.chainEnRouteLoss_1_ton = new double[this.chainCnt];
+			this.chainASC = new double[this.chainCnt];
+		}
+
+		final double annualInterestRate = this.nonTransportCostModel.getAnnualInterestRate();
+		final double value_1_ton = this.nonTransportCostModel.getValue_1_ton(commodity);
+		for (int c = 0; c < this.chainCnt; c++) {
+			final DetailedTransportCost unitCost = transportUnitCosts_1_ton.get(c);
+			this.chainMonetaryUnitCost_1_ton[c] = unitCost.monetaryCost;
+			this.chainEnRouteLoss_1_ton[c] = annualInterestRate * (unitCost.duration_h / 365.0 / 24.0) * value_1_ton;
+			this.chainASC[c] = this.utilityFunction.totalASC(chains.get(c));
+		}
+
+		final double inventoryCost_1_yrTon = this.nonTransportCostModel.getInventoryCost_1_yrTon(commodity);
+		for (int s = 0; s < this.sizes.length; s++) {
+			this.sizeInventoryCost_1_yr[s] = inventoryCost_1_yrTon * (this.sizeRepresentativeValue_ton[s] / 2.0);
+		}
+		this.orderCost = this.nonTransportCostModel.getOrderCost(commodity);
+		this.negativeScale = (-1.0) * this.utilityFunction.getScale(commodity);
+	}
+
+	public int getChainCnt() {
+		return this.chainCnt;
+	}
+
+	public ShipmentSize getSize(int sizeIndex) {
+		return this.sizes[sizeIndex];
+	}
+
+	/**
+	 * The smallest size is always feasible, all other sizes only if the annual
+	 * amount is at least their representative value. Being ordered, the feasible
+	 * sizes are the first ones.
+	 */
+	public int computeFeasibleSizeCnt(double annualAmount_ton) {
+		int sizeCnt = 1;
+		while (sizeCnt < this.sizes.length && annualAmount_ton >= this.sizeRepresentativeValue_ton[sizeCnt]) {
+			sizeCnt++;
+		}
+		return sizeCnt;
+	}
+
+	/**
+	 * Returns the utilities of all chains (outer index) and the first sizeCnt
+	 * sizes (inner index), i.e. utility[chain * sizeCnt + size].
+	 */
+	public double[] computeUtilities(double annualAmount_ton, int sizeCnt) {
+		final double[] sizeOrderCost_1_yr = new double[sizeCnt];
+		for (int s = 0; s < sizeCnt; s++) {
+			sizeOrderCost_1_yr[s] = this.orderCost * (annualAmount_ton / this.sizeRepresentativeValue_ton[s]);
+		}
+		final double[] utilities = new double[this.chainCnt * sizeCnt];
+		for (int c = 0; c < this.chainCnt; c++) {
+			final double moveCost_1_yr = this.chainMonetaryUnitCost_1_ton[c] * annualAmount_ton;
+			final double enRouteLoss_1_yr = this.chainEnRouteLoss_1_ton[c] * annualAmount_ton;
+			final double asc = this.chainASC[c];
+			final int offset = c * sizeCnt;
+			for (int s = 0; s < sizeCnt; s++) {
+				utilities[offset + s] = this.negativeScale
+						* (moveCost_1_yr + sizeOrderCost_1_yr[s] + enRouteLoss_1_yr + this.sizeInventoryCost_1_yr[s])
+						+ asc;
+			}
+		}
+		return utilities;
+	}
+}
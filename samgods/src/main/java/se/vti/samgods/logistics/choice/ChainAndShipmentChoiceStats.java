@@ -26,8 +26,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import org.apache.commons.math3.stat.descriptive.rank.Median;
-
 import de.vandermeer.asciitable.AsciiTable;
 import se.vti.samgods.common.NetworkAndFleetData;
 import se.vti.samgods.common.SamgodsConstants;
@@ -47,22 +45,63 @@ public class ChainAndShipmentChoiceStats {
 
 	private Map<SamgodsConstants.Commodity, List<Double>> commodity2lengths;
 
+	// number of instances represented by each entry in commodity2lengths
+	private Map<SamgodsConstants.Commodity, List<Integer>> commodity2weights;
+
 	public ChainAndShipmentChoiceStats(NetworkAndFleetData networkAndFleetData) {
 		this.networkAndFleetData = networkAndFleetData;
 		this.commodity2size2cnt = new LinkedHashMap<>(SamgodsConstants.commodityCnt());
 		this.commodity2lengths = new LinkedHashMap<>(SamgodsConstants.commodityCnt());
+		this.commodity2weights = new LinkedHashMap<>(SamgodsConstants.commodityCnt());
 		for (SamgodsConstants.Commodity commodity : SamgodsConstants.Commodity.values()) {
 			this.commodity2size2cnt.put(commodity,
 					Arrays.stream(SamgodsConstants.ShipmentSize.values()).collect(Collectors.toMap(s -> s, s -> 0l)));
 			this.commodity2lengths.put(commodity, new ArrayList<>());
+			this.commodity2weights.put(commodity, new ArrayList<>());
 		}
 	}
 
 	public void add(ChainAndShipmentSize choice) {
-		this.commodity2size2cnt.get(choice.annualShipment.getCommodity()).compute(choice.sizeClass, (s, c) -> c + 1);
+		final int instanceCnt = choice.getNumberOfInstances();
+		this.commodity2size2cnt.get(choice.annualShipment.getCommodity()).compute(choice.sizeClass,
+				(s, c) -> c + instanceCnt);
 		this.commodity2lengths.get(choice.annualShipment.getCommodity())
 				.add(choice.transportChain.getEpisodes().stream().flatMap(e -> e.getConsolidationUnits().stream())
 						.mapToDouble(cu -> cu.computeLengthStats_km(this.networkAndFleetData).getMean()).sum());
+		this.commodity2weights.get(choice.annualShipment.getCommodity()).add(instanceCnt);
+	}
+
+	/*
+	 * Median of the values, each repeated as often as its (integer) weight, without
+	 * materializing the repetitions. Interpolates like commons-math Median: for an
+	 * even total weight, the mean of the two middle values.
+	 */
+	static double computeWeightedMedian(List<Double> values, List<Integer> weights) {
+		final List<Integer> indices = new ArrayList<>(values.size());
+		long totalWeight = 0;
+		for (int i = 0; i < values.size(); i++) {
+			indices.add(i);
+			totalWeight += weights.get(i);
+		}
+		if (totalWeight == 0) {
+			return Double.NaN;
+		}
+		indices.sort((i, j) -> Double.compare(values.get(i), values.get(j)));
+		// One-based ranks of the middle value(s), equal for an odd total weight.
+		final long lowerRank = (totalWeight + 1) / 2;
+		final long upperRank = totalWeight / 2 + 1;
+		Double lowerValue = null;
+		long cumulativeWeight = 0;
+		for (int i : indices) {
+			cumulativeWeight += weights.get(i);
+			if (lowerValue == null && cumulativeWeight >= lowerRank) {
+				lowerValue = values.get(i);
+			}
+			if (cumulativeWeight >= upperRank) {
+				return 0.5 * (lowerValue + values.get(i));
+			}
+		}
+		return Double.NaN;
 	}
 
 	public String createChoiceStatsTable() {
@@ -76,10 +115,14 @@ public class ChainAndShipmentChoiceStats {
 			final long totalCnt = this.commodity2size2cnt.get(commodity).values().stream().mapToLong(c -> c).sum();
 			if (totalCnt > 0) {
 
-				final double averageLength_km = this.commodity2lengths.get(commodity).stream().mapToDouble(l -> l)
-						.average().getAsDouble();
-				final double medianLength_km = new Median()
-						.evaluate(this.commodity2lengths.get(commodity).stream().mapToDouble(l -> l).toArray());
+				final List<Double> lengths = this.commodity2lengths.get(commodity);
+				final List<Integer> weights = this.commodity2weights.get(commodity);
+				double weightedLengthSum_km = 0.0;
+				for (int i = 0; i < lengths.size(); i++) {
+					weightedLengthSum_km += weights.get(i) * lengths.get(i);
+				}
+				final double averageLength_km = weightedLengthSum_km / totalCnt;
+				final double medianLength_km = computeWeightedMedian(lengths, weights);
 
 				final List<Map.Entry<SamgodsConstants.ShipmentSize, Long>> sortedSizeEntries = MiscUtils
 						.getSortedEntryListSmallestFirst(this.commodity2size2cnt.get(commodity));
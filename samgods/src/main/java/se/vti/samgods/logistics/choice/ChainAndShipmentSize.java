@@ -55,7 +55,21 @@ public class ChainAndShipmentSize {
 	}
 
 	public ChainAndShipmentSize createSingleInstance() {
-		return new ChainAndShipmentSize(this.annualShipment.createSingleInstance(), this.sizeClass, this.transportChain, this.singleInstanceUtility);
+		return this.createInstances(1);
 	}
-	
+
+	/*
+	 * Represents numberOfInstances identical choices of this alternative.
+	 */
+	public ChainAndShipmentSize createInstances(int numberOfInstances) {
+		return new ChainAndShipmentSize(this.annualShipment.createInstances(numberOfInstances), this.sizeClass,
+				this.transportChain, this.singleInstanceUtility);
+	}
+
+	// -------------------- GETTERS --------------------
+
+	public int getNumberOfInstances() {
+		return this.annualShipment.getNumberOfInstances();
+	}
+
 }
@@ -33,9 +33,6 @@ import se.vti.samgods.logistics.TransportChain;
  */
 public class ChoiceJob {
 
-	public static final ChoiceJob TERMINATE = new ChoiceJob(null, null, null, null) {
-	};
-
 	public final Commodity commodity;
 	public final OD od;
 	public final List<TransportChain> transportChains;
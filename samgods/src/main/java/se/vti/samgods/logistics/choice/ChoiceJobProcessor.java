@@ -21,13 +21,11 @@ package se.vti.samgods.logistics.choice;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import se.vti.samgods.common.RandomStreams;
 import se.vti.samgods.common.SamgodsConstants;
 import se.vti.samgods.common.SamgodsConstants.ShipmentSize;
 import se.vti.samgods.logistics.AnnualShipment;
@@ -35,6 +33,7 @@ import se.vti.samgods.logistics.ChainChoiReader;
 import se.vti.samgods.logistics.TransportChain;
 import se.vti.samgods.logistics.costs.NonTransportCost;
 import se.vti.samgods.logistics.costs.NonTransportCostModel;
+import se.vti.samgods.logistics.costs.NonTransportCostModel_v1_22;
 import se.vti.samgods.transportation.costs.DetailedTransportCost;
 import se.vti.utils.misc.math.LogitChoiceModel;
 
@@ -43,66 +42,72 @@ import se.vti.utils.misc.math.LogitChoiceModel;
  * @author GunnarF
  *
  */
-public class ChoiceJobProcessor implements Runnable {
+public class ChoiceJobProcessor {
 	
 	private static final Logger log = LogManager.getLogger(ChoiceJobProcessor.class);
 	
 	// -------------------- CONSTANTS --------------------
 
-	private final LogitChoiceModel choiceModel = new LogitChoiceModel();
-
 	private final LogisticChoiceData choiceData;
 
 	private final NonTransportCostModel nonTransportCostModel;
 
 	private final ChainAndShipmentSizeUtilityFunction utilityFunction;
 
-	// -------------------- MEMBERS --------------------
-
-	private final BlockingQueue<ChoiceJob> jobQueue;
+	private final RandomStreams randomStreams;
 
-	private final BlockingQueue<ChainAndShipmentSize> allChoices;
+	// null unless the cost model and utility function support batch evaluation
+	private final BatchUtilityEvaluator batchUtilityEvaluator;
 
 	// -------------------- CONSTRUCTION --------------------
 
+	/*
+	 * Not thread-safe (through the LogisticChoiceData), use one instance per
+	 * thread.
+	 */
 	public ChoiceJobProcessor(LogisticChoiceData choiceData, NonTransportCostModel nonTransportCostModel,
-			ChainAndShipmentSizeUtilityFunction utilityFunction, BlockingQueue<ChoiceJob> jobQueue,
-			BlockingQueue<ChainAndShipmentSize> allChoices) {
+			ChainAndShipmentSizeUtilityFunction utilityFunction, RandomStreams randomStreams) {
 		this.choiceData = choiceData;
 		this.nonTransportCostModel = nonTransportCostModel;
 		this.utilityFunction = utilityFunction;
-		this.jobQueue = jobQueue;
-		this.allChoices = allChoices;
+		this.randomStreams = randomStreams;
+		if ((nonTransportCostModel instanceof NonTransportCostModel_v1_22)
+				&& (utilityFunction instanceof MonetaryChainAndShipmentSizeUtilityFunction)) {
+			this.batchUtilityEvaluator = new BatchUtilityEvaluator((NonTransportCostModel_v1_22) nonTransportCostModel,
+					(MonetaryChainAndShipmentSizeUtilityFunction) utilityFunction);
+		} else {
+			this.batchUtilityEvaluator = null;
+		}
 	}
 
-	// -------------------- IMPLEMENTATION OF Runnable --------------------
+	// -------------------- IMPLEMENTATION --------------------
 
-	@Override
-	public void run() {
-		try {
-			while (true) {
-				ChoiceJob job = this.jobQueue.take();
-				if (job == ChoiceJob.TERMINATE) {
-					break;
-				}
-				this.process(job);
-			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
-		}
+	/*
+	 * The random stream of a job depends only on the job's commodity and OD, not
+	 * on the thread or the order in which jobs are processed.
+	 */
+	private LogitChoiceModel createChoiceModel(ChoiceJob job) {
+		return new LogitChoiceModel(this.randomStreams.createRandom("choice", job.commodity, job.od));
 	}
 
-	// -------------------- INTERNALS --------------------
-
-	private void process(ChoiceJob job) throws InterruptedException {
-		final Map<TransportChain, DetailedTransportCost> chain2transportUnitCost_1_ton = job.transportChains.stream()
-				.collect(Collectors.toMap(c -> c, c -> this.choiceData.computeChain2transportUnitCost_1_ton(c)));
-		if (chain2transportUnitCost_1_ton.size() > 0) {
+	public List<ChainAndShipmentSize> process(ChoiceJob job) {
+		if (this.batchUtilityEvaluator != null) {
+			return this.processBatch(job);
+		}
+		final LogitChoiceModel choiceModel = this.createChoiceModel(job);
+		final List<ChainAndShipmentSize> result = new ArrayList<>();
+		// Alternatives in job order, such that the random draws are reproducible.
+		final List<TransportChain> transportChains = new ArrayList<>(job.transportChains);
+		final List<DetailedTransportCost> transportUnitCosts_1_ton = new ArrayList<>(transportChains.size());
+		for (TransportChain transportChain : transportChains) {
+			transportUnitCosts_1_ton.add(this.choiceData.computeChain2transportUnitCost_1_ton(transportChain));
+		}
+		if (transportChains.size() > 0) {
 			for (AnnualShipment annualShipment : job.annualShipments) {
 				List<ChainAndShipmentSize> alternatives = new ArrayList<>();
-				for (Map.Entry<TransportChain, DetailedTransportCost> e : chain2transportUnitCost_1_ton.entrySet()) {
-					final TransportChain transportChain = e.getKey();
-					final DetailedTransportCost transportUnitCost = e.getValue();
+				for (int c = 0; c < transportChains.size(); c++) {
+					final TransportChain transportChain = transportChains.get(c);
+					final DetailedTransportCost transportUnitCost = transportUnitCosts_1_ton.get(c);
 					for (ShipmentSize size : SamgodsConstants.ShipmentSize.values()) {
 						if ((annualShipment.getSingleInstanceAnnualAmount_ton() >= size.getRepresentativeValue_ton())
 								|| SamgodsConstants.ShipmentSize.getSmallestSize_ton().equals(size)) {
@@ -121,18 +126,64 @@ public class ChoiceJobProcessor implements Runnable {
 ////				for (int instance = 0; instance < annualShipment.getNumberOfInstances(); instance++) {
 //				final ChainAndShipmentSize choice = this.choiceModel.choose(alternatives, a -> a.utility);
 //				assert (choice != null);
-//				this.allChoices.put(choice);
+//				result.add(choice);
 ////				}
 
-				for (int instance = 0; instance < annualShipment.getNumberOfInstances(); instance++) {
-					final ChainAndShipmentSize choice = this.choiceModel.choose(alternatives, a -> a.singleInstanceUtility);
-					assert (choice != null);
-					this.allChoices.put(choice.createSingleInstance());
+				/*
+				 * All instances face the same alternatives. Draw how often each alternative is
+				 * chosen and emit one aggregate per chosen alternative.
+				 */
+				final int[] counts = choiceModel.chooseCounts(alternatives, a -> a.singleInstanceUtility,
+						annualShipment.getNumberOfInstances());
+				for (int i = 0; i < counts.length; i++) {
+					if (counts[i] > 0) {
+						result.add(alternatives.get(i).createInstances(counts[i]));
+					}
 				}
 
 			}
 		} else {
 			log.warn("Cannot compute choices for choice job: " + job);
 		}
+		return result;
+	}
+
+	/*
+	 * Same model as above, but all alternatives of an annual shipment are
+	 * evaluated at once into a utility array, and only the chosen alternatives
+	 * are materialized. Alternatives are ordered by chain (in job order) and then
+	 * by size.
+	 */
+	private List<ChainAndShipmentSize> processBatch(ChoiceJob job) {
+		final List<ChainAndShipmentSize> result = new ArrayList<>();
+		if (job.transportChains.size() == 0) {
+			log.warn("Cannot compute choices for choice job: " + job);
+			return result;
+		}
+		// Random access below, the job's chains may be a linked list.
+		final List<TransportChain> transportChains = new ArrayList<>(job.transportChains);
+		final List<DetailedTransportCost> transportUnitCosts_1_ton = new ArrayList<>(transportChains.size());
+		for (TransportChain transportChain : transportChains) {
+			transportUnitCosts_1_ton.add(this.choiceData.computeChain2transportUnitCost_1_ton(transportChain));
+		}
+		this.batchUtilityEvaluator.prepare(job.commodity, transportChains, transportUnitCosts_1_ton);
+		final LogitChoiceModel choiceModel = this.createChoiceModel(job);
+
+		for (AnnualShipment annualShipment : job.annualShipments) {
+			final int sizeCnt = this.batchUtilityEvaluator
+					.computeFeasibleSizeCnt(annualShipment.getSingleInstanceAnnualAmount_ton());
+			final double[] utilities = this.batchUtilityEvaluator
+					.computeUtilities(annualShipment.getSingleInstanceAnnualAmount_ton(), sizeCnt);
+			final int[] counts = choiceModel.chooseCountsFromProbabilities(
+					choiceModel.computeLogitProbabilities(utilities), annualShipment.getNumberOfInstances());
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] > 0) {
+					result.add(new ChainAndShipmentSize(annualShipment.createInstances(counts[i]),
+							this.batchUtilityEvaluator.getSize(i % sizeCnt), transportChains.get(i / sizeCnt),
+							utilities[i]));
+				}
+			}
+		}
+		return result;
 	}
 }
\ No newline at end of file
@@ -44,6 +44,7 @@ public class LogisticChoiceData {
 	// -------------------- TRANSPORT EPISODE UNIT COSTS --------------------
 
 	private DetailedTransportCost createUnitCost_1_ton(TransportEpisode episode) {
+		this.logisticChoiceDataProvider.registerEpisode(episode);
 		final DetailedTransportCost.Builder costBuilder = new DetailedTransportCost.Builder().setToAllZeros()
 				.addAmount_ton(1.0);
 		final ConsolidationUnit firstConsolidationUnit = episode.getConsolidationUnits().get(0);
@@ -59,17 +60,32 @@ public class LogisticChoiceData {
 	}
 
 	public DetailedTransportCost getEpisodeUnitCost_1_ton(TransportEpisode episode) {
+		final DetailedTransportCost cached = this.logisticChoiceDataProvider.getEpisode2unitCost_1_ton().get(episode);
+		if (cached != null) {
+			return cached; // lock-free fast path
+		}
 		return this.logisticChoiceDataProvider.getEpisode2unitCost_1_ton().computeIfAbsent(episode,
 				e -> this.createUnitCost_1_ton(e));
 	}
 
 	// -------------------- TRANSPORT CHAIN UNIT COSTS --------------------
 
-	public DetailedTransportCost computeChain2transportUnitCost_1_ton(TransportChain transportChain) {
+	private DetailedTransportCost createChainUnitCost_1_ton(TransportChain transportChain) {
+		this.logisticChoiceDataProvider.registerChain(transportChain);
 		final DetailedTransportCost.Builder chainCostBuilder = new DetailedTransportCost.Builder().addAmount_ton(1.0);
 		for (TransportEpisode episode : transportChain.getEpisodes()) {
 			chainCostBuilder.add(this.getEpisodeUnitCost_1_ton(episode), false);
 		}
 		return chainCostBuilder.build();
 	}
+
+	public DetailedTransportCost computeChain2transportUnitCost_1_ton(TransportChain transportChain) {
+		final DetailedTransportCost cached = this.logisticChoiceDataProvider.getChain2unitCost_1_ton()
+				.get(transportChain);
+		if (cached != null) {
+			return cached; // lock-free fast path
+		}
+		return this.logisticChoiceDataProvider.getChain2unitCost_1_ton().computeIfAbsent(transportChain,
+				c -> this.createChainUnitCost_1_ton(c));
+	}
 }
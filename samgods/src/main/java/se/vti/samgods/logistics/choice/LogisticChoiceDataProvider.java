@@ -20,16 +20,23 @@
 package se.vti.samgods.logistics.choice;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.matsim.vehicles.VehicleType;
 
 import se.vti.samgods.common.NetworkAndFleetData;
 import se.vti.samgods.common.NetworkAndFleetDataProvider;
+import se.vti.samgods.common.RandomStreams;
+import se.vti.samgods.logistics.TransportChain;
 import se.vti.samgods.logistics.TransportEpisode;
 import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
 import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
@@ -38,6 +45,11 @@ import se.vti.samgods.transportation.costs.TransportCostCalculator;
 import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
 
 /**
+ * Consolidation unit, episode and chain unit costs are cached until the fleet
+ * assignment of a consolidation unit changes, in which case only the costs
+ * depending on that unit are recomputed. Either created anew in every iteration
+ * or, if so configured (keepChoiceCostsAcrossIterations), kept across
+ * iterations.
  * 
  * @author GunnarF
  *
@@ -46,16 +58,22 @@ public class LogisticChoiceDataProvider {
 
 	// -------------------- CONSTANTS --------------------
 
+	private static final Logger log = LogManager.getLogger(LogisticChoiceDataProvider.class);
+
 	private final double initialTransportEfficiency = 0.7;
 
 	private final TransportCostCalculator realizedInVehicleCost = new TransportCostCalculator();
 
 	private final NetworkAndFleetData internalNetworkAndFleetData;
 
+	private final RandomStreams randomStreams;
+
 	// -------------------- CONSTRUCTION --------------------
 
-	public LogisticChoiceDataProvider(NetworkAndFleetDataProvider networkAndFleetDataProvider) {
+	public LogisticChoiceDataProvider(NetworkAndFleetDataProvider networkAndFleetDataProvider,
+			RandomStreams randomStreams) {
 		this.internalNetworkAndFleetData = networkAndFleetDataProvider.createDataInstance();
+		this.randomStreams = randomStreams;
 	}
 
 	public LogisticChoiceData createLogisticChoiceData() {
@@ -64,28 +82,100 @@ public class LogisticChoiceDataProvider {
 
 	// -------------------- THREAD SAFE CONSOLIDATION COSTS --------------------
 
-	private ConcurrentMap<ConsolidationUnit, FleetAssignment> consolidationUnit2fleetAssignment = null;
+	/*
+	 * Latest known fleet assignment per consolidation unit. A unit that was not
+	 * consolidated in the latest iteration keeps its earlier assignment. A unit
+	 * that was never consolidated has no entry and is costed with an estimated
+	 * payload.
+	 */
+	private final ConcurrentMap<ConsolidationUnit, FleetAssignment> consolidationUnit2fleetAssignment = new ConcurrentHashMap<>();
+
+	/**
+	 * Takes over the fleet assignments of the latest consolidation and invalidates
+	 * the cached costs of all consolidation units whose vehicle type or payload
+	 * changed, together with the episodes and chains that contain them.
+	 * 
+	 * Must not be called while choice data is read concurrently, i.e. call only
+	 * between the choice phases of consecutive iterations.
+	 */
+	public void update(Map<ConsolidationUnit, FleetAssignment> consolidationUnit2fleetAssignment) {
+		if (consolidationUnit2fleetAssignment == null) {
+			return;
+		}
+		final Set<ConsolidationUnit> changedUnits = new LinkedHashSet<>();
+		for (Map.Entry<ConsolidationUnit, FleetAssignment> entry : consolidationUnit2fleetAssignment.entrySet()) {
+			final FleetAssignment previous = this.consolidationUnit2fleetAssignment.put(entry.getKey(),
+					entry.getValue());
+			if ((previous == null) || (previous.vehicleType != entry.getValue().vehicleType)
+					|| (previous.payload_ton != entry.getValue().payload_ton)) {
+				changedUnits.add(entry.getKey());
+			}
+		}
+
+		final Set<TransportEpisode> invalidatedEpisodes = new LinkedHashSet<>();
+		final Set<TransportChain> invalidatedChains = new LinkedHashSet<>();
+		for (ConsolidationUnit unit : changedUnits) {
+			for (ConcurrentMap<Boolean, ConcurrentMap<ConsolidationUnit, DetailedTransportCost>> unload2costs : this.load2unload2consolidationUnit2transportUnitCost_1_ton
+					.values()) {
+				for (ConcurrentMap<ConsolidationUnit, DetailedTransportCost> costs : unload2costs.values()) {
+					costs.remove(unit);
+				}
+			}
+			final Set<TransportEpisode> episodes = this.consolidationUnit2episodes.remove(unit);
+			if (episodes != null) {
+				invalidatedEpisodes.addAll(episodes);
+			}
+			final Set<TransportChain> chains = this.consolidationUnit2chains.remove(unit);
+			if (chains != null) {
+				invalidatedChains.addAll(chains);
+			}
+		}
+		this.episode2unitCost_1_ton.keySet().removeAll(invalidatedEpisodes);
+		this.chain2unitCost_1_ton.keySet().removeAll(invalidatedChains);
 
-	public void update(ConcurrentMap<ConsolidationUnit, FleetAssignment> consolidationUnit2fleetAssignment) {
-		this.consolidationUnit2fleetAssignment = consolidationUnit2fleetAssignment;
+		log.info("Updated " + consolidationUnit2fleetAssignment.size() + " fleet assignments, " + changedUnits.size()
+				+ " changed. Invalidated " + invalidatedEpisodes.size() + " episode and " + invalidatedChains.size()
+				+ " chain unit costs, retaining " + this.episode2unitCost_1_ton.size() + " and "
+				+ this.chain2unitCost_1_ton.size() + ".");
 	}
 
+	/*
+	 * Outer maps are fully populated at construction, only the per consolidation
+	 * unit entries are added concurrently. No global lock is needed: all inputs of
+	 * createTransportUnitCost_1_ton are either immutable or concurrent, and
+	 * computeIfAbsent evaluates each key at most once.
+	 */
 	private final ConcurrentMap<Boolean, ConcurrentMap<Boolean, ConcurrentMap<ConsolidationUnit, DetailedTransportCost>>> load2unload2consolidationUnit2transportUnitCost_1_ton = new ConcurrentHashMap<>();
+	{
+		for (Boolean load : new Boolean[] { false, true }) {
+			final ConcurrentMap<Boolean, ConcurrentMap<ConsolidationUnit, DetailedTransportCost>> unload2consolidationUnit2transportUnitCost_1_ton = new ConcurrentHashMap<>();
+			for (Boolean unload : new Boolean[] { false, true }) {
+				unload2consolidationUnit2transportUnitCost_1_ton.put(unload, new ConcurrentHashMap<>());
+			}
+			this.load2unload2consolidationUnit2transportUnitCost_1_ton.put(load,
+					unload2consolidationUnit2transportUnitCost_1_ton);
+		}
+	}
 
-	private synchronized DetailedTransportCost createTransportUnitCost_1_ton(ConsolidationUnit consolidationUnit,
-			boolean load, boolean unload) {
+	private DetailedTransportCost createTransportUnitCost_1_ton(ConsolidationUnit consolidationUnit, boolean load,
+			boolean unload) {
+
+		final FleetAssignment fleetAssignment = this.consolidationUnit2fleetAssignment.get(consolidationUnit);
 
 		/*
 		 * Identify (possibly randomly if no other data available) the used vehicle
 		 * type.
 		 */
 		final VehicleType vehicleType;
-		if (this.consolidationUnit2fleetAssignment != null) {
-			vehicleType = this.consolidationUnit2fleetAssignment.get(consolidationUnit).vehicleType;
+		if (fleetAssignment != null) {
+			vehicleType = fleetAssignment.vehicleType;
 		} else {
+			// Sorted by id and drawn per unit, hence reproducible.
 			final List<VehicleType> availableTypes = new ArrayList<>(consolidationUnit.vehicleType2route.keySet()
 					.stream().flatMap(types -> types.stream()).collect(Collectors.toSet()));
-			vehicleType = availableTypes.get(new Random().nextInt(availableTypes.size()));
+			availableTypes.sort(Comparator.comparing(type -> type.getId().toString()));
+			vehicleType = availableTypes.get(this.randomStreams.createRandom("initial vehicle type", consolidationUnit)
+					.nextInt(availableTypes.size()));
 		}
 		final SamgodsVehicleAttributes vehicleAttributes = (SamgodsVehicleAttributes) vehicleType.getAttributes()
 				.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME);
@@ -94,8 +184,8 @@ public class LogisticChoiceDataProvider {
 		 * Identify or estimate payload and initialize cost building.
 		 */
 		final double payload_ton;
-		if (this.consolidationUnit2fleetAssignment != null) {
-			payload_ton = this.consolidationUnit2fleetAssignment.get(consolidationUnit).payload_ton;
+		if (fleetAssignment != null) {
+			payload_ton = fleetAssignment.payload_ton;
 		} else {
 			payload_ton = this.initialTransportEfficiency * vehicleAttributes.capacity_ton;
 		}
@@ -105,15 +195,8 @@ public class LogisticChoiceDataProvider {
 		/*
 		 * Compute in-vehicle cost.
 		 */
-		if (this.consolidationUnit2fleetAssignment != null) {
-			costBuilder.add(this.realizedInVehicleCost.computeInVehicleCost(vehicleType, vehicleAttributes, payload_ton,
-					consolidationUnit, this.internalNetworkAndFleetData.getLinkId2unitCost(vehicleType),
-					this.internalNetworkAndFleetData.getFerryLinkIds()), false);
-		} else {
-			costBuilder.add(this.realizedInVehicleCost.computeInVehicleCost(vehicleType, vehicleAttributes, payload_ton,
-					consolidationUnit, this.internalNetworkAndFleetData.getLinkId2unitCost(vehicleType),
-					this.internalNetworkAndFleetData.getFerryLinkIds()), false);
-		}
+		costBuilder.add(this.realizedInVehicleCost.computeInVehicleCost(vehicleType, payload_ton, consolidationUnit,
+				this.internalNetworkAndFleetData), false);
 
 		/*
 		 * Add loading/unloading/transfer costs.
@@ -140,17 +223,45 @@ public class LogisticChoiceDataProvider {
 
 	public DetailedTransportCost getTransportUnitCost_1_ton(ConsolidationUnit consolidationUnit, boolean load,
 			boolean unload) {
-		return this.load2unload2consolidationUnit2transportUnitCost_1_ton
-				.computeIfAbsent(load, l -> new ConcurrentHashMap<>())
-				.computeIfAbsent(unload, u -> new ConcurrentHashMap<>())
-				.computeIfAbsent(consolidationUnit, cu -> this.createTransportUnitCost_1_ton(cu, load, unload));
+		final ConcurrentMap<ConsolidationUnit, DetailedTransportCost> consolidationUnit2transportUnitCost_1_ton = this.load2unload2consolidationUnit2transportUnitCost_1_ton
+				.get(load).get(unload);
+		final DetailedTransportCost cached = consolidationUnit2transportUnitCost_1_ton.get(consolidationUnit);
+		if (cached != null) {
+			return cached; // lock-free fast path
+		}
+		return consolidationUnit2transportUnitCost_1_ton.computeIfAbsent(consolidationUnit,
+				cu -> this.createTransportUnitCost_1_ton(cu, load, unload));
 	}
 
-	// --------------- THREAD SAFE EPISODE UNIT COST ACCESS ---------------
+	// --------------- THREAD SAFE EPISODE AND CHAIN UNIT COST ACCESS ---------------
 
 	private final ConcurrentMap<TransportEpisode, DetailedTransportCost> episode2unitCost_1_ton = new ConcurrentHashMap<>();
 
+	private final ConcurrentMap<TransportChain, DetailedTransportCost> chain2unitCost_1_ton = new ConcurrentHashMap<>();
+
+	// Reverse indices for invalidation, filled when a cost is cached.
+	private final ConcurrentMap<ConsolidationUnit, Set<TransportEpisode>> consolidationUnit2episodes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<ConsolidationUnit, Set<TransportChain>> consolidationUnit2chains = new ConcurrentHashMap<>();
+
 	ConcurrentMap<TransportEpisode, DetailedTransportCost> getEpisode2unitCost_1_ton() {
 		return this.episode2unitCost_1_ton;
 	}
+
+	ConcurrentMap<TransportChain, DetailedTransportCost> getChain2unitCost_1_ton() {
+		return this.chain2unitCost_1_ton;
+	}
+
+	void registerEpisode(TransportEpisode episode) {
+		for (ConsolidationUnit unit : episode.getConsolidationUnits()) {
+			this.consolidationUnit2episodes.computeIfAbsent(unit, u -> ConcurrentHashMap.newKeySet()).add(episode);
+		}
+	}
+
+	void registerChain(TransportChain chain) {
+		for (TransportEpisode episode : chain.getEpisodes()) {
+			for (ConsolidationUnit unit : episode.getConsolidationUnits()) {
+				this.consolidationUnit2chains.computeIfAbsent(unit, u -> ConcurrentHashMap.newKeySet()).add(chain);
+			}
+		}
+	}
 }
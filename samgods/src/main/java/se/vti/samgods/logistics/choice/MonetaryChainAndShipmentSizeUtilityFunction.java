@@ -46,6 +46,10 @@ public class MonetaryChainAndShipmentSizeUtilityFunction implements ChainAndShip
 		this.commodity2railASC = commodity2railASC;
 	}
 
+	public double getScale(Commodity commodity) {
+		return this.commodity2scale.get(commodity);
+	}
+
 	public double totalASC(TransportChain transportChain) {
 		if (this.commodity2railASC == null) {
 			return 0.0;
@@ -96,6 +96,22 @@ public class NonTransportCostModel_v1_22 implements NonTransportCostModel {
 		this.commodity2orderCost.put(SamgodsConstants.Commodity.WOOD, 713.0);
 	}
 
+	public double getAnnualInterestRate() {
+		return this.annualInterestRate;
+	}
+
+	public double getValue_1_ton(SamgodsConstants.Commodity commodity) {
+		return this.commodity2value_1_ton.get(commodity);
+	}
+
+	public double getInventoryCost_1_yrTon(SamgodsConstants.Commodity commodity) {
+		return this.commodity2inventoryCost_1_yrTon.get(commodity);
+	}
+
+	public double getOrderCost(SamgodsConstants.Commodity commodity) {
+		return this.commodity2orderCost.get(commodity);
+	}
+
 	@Override
 	public NonTransportCost computeNonTransportCost(SamgodsConstants.Commodity commodity,
 			SamgodsConstants.ShipmentSize shipmentSize, double annualAmount_ton, double transportChainDuration_h) {
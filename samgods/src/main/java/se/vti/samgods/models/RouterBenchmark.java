@@ -0,0 +1,191 @@
+/**
+ * se.vti.samgods.models
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.models;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.vehicles.VehicleType;
+
+import se.vti.samgods.common.NetworkAndFleetData;
+import se.vti.samgods.common.NetworkAndFleetDataProvider;
+import se.vti.samgods.common.SamgodsConfigGroup;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.common.SamgodsExecutor;
+import se.vti.samgods.common.SamgodsRunner;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.network.Router;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.costs.LinkUnitCostTable;
+
+/**
+ * Compares point-to-point routing with one-to-many tree routing on the rail
+ * and road consolidation units of a real transport demand, given by the
+ * command line arguments. Unlike the JMH RoutingBenchmark on a synthetic
+ * scenario, it also counts how many routes of both approaches agree.
+ *
+ * @author GunnarF
+ *
+ */
+public class RouterBenchmark {
+
+	static final Logger log = LogManager.getLogger(RouterBenchmark.class);
+
+	static List<ConsolidationUnit> cloneWithoutRoutes(List<ConsolidationUnit> units) {
+		return units.stream().map(u -> u.cloneWithoutRoutes()).toList();
+	}
+
+	static double computeCost(List<Id<Link>> route, LinkUnitCostTable linkUnitCostTable) {
+		return route.stream().mapToDouble(id -> linkUnitCostTable.getMonetaryCost(id.index())).sum();
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 3) {
+			System.out.println("Usage: RouterBenchmark <config file> <demand file prefix> <demand file suffix>"
+					+ " [excluded vehicle ids ...]");
+			System.exit(1);
+		}
+
+		log.info("STARTED ...");
+
+		Config config = ConfigUtils.loadConfig(args[0]);
+		SamgodsConfigGroup samgodsConfig = ConfigUtils.addOrGetModule(config, SamgodsConfigGroup.class);
+
+		SamgodsRunner runner = new SamgodsRunner(samgodsConfig).setMaxThreads(Integer.MAX_VALUE);
+		runner.loadVehiclesOtherThan(Arrays.copyOfRange(args, 3, args.length));
+		runner.loadNetwork();
+		runner.loadTransportDemand(args[1], args[2]);
+		runner.close();
+		NetworkAndFleetDataProvider.initialize(runner.getNetwork(), runner.getVehicles());
+
+		/*
+		 * Collect the distinct rail and road consolidation units.
+		 */
+		final Set<ConsolidationUnit> units = new LinkedHashSet<>();
+		for (Map<?, List<TransportChain>> od2chains : runner.getTransportDemand().getCommodity2od2transportChains()
+				.values()) {
+			for (List<TransportChain> chains : od2chains.values()) {
+				for (TransportChain chain : chains) {
+					for (TransportEpisode episode : chain.getEpisodes()) {
+						if (TransportMode.Rail.equals(episode.getMode()) || TransportMode.Road.equals(episode.getMode())) {
+							units.addAll(ConsolidationUnit.createUnrouted(episode));
+						}
+					}
+				}
+			}
+		}
+		final List<ConsolidationUnit> unroutedUnits = new ArrayList<>(units);
+		log.info("Routing " + units.size() + " rail and road consolidation units.");
+
+		/*
+		 * Route with both approaches. An untimed warm-up run of each approach
+		 * prepares the unimodal networks, the landmarks of each router and the JIT,
+		 * so that neither approach pays for these. The timed runs then alternate
+		 * their order.
+		 */
+		final int repetitions = 4;
+		List<ConsolidationUnit> pointToPointUnits = null;
+		List<ConsolidationUnit> treeUnits = null;
+		long pointToPoint_ms = 0;
+		long tree_ms = 0;
+		try (SamgodsExecutor executor = SamgodsExecutor.createWithMaxThreads(Integer.MAX_VALUE)) {
+			final Router pointToPointRouter = new Router(NetworkAndFleetDataProvider.getProviderInstance())
+					.setExecutor(executor);
+			final Router treeRouter = new Router(NetworkAndFleetDataProvider.getProviderInstance())
+					.setExecutor(executor).setTreeRouting(true);
+			pointToPointRouter.route(cloneWithoutRoutes(unroutedUnits));
+			treeRouter.route(cloneWithoutRoutes(unroutedUnits));
+
+			for (int r = 0; r < repetitions; r++) {
+				for (boolean tree : (r % 2 == 0 ? new boolean[] { false, true } : new boolean[] { true, false })) {
+					final List<ConsolidationUnit> clones = cloneWithoutRoutes(unroutedUnits);
+					final long start_ms = System.currentTimeMillis();
+					if (tree) {
+						treeRouter.route(clones);
+						tree_ms += System.currentTimeMillis() - start_ms;
+						treeUnits = clones;
+					} else {
+						pointToPointRouter.route(clones);
+						pointToPoint_ms += System.currentTimeMillis() - start_ms;
+						pointToPointUnits = clones;
+					}
+				}
+			}
+		}
+		pointToPoint_ms /= repetitions;
+		tree_ms /= repetitions;
+
+		/*
+		 * Compare results.
+		 */
+		final NetworkAndFleetData data = NetworkAndFleetDataProvider.getProviderInstance().createDataInstance();
+		long identicalCnt = 0;
+		long equalCostCnt = 0;
+		long differentCnt = 0;
+		for (int i = 0; i < pointToPointUnits.size(); i++) {
+			final ConsolidationUnit pointToPointUnit = pointToPointUnits.get(i);
+			final ConsolidationUnit treeUnit = treeUnits.get(i);
+			for (VehicleType vehicleType : data.getCompatibleVehicleTypes(pointToPointUnit.commodity,
+					pointToPointUnit.samgodsMode, pointToPointUnit.isContainer)) {
+				final List<Id<Link>> pointToPointRoute = pointToPointUnit.getRoute(vehicleType);
+				final List<Id<Link>> treeRoute = treeUnit.getRoute(vehicleType);
+				if (pointToPointRoute == null || treeRoute == null) {
+					if (pointToPointRoute == treeRoute) {
+						identicalCnt++;
+					} else {
+						differentCnt++;
+					}
+				} else if (pointToPointRoute.equals(treeRoute)) {
+					identicalCnt++;
+				} else {
+					final LinkUnitCostTable linkUnitCostTable = data.getLinkUnitCostTable(vehicleType);
+					final double pointToPointCost = computeCost(pointToPointRoute, linkUnitCostTable);
+					final double treeCost = computeCost(treeRoute, linkUnitCostTable);
+					if (Math.abs(pointToPointCost - treeCost) <= 1e-8 * Math.max(1.0, pointToPointCost)) {
+						equalCostCnt++;
+					} else {
+						differentCnt++;
+					}
+				}
+			}
+		}
+
+		log.info("point-to-point routing: " + pointToPoint_ms + " ms (average over " + repetitions + " runs)");
+		log.info("tree routing:           " + tree_ms + " ms (average over " + repetitions + " runs)");
+		log.info("speedup:                " + ((double) pointToPoint_ms) / Math.max(1, tree_ms));
+		log.info("routes identical: " + identicalCnt + ", equal cost ties: " + equalCostCnt + ", different: "
+				+ differentCnt);
+
+		log.info("DONE");
+	}
+}
@@ -0,0 +1,307 @@
+/**
+ * se.vti.samgods.models
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.models;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.VehicleUtils;
+import org.matsim.vehicles.Vehicles;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.RandomStreams;
+import se.vti.samgods.common.SamgodsConfigGroup;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.common.SamgodsRunner;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportDemandAndChains;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.network.SamgodsLinkAttributes;
+import se.vti.samgods.network.SamgodsNodeAttributes;
+import se.vti.samgods.network.TransportModes;
+import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
+import se.vti.utils.misc.Units;
+
+/**
+ * Creates a synthetic scenario that runs through the complete choice and
+ * consolidation loop without any input files: A square grid of bidirectional
+ * road links, overlaid with rail lines along every railLineSpacing-th grid row
+ * and column, a small road and rail fleet, and for every commodity random ODs
+ * with a direct road chain and (where applicable) a road-rail-road chain via
+ * the nearest rail junctions. All nodes are domestic.
+ *
+ * The scale is controlled by the grid size and the number of ODs per
+ * commodity. The same settings and seed always yield the same scenario.
+ *
+ * @author GunnarF
+ *
+ */
+public class SyntheticScenario {
+
+	// -------------------- CONSTANTS --------------------
+
+	private static final Logger log = LogManager.getLogger(SyntheticScenario.class);
+
+	private static final String ROAD_NETWORK_MODE = "A";
+	private static final String RAIL_NETWORK_MODE = "D";
+
+	// -------------------- MEMBERS --------------------
+
+	private int gridSize = 20;
+
+	private double gridSpacing_km = 25.0;
+
+	private int railLineSpacing = 5;
+
+	private int odCntPerCommodity = 200;
+
+	private List<Commodity> commodities = Arrays.asList(Commodity.values());
+
+	private long seed = 4711;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public SyntheticScenario() {
+	}
+
+	public SyntheticScenario setGridSize(int gridSize) {
+		this.gridSize = gridSize;
+		return this;
+	}
+
+	public SyntheticScenario setGridSpacing_km(double gridSpacing_km) {
+		this.gridSpacing_km = gridSpacing_km;
+		return this;
+	}
+
+	public SyntheticScenario setRailLineSpacing(int railLineSpacing) {
+		this.railLineSpacing = railLineSpacing;
+		return this;
+	}
+
+	public SyntheticScenario setOdCntPerCommodity(int odCntPerCommodity) {
+		this.odCntPerCommodity = odCntPerCommodity;
+		return this;
+	}
+
+	public SyntheticScenario setCommodities(Commodity... commodities) {
+		this.commodities = Arrays.asList(commodities);
+		return this;
+	}
+
+	public SyntheticScenario setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	// -------------------- INTERNALS --------------------
+
+	private Id<Node> nodeId(int row, int col) {
+		return Id.createNodeId(row * this.gridSize + col + 1);
+	}
+
+	private boolean isRailLine(int rowOrCol) {
+		return (rowOrCol % this.railLineSpacing == 0);
+	}
+
+	// Junction of two rail lines, every node has one.
+	private int nearestRailLine(int rowOrCol) {
+		final int lower = (rowOrCol / this.railLineSpacing) * this.railLineSpacing;
+		final int upper = lower + this.railLineSpacing;
+		return (upper < this.gridSize && upper - rowOrCol < rowOrCol - lower) ? upper : lower;
+	}
+
+	private void addLink(Network network, long id, Node from, Node to, TransportMode mode, double speed_km_h,
+			String networkMode) {
+		final Link link = NetworkUtils.createAndAddLink(network, Id.createLinkId(id), from, to,
+				NetworkUtils.getEuclideanDistance(from.getCoord(), to.getCoord()), Units.M_S_PER_KM_H * speed_km_h,
+				Double.POSITIVE_INFINITY, 1.0, null, null);
+		final SamgodsLinkAttributes linkAttributes = new SamgodsLinkAttributes(mode, speed_km_h, null, true,
+				new String[] { networkMode });
+		link.setAllowedModes(TransportModes.computeMatsimModesMapFerryToCarriedModes(linkAttributes));
+		link.getAttributes().putAttribute(SamgodsLinkAttributes.ATTRIBUTE_NAME, linkAttributes);
+	}
+
+	private TransportEpisode createEpisode(TransportMode mode, Id<Node> from, Id<Node> to) {
+		final TransportEpisode episode = new TransportEpisode(mode);
+		episode.addSegmentOD(new OD(from, to));
+		return episode;
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public Network createNetwork() {
+		final Network network = NetworkUtils.createNetwork();
+		network.setCapacityPeriod(3600.0);
+		final double spacing_m = Units.M_PER_KM * this.gridSpacing_km;
+		for (int row = 0; row < this.gridSize; row++) {
+			for (int col = 0; col < this.gridSize; col++) {
+				final Node node = NetworkUtils.createAndAddNode(network, this.nodeId(row, col),
+						new Coord(col * spacing_m, row * spacing_m));
+				node.getAttributes().putAttribute(SamgodsNodeAttributes.ATTRIBUTE_NAME, new SamgodsNodeAttributes(true));
+			}
+		}
+		long linkId = 1;
+		for (int row = 0; row < this.gridSize; row++) {
+			for (int col = 0; col < this.gridSize; col++) {
+				final Node node = network.getNodes().get(this.nodeId(row, col));
+				for (int[] neighbor : new int[][] { { row, col + 1 }, { row + 1, col } }) {
+					if (neighbor[0] < this.gridSize && neighbor[1] < this.gridSize) {
+						final Node other = network.getNodes().get(this.nodeId(neighbor[0], neighbor[1]));
+						this.addLink(network, linkId++, node, other, TransportMode.Road, 80.0, ROAD_NETWORK_MODE);
+						this.addLink(network, linkId++, other, node, TransportMode.Road, 80.0, ROAD_NETWORK_MODE);
+						if ((row == neighbor[0] && this.isRailLine(row)) || (col == neighbor[1] && this.isRailLine(col))) {
+							this.addLink(network, linkId++, node, other, TransportMode.Rail, 70.0, RAIL_NETWORK_MODE);
+							this.addLink(network, linkId++, other, node, TransportMode.Rail, 70.0, RAIL_NETWORK_MODE);
+						}
+					}
+				}
+			}
+		}
+		log.info("Created synthetic network with " + network.getNodes().size() + " nodes and "
+				+ network.getLinks().size() + " links.");
+		return network;
+	}
+
+	public Vehicles createVehicles() {
+		final Vehicles vehicles = VehicleUtils.createVehiclesContainer();
+		final SamgodsVehicleAttributes.Builder[] builders = new SamgodsVehicleAttributes.Builder[] {
+				new SamgodsVehicleAttributes.Builder("SYNTHETIC_MGV16").setMode(TransportMode.Road).setCost_1_km(5.0)
+						.setCost_1_h(350.0).setCapacity_ton(16.0).setSpeed_km_h(80.0)
+						.addNetworkModeIfNotNull(ROAD_NETWORK_MODE),
+				new SamgodsVehicleAttributes.Builder("SYNTHETIC_HGV40").setMode(TransportMode.Road).setCost_1_km(8.0)
+						.setCost_1_h(450.0).setCapacity_ton(40.0).setSpeed_km_h(80.0)
+						.addNetworkModeIfNotNull(ROAD_NETWORK_MODE),
+				new SamgodsVehicleAttributes.Builder("SYNTHETIC_WAGON").setMode(TransportMode.Rail).setCost_1_km(60.0)
+						.setCost_1_h(1500.0).setCapacity_ton(1000.0).setSpeed_km_h(70.0)
+						.addNetworkModeIfNotNull(RAIL_NETWORK_MODE) };
+		for (SamgodsVehicleAttributes.Builder builder : builders) {
+			builder.setContainer(false);
+			for (Commodity commodity : this.commodities) {
+				builder.setLoadCost_1_ton(commodity, 10.0).setLoadTime_h(commodity, 1.0)
+						.setTransferCost_1_ton(commodity, 20.0).setTransferTime_h(commodity, 2.0);
+			}
+			vehicles.addVehicleType(builder.buildVehicleType());
+		}
+		return vehicles;
+	}
+
+	public TransportDemandAndChains createTransportDemand() {
+		// ODs are drawn without replacement, origin and destination must differ.
+		final long nodeCnt = (long) this.gridSize * this.gridSize;
+		final long distinctOdCnt = nodeCnt * (nodeCnt - 1);
+		if (this.odCntPerCommodity > distinctOdCnt) {
+			throw new IllegalArgumentException("Requested " + this.odCntPerCommodity
+					+ " ODs per commodity, but a grid of size " + this.gridSize + " has only " + distinctOdCnt
+					+ " distinct ODs.");
+		}
+		final TransportDemandAndChains demand = new TransportDemandAndChains();
+		final RandomStreams randomStreams = new RandomStreams(this.seed);
+		for (Commodity commodity : this.commodities) {
+			final Random rnd = randomStreams.createRandom("synthetic demand", commodity);
+			int odCnt = 0;
+			while (odCnt < this.odCntPerCommodity) {
+				final int originRow = rnd.nextInt(this.gridSize);
+				final int originCol = rnd.nextInt(this.gridSize);
+				final int destinationRow = rnd.nextInt(this.gridSize);
+				final int destinationCol = rnd.nextInt(this.gridSize);
+				final Id<Node> origin = this.nodeId(originRow, originCol);
+				final Id<Node> destination = this.nodeId(destinationRow, destinationCol);
+				final OD od = new OD(origin, destination);
+				if (origin.equals(destination)
+						|| demand.getCommodity2od2annualShipments().getOrDefault(commodity, Map.of()).containsKey(od)) {
+					continue;
+				}
+				odCnt++;
+
+				demand.addShipments(commodity, od, Math.pow(10.0, 1.0 + 3.0 * rnd.nextDouble()), 1 + rnd.nextInt(3));
+
+				final TransportChain roadChain = new TransportChain(commodity, false);
+				roadChain.addEpisode(this.createEpisode(TransportMode.Road, origin, destination));
+				demand.addChain(roadChain);
+
+				final Id<Node> originTerminal = this.nodeId(this.nearestRailLine(originRow),
+						this.nearestRailLine(originCol));
+				final Id<Node> destinationTerminal = this.nodeId(this.nearestRailLine(destinationRow),
+						this.nearestRailLine(destinationCol));
+				if (!originTerminal.equals(destinationTerminal)) {
+					final TransportChain railChain = new TransportChain(commodity, false);
+					if (!origin.equals(originTerminal)) {
+						railChain.addEpisode(this.createEpisode(TransportMode.Road, origin, originTerminal));
+					}
+					railChain.addEpisode(this.createEpisode(TransportMode.Rail, originTerminal, destinationTerminal));
+					if (!destinationTerminal.equals(destination)) {
+						railChain.addEpisode(this.createEpisode(TransportMode.Road, destinationTerminal, destination));
+					}
+					demand.addChain(railChain);
+				}
+			}
+		}
+		return demand;
+	}
+
+	/**
+	 * Sets the considered commodities, the network, the vehicles and the
+	 * transport demand of the runner.
+	 */
+	public SamgodsRunner configure(SamgodsRunner runner) {
+		return runner.setConsideredCommodities(this.commodities.toArray(new Commodity[0]))
+				.setNetwork(this.createNetwork()).setVehicles(this.createVehicles())
+				.setTransportDemand(this.createTransportDemand());
+	}
+
+	// -------------------- MAIN-FUNCTION --------------------
+
+	/**
+	 * Optional arguments: grid size, ODs per commodity, iterations.
+	 */
+	public static void main(String[] args) throws IOException {
+		final SyntheticScenario scenario = new SyntheticScenario();
+		if (args.length > 0) {
+			scenario.setGridSize(Integer.parseInt(args[0]));
+		}
+		if (args.length > 1) {
+			scenario.setOdCntPerCommodity(Integer.parseInt(args[1]));
+		}
+
+		final SamgodsConfigGroup config = new SamgodsConfigGroup();
+		config.setMaxIterations(args.length > 2 ? Integer.parseInt(args[2]) : 5);
+		config.setOutputDirectory("./results_synthetic");
+		config.setNtmCalcFileNamePrefix(null);
+
+		final long start_ms = System.currentTimeMillis();
+		final SamgodsRunner runner = scenario.configure(new SamgodsRunner(config));
+		runner.createOrLoadConsolidationUnits();
+		runner.run();
+		log.info("DONE in " + (System.currentTimeMillis() - start_ms) + " ms.");
+	}
+}
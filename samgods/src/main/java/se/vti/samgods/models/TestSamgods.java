@@ -91,14 +91,11 @@ public class TestSamgods {
 				.setScale(Commodity.TIMBER, scaleFactor * 0.00009).setScale(Commodity.AIR, scaleFactor * 0.00005)
 				.setEnforceReroute(false);
 
-		runner.loadVehiclesOtherThan("WG950", "KOMXL", "SYSXL", "WGEXL", "HGV74", "ROF7", "RAF5", "INW", "ROF2", "ROF5");
+		runner.loadInputs("./input_2024/ChainChoi", "XTD.out", "WG950", "KOMXL", "SYSXL", "WGEXL", "HGV74", "ROF7",
+				"RAF5", "INW", "ROF2", "ROF5");
 //		runner.checkAvailableVehicles();
 
-		runner.loadNetwork();
-
 		runner.setNetworkFlowsFileName("linkId2commodity2annualAmount_ton.json");
-		
-		runner.loadTransportDemand("./input_2024/ChainChoi", "XTD.out");
 
 		runner.createOrLoadConsolidationUnits();
 		
@@ -20,13 +20,15 @@
 package se.vti.samgods.network;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.config.Configurator;
@@ -46,7 +48,9 @@ import org.matsim.vehicles.VehicleType;
 
 import se.vti.samgods.common.NetworkAndFleetData;
 import se.vti.samgods.common.NetworkAndFleetDataProvider;
+import se.vti.samgods.common.SamgodsExecutor;
 import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.consolidation.LinkIndexRoute;
 
 /**
  * 
@@ -61,7 +65,7 @@ public class Router {
 
 	private long lastUpdate_ms = System.currentTimeMillis();
 
-	private Set<Runnable> recentlyActiveThreads = new LinkedHashSet<>();
+	private Set<Object> recentlyActiveThreads = new LinkedHashSet<>();
 
 	private long foundRoutes = 0;
 	private long failedRoutesNoOD = 0;
@@ -78,25 +82,25 @@ public class Router {
 		}
 	}
 
-	private synchronized void registerFoundRoute(Runnable thread) {
+	private synchronized void registerFoundRoute(Object thread) {
 		this.msgOrNot();
 		this.foundRoutes++;
 		this.recentlyActiveThreads.add(thread);
 	}
 
-	private synchronized void registerFailedRouteNoOD(Runnable thread) {
+	private synchronized void registerFailedRouteNoOD(Object thread) {
 		this.msgOrNot();
 		this.failedRoutesNoOD++;
 		this.recentlyActiveThreads.add(thread);
 	}
 
-	private synchronized void registerFailedRouteNoConnection(Runnable thread) {
+	private synchronized void registerFailedRouteNoConnection(Object thread) {
 		this.msgOrNot();
 		this.failedRoutesNoConnection++;
 		this.recentlyActiveThreads.add(thread);
 	}
 
-	private synchronized void registerFailedRouteNoRouter(Runnable thread) {
+	private synchronized void registerFailedRouteNoRouter(Object thread) {
 		this.msgOrNot();
 		this.failedRoutesNoRouter++;
 		this.recentlyActiveThreads.add(thread);
@@ -104,20 +108,19 @@ public class Router {
 
 	// -------------------- INNER CLASSES --------------------
 
-	private class RouteProcessor implements Runnable {
+	/*
+	 * Not thread-safe (through the cached routers), use one instance per thread.
+	 */
+	private class RouteProcessor {
 
-		private final String name;
 		private final NetworkAndFleetData networkAndFleetData;
-		private final BlockingQueue<ConsolidationUnit> jobQueue;
 
-		private final AStarLandmarksFactory routerFactory = new AStarLandmarksFactory(4);
 		private final Map<VehicleType, LeastCostPathCalculator> vehicleType2router = new LinkedHashMap<>();
 
-		RouteProcessor(String name, NetworkAndFleetData networkAndFleetData,
-				BlockingQueue<ConsolidationUnit> jobQueue) {
-			this.name = name;
+		private final Map<VehicleType, ShortestPathTree> vehicleType2tree = new LinkedHashMap<>();
+
+		RouteProcessor(NetworkAndFleetData networkAndFleetData) {
 			this.networkAndFleetData = networkAndFleetData;
-			this.jobQueue = jobQueue;
 		}
 
 		List<Link> computeRoute(ConsolidationUnit job, VehicleType vehicleType) {
@@ -139,7 +142,7 @@ public class Router {
 					log.warn("No TravelTime available. Skipping consolidationUnit: " + job);
 					return null;
 				}
-				return this.routerFactory.createPathCalculator(unimodalNetwork, travelDisutility, travelTime);
+				return createPathCalculator(vehicleType, unimodalNetwork, travelDisutility, travelTime);
 			});
 			if (router == null) {
 				log.warn("No Router available. Skipping consolidationUnit: " + job);
@@ -182,32 +185,115 @@ public class Router {
 		}
 
 		void process(ConsolidationUnit consolidationUnit) {
-			consolidationUnit.vehicleType2route.clear();
+			consolidationUnit.clearRoutes();
 			final Set<VehicleType> compatibleVehicleTypes = this.networkAndFleetData.getCompatibleVehicleTypes(
 					consolidationUnit.commodity, consolidationUnit.samgodsMode, consolidationUnit.isContainer);
-			for (VehicleType vehicleType : compatibleVehicleTypes) {
-				final List<Link> links = this.computeRoute(consolidationUnit, vehicleType);
+			/*
+			 * One search per routing equivalence class, the result is shared by all
+			 * members of that class.
+			 */
+			for (Map.Entry<VehicleType, List<VehicleType>> entry : this.networkAndFleetData
+					.groupByRoutingRepresentative(compatibleVehicleTypes).entrySet()) {
+				final List<Link> links = this.computeRoute(consolidationUnit, entry.getKey());
 				if (links != null) {
-					consolidationUnit.setRouteFromLinks(vehicleType, links);
+					final List<Id<Link>> linkIds = LinkIndexRoute.createFromLinks(links);
+					for (VehicleType vehicleType : entry.getValue()) {
+						consolidationUnit.setRouteFromLinkIds(vehicleType, linkIds);
+					}
 				}
 			}
 		}
 
-		@Override
-		public void run() {
-			log.info("THREAD STARTED: " + this.name);
-			try {
-				while (true) {
-					ConsolidationUnit job = this.jobQueue.take();
-					if (job == ConsolidationUnit.TERMINATE) {
-						break;
+		/*
+		 * All consolidation units in the batch share the same origin node. One
+		 * shortest path tree per routing equivalence class is grown from that origin,
+		 * all routes of that class are then read off the tree.
+		 */
+		void processWithTree(List<ConsolidationUnit> batch) {
+			final Map<VehicleType, Map<ConsolidationUnit, List<VehicleType>>> representative2unit2members = new LinkedHashMap<>();
+			for (ConsolidationUnit consolidationUnit : batch) {
+				consolidationUnit.clearRoutes();
+				final Set<VehicleType> compatibleVehicleTypes = this.networkAndFleetData.getCompatibleVehicleTypes(
+						consolidationUnit.commodity, consolidationUnit.samgodsMode, consolidationUnit.isContainer);
+				for (Map.Entry<VehicleType, List<VehicleType>> entry : this.networkAndFleetData
+						.groupByRoutingRepresentative(compatibleVehicleTypes).entrySet()) {
+					representative2unit2members.computeIfAbsent(entry.getKey(), r -> new LinkedHashMap<>())
+							.put(consolidationUnit, entry.getValue());
+				}
+			}
+
+			for (Map.Entry<VehicleType, Map<ConsolidationUnit, List<VehicleType>>> representativeEntry : representative2unit2members
+					.entrySet()) {
+				final VehicleType representative = representativeEntry.getKey();
+				final Map<ConsolidationUnit, List<VehicleType>> unit2members = representativeEntry.getValue();
+
+				final Network unimodalNetwork = this.networkAndFleetData.getUnimodalNetwork(representative);
+				final TravelDisutility travelDisutility = (unimodalNetwork == null ? null
+						: this.networkAndFleetData.getTravelDisutility(representative));
+				if (travelDisutility == null) {
+					log.warn("No network or TravelDisutility available. Skipping " + unit2members.size()
+							+ " consolidation units.");
+					if (logProgress) {
+						unit2members.keySet().forEach(u -> registerFailedRouteNoRouter(this));
+					}
+					continue;
+				}
+
+				final Node from = unimodalNetwork.getNodes().get(batch.get(0).od.origin);
+				final Map<ConsolidationUnit, Node> unit2to = new LinkedHashMap<>(unit2members.size());
+				for (ConsolidationUnit consolidationUnit : unit2members.keySet()) {
+					if (consolidationUnit.od.origin.equals(consolidationUnit.od.destination)) {
+						// As in point-to-point routing, also if the node is not in the network.
+						if (logProgress) {
+							registerFoundRoute(this);
+						}
+						final List<Id<Link>> linkIds = LinkIndexRoute.createFromLinks(new ArrayList<>());
+						for (VehicleType vehicleType : unit2members.get(consolidationUnit)) {
+							consolidationUnit.setRouteFromLinkIds(vehicleType, linkIds);
+						}
+						continue;
+					}
+					final Node to = unimodalNetwork.getNodes().get(consolidationUnit.od.destination);
+					if ((from != null) && (to != null)) {
+						unit2to.put(consolidationUnit, to);
+					} else if (logProgress) {
+						registerFailedRouteNoOD(this);
+					}
+				}
+				if (unit2to.isEmpty()) {
+					continue;
+				}
+
+				final ShortestPathTree tree = this.vehicleType2tree.computeIfAbsent(representative,
+						r -> new ShortestPathTree(travelDisutility));
+				tree.compute(from, unit2to.values());
+				for (Map.Entry<ConsolidationUnit, Node> unitEntry : unit2to.entrySet()) {
+					final List<Link> links = tree.getLinks(unitEntry.getValue());
+					if (links == null) {
+						if (logProgress) {
+							registerFailedRouteNoConnection(this);
+						}
+					} else {
+						if (logProgress) {
+							registerFoundRoute(this);
+						}
+						final List<Id<Link>> linkIds = LinkIndexRoute.createFromLinks(links);
+						for (VehicleType vehicleType : unit2members.get(unitEntry.getKey())) {
+							unitEntry.getKey().setRouteFromLinkIds(vehicleType, linkIds);
+						}
 					}
+				}
+			}
+		}
+
+		void processBatch(List<ConsolidationUnit> batch) {
+			if (treeRouting) {
+				this.processWithTree(batch);
+			} else {
+				for (ConsolidationUnit job : batch) {
 					this.process(job);
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
 			}
-			log.info("ROUTING THREAD ENDED: " + this.name);
 		}
 
 	}
@@ -216,10 +302,25 @@ public class Router {
 
 	private final NetworkAndFleetDataProvider networkAndFleetDataProvider;
 
+	/*
+	 * One factory per routing representative, shared by all routing threads. An
+	 * AStarLandmarksFactory caches its landmarks per network, computed with the
+	 * TravelDisutility of the first request. Unimodal networks are shared across
+	 * vehicle types with different link costs, hence one factory per routing cost
+	 * signature (as represented by the routing representative) keeps every A*
+	 * heuristic consistent with the costs it is used with.
+	 */
+	private final ConcurrentMap<VehicleType, AStarLandmarksFactory> representative2routerFactory = new ConcurrentHashMap<>();
+
 	private boolean logProgress = false;
 
+	private boolean treeRouting = false;
+
 	private int maxThreads = 64;
 
+	// If null, a temporary executor with maxThreads is used.
+	private SamgodsExecutor executor = null;
+
 	// -------------------- CONSTRUCTION --------------------
 
 	public Router(NetworkAndFleetDataProvider networkAndFleetDataProvider) {
@@ -236,43 +337,82 @@ public class Router {
 		return this;
 	}
 
+	public Router setExecutor(SamgodsExecutor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * If true, consolidation units are batched by origin node and routed by
+	 * one-to-many shortest path trees instead of point-to-point searches. Routes
+	 * are identical wherever the least cost path is unique. Among equally costly
+	 * paths, both approaches choose deterministically but possibly differently,
+	 * see ShortestPathTree. This is an accepted limitation: route costs are
+	 * unaffected.
+	 */
+	public Router setTreeRouting(boolean treeRouting) {
+		this.treeRouting = treeRouting;
+		return this;
+	}
+
 	// -------------------- IMPLEMENTATION --------------------
 
+	/*
+	 * Package-private for testing. The vehicle type must be a routing
+	 * representative.
+	 */
+	LeastCostPathCalculator createPathCalculator(VehicleType representative, Network unimodalNetwork,
+			TravelDisutility travelDisutility, TravelTime travelTime) {
+		return this.representative2routerFactory.computeIfAbsent(representative, r -> new AStarLandmarksFactory(4))
+				.createPathCalculator(unimodalNetwork, travelDisutility, travelTime);
+	}
+
 	public void route(Iterable<ConsolidationUnit> allJobs) {
+		final SamgodsExecutor executor = (this.executor != null ? this.executor
+				: SamgodsExecutor.createWithMaxThreads(this.maxThreads));
 		try {
-			final int threadCnt = Math.min(this.maxThreads, Runtime.getRuntime().availableProcessors());
-			final BlockingQueue<ConsolidationUnit> jobQueue = new LinkedBlockingQueue<>(10 * threadCnt);
-			final List<Thread> routingThreads = new ArrayList<>();
-
 			Level level = LogManager.getLogger(Dijkstra.class).getLevel();
 			Configurator.setLevel(Dijkstra.class, Level.OFF);
 
-			log.info("Starting " + threadCnt + " routing threads.");
-			for (int i = 0; i < threadCnt; i++) {
-				final RouteProcessor routeProcessor = new RouteProcessor(RouteProcessor.class.getSimpleName() + i,
-						this.networkAndFleetDataProvider.createDataInstance(), jobQueue);
-				final Thread routingThread = new Thread(routeProcessor);
-				routingThreads.add(routingThread);
-				routingThread.start();
-			}
-
-			log.info("Starting to populate routing job queue, continuing as threads progress.");
+			/*
+			 * Build the shared unimodal networks of all needed routing representatives
+			 * upfront and in parallel.
+			 */
+			final NetworkAndFleetData networkAndFleetData = this.networkAndFleetDataProvider.createDataInstance();
+			final Set<List<Object>> unitTypes = new LinkedHashSet<>();
+			final Set<VehicleType> representatives = new LinkedHashSet<>();
 			for (ConsolidationUnit job : allJobs) {
-				jobQueue.put(job);
+				if (unitTypes.add(Arrays.asList(job.commodity, job.samgodsMode, job.isContainer))) {
+					representatives.addAll(networkAndFleetData.groupByRoutingRepresentative(networkAndFleetData
+							.getCompatibleVehicleTypes(job.commodity, job.samgodsMode, job.isContainer)).keySet());
+				}
 			}
+			this.networkAndFleetDataProvider.prepareUnimodalNetworks(representatives);
 
-			log.info("Waiting for routing jobs to complete.");
-			for (int i = 0; i < routingThreads.size(); i++) {
-				jobQueue.put(ConsolidationUnit.TERMINATE);
-			}
-			for (Thread routingThread : routingThreads) {
-				routingThread.join();
+			final List<List<ConsolidationUnit>> batches = new ArrayList<>();
+			if (this.treeRouting) {
+				final Map<Id<Node>, List<ConsolidationUnit>> origin2batch = new LinkedHashMap<>();
+				for (ConsolidationUnit job : allJobs) {
+					origin2batch.computeIfAbsent(job.od.origin, o -> new ArrayList<>()).add(job);
+				}
+				batches.addAll(origin2batch.values());
+			} else {
+				for (ConsolidationUnit job : allJobs) {
+					batches.add(Collections.singletonList(job));
+				}
 			}
 
+			log.info("Routing " + batches.size() + " batches on " + executor.getParallelism() + " threads.");
+			final SamgodsExecutor.WorkerLocal<RouteProcessor> routeProcessor = new SamgodsExecutor.WorkerLocal<>(
+					() -> new RouteProcessor(this.networkAndFleetDataProvider.createDataInstance()));
+			executor.processAll("routing", batches, batch -> routeProcessor.get().processBatch(batch));
+
 			Configurator.setLevel(Dijkstra.class, level);
 
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+		} finally {
+			if (executor != this.executor) {
+				executor.close();
+			}
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,195 @@
+/**
+ * se.vti.samgods.network
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * One-to-many least cost path search (Dijkstra) over a time-independent
+ * TravelDisutility. Not thread-safe, meant to be reused by one routing thread.
+ *
+ * Where the least cost path is unique, the result equals that of a
+ * point-to-point search. Among several equally costly paths, the one found
+ * first when settling nodes in order of cost and then node index is returned.
+ * This is deterministic but may differ from the (equally costly) choice of a
+ * point-to-point search.
+ *
+ * @author GunnarF
+ *
+ */
+public class ShortestPathTree {
+
+	// -------------------- INNER CLASS --------------------
+
+	private static class QueueEntry implements Comparable<QueueEntry> {
+
+		private final Node node;
+		private final double cost;
+
+		private QueueEntry(Node node, double cost) {
+			this.node = node;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(QueueEntry other) {
+			final int result = Double.compare(this.cost, other.cost);
+			return (result != 0 ? result : Integer.compare(this.node.getId().index(), other.node.getId().index()));
+		}
+	}
+
+	// -------------------- MEMBERS --------------------
+
+	private final TravelDisutility travelDisutility;
+
+	// Arrays indexed by Id<Node>.index(), valid where stamp == currentStamp.
+	private double[] costs = new double[0];
+	private Link[] incomingLinks = new Link[0];
+	private boolean[] settled = new boolean[0];
+	private int[] stamps = new int[0];
+	private int currentStamp = 0;
+
+	// Reset after each search.
+	private boolean[] isDestination = new boolean[0];
+
+	private Node origin = null;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public ShortestPathTree(TravelDisutility travelDisutility) {
+		this.travelDisutility = travelDisutility;
+	}
+
+	// -------------------- INTERNALS --------------------
+
+	private void ensureCapacity() {
+		final int nodeCnt = Id.getNumberOfIds(Node.class);
+		if (this.stamps.length < nodeCnt) {
+			this.costs = new double[nodeCnt];
+			this.incomingLinks = new Link[nodeCnt];
+			this.settled = new boolean[nodeCnt];
+			this.stamps = new int[nodeCnt];
+			this.isDestination = new boolean[nodeCnt];
+			this.currentStamp = 0;
+		}
+	}
+
+	private boolean isReached(int index) {
+		return (this.stamps[index] == this.currentStamp);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	/**
+	 * Grows the tree from the origin until all destinations are settled or the
+	 * reachable part of the network is exhausted.
+	 */
+	public void compute(Node origin, Collection<Node> destinations) {
+		this.ensureCapacity();
+		this.currentStamp++;
+		this.origin = origin;
+
+		int remainingDestinations = 0;
+		for (Node destination : destinations) {
+			final int index = destination.getId().index();
+			if (!this.isDestination[index]) {
+				this.isDestination[index] = true;
+				remainingDestinations++;
+			}
+		}
+
+		final PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+		final int originIndex = origin.getId().index();
+		this.stamps[originIndex] = this.currentStamp;
+		this.costs[originIndex] = 0.0;
+		this.incomingLinks[originIndex] = null;
+		this.settled[originIndex] = false;
+		queue.add(new QueueEntry(origin, 0.0));
+
+		while (!queue.isEmpty() && remainingDestinations > 0) {
+			final QueueEntry entry = queue.poll();
+			final int nodeIndex = entry.node.getId().index();
+			if (this.settled[nodeIndex]) {
+				continue; // outdated entry
+			}
+			this.settled[nodeIndex] = true;
+			if (this.isDestination[nodeIndex]) {
+				this.isDestination[nodeIndex] = false;
+				remainingDestinations--;
+			}
+			for (Link link : entry.node.getOutLinks().values()) {
+				final Node toNode = link.getToNode();
+				final int toIndex = toNode.getId().index();
+				final double cost = entry.cost + this.travelDisutility.getLinkTravelDisutility(link, 0, null, null);
+				if (!this.isReached(toIndex)) {
+					this.stamps[toIndex] = this.currentStamp;
+					this.settled[toIndex] = false;
+					this.costs[toIndex] = cost;
+					this.incomingLinks[toIndex] = link;
+					queue.add(new QueueEntry(toNode, cost));
+				} else if (!this.settled[toIndex] && cost < this.costs[toIndex]) {
+					this.costs[toIndex] = cost;
+					this.incomingLinks[toIndex] = link;
+					queue.add(new QueueEntry(toNode, cost));
+				}
+			}
+		}
+
+		for (Node destination : destinations) {
+			this.isDestination[destination.getId().index()] = false;
+		}
+	}
+
+	/**
+	 * Returns the links from the most recently computed origin to the destination,
+	 * an empty list if both coincide, or null if the destination was not reached.
+	 */
+	public List<Link> getLinks(Node destination) {
+		if (destination == this.origin) {
+			return new ArrayList<>();
+		}
+		final int destinationIndex = destination.getId().index();
+		if (!this.isReached(destinationIndex) || !this.settled[destinationIndex]) {
+			return null;
+		}
+		final List<Link> result = new ArrayList<>();
+		Link link = this.incomingLinks[destinationIndex];
+		while (link != null) {
+			result.add(link);
+			link = this.incomingLinks[link.getFromNode().getId().index()];
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	public double getCost(Node destination) {
+		final int destinationIndex = destination.getId().index();
+		return (this.isReached(destinationIndex) ? this.costs[destinationIndex] : Double.POSITIVE_INFINITY);
+	}
+}
@@ -19,7 +19,6 @@
  */
 package se.vti.samgods.transportation.consolidation;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -32,8 +31,6 @@ import se.vti.samgods.logistics.choice.ChainAndShipmentSize;
  */
 public class ConsolidationJob {
 
-	public static final ConsolidationJob TERMINATE = new ConsolidationJob(null, new ArrayList<>(0), 0);
-
 	// concurrency: only references in this job
 	public final ConsolidationUnit consolidationUnit;
 
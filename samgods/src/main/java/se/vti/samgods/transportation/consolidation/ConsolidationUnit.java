@@ -21,16 +21,15 @@ package se.vti.samgods.transportation.consolidation;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
@@ -54,11 +53,13 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 
 import se.vti.samgods.common.NetworkAndFleetData;
+import se.vti.samgods.common.NetworkAndFleetDataProvider;
 import se.vti.samgods.common.OD;
 import se.vti.samgods.common.SamgodsConstants;
 import se.vti.samgods.common.SamgodsConstants.Commodity;
 import se.vti.samgods.common.SamgodsConstants.TransportMode;
 import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.transportation.costs.RouteCostAggregate;
 import se.vti.utils.misc.Units;
 
 /**
@@ -69,11 +70,6 @@ import se.vti.utils.misc.Units;
 @JsonSerialize(using = ConsolidationUnit.Serializer.class)
 public class ConsolidationUnit {
 
-	// -------------------- CONSTANTS --------------------
-
-	// "Poison pill" for multithreaded routing.
-	public static final ConsolidationUnit TERMINATE = new ConsolidationUnit(null, null, null, null);
-
 	// -------------------- MEMBERS --------------------
 
 	public final OD od;
@@ -81,6 +77,9 @@ public class ConsolidationUnit {
 	public final SamgodsConstants.TransportMode samgodsMode;
 	public final Boolean isContainer;
 
+	// Fields above are final, hence the hash code can be computed upfront.
+	private final int hashCode;
+
 	// --------------------CONSTRUCTION --------------------
 
 	/* package for testing */ ConsolidationUnit(OD od, SamgodsConstants.Commodity commodity,
@@ -89,6 +88,8 @@ public class ConsolidationUnit {
 		this.commodity = commodity;
 		this.samgodsMode = mode;
 		this.isContainer = isContainer;
+		// Same value as the former Arrays.asList(od, commodity, mode, isContainer).hashCode().
+		this.hashCode = Objects.hash(od, commodity, mode, isContainer);
 	}
 
 	public static List<ConsolidationUnit> createUnrouted(TransportEpisode episode) {
@@ -107,13 +108,9 @@ public class ConsolidationUnit {
 
 	// -------------------- OVERRIDING Object --------------------
 
-	private List<Object> createAsList() {
-		return Arrays.asList(this.od, this.commodity, this.samgodsMode, this.isContainer);
-	}
-
 	@Override
 	public int hashCode() {
-		return this.createAsList().hashCode();
+		return this.hashCode;
 	}
 
 	@Override
@@ -121,7 +118,10 @@ public class ConsolidationUnit {
 		if (this == other) {
 			return true;
 		} else if (other instanceof ConsolidationUnit) {
-			return this.createAsList().equals(((ConsolidationUnit) other).createAsList());
+			final ConsolidationUnit otherUnit = (ConsolidationUnit) other;
+			return (this.hashCode == otherUnit.hashCode) && Objects.equals(this.od, otherUnit.od)
+					&& (this.commodity == otherUnit.commodity) && (this.samgodsMode == otherUnit.samgodsMode)
+					&& Objects.equals(this.isContainer, otherUnit.isContainer);
 		} else {
 			return false;
 		}
@@ -143,41 +143,118 @@ public class ConsolidationUnit {
 	 * Even the Set<VehicleType> key must be concurrent. Implementation ensures that
 	 * there is at most one key containing any vehicle type.
 	 */
-	public final ConcurrentMap<Set<VehicleType>, CopyOnWriteArrayList<Id<Link>>> vehicleType2route = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Set<VehicleType>, LinkIndexRoute> vehicleTypes2route = new ConcurrentHashMap<>();
+
+	// Read-only view, modifications go through the methods below.
+	public final Map<Set<VehicleType>, List<Id<Link>>> vehicleType2route = Collections
+			.unmodifiableMap(this.vehicleTypes2route);
+
+	/*
+	 * Direct lookup by vehicle type Id index. Built on the first query after the
+	 * routes have changed, i.e. once per routing run. Null means "not built".
+	 */
+	private volatile LinkIndexRoute[] vehicleTypeIndex2route = null;
+
+	/*
+	 * Payload-independent route costs, computed on demand until the routes change.
+	 * Keyed by the data provider the costs were computed from.
+	 */
+	private final ConcurrentMap<NetworkAndFleetDataProvider, ConcurrentMap<VehicleType, RouteCostAggregate>> dataProvider2vehicleType2routeCostAggregate = new ConcurrentHashMap<>();
+
+	private synchronized LinkIndexRoute[] getOrCreateVehicleTypeIndex2route() {
+		if (this.vehicleTypeIndex2route == null) {
+			int maxIndex = -1;
+			for (Set<VehicleType> vehicleTypes : this.vehicleTypes2route.keySet()) {
+				for (VehicleType vehicleType : vehicleTypes) {
+					maxIndex = Math.max(maxIndex, vehicleType.getId().index());
+				}
+			}
+			final LinkIndexRoute[] index2route = new LinkIndexRoute[maxIndex + 1];
+			for (Map.Entry<Set<VehicleType>, LinkIndexRoute> entry : this.vehicleTypes2route.entrySet()) {
+				for (VehicleType vehicleType : entry.getKey()) {
+					index2route[vehicleType.getId().index()] = entry.getValue();
+				}
+			}
+			this.vehicleTypeIndex2route = index2route;
+		}
+		return this.vehicleTypeIndex2route;
+	}
+
+	public LinkIndexRoute getLinkIndexRoute(VehicleType vehicleType) {
+		LinkIndexRoute[] index2route = this.vehicleTypeIndex2route;
+		if (index2route == null) {
+			index2route = this.getOrCreateVehicleTypeIndex2route();
+		}
+		final int index = vehicleType.getId().index();
+		return (index < index2route.length ? index2route[index] : null);
+	}
 
 	public List<Id<Link>> getRoute(VehicleType vehicleType) {
-		return this.vehicleType2route.entrySet().stream().filter(e -> e.getKey().contains(vehicleType)).findFirst()
-				.map(e -> e.getValue()).orElseGet(() -> null);
+		return this.getLinkIndexRoute(vehicleType);
+	}
+
+	public RouteCostAggregate getRouteCostAggregate(VehicleType vehicleType, NetworkAndFleetData networkData) {
+		final ConcurrentMap<VehicleType, RouteCostAggregate> vehicleType2routeCostAggregate = this.dataProvider2vehicleType2routeCostAggregate
+				.computeIfAbsent(networkData.getDataProvider(), p -> new ConcurrentHashMap<>());
+		RouteCostAggregate result = vehicleType2routeCostAggregate.get(vehicleType);
+		if (result == null) {
+			final List<Id<Link>> route = this.getRoute(vehicleType);
+			if (route == null) {
+				return null;
+			}
+			result = RouteCostAggregate.create(vehicleType, route, networkData);
+			vehicleType2routeCostAggregate.put(vehicleType, result);
+		}
+		return result;
+	}
+
+	private void invalidateLookups() {
+		this.vehicleTypeIndex2route = null;
+		this.dataProvider2vehicleType2routeCostAggregate.clear();
 	}
 
-	public void removeRoute(VehicleType vehicleType) {
-		var entry = this.vehicleType2route.entrySet().stream().filter(e -> e.getKey().contains(vehicleType)).findFirst()
-				.orElseGet(() -> null);
+	public synchronized void clearRoutes() {
+		this.vehicleTypes2route.clear();
+		this.invalidateLookups();
+	}
+
+	public synchronized void removeRoute(VehicleType vehicleType) {
+		var entry = this.vehicleTypes2route.entrySet().stream().filter(e -> e.getKey().contains(vehicleType))
+				.findFirst().orElseGet(() -> null);
 		if (entry != null) {
-			this.vehicleType2route.remove(entry.getKey());
+			this.vehicleTypes2route.remove(entry.getKey());
 			if (entry.getKey().size() > 1) {
 				entry.getKey().remove(vehicleType);
-				this.vehicleType2route.put(entry.getKey(), entry.getValue());
+				this.vehicleTypes2route.put(entry.getKey(), entry.getValue());
 			}
+			this.invalidateLookups();
 		}
 	}
 
-	public void setRouteFromLinkIds(VehicleType vehicleType, List<Id<Link>> routeIds) {
+	public synchronized void setRouteFromLinkIds(VehicleType vehicleType, List<Id<Link>> routeIds) {
 		if (routeIds == null) {
 			throw new IllegalArgumentException("Route must not be null.");
 		}
 		this.removeRoute(vehicleType);
-		var entry = this.vehicleType2route.entrySet().stream().filter(e -> e.getValue().equals(routeIds)).findFirst()
-				.orElseGet(() -> null);
+		final LinkIndexRoute route = LinkIndexRoute.create(routeIds);
+		var entry = this.vehicleTypes2route.entrySet().stream().filter(e -> e.getValue().hasEqualLinks(route))
+				.findFirst().orElseGet(() -> null);
 		if (entry == null) {
 			Set<VehicleType> key = ConcurrentHashMap.newKeySet();
 			key.add(vehicleType);
-			this.vehicleType2route.put(key, new CopyOnWriteArrayList<>(routeIds));
+			this.vehicleTypes2route.put(key, route);
 		} else {
-			this.vehicleType2route.remove(entry.getKey());
+			this.vehicleTypes2route.remove(entry.getKey());
 			entry.getKey().add(vehicleType);
-			this.vehicleType2route.put(entry.getKey(), entry.getValue());
+			this.vehicleTypes2route.put(entry.getKey(), entry.getValue());
 		}
+		this.invalidateLookups();
+	}
+
+	/* package for deserialization */
+	synchronized void setRoute(Set<VehicleType> vehicleTypes, List<Id<Link>> routeIds) {
+		this.vehicleTypes2route.put(vehicleTypes, LinkIndexRoute.create(routeIds));
+		this.invalidateLookups();
 	}
 
 	public void setRouteFromLinks(VehicleType vehicleType, List<Link> links) {
@@ -190,7 +267,7 @@ public class ConsolidationUnit {
 
 	public SummaryStatistics computeLengthStats_km(NetworkAndFleetData networkData) {
 		SummaryStatistics result = new SummaryStatistics();
-		for (var linkIds : this.vehicleType2route.values()) {
+		for (var linkIds : this.vehicleTypes2route.values()) {
 			result.addValue(Units.KM_PER_M
 					* linkIds.stream().mapToDouble(id -> networkData.getLinks().get(id).getLength()).sum());
 		}
@@ -199,7 +276,7 @@ public class ConsolidationUnit {
 
 	/* package for testing */
 	int distinctRoutes() {
-		return this.vehicleType2route.size();
+		return this.vehicleTypes2route.size();
 	}
 	
 	// -------------------- Json Serializer --------------------
@@ -284,7 +361,7 @@ public class ConsolidationUnit {
 				for (JsonNode linkNode : linksNode) {
 					linkIds.add(Id.createLinkId(linkNode.asText()));
 				}
-				result.vehicleType2route.put(vehicleTypes, new CopyOnWriteArrayList<>(linkIds));
+				result.setRoute(vehicleTypes, linkIds);
 			}
 
 			return result;
@@ -0,0 +1,155 @@
+/**
+ * se.vti.samgods.transportation.consolidation
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.consolidation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+
+/**
+ * Streaming reader for files written by ConsolidationUnitsBinaryWriter. Units
+ * are read one at a time, nothing but the id dictionaries is kept in memory.
+ *
+ * @author GunnarF
+ *
+ */
+public class ConsolidationUnitsBinaryReader implements AutoCloseable {
+
+	// -------------------- MEMBERS --------------------
+
+	private final Vehicles vehicles;
+
+	private final DataInputStream in;
+
+	private final List<Id<Link>> linkIds = new ArrayList<>();
+	private final List<VehicleType> vehicleTypes = new ArrayList<>();
+
+	private boolean endOfFile = false;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public ConsolidationUnitsBinaryReader(String fileName, Vehicles vehicles) throws IOException {
+		this.vehicles = vehicles;
+		this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		if (this.in.readInt() != ConsolidationUnitsBinaryWriter.MAGIC) {
+			this.in.close();
+			throw new IOException("File " + fileName + " is not a binary consolidation units file.");
+		}
+		final int version = this.in.readInt();
+		if (version != ConsolidationUnitsBinaryWriter.VERSION) {
+			this.in.close();
+			throw new IOException("Unsupported binary consolidation units file version " + version + ".");
+		}
+	}
+
+	// -------------------- VARINT DECODING --------------------
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		int result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			result |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return result;
+	}
+
+	static int zigZagDecode(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	/**
+	 * Returns the next consolidation unit, or null at the end of the file.
+	 */
+	public ConsolidationUnit read() throws IOException {
+		if (this.endOfFile) {
+			return null;
+		}
+		final byte recordType = this.in.readByte();
+		if (recordType == ConsolidationUnitsBinaryWriter.END_OF_FILE) {
+			this.endOfFile = true;
+			return null;
+		} else if (recordType != ConsolidationUnitsBinaryWriter.UNIT_RECORD) {
+			throw new IOException("Unknown record type " + recordType + ".");
+		}
+
+		for (int i = readVarInt(this.in); i > 0; i--) {
+			final String vehicleTypeId = this.in.readUTF();
+			final VehicleType vehicleType = this.vehicles.getVehicleTypes()
+					.get(Id.create(vehicleTypeId, VehicleType.class));
+			if (vehicleType == null) {
+				throw new IOException("Unknown vehicle type " + vehicleTypeId + ".");
+			}
+			this.vehicleTypes.add(vehicleType);
+		}
+		for (int i = readVarInt(this.in); i > 0; i--) {
+			this.linkIds.add(Id.createLinkId(this.in.readUTF()));
+		}
+
+		final Id<Node> origin = Id.createNodeId(this.in.readUTF());
+		final Id<Node> destination = Id.createNodeId(this.in.readUTF());
+		final Commodity commodity = Commodity.valueOf(this.in.readUTF());
+		final TransportMode mode = TransportMode.valueOf(this.in.readUTF());
+		final boolean isContainer = this.in.readBoolean();
+		final ConsolidationUnit result = new ConsolidationUnit(new OD(origin, destination), commodity, mode,
+				isContainer);
+
+		for (int routeCnt = readVarInt(this.in); routeCnt > 0; routeCnt--) {
+			final int vehicleTypeCnt = readVarInt(this.in);
+			final Set<VehicleType> routeVehicleTypes = ConcurrentHashMap.newKeySet(vehicleTypeCnt);
+			for (int i = 0; i < vehicleTypeCnt; i++) {
+				routeVehicleTypes.add(this.vehicleTypes.get(readVarInt(this.in)));
+			}
+			final int linkCnt = readVarInt(this.in);
+			final List<Id<Link>> route = new ArrayList<>(linkCnt);
+			int index = 0;
+			for (int i = 0; i < linkCnt; i++) {
+				index += zigZagDecode(readVarInt(this.in));
+				route.add(this.linkIds.get(index));
+			}
+			result.setRoute(routeVehicleTypes, route);
+		}
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * se.vti.samgods.transportation.consolidation
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.consolidation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.VehicleType;
+
+/**
+ * Streams consolidation units (including their routes) into a compact binary
+ * file. Link and vehicle type ids are replaced by indices into dictionaries
+ * that grow with the file: every unit record is preceded by the dictionary
+ * entries it uses for the first time. Routes are stored as zig-zag/varint
+ * encoded differences of consecutive link indices.
+ *
+ * File layout: MAGIC, VERSION, then per unit UNIT_RECORD followed by the
+ * record, terminated by END_OF_FILE. See ConsolidationUnitsBinaryReader.
+ *
+ * @author GunnarF
+ *
+ */
+public class ConsolidationUnitsBinaryWriter implements AutoCloseable {
+
+	// -------------------- CONSTANTS --------------------
+
+	public static final String FILE_SUFFIX = ".bin";
+
+	static final int MAGIC = 0x53474355; // "SGCU"
+	static final int VERSION = 1;
+
+	static final byte UNIT_RECORD = 1;
+	static final byte END_OF_FILE = 0;
+
+	// -------------------- MEMBERS --------------------
+
+	private final DataOutputStream out;
+
+	private final Map<Id<Link>, Integer> linkId2index = new HashMap<>();
+	private final Map<Id<VehicleType>, Integer> vehicleTypeId2index = new HashMap<>();
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public ConsolidationUnitsBinaryWriter(String fileName) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(VERSION);
+	}
+
+	public static boolean isBinaryFileName(String fileName) {
+		return fileName.toLowerCase().endsWith(FILE_SUFFIX);
+	}
+
+	// -------------------- VARINT ENCODING --------------------
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int zigZagEncode(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public void write(ConsolidationUnit consolidationUnit) throws IOException {
+
+		/*
+		 * Dictionary entries that are new with this unit.
+		 */
+		final List<Id<Link>> newLinkIds = new ArrayList<>();
+		final List<Id<VehicleType>> newVehicleTypeIds = new ArrayList<>();
+		for (Map.Entry<Set<VehicleType>, ? extends List<Id<Link>>> entry : consolidationUnit.vehicleType2route
+				.entrySet()) {
+			for (VehicleType vehicleType : entry.getKey()) {
+				if (!this.vehicleTypeId2index.containsKey(vehicleType.getId())) {
+					this.vehicleTypeId2index.put(vehicleType.getId(), this.vehicleTypeId2index.size());
+					newVehicleTypeIds.add(vehicleType.getId());
+				}
+			}
+			for (Id<Link> linkId : entry.getValue()) {
+				if (!this.linkId2index.containsKey(linkId)) {
+					this.linkId2index.put(linkId, this.linkId2index.size());
+					newLinkIds.add(linkId);
+				}
+			}
+		}
+
+		this.out.writeByte(UNIT_RECORD);
+		writeVarInt(this.out, newVehicleTypeIds.size());
+		for (Id<VehicleType> vehicleTypeId : newVehicleTypeIds) {
+			this.out.writeUTF(vehicleTypeId.toString());
+		}
+		writeVarInt(this.out, newLinkIds.size());
+		for (Id<Link> linkId : newLinkIds) {
+			this.out.writeUTF(linkId.toString());
+		}
+
+		/*
+		 * The unit itself.
+		 */
+		this.out.writeUTF(consolidationUnit.od.origin.toString());
+		this.out.writeUTF(consolidationUnit.od.destination.toString());
+		this.out.writeUTF(consolidationUnit.commodity.toString());
+		this.out.writeUTF(consolidationUnit.samgodsMode.toString());
+		this.out.writeBoolean(consolidationUnit.isContainer);
+
+		writeVarInt(this.out, consolidationUnit.vehicleType2route.size());
+		for (Map.Entry<Set<VehicleType>, ? extends List<Id<Link>>> entry : consolidationUnit.vehicleType2route
+				.entrySet()) {
+			writeVarInt(this.out, entry.getKey().size());
+			for (VehicleType vehicleType : entry.getKey()) {
+				writeVarInt(this.out, this.vehicleTypeId2index.get(vehicleType.getId()));
+			}
+			writeVarInt(this.out, entry.getValue().size());
+			int previousIndex = 0;
+			for (Id<Link> linkId : entry.getValue()) {
+				final int index = this.linkId2index.get(linkId);
+				writeVarInt(this.out, zigZagEncode(index - previousIndex));
+				previousIndex = index;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.out.writeByte(END_OF_FILE);
+		this.out.flush();
+		this.out.close();
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * se.vti.samgods.transportation.consolidation
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.consolidation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.vehicles.Vehicles;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import se.vti.samgods.common.SamgodsConfigGroup;
+import se.vti.samgods.common.SamgodsRunner;
+
+/**
+ * Reads and writes routed consolidation units. The file format follows from the
+ * file name: ConsolidationUnitsBinaryWriter.FILE_SUFFIX selects the binary
+ * format, anything else the (indented) JSON format.
+ *
+ * @author GunnarF
+ *
+ */
+public class ConsolidationUnitsIO {
+
+	private static final Logger log = LogManager.getLogger(ConsolidationUnitsIO.class);
+
+	private ConsolidationUnitsIO() {
+	}
+
+	// -------------------- WRITING --------------------
+
+	private static class JsonWriter implements AutoCloseable {
+
+		private final ObjectMapper mapper = new ObjectMapper();
+		private final FileOutputStream fos;
+		private final JsonGenerator gen;
+
+		private JsonWriter(String fileName) throws IOException {
+			this.mapper.enable(SerializationFeature.INDENT_OUTPUT);
+			this.mapper.configure(SerializationFeature.WRITE_NULL_MAP_VALUES, true);
+			this.fos = new FileOutputStream(new File(fileName));
+			this.gen = this.mapper.getFactory().createGenerator(this.fos);
+		}
+
+		private void write(ConsolidationUnit consolidationUnit) throws IOException {
+			this.mapper.writeValue(this.gen, consolidationUnit);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.gen.flush();
+			this.gen.close();
+			this.fos.flush();
+			this.fos.close();
+		}
+	}
+
+	public static long write(Iterable<ConsolidationUnit> consolidationUnits, String fileName) throws IOException {
+		long writtenCnt = 0;
+		if (ConsolidationUnitsBinaryWriter.isBinaryFileName(fileName)) {
+			try (ConsolidationUnitsBinaryWriter writer = new ConsolidationUnitsBinaryWriter(fileName)) {
+				for (ConsolidationUnit consolidationUnit : consolidationUnits) {
+					writer.write(consolidationUnit);
+					writtenCnt++;
+				}
+			}
+		} else {
+			try (JsonWriter writer = new JsonWriter(fileName)) {
+				for (ConsolidationUnit consolidationUnit : consolidationUnits) {
+					writer.write(consolidationUnit);
+					writtenCnt++;
+				}
+			}
+		}
+		return writtenCnt;
+	}
+
+	// -------------------- READING --------------------
+
+	public static long read(String fileName, Vehicles vehicles, Consumer<ConsolidationUnit> consumer)
+			throws IOException {
+		long readCnt = 0;
+		if (ConsolidationUnitsBinaryWriter.isBinaryFileName(fileName)) {
+			try (ConsolidationUnitsBinaryReader reader = new ConsolidationUnitsBinaryReader(fileName, vehicles)) {
+				ConsolidationUnit consolidationUnit;
+				while ((consolidationUnit = reader.read()) != null) {
+					consumer.accept(consolidationUnit);
+					readCnt++;
+				}
+			}
+		} else {
+			ObjectMapper mapper = new ObjectMapper();
+			SimpleModule module = (new SimpleModule()).addDeserializer(ConsolidationUnit.class,
+					new ConsolidationUnit.Deserializer(vehicles));
+			mapper.registerModule(module);
+			ObjectReader reader = mapper.readerFor(ConsolidationUnit.class);
+			JsonParser parser = mapper.getFactory().createParser(new File(fileName));
+			while (parser.nextToken() != null) {
+				consumer.accept(reader.readValue(parser));
+				readCnt++;
+			}
+			parser.close();
+		}
+		return readCnt;
+	}
+
+	// -------------------- CONVERSION --------------------
+
+	/**
+	 * Streams all consolidation units from one file into the other, in either
+	 * direction between JSON and binary.
+	 */
+	public static long convert(String fromFileName, String toFileName, Vehicles vehicles) throws IOException {
+		try {
+			if (ConsolidationUnitsBinaryWriter.isBinaryFileName(toFileName)) {
+				try (ConsolidationUnitsBinaryWriter writer = new ConsolidationUnitsBinaryWriter(toFileName)) {
+					return read(fromFileName, vehicles, u -> {
+						try {
+							writer.write(u);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				}
+			} else {
+				try (JsonWriter writer = new JsonWriter(toFileName)) {
+					return read(fromFileName, vehicles, u -> {
+						try {
+							writer.write(u);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.out.println("Usage: ConsolidationUnitsIO <config file> <from file> <to file>");
+			System.exit(1);
+		}
+		Config config = ConfigUtils.loadConfig(args[0]);
+		SamgodsConfigGroup samgodsConfig = ConfigUtils.addOrGetModule(config, SamgodsConfigGroup.class);
+		SamgodsRunner runner = new SamgodsRunner(samgodsConfig);
+		runner.loadVehiclesOtherThan();
+		runner.close();
+		final long start_ms = System.currentTimeMillis();
+		final long cnt = convert(args[1], args[2], runner.getVehicles());
+		log.info("Converted " + cnt + " consolidation units from " + args[1] + " to " + args[2] + " in "
+				+ (System.currentTimeMillis() - start_ms) + " ms.");
+	}
+}
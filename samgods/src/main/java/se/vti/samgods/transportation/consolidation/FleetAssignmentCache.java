@@ -0,0 +1,189 @@
+/**
+ * se.vti.samgods.transportation.consolidation
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.consolidation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.vehicles.VehicleType;
+
+import se.vti.samgods.common.NetworkAndFleetData;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+import se.vti.samgods.transportation.costs.RouteCostAggregate;
+
+/**
+ * Keeps the candidate fleet assignments (one per vehicle type) of each
+ * consolidation unit across iterations. A unit whose demand changed by no more
+ * than the (relative) tolerance reuses its converged payloads; its candidates
+ * are then only re-evaluated once for the current demand, without a fixed
+ * point, before the vehicle type choice is redrawn. Otherwise, the candidates are recomputed with the
+ * fixed point warm-started from the previous payloads.
+ *
+ * A tolerance of zero reuses only exactly unchanged demand.
+ *
+ * @author GunnarF
+ *
+ */
+public class FleetAssignmentCache {
+
+	// -------------------- MEMBERS --------------------
+
+	private final double tolerance;
+
+	private final ConcurrentHashMap<ConsolidationUnit, Entry> consolidationUnit2entry = new ConcurrentHashMap<>();
+
+	private final LongAdder reusedCnt = new LongAdder();
+	private final LongAdder recomputedCnt = new LongAdder();
+	private final LongAdder warmStartedCnt = new LongAdder();
+	private final LongAdder recompute_ns = new LongAdder();
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public FleetAssignmentCache(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	// -------------------- ENTRY CLASS --------------------
+
+	static class Entry {
+
+		private final double annualDemand_ton;
+		private final double serviceIntervalActiveProba;
+		private final int serviceInterval_days;
+		private final double scale;
+
+		// concurrency: immutable, in the order of the unit's vehicle types
+		final List<FleetAssignment> assignments;
+		final List<RouteCostAggregate> routeCostAggregates;
+
+		Entry(double annualDemand_ton, double serviceIntervalActiveProba, int serviceInterval_days, double scale,
+				List<FleetAssignment> assignments, List<RouteCostAggregate> routeCostAggregates) {
+			this.annualDemand_ton = annualDemand_ton;
+			this.serviceIntervalActiveProba = serviceIntervalActiveProba;
+			this.serviceInterval_days = serviceInterval_days;
+			this.scale = scale;
+			this.assignments = Collections.unmodifiableList(assignments);
+			this.routeCostAggregates = Collections.unmodifiableList(routeCostAggregates);
+		}
+
+		Double getPayload_ton(VehicleType vehicleType) {
+			for (FleetAssignment assignment : this.assignments) {
+				if (assignment.vehicleType == vehicleType) {
+					return assignment.payload_ton;
+				}
+			}
+			return null;
+		}
+	}
+
+	// -------------------- INTERNALS --------------------
+
+	private boolean withinTolerance(double newValue, double oldValue) {
+		return Math.abs(newValue - oldValue) <= this.tolerance * Math.abs(oldValue);
+	}
+
+	/*
+	 * Route cost aggregates are recreated whenever a route changes, so comparing
+	 * them by reference detects rerouting.
+	 */
+	private boolean sameRoutes(Entry entry, ConsolidationUnit consolidationUnit,
+			NetworkAndFleetData networkAndFleetData) {
+		if (entry.assignments.size() != entry.routeCostAggregates.size()) {
+			return false;
+		}
+		for (int i = 0; i < entry.assignments.size(); i++) {
+			if (consolidationUnit.getRouteCostAggregate(entry.assignments.get(i).vehicleType,
+					networkAndFleetData) != entry.routeCostAggregates.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// -------------------- PACKAGE PRIVATE --------------------
+
+	Entry getPrevious(ConsolidationUnit consolidationUnit) {
+		return this.consolidationUnit2entry.get(consolidationUnit);
+	}
+
+	boolean isReusable(Entry entry, ConsolidationUnit consolidationUnit, double annualDemand_ton,
+			double serviceIntervalActiveProba, int serviceInterval_days, double scale,
+			NetworkAndFleetData networkAndFleetData) {
+		return (entry != null) && (entry.serviceInterval_days == serviceInterval_days) && (entry.scale == scale)
+				&& this.withinTolerance(annualDemand_ton, entry.annualDemand_ton)
+				&& this.withinTolerance(serviceIntervalActiveProba, entry.serviceIntervalActiveProba)
+				&& this.sameRoutes(entry, consolidationUnit, networkAndFleetData);
+	}
+
+	void registerReuse() {
+		this.reusedCnt.increment();
+	}
+
+	void registerRecomputation(ConsolidationUnit consolidationUnit, Entry entry, boolean warmStarted,
+			long duration_ns) {
+		this.consolidationUnit2entry.put(consolidationUnit, entry);
+		this.recomputedCnt.increment();
+		if (warmStarted) {
+			this.warmStartedCnt.increment();
+		}
+		this.recompute_ns.add(duration_ns);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public double getTolerance() {
+		return this.tolerance;
+	}
+
+	public int size() {
+		return this.consolidationUnit2entry.size();
+	}
+
+	/**
+	 * The candidate assignments (one per vehicle type) last computed for this
+	 * consolidation unit, or null if there are none.
+	 */
+	public List<FleetAssignment> getCandidates(ConsolidationUnit consolidationUnit) {
+		final Entry entry = this.consolidationUnit2entry.get(consolidationUnit);
+		return (entry != null ? entry.assignments : null);
+	}
+
+	public void clear() {
+		this.consolidationUnit2entry.clear();
+	}
+
+	/**
+	 * Summarizes reuse since the last call and resets the counters. The time saved
+	 * is estimated from the average recomputation time of this period.
+	 */
+	public String createStatisticsAndReset() {
+		final long reused = this.reusedCnt.sumThenReset();
+		final long recomputed = this.recomputedCnt.sumThenReset();
+		final long warmStarted = this.warmStartedCnt.sumThenReset();
+		final double recompute_ms = 1e-6 * this.recompute_ns.sumThenReset();
+		final double saved_ms = (recomputed > 0 ? reused * recompute_ms / recomputed : 0.0);
+		return "Fleet assignment: recomputed " + recomputed + " of " + (reused + recomputed)
+				+ " consolidation units (" + warmStarted + " warm-started) in " + Math.round(recompute_ms)
+				+ " ms, reused " + reused + " within relative tolerance " + this.tolerance + ", saving approx. "
+				+ Math.round(saved_ms) + " ms.";
+	}
+}
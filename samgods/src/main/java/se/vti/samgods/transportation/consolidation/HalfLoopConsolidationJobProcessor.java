@@ -19,9 +19,11 @@
  */
 package se.vti.samgods.transportation.consolidation;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
@@ -30,9 +32,11 @@ import org.matsim.vehicles.VehicleType;
 
 import se.vti.samgods.calibration.ascs.ASCDataProvider;
 import se.vti.samgods.common.NetworkAndFleetData;
+import se.vti.samgods.common.RandomStreams;
 import se.vti.samgods.common.SamgodsConstants.Commodity;
 import se.vti.samgods.logistics.choice.ChainAndShipmentSize;
 import se.vti.samgods.transportation.costs.DetailedTransportCost;
+import se.vti.samgods.transportation.costs.RouteCostAggregate;
 import se.vti.samgods.transportation.costs.TransportCostCalculator;
 import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
 import se.vti.utils.misc.Units;
@@ -43,13 +47,12 @@ import se.vti.utils.misc.math.LogitChoiceModel;
  * @author GunnarF
  *
  */
-public class HalfLoopConsolidationJobProcessor implements Runnable {
+public class HalfLoopConsolidationJobProcessor {
 
 	// -------------------- CONSTANTS --------------------
 
 	private static final Logger log = LogManager.getLogger(HalfLoopConsolidationJobProcessor.class);
 
-	private final BlockingQueue<ConsolidationJob> jobQueue;
 	private final ConcurrentHashMap<ConsolidationUnit, HalfLoopConsolidationJobProcessor.FleetAssignment> consolidationUnit2fleetAssignment;
 
 	private final TransportCostCalculator transportCostCalculator;
@@ -57,46 +60,45 @@ public class HalfLoopConsolidationJobProcessor implements Runnable {
 	private final Map<Commodity, Double> commodity2scale;
 	private final ASCDataProvider ascDataProvider;
 
+	// may be null, then all fleet assignments are computed from scratch
+	private final FleetAssignmentCache fleetAssignmentCache;
+
+	private final RandomStreams randomStreams;
+
 	private int couldNotComputeFleetAssignmentWarnings = 0;
 
 	// -------------------- CONSTRUCTION --------------------
 
-	public HalfLoopConsolidationJobProcessor(BlockingQueue<ConsolidationJob> jobQueue,
+	/*
+	 * Not thread-safe (through the NetworkAndFleetData), use one instance per
+	 * thread. All instances may share the same result map.
+	 */
+	public HalfLoopConsolidationJobProcessor(
 			ConcurrentHashMap<ConsolidationUnit, HalfLoopConsolidationJobProcessor.FleetAssignment> consolidationUnit2fleetAssignment,
 			NetworkAndFleetData networkAndFleetData, final Map<Commodity, Double> commodity2scale,
-			ASCDataProvider ascDataProvider) {
-		this.jobQueue = jobQueue;
+			ASCDataProvider ascDataProvider, FleetAssignmentCache fleetAssignmentCache, RandomStreams randomStreams) {
 		this.consolidationUnit2fleetAssignment = consolidationUnit2fleetAssignment;
 		this.transportCostCalculator = new TransportCostCalculator();
 		this.networkAndFleetData = networkAndFleetData;
 		this.commodity2scale = commodity2scale;
 		this.ascDataProvider = ascDataProvider;
+		this.fleetAssignmentCache = fleetAssignmentCache;
+		this.randomStreams = randomStreams;
 	}
 
-	// -------------------- IMPLEMENTATION OF Runnable --------------------
-
-	@Override
-	public void run() {
-		try {
-			while (true) {
-				ConsolidationJob job = this.jobQueue.take();
-				if (job == ConsolidationJob.TERMINATE) {
-					break;
-				}
-				FleetAssignment fleetAssignment = this.computeFleetAssignment(job);
-				if (fleetAssignment != null) {
-					this.consolidationUnit2fleetAssignment.put(job.consolidationUnit, fleetAssignment);
-				} else {
-					if (this.couldNotComputeFleetAssignmentWarnings < 10) {
-						log.warn("Could not compute fleet assignment: " + job);
-					}
-					if (++this.couldNotComputeFleetAssignmentWarnings == 10) {
-						log.warn("Suppressing further warnings of this type.");
-					}
-				}
+	// -------------------- IMPLEMENTATION --------------------
+
+	public void process(ConsolidationJob job) {
+		FleetAssignment fleetAssignment = this.computeFleetAssignment(job);
+		if (fleetAssignment != null) {
+			this.consolidationUnit2fleetAssignment.put(job.consolidationUnit, fleetAssignment);
+		} else {
+			if (this.couldNotComputeFleetAssignmentWarnings < 10) {
+				log.warn("Could not compute fleet assignment: " + job);
+			}
+			if (++this.couldNotComputeFleetAssignmentWarnings == 10) {
+				log.warn("Suppressing further warnings of this type.");
 			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
 		}
 	}
 
@@ -116,9 +118,9 @@ public class HalfLoopConsolidationJobProcessor implements Runnable {
 		public final double unitCost_1_tonKm;
 		public final double expectedSnapshotVehicleCnt;
 
-		private FleetAssignment(double annualDemand_ton, VehicleType vehicleType, double vehicleCapacity_ton,
+		public FleetAssignment(double annualDemand_ton, VehicleType vehicleType, double vehicleCapacity_ton,
 				DetailedTransportCost halfLoopCost, double serviceIntervalActiveProba, ConsolidationJob job,
-				NetworkAndFleetData networkAndFleetData) {
+				RouteCostAggregate routeCostAggregate) {
 
 			this.annualDemand_ton = annualDemand_ton;
 
@@ -126,10 +128,7 @@ public class HalfLoopConsolidationJobProcessor implements Runnable {
 			this.loopLength_km = 2.0 * halfLoopCost.length_km;
 			this.minLoopDuration_h = 2.0 * halfLoopCost.duration_h;
 
-			this.domesticLoopLength_km = 2.0 * Units.KM_PER_M
-					* job.consolidationUnit.getRoute(vehicleType).stream()
-							.filter(lid -> networkAndFleetData.getDomesticLinkIds().contains(lid))
-							.mapToDouble(lid -> networkAndFleetData.getLinks().get(lid).getLength()).sum();
+			this.domesticLoopLength_km = 2.0 * Units.KM_PER_M * routeCostAggregate.domesticLength_m;
 
 			final double serviceInterval_h = Units.H_PER_D * job.serviceInterval_days;
 			final double demandPerActiveServiceInterval_ton = (1.0 / serviceIntervalActiveProba)
@@ -165,6 +164,22 @@ public class HalfLoopConsolidationJobProcessor implements Runnable {
 			this.expectedSnapshotVehicleCnt = serviceIntervalActiveProba * n;
 		}
 
+		/*
+		 * Re-evaluates this (converged) assignment for a new demand, starting from
+		 * its payload but without repeating the fixed point. Everything that depends
+		 * on the demand is recomputed, only the payload at which the half-loop cost is
+		 * evaluated is carried over.
+		 */
+		FleetAssignment createWithDemand(double annualDemand_ton, double serviceIntervalActiveProba,
+				ConsolidationJob job, RouteCostAggregate routeCostAggregate,
+				TransportCostCalculator transportCostCalculator) {
+			final SamgodsVehicleAttributes vehicleAttrs = (SamgodsVehicleAttributes) this.vehicleType.getAttributes()
+					.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME);
+			return new FleetAssignment(annualDemand_ton, this.vehicleType, vehicleAttrs.capacity_ton,
+					transportCostCalculator.computeInVehicleCost(routeCostAggregate, this.payload_ton),
+					serviceIntervalActiveProba, job, routeCostAggregate);
+		}
+
 		@Override
 		public String toString() {
 			return "Loop of dimensions " + loopLength_km + "km, " + minLoopDuration_h + "h uses vehicle type "
@@ -174,24 +189,42 @@ public class HalfLoopConsolidationJobProcessor implements Runnable {
 		}
 	}
 
+	// -------------------- UTILITY --------------------
+
+	/**
+	 * Vehicle type choice utility of one candidate assignment: the scaled annual
+	 * half-loop cost of the given demand, plus the vehicle type's ASC.
+	 */
+	public static double computeUtility(FleetAssignment assignment, double annualDemand_ton, double scale,
+			Map<VehicleType, Double> vehicleType2asc) {
+		return (-1.0) * scale * assignment.unitCost_1_tonKm * 0.5 * assignment.loopLength_km * annualDemand_ton
+				+ vehicleType2asc.getOrDefault(assignment.vehicleType, 0.0);
+	}
+
 	// -------------------- INTERNALS --------------------
 
+	/*
+	 * The fixed point starts from a half-full vehicle unless a payload from an
+	 * earlier solution is given.
+	 */
 	private FleetAssignment computeFleetAssignment(double annualDemand_ton, VehicleType vehicleType,
-			ConsolidationJob job, double serviceIntervalActiveProba) {
+			ConsolidationJob job, double serviceIntervalActiveProba, Double initialPayload_ton) {
 		SamgodsVehicleAttributes vehicleAttrs = this.networkAndFleetData.getVehicleType2attributes().get(vehicleType);
+		// Route sums do not depend on the payload, hence each iteration is O(1).
+		final RouteCostAggregate routeCostAggregate = job.consolidationUnit.getRouteCostAggregate(vehicleType,
+				this.networkAndFleetData);
 		FleetAssignment result = new FleetAssignment(annualDemand_ton, vehicleType, vehicleAttrs.capacity_ton,
-				this.transportCostCalculator.computeInVehicleCost(vehicleType, 0.5 * vehicleAttrs.capacity_ton,
-						job.consolidationUnit, networkAndFleetData),
-				serviceIntervalActiveProba, job, this.networkAndFleetData);
+				this.transportCostCalculator.computeInVehicleCost(routeCostAggregate,
+						initialPayload_ton != null ? initialPayload_ton : 0.5 * vehicleAttrs.capacity_ton),
+				serviceIntervalActiveProba, job, routeCostAggregate);
 		boolean done = false;
 		final int maxIts = 100;
 		int its = 0;
 		while (!done) {
 			final FleetAssignment newResult = new FleetAssignment(annualDemand_ton, vehicleType,
 					vehicleAttrs.capacity_ton,
-					this.transportCostCalculator.computeInVehicleCost(vehicleType, result.payload_ton,
-							job.consolidationUnit, networkAndFleetData),
-					serviceIntervalActiveProba, job, this.networkAndFleetData);
+					this.transportCostCalculator.computeInVehicleCost(routeCostAggregate, result.payload_ton),
+					serviceIntervalActiveProba, job, routeCostAggregate);
 			final double dev = Math.abs(newResult.unitCost_1_tonKm - result.unitCost_1_tonKm) / result.unitCost_1_tonKm;
 			if (++its == maxIts) {
 				log.warn("Too many iterations, terminating with relative unit cost deviation " + dev + ".");
@@ -212,28 +245,78 @@ public class HalfLoopConsolidationJobProcessor implements Runnable {
 		{
 			double probaSingleServiceIntervalInactive = 1.0;
 			for (ChainAndShipmentSize choice : job.choices) {
+				// A choice may aggregate several independent instances.
 				final double meanShipmentsPerYear = Math.max(1.0,
-						choice.annualShipment.getTotalAmount_ton() / choice.sizeClass.upperValue_ton);
+						choice.annualShipment.getSingleInstanceAnnualAmount_ton() / choice.sizeClass.upperValue_ton);
 				final double meanShipmentsPerServiceInterval = meanShipmentsPerYear * job.serviceInterval_days / 365.0;
-				probaSingleServiceIntervalInactive *= Math.exp(-meanShipmentsPerServiceInterval);
+				probaSingleServiceIntervalInactive *= Math
+						.exp(-choice.getNumberOfInstances() * meanShipmentsPerServiceInterval);
 			}
 			serviceIntervalActiveProba = 1.0 - probaSingleServiceIntervalInactive;
 		}
 
 		final double scale = this.commodity2scale.get(job.consolidationUnit.commodity);
-		final var assignment2utility = new LinkedHashMap<FleetAssignment, Double>(
-				job.consolidationUnit.vehicleType2route.size());
-		for (var vehicleTypes : job.consolidationUnit.vehicleType2route.keySet()) {
-			for (var vehicleType : vehicleTypes) {
-				var assignment = this.computeFleetAssignment(annualDemand_ton, vehicleType, job,
-						serviceIntervalActiveProba);
-				var utility = (-1.0) * scale * assignment.unitCost_1_tonKm * 0.5 * assignment.loopLength_km
-						* annualDemand_ton
-						+ this.ascDataProvider.getConcurrentVehicleType2ASC().getOrDefault(vehicleType, 0.0);
-				assignment2utility.put(assignment, utility);
+
+		/*
+		 * The candidate assignments depend only on demand, service interval, scale
+		 * and routes. If these did not change (beyond the tolerance), the fixed points
+		 * of the previous iteration are reused: each candidate is evaluated once for
+		 * the current demand at its previous payload, and the choice is redrawn with
+		 * the current ASCs.
+		 */
+		final FleetAssignmentCache.Entry previous = (this.fleetAssignmentCache != null
+				? this.fleetAssignmentCache.getPrevious(job.consolidationUnit)
+				: null);
+		final List<FleetAssignment> candidates;
+		if (this.fleetAssignmentCache != null && this.fleetAssignmentCache.isReusable(previous,
+				job.consolidationUnit, annualDemand_ton, serviceIntervalActiveProba, job.serviceInterval_days, scale,
+				this.networkAndFleetData)) {
+			candidates = new ArrayList<>(previous.assignments.size());
+			for (int i = 0; i < previous.assignments.size(); i++) {
+				candidates.add(previous.assignments.get(i).createWithDemand(annualDemand_ton,
+						serviceIntervalActiveProba, job, previous.routeCostAggregates.get(i),
+						this.transportCostCalculator));
+			}
+			this.fleetAssignmentCache.registerReuse();
+		} else {
+			final long start_ns = System.nanoTime();
+			candidates = new ArrayList<>(job.consolidationUnit.vehicleType2route.size());
+			final List<RouteCostAggregate> routeCostAggregates = new ArrayList<>(candidates.size());
+			/*
+			 * The route map and its key sets iterate in hash order, which changes between
+			 * JVM runs. Sorting by id makes the candidate order, and hence the random
+			 * draw below, reproducible. Reused candidates keep this order.
+			 */
+			final List<VehicleType> vehicleTypes = new ArrayList<>();
+			for (var vehicleTypeSet : job.consolidationUnit.vehicleType2route.keySet()) {
+				vehicleTypes.addAll(vehicleTypeSet);
+			}
+			vehicleTypes.sort(Comparator.comparing(type -> type.getId().toString()));
+			boolean warmStarted = false;
+			for (VehicleType vehicleType : vehicleTypes) {
+				final Double initialPayload_ton = (previous != null ? previous.getPayload_ton(vehicleType) : null);
+				warmStarted |= (initialPayload_ton != null);
+				candidates.add(this.computeFleetAssignment(annualDemand_ton, vehicleType, job,
+						serviceIntervalActiveProba, initialPayload_ton));
+				routeCostAggregates
+						.add(job.consolidationUnit.getRouteCostAggregate(vehicleType, this.networkAndFleetData));
 			}
+			if (this.fleetAssignmentCache != null) {
+				this.fleetAssignmentCache.registerRecomputation(job.consolidationUnit,
+						new FleetAssignmentCache.Entry(annualDemand_ton, serviceIntervalActiveProba,
+								job.serviceInterval_days, scale, candidates, routeCostAggregates),
+						warmStarted, System.nanoTime() - start_ns);
+			}
+		}
+
+		final var assignment2utility = new LinkedHashMap<FleetAssignment, Double>(candidates.size());
+		for (FleetAssignment assignment : candidates) {
+			assignment2utility.put(assignment, computeUtility(assignment, annualDemand_ton, scale,
+					this.ascDataProvider.getConcurrentVehicleType2ASC()));
 		}
-		return new LogitChoiceModel().choose(assignment2utility.keySet().stream().toList(),
-				a -> assignment2utility.get(a));
+		// Stream depends only on the consolidation unit, not on the thread.
+		final LogitChoiceModel choiceModel = new LogitChoiceModel(
+				this.randomStreams.createRandom("fleet assignment", job.consolidationUnit));
+		return choiceModel.choose(assignment2utility.keySet().stream().toList(), a -> assignment2utility.get(a));
 	}
 }
@@ -0,0 +1,91 @@
+/**
+ * se.vti.samgods.transportation.consolidation
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.consolidation;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Immutable route, stored as an array of link Id indices. Behaves like any
+ * other (unmodifiable) List of link Ids, including equals and hashCode.
+ *
+ * @author GunnarF
+ *
+ */
+public final class LinkIndexRoute extends AbstractList<Id<Link>> implements RandomAccess {
+
+	// -------------------- CONSTANTS --------------------
+
+	private final int[] linkIndices;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	private LinkIndexRoute(int[] linkIndices) {
+		this.linkIndices = linkIndices;
+	}
+
+	public static LinkIndexRoute create(List<Id<Link>> linkIds) {
+		if (linkIds instanceof LinkIndexRoute) {
+			return (LinkIndexRoute) linkIds;
+		}
+		final int[] linkIndices = new int[linkIds.size()];
+		int i = 0;
+		for (Id<Link> linkId : linkIds) {
+			linkIndices[i++] = linkId.index();
+		}
+		return new LinkIndexRoute(linkIndices);
+	}
+
+	public static LinkIndexRoute createFromLinks(List<Link> links) {
+		final int[] linkIndices = new int[links.size()];
+		int i = 0;
+		for (Link link : links) {
+			linkIndices[i++] = link.getId().index();
+		}
+		return new LinkIndexRoute(linkIndices);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public int getLinkIndex(int i) {
+		return this.linkIndices[i];
+	}
+
+	public boolean hasEqualLinks(LinkIndexRoute other) {
+		return Arrays.equals(this.linkIndices, other.linkIndices);
+	}
+
+	// -------------------- IMPLEMENTATION OF List --------------------
+
+	@Override
+	public Id<Link> get(int i) {
+		return Id.get(this.linkIndices[i], Link.class);
+	}
+
+	@Override
+	public int size() {
+		return this.linkIndices.length;
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * se.vti.samgods.transportation.costs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.costs;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Per-link unit costs (per ton, i.e. with amount_ton = 1) of one vehicle type,
+ * stored in dense arrays indexed by Id.index(). Links the vehicle type cannot
+ * use have NaN entries. Reading the cost, duration or length of such a link
+ * throws an IllegalArgumentException rather than letting NaN propagate into
+ * routes and costs.
+ *
+ * Filled once by the creator and then only read, hence safe to share between
+ * threads once published through a concurrent map.
+ *
+ * @author GunnarF
+ *
+ */
+public class LinkUnitCostTable {
+
+	// -------------------- MEMBERS --------------------
+
+	private final double[] monetaryCost;
+	private final double[] duration_h;
+	private final double[] length_km;
+	private final boolean[] isFerry;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	public LinkUnitCostTable(int linkIndexCnt) {
+		this.monetaryCost = new double[linkIndexCnt];
+		this.duration_h = new double[linkIndexCnt];
+		this.length_km = new double[linkIndexCnt];
+		this.isFerry = new boolean[linkIndexCnt];
+		Arrays.fill(this.monetaryCost, Double.NaN);
+		Arrays.fill(this.duration_h, Double.NaN);
+		Arrays.fill(this.length_km, Double.NaN);
+	}
+
+	public LinkUnitCostTable set(Id<Link> linkId, double monetaryCost, double duration_h, double length_km,
+			boolean isFerry) {
+		final int index = linkId.index();
+		this.monetaryCost[index] = monetaryCost;
+		this.duration_h[index] = duration_h;
+		this.length_km[index] = length_km;
+		this.isFerry[index] = isFerry;
+		return this;
+	}
+
+	// -------------------- CONTENT ACCESS --------------------
+
+	public int getLinkIndexCnt() {
+		return this.monetaryCost.length;
+	}
+
+	public boolean contains(int linkIndex) {
+		return (linkIndex < this.monetaryCost.length) && !Double.isNaN(this.monetaryCost[linkIndex]);
+	}
+
+	private static double checkedValue(double value, int linkIndex) {
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("No unit cost for link with index " + linkIndex + ".");
+		}
+		return value;
+	}
+
+	public double getMonetaryCost(int linkIndex) {
+		return checkedValue(this.monetaryCost[linkIndex], linkIndex);
+	}
+
+	public double getDuration_h(int linkIndex) {
+		return checkedValue(this.duration_h[linkIndex], linkIndex);
+	}
+
+	public double getLength_km(int linkIndex) {
+		return checkedValue(this.length_km[linkIndex], linkIndex);
+	}
+
+	public boolean isFerry(int linkIndex) {
+		return this.isFerry[linkIndex];
+	}
+
+	public BasicTransportCost getUnitCost(Id<Link> linkId) {
+		final int index = linkId.index();
+		return (this.contains(index)
+				? new BasicTransportCost(1.0, this.monetaryCost[index], this.duration_h[index], this.length_km[index])
+				: null);
+	}
+}
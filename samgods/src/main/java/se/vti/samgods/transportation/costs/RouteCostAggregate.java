@@ -0,0 +1,117 @@
+/**
+ * se.vti.samgods.transportation.costs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.costs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.VehicleType;
+
+import se.vti.samgods.common.NetworkAndFleetData;
+import se.vti.samgods.transportation.consolidation.LinkIndexRoute;
+import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
+
+/**
+ * Payload-independent sums over one route driven by one vehicle type. The
+ * in-vehicle cost of any payload follows from these without walking the route
+ * again.
+ *
+ * Sums are accumulated in route order and in the same sequence as in
+ * TransportCostCalculator, such that costs computed from an aggregate are
+ * identical to costs computed link by link.
+ *
+ * @author GunnarF
+ *
+ */
+public class RouteCostAggregate {
+
+	// -------------------- CONSTANTS --------------------
+
+	public final int linkCnt;
+
+	public final double moveCost;
+	public final double moveDuration_h;
+	public final double length_km;
+
+	public final double ferryDuration_h;
+	public final double ferryLength_km;
+
+	// Plain sum of link lengths, kept in meters to reproduce earlier results.
+	public final double domesticLength_m;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	private RouteCostAggregate(int linkCnt, double moveCost, double moveDuration_h, double length_km,
+			double ferryDuration_h, double ferryLength_km, double domesticLength_m) {
+		this.linkCnt = linkCnt;
+		this.moveCost = moveCost;
+		this.moveDuration_h = moveDuration_h;
+		this.length_km = length_km;
+		this.ferryDuration_h = ferryDuration_h;
+		this.ferryLength_km = ferryLength_km;
+		this.domesticLength_m = domesticLength_m;
+	}
+
+	public static RouteCostAggregate create(SamgodsVehicleAttributes vehicleAttrs, List<Id<Link>> route,
+			LinkUnitCostTable linkUnitCostTable, Set<Id<Link>> domesticLinks, Map<Id<Link>, Link> links) {
+		final LinkIndexRoute indexRoute = (route instanceof LinkIndexRoute) ? (LinkIndexRoute) route : null;
+		double moveCost = 0.0;
+		double moveDuration_h = 0.0;
+		double length_km = 0.0;
+		double ferryDuration_h = 0.0;
+		double ferryLength_km = 0.0;
+		for (int i = 0; i < route.size(); i++) {
+			final int linkIndex = (indexRoute != null ? indexRoute.getLinkIndex(i) : route.get(i).index());
+			final double linkDuration_h = linkUnitCostTable.getDuration_h(linkIndex);
+			final double linkLength_km = linkUnitCostTable.getLength_km(linkIndex);
+			moveDuration_h += linkDuration_h;
+			length_km += linkLength_km;
+			if (linkUnitCostTable.isFerry(linkIndex)) {
+				moveCost += linkDuration_h * vehicleAttrs.onFerryCost_1_h;
+				moveCost += linkLength_km * vehicleAttrs.onFerryCost_1_km;
+				ferryDuration_h += linkDuration_h;
+				ferryLength_km += linkLength_km;
+			} else {
+				moveCost += linkDuration_h * vehicleAttrs.cost_1_h;
+				moveCost += linkLength_km * vehicleAttrs.cost_1_km;
+			}
+		}
+		final double domesticLength_m = route.stream().filter(lid -> domesticLinks.contains(lid))
+				.mapToDouble(lid -> links.get(lid).getLength()).sum();
+		return new RouteCostAggregate(route.size(), moveCost, moveDuration_h, length_km, ferryDuration_h,
+				ferryLength_km, domesticLength_m);
+	}
+
+	public static RouteCostAggregate create(VehicleType vehicleType, List<Id<Link>> route,
+			NetworkAndFleetData networkAndFleetData) {
+		return create(networkAndFleetData.getVehicleType2attributes().get(vehicleType), route,
+				networkAndFleetData.getLinkUnitCostTable(vehicleType), networkAndFleetData.getDomesticLinkIds(),
+				networkAndFleetData.getLinks());
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	public double getFerryLengthShare() {
+		return (this.length_km > 0.0 ? this.ferryLength_km / this.length_km : 0.0);
+	}
+}
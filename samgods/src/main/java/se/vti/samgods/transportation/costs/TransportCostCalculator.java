@@ -60,11 +60,19 @@ public class TransportCostCalculator {
 		return builder.build();
 	}
 
+	/*
+	 * Same result as the link-by-link computation above, in constant time.
+	 */
+	public DetailedTransportCost computeInVehicleCost(RouteCostAggregate routeCostAggregate, double payload_ton) {
+		return new DetailedTransportCost.Builder().setToAllZeros().addAmount_ton(payload_ton)
+				.addMoveDuration_h(routeCostAggregate.moveDuration_h).addDistance_km(routeCostAggregate.length_km)
+				.addMoveCost(routeCostAggregate.moveCost).build();
+	}
+
 	public DetailedTransportCost computeInVehicleCost(VehicleType vehicleType, double payload_ton,
 			ConsolidationUnit consolidationUnit, NetworkAndFleetData networkAndFleetData) {
-		return this.computeInVehicleCost(vehicleType, networkAndFleetData.getVehicleType2attributes().get(vehicleType),
-				payload_ton, consolidationUnit, networkAndFleetData.getLinkId2unitCost(vehicleType),
-				networkAndFleetData.getFerryLinkIds());
+		return this.computeInVehicleCost(consolidationUnit.getRouteCostAggregate(vehicleType, networkAndFleetData),
+				payload_ton);
 	}
 
 	public DetailedTransportCost computeLoadUnloadTransferCost() {
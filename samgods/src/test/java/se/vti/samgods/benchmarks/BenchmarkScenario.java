@@ -0,0 +1,151 @@
+/**
+ * se.vti.samgods.benchmarks
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.matsim.vehicles.Vehicles;
+
+import se.vti.samgods.common.NetworkAndFleetDataProvider;
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConfigGroup;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsRunner;
+import se.vti.samgods.logistics.AnnualShipment;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportDemandAndChains;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.logistics.choice.ChainAndShipmentSize;
+import se.vti.samgods.logistics.choice.ChoiceJob;
+import se.vti.samgods.models.SyntheticScenario;
+import se.vti.samgods.transportation.consolidation.ConsolidationJob;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+
+/**
+ * Routed synthetic scenario shared by the benchmarks of this package. Its size
+ * is controlled by the grid size and the number of ODs per commodity, see
+ * SyntheticScenario.
+ *
+ * Initializes the NetworkAndFleetDataProvider singleton, hence only one
+ * instance should be in use at a time.
+ *
+ * @author GunnarF
+ *
+ */
+class BenchmarkScenario {
+
+	// -------------------- CONSTANTS --------------------
+
+	static final Commodity[] COMMODITIES = new Commodity[] { Commodity.FOOD, Commodity.WOOD, Commodity.METAL,
+			Commodity.CHEMICALS };
+
+	static final int SERVICE_INTERVAL_DAYS = 7;
+
+	static final long SEED = 4711;
+
+	final SyntheticScenario scenario;
+
+	final Vehicles vehicles;
+
+	final TransportDemandAndChains demand;
+
+	final NetworkAndFleetDataProvider networkAndFleetDataProvider;
+
+	// Distinct and routed, in the order of the demand.
+	final List<ConsolidationUnit> consolidationUnits;
+
+	// -------------------- CONSTRUCTION --------------------
+
+	BenchmarkScenario(int gridSize, int odCntPerCommodity) {
+		this.scenario = new SyntheticScenario().setGridSize(gridSize).setOdCntPerCommodity(odCntPerCommodity)
+				.setCommodities(COMMODITIES).setSeed(SEED);
+
+		final SamgodsConfigGroup config = new SamgodsConfigGroup();
+		try (SamgodsRunner runner = this.scenario.configure(new SamgodsRunner(config)).setRandomSeed(SEED)) {
+			runner.createOrLoadConsolidationUnits();
+			this.vehicles = runner.getVehicles();
+			this.demand = runner.getTransportDemand();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.networkAndFleetDataProvider = NetworkAndFleetDataProvider.getProviderInstance();
+
+		final Set<ConsolidationUnit> units = new LinkedHashSet<>();
+		for (Map<OD, List<TransportChain>> od2chains : this.demand.getCommodity2od2transportChains().values()) {
+			for (List<TransportChain> chains : od2chains.values()) {
+				for (TransportChain chain : chains) {
+					for (TransportEpisode episode : chain.getEpisodes()) {
+						units.addAll(episode.getConsolidationUnits());
+					}
+				}
+			}
+		}
+		this.consolidationUnits = new ArrayList<>(units);
+	}
+
+	// -------------------- IMPLEMENTATION --------------------
+
+	Map<Commodity, Double> createCommodity2scale() {
+		final Map<Commodity, Double> result = new LinkedHashMap<>();
+		Arrays.stream(Commodity.values()).forEach(c -> result.put(c, 1.0));
+		return result;
+	}
+
+	// As in SamgodsRunner.run().
+	List<ChoiceJob> createChoiceJobs() {
+		final List<ChoiceJob> result = new ArrayList<>();
+		for (Commodity commodity : COMMODITIES) {
+			for (Map.Entry<OD, List<AnnualShipment>> entry : this.demand.getCommodity2od2annualShipments()
+					.get(commodity).entrySet()) {
+				final List<TransportChain> chains = this.demand.getCommodity2od2transportChains().get(commodity)
+						.get(entry.getKey());
+				if (chains != null && chains.size() > 0) {
+					result.add(new ChoiceJob(commodity, entry.getKey(), chains, entry.getValue()));
+				}
+			}
+		}
+		return result;
+	}
+
+	// As in SamgodsRunner.createConsolidationJobs(..), without the length filter.
+	List<ConsolidationJob> createConsolidationJobs(List<ChainAndShipmentSize> choices) {
+		final Map<ConsolidationUnit, List<ChainAndShipmentSize>> consolidationUnit2choices = new LinkedHashMap<>();
+		for (ChainAndShipmentSize choice : choices) {
+			for (TransportEpisode episode : choice.transportChain.getEpisodes()) {
+				for (ConsolidationUnit consolidationUnit : episode.getConsolidationUnits()) {
+					consolidationUnit2choices.computeIfAbsent(consolidationUnit, u -> new LinkedList<>()).add(choice);
+				}
+			}
+		}
+		final List<ConsolidationJob> result = new ArrayList<>(consolidationUnit2choices.size());
+		for (Map.Entry<ConsolidationUnit, List<ChainAndShipmentSize>> entry : consolidationUnit2choices.entrySet()) {
+			result.add(new ConsolidationJob(entry.getKey(), entry.getValue(), SERVICE_INTERVAL_DAYS));
+		}
+		return result;
+	}
+}
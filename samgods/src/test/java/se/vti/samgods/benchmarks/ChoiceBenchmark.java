@@ -0,0 +1,124 @@
+/**
+ * se.vti.samgods.benchmarks
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.vti.samgods.calibration.ascs.ASCDataProvider;
+import se.vti.samgods.common.RandomStreams;
+import se.vti.samgods.logistics.choice.ChoiceJob;
+import se.vti.samgods.logistics.choice.ChoiceJobProcessor;
+import se.vti.samgods.logistics.choice.LogisticChoiceDataProvider;
+import se.vti.samgods.logistics.choice.MonetaryChainAndShipmentSizeUtilityFunction;
+import se.vti.samgods.logistics.costs.NonTransportCostModel_v1_22;
+
+/**
+ * Simulates the chain and shipment size choices of all ODs of a synthetic
+ * scenario on one thread. "cachedCosts" reuses the chain unit costs of earlier
+ * invocations, as in all but the first iteration of SamgodsRunner.
+ * "coldCosts" starts from an empty cost cache.
+ *
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=se.vti.samgods.benchmarks.ChoiceBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author GunnarF
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChoiceBenchmark {
+
+	// -------------------- STATE --------------------
+
+	@Param({ "20" })
+	int gridSize;
+
+	@Param({ "200" })
+	int odCntPerCommodity;
+
+	BenchmarkScenario scenario;
+
+	List<ChoiceJob> jobs;
+
+	ChoiceJobProcessor cachedCostsProcessor;
+
+	@Setup
+	public void setup() {
+		this.scenario = new BenchmarkScenario(this.gridSize, this.odCntPerCommodity);
+		this.jobs = this.scenario.createChoiceJobs();
+		this.cachedCostsProcessor = this.createProcessor();
+	}
+
+	ChoiceJobProcessor createProcessor() {
+		final LogisticChoiceDataProvider choiceDataProvider = new LogisticChoiceDataProvider(
+				this.scenario.networkAndFleetDataProvider, new RandomStreams(BenchmarkScenario.SEED));
+		return new ChoiceJobProcessor(choiceDataProvider.createLogisticChoiceData(), new NonTransportCostModel_v1_22(),
+				new MonetaryChainAndShipmentSizeUtilityFunction(this.scenario.createCommodity2scale(),
+						new ASCDataProvider().getConcurrentRailCommodity2ASC()),
+				new RandomStreams(BenchmarkScenario.SEED));
+	}
+
+	static long processAll(ChoiceJobProcessor processor, List<ChoiceJob> jobs) {
+		long choiceCnt = 0;
+		for (ChoiceJob job : jobs) {
+			choiceCnt += processor.process(job).size();
+		}
+		return choiceCnt;
+	}
+
+	// -------------------- BENCHMARKS --------------------
+
+	@Benchmark
+	public long cachedCosts() {
+		return processAll(this.cachedCostsProcessor, this.jobs);
+	}
+
+	@Benchmark
+	public long coldCosts() {
+		return processAll(this.createProcessor(), this.jobs);
+	}
+
+	// -------------------- MAIN-FUNCTION --------------------
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ChoiceBenchmark.class.getSimpleName()).build()).run();
+	}
+}
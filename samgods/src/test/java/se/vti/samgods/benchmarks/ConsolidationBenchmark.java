@@ -0,0 +1,133 @@
+/**
+ * se.vti.samgods.benchmarks
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.vti.samgods.calibration.ascs.ASCDataProvider;
+import se.vti.samgods.common.NetworkAndFleetData;
+import se.vti.samgods.common.RandomStreams;
+import se.vti.samgods.logistics.choice.ChoiceJobProcessor;
+import se.vti.samgods.transportation.consolidation.ConsolidationJob;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.consolidation.FleetAssignmentCache;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+
+/**
+ * Computes the fleet assignments of all consolidation units of a synthetic
+ * scenario on one thread, given the choices of one choice simulation.
+ * "fixedPoint" solves the half-loop fixed point of every unit from scratch.
+ * "reusedCandidates" finds all units unchanged in a FleetAssignmentCache, as
+ * for stable demand in later iterations, and only redraws the vehicle types.
+ *
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=se.vti.samgods.benchmarks.ConsolidationBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author GunnarF
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsolidationBenchmark {
+
+	// -------------------- STATE --------------------
+
+	@Param({ "20" })
+	int gridSize;
+
+	@Param({ "200" })
+	int odCntPerCommodity;
+
+	BenchmarkScenario scenario;
+
+	List<ConsolidationJob> jobs;
+
+	NetworkAndFleetData networkAndFleetData;
+
+	ASCDataProvider ascDataProvider;
+
+	FleetAssignmentCache warmCache;
+
+	@Setup
+	public void setup() {
+		this.scenario = new BenchmarkScenario(this.gridSize, this.odCntPerCommodity);
+		final ChoiceBenchmark choiceBenchmark = new ChoiceBenchmark();
+		choiceBenchmark.scenario = this.scenario;
+		final ChoiceJobProcessor choiceProcessor = choiceBenchmark.createProcessor();
+		this.jobs = this.scenario.createConsolidationJobs(this.scenario.createChoiceJobs().stream()
+				.flatMap(j -> choiceProcessor.process(j).stream()).toList());
+		this.networkAndFleetData = this.scenario.networkAndFleetDataProvider.createDataInstance();
+		this.ascDataProvider = new ASCDataProvider();
+		this.warmCache = new FleetAssignmentCache(0.0);
+		this.processAll(this.warmCache);
+	}
+
+	int processAll(FleetAssignmentCache cache) {
+		final ConcurrentHashMap<ConsolidationUnit, FleetAssignment> consolidationUnit2assignment = new ConcurrentHashMap<>();
+		final HalfLoopConsolidationJobProcessor processor = new HalfLoopConsolidationJobProcessor(
+				consolidationUnit2assignment, this.networkAndFleetData, this.scenario.createCommodity2scale(),
+				this.ascDataProvider, cache, new RandomStreams(BenchmarkScenario.SEED));
+		for (ConsolidationJob job : this.jobs) {
+			processor.process(job);
+		}
+		return consolidationUnit2assignment.size();
+	}
+
+	// -------------------- BENCHMARKS --------------------
+
+	@Benchmark
+	public int fixedPoint() {
+		return this.processAll(new FleetAssignmentCache(0.0));
+	}
+
+	@Benchmark
+	public int reusedCandidates() {
+		return this.processAll(this.warmCache);
+	}
+
+	// -------------------- MAIN-FUNCTION --------------------
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ConsolidationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
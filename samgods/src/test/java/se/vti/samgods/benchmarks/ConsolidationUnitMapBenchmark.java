@@ -0,0 +1,207 @@
+/**
+ * se.vti.samgods.benchmarks
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+
+/**
+ * Replays the map-heavy consolidation unit phases of SamgodsRunner: matching
+ * unrouted units against their routed representatives, grouping choices by
+ * consolidation unit and collecting fleet assignments in a concurrent map. The
+ * "legacy" variants wrap every key such that hashCode/equals allocate as
+ * before, for comparison.
+ *
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=se.vti.samgods.benchmarks.ConsolidationUnitMapBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author GunnarF
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsolidationUnitMapBenchmark {
+
+	// -------------------- LEGACY KEY --------------------
+
+	/*
+	 * Reproduces the former, list-based ConsolidationUnit.hashCode/equals.
+	 */
+	static class LegacyKey {
+
+		final ConsolidationUnit unit;
+
+		LegacyKey(ConsolidationUnit unit) {
+			this.unit = unit;
+		}
+
+		private List<Object> createAsList() {
+			return Arrays.asList(this.unit.od, this.unit.commodity, this.unit.samgodsMode, this.unit.isContainer);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.createAsList().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return (other instanceof LegacyKey) && this.createAsList().equals(((LegacyKey) other).createAsList());
+		}
+	}
+
+	// -------------------- STATE --------------------
+
+	@Param({ "100000" })
+	int unitCnt;
+
+	List<ConsolidationUnit> representatives;
+
+	// Equal but not identical to the representatives, as in the runner.
+	List<ConsolidationUnit> lookups;
+
+	List<LegacyKey> legacyRepresentatives;
+	List<LegacyKey> legacyLookups;
+
+	@Setup
+	public void setup() {
+		final Random rnd = new Random(4711);
+		final int nodeCnt = (int) Math.sqrt(this.unitCnt) + 1;
+		this.representatives = new ArrayList<>(this.unitCnt);
+		for (int i = 0; i < this.unitCnt; i++) {
+			final Commodity commodity = Commodity.values()[rnd.nextInt(Commodity.values().length)];
+			final TransportChain chain = new TransportChain(commodity, rnd.nextBoolean());
+			final TransportEpisode episode = new TransportEpisode(
+					rnd.nextBoolean() ? TransportMode.Road : TransportMode.Rail);
+			episode.addSegmentOD(new OD(Id.createNodeId("n" + rnd.nextInt(nodeCnt)),
+					Id.createNodeId("n" + rnd.nextInt(nodeCnt))));
+			chain.addEpisode(episode);
+			this.representatives.addAll(ConsolidationUnit.createUnrouted(episode));
+		}
+		this.lookups = this.representatives.stream().map(u -> u.cloneWithoutRoutes()).toList();
+		this.legacyRepresentatives = this.representatives.stream().map(u -> new LegacyKey(u)).toList();
+		this.legacyLookups = this.lookups.stream().map(u -> new LegacyKey(u)).toList();
+	}
+
+	// -------------------- PHASES --------------------
+
+	static <K> long patternMatching(List<K> representatives, List<K> lookups) {
+		final Map<K, K> pattern2representative = new LinkedHashMap<>();
+		for (K representative : representatives) {
+			pattern2representative.put(representative, representative);
+		}
+		long hits = 0;
+		for (K lookup : lookups) {
+			if (pattern2representative.get(lookup) != null) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	static <K> int choiceGrouping(List<K> lookups) {
+		final Map<K, List<Integer>> unit2choices = new LinkedHashMap<>();
+		for (int i = 0; i < lookups.size(); i++) {
+			unit2choices.computeIfAbsent(lookups.get(i), u -> new LinkedList<>()).add(i);
+		}
+		return unit2choices.size();
+	}
+
+	static <K> int assignmentCollection(List<K> representatives, List<K> lookups) {
+		final ConcurrentHashMap<K, Integer> unit2assignment = new ConcurrentHashMap<>();
+		representatives.parallelStream().forEach(u -> unit2assignment.put(u, 1));
+		int sum = 0;
+		for (K lookup : lookups) {
+			sum += unit2assignment.getOrDefault(lookup, 0);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long patternMatching() {
+		return patternMatching(this.representatives, this.lookups);
+	}
+
+	@Benchmark
+	public long patternMatchingLegacy() {
+		return patternMatching(this.legacyRepresentatives, this.legacyLookups);
+	}
+
+	@Benchmark
+	public int choiceGrouping() {
+		return choiceGrouping(this.lookups);
+	}
+
+	@Benchmark
+	public int choiceGroupingLegacy() {
+		return choiceGrouping(this.legacyLookups);
+	}
+
+	@Benchmark
+	public int assignmentCollection() {
+		return assignmentCollection(this.representatives, this.lookups);
+	}
+
+	@Benchmark
+	public int assignmentCollectionLegacy() {
+		return assignmentCollection(this.legacyRepresentatives, this.legacyLookups);
+	}
+
+	// -------------------- MAIN-FUNCTION --------------------
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ConsolidationUnitMapBenchmark.class.getSimpleName()).build()).run();
+	}
+}
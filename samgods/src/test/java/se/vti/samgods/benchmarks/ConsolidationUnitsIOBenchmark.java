@@ -0,0 +1,112 @@
+/**
+ * se.vti.samgods.benchmarks
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.vti.samgods.transportation.consolidation.ConsolidationUnitsBinaryWriter;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnitsIO;
+
+/**
+ * Writes and reads the routed consolidation units of a synthetic scenario,
+ * as JSON or in the binary format.
+ *
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=se.vti.samgods.benchmarks.ConsolidationUnitsIOBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author GunnarF
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsolidationUnitsIOBenchmark {
+
+	// -------------------- STATE --------------------
+
+	@Param({ "20" })
+	int gridSize;
+
+	@Param({ "200" })
+	int odCntPerCommodity;
+
+	@Param({ ".json", ConsolidationUnitsBinaryWriter.FILE_SUFFIX })
+	String fileSuffix;
+
+	BenchmarkScenario scenario;
+
+	File writeFile;
+	File readFile;
+
+	@Setup
+	public void setup() throws IOException {
+		this.scenario = new BenchmarkScenario(this.gridSize, this.odCntPerCommodity);
+		this.writeFile = File.createTempFile("consolidationUnitsWrite", this.fileSuffix);
+		this.readFile = File.createTempFile("consolidationUnitsRead", this.fileSuffix);
+		ConsolidationUnitsIO.write(this.scenario.consolidationUnits, this.readFile.getPath());
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.writeFile.delete();
+		this.readFile.delete();
+	}
+
+	// -------------------- BENCHMARKS --------------------
+
+	@Benchmark
+	public long write() throws IOException {
+		return ConsolidationUnitsIO.write(this.scenario.consolidationUnits, this.writeFile.getPath());
+	}
+
+	@Benchmark
+	public long read() throws IOException {
+		return ConsolidationUnitsIO.read(this.readFile.getPath(), this.scenario.vehicles, u -> {
+		});
+	}
+
+	// -------------------- MAIN-FUNCTION --------------------
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ConsolidationUnitsIOBenchmark.class.getSimpleName()).build()).run();
+	}
+}
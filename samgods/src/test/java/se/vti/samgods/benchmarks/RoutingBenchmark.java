@@ -0,0 +1,104 @@
+/**
+ * se.vti.samgods.benchmarks
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.vti.samgods.network.Router;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+
+/**
+ * Routes all distinct consolidation units of a synthetic scenario on one
+ * thread, point-to-point or by shortest path trees. The units are re-created
+ * without routes before every invocation. Unimodal networks are built during
+ * setup and hence not measured.
+ *
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=se.vti.samgods.benchmarks.RoutingBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author GunnarF
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+
+	// -------------------- STATE --------------------
+
+	@Param({ "20" })
+	int gridSize;
+
+	@Param({ "200" })
+	int odCntPerCommodity;
+
+	BenchmarkScenario scenario;
+
+	@Param({ "false", "true" })
+	boolean treeRouting;
+
+	List<ConsolidationUnit> unroutedUnits;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.scenario = new BenchmarkScenario(this.gridSize, this.odCntPerCommodity);
+	}
+
+	@Setup(Level.Invocation)
+	public void createUnroutedUnits() {
+		this.unroutedUnits = this.scenario.consolidationUnits.stream().map(u -> u.cloneWithoutRoutes()).toList();
+	}
+
+	// -------------------- BENCHMARKS --------------------
+
+	@Benchmark
+	public long route() {
+		new Router(this.scenario.networkAndFleetDataProvider).setMaxThreads(1).setTreeRouting(this.treeRouting)
+				.route(this.unroutedUnits);
+		return this.unroutedUnits.stream().mapToLong(u -> u.vehicleType2route.size()).sum();
+	}
+
+	// -------------------- MAIN-FUNCTION --------------------
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RoutingBenchmark.class.getSimpleName()).build()).run();
+	}
+}
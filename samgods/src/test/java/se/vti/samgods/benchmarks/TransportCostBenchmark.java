@@ -0,0 +1,148 @@
+/**
+ * se.vti.samgods.benchmarks
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.VehicleType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import se.vti.samgods.common.NetworkAndFleetData;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.costs.BasicTransportCost;
+import se.vti.samgods.transportation.costs.LinkUnitCostTable;
+import se.vti.samgods.transportation.costs.TransportCostCalculator;
+
+/**
+ * Computes the in-vehicle costs of all routed (consolidation unit, vehicle
+ * type) pairs of a synthetic scenario, link by link from a link cost map and
+ * in constant time from the routes' cost aggregates.
+ *
+ * Run with: mvn test-compile exec:java
+ * -Dexec.mainClass=se.vti.samgods.benchmarks.TransportCostBenchmark
+ * -Dexec.classpathScope=test
+ *
+ * @author GunnarF
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportCostBenchmark {
+
+	// -------------------- STATE --------------------
+
+	@Param({ "20" })
+	int gridSize;
+
+	@Param({ "200" })
+	int odCntPerCommodity;
+
+	static final double PAYLOAD_TON = 10.0;
+
+	BenchmarkScenario scenario;
+
+	NetworkAndFleetData networkAndFleetData;
+
+	final TransportCostCalculator calculator = new TransportCostCalculator();
+
+	final List<ConsolidationUnit> units = new ArrayList<>();
+	final List<VehicleType> vehicleTypes = new ArrayList<>();
+
+	final Map<VehicleType, Map<Id<Link>, BasicTransportCost>> vehicleType2link2unitCost = new HashMap<>();
+
+	Set<Id<Link>> ferryLinkIds;
+
+	@Setup
+	public void setup() {
+		this.scenario = new BenchmarkScenario(this.gridSize, this.odCntPerCommodity);
+		this.networkAndFleetData = this.scenario.networkAndFleetDataProvider.createDataInstance();
+		this.ferryLinkIds = this.networkAndFleetData.getFerryLinkIds();
+		for (ConsolidationUnit unit : this.scenario.consolidationUnits) {
+			for (Set<VehicleType> vehicleTypes : unit.vehicleType2route.keySet()) {
+				for (VehicleType vehicleType : vehicleTypes) {
+					this.units.add(unit);
+					this.vehicleTypes.add(vehicleType);
+					final LinkUnitCostTable table = this.networkAndFleetData.getLinkUnitCostTable(vehicleType);
+					final Map<Id<Link>, BasicTransportCost> link2unitCost = this.vehicleType2link2unitCost
+							.computeIfAbsent(vehicleType, t -> new HashMap<>());
+					for (Id<Link> linkId : unit.getRoute(vehicleType)) {
+						link2unitCost.computeIfAbsent(linkId, id -> table.getUnitCost(id));
+					}
+					// Created outside of the measurement.
+					unit.getRouteCostAggregate(vehicleType, this.networkAndFleetData);
+				}
+			}
+		}
+	}
+
+	// -------------------- BENCHMARKS --------------------
+
+	@Benchmark
+	public double linkByLink() {
+		double sum = 0.0;
+		for (int i = 0; i < this.units.size(); i++) {
+			final VehicleType vehicleType = this.vehicleTypes.get(i);
+			sum += this.calculator.computeInVehicleCost(vehicleType,
+					this.networkAndFleetData.getVehicleType2attributes().get(vehicleType), PAYLOAD_TON,
+					this.units.get(i), this.vehicleType2link2unitCost.get(vehicleType), this.ferryLinkIds).monetaryCost;
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double routeCostAggregate() {
+		double sum = 0.0;
+		for (int i = 0; i < this.units.size(); i++) {
+			sum += this.calculator.computeInVehicleCost(this.vehicleTypes.get(i), PAYLOAD_TON, this.units.get(i),
+					this.networkAndFleetData).monetaryCost;
+		}
+		return sum;
+	}
+
+	// -------------------- MAIN-FUNCTION --------------------
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TransportCostBenchmark.class.getSimpleName()).build()).run();
+	}
+}
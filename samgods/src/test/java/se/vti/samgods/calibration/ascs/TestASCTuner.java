@@ -0,0 +1,126 @@
+/**
+ * se.vti.samgods.calibration.ascs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.calibration.ascs;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestASCTuner {
+
+	private static final List<String> alternatives = Arrays.asList("a", "b", "c", "d");
+	private static final double[] targets = { 10.0, 3.0, 0.5, 25.0 };
+	private static final double[] baseUtilities = { 1.0, -0.5, 0.3, 0.0 };
+
+	// Logit model with a weak response to the ASCs, converging slowly at fixed step.
+	private static final double responsiveness = 0.3;
+
+	private static double realized(ASCTuner<String> tuner, String alternative) {
+		double denominator = 0.0;
+		for (int i = 0; i < alternatives.size(); i++) {
+			denominator += Math.exp(responsiveness
+					* (baseUtilities[i] + tuner.getAlternative2asc().get(alternatives.get(i))));
+		}
+		final int i = alternatives.indexOf(alternative);
+		return Arrays.stream(targets).sum() * Math.exp(
+				responsiveness * (baseUtilities[i] + tuner.getAlternative2asc().get(alternative))) / denominator;
+	}
+
+	private static int iterationsToConverge(int andersonDepth, double tolerance) {
+		final ASCTuner<String> tuner = new ASCTuner<String>(null, 1.0).setAndersonDepth(andersonDepth)
+				.setMaxStepSize(5.0);
+		for (int i = 0; i < alternatives.size(); i++) {
+			tuner.setTarget(alternatives.get(i), targets[i]);
+		}
+		for (int iteration = 1; iteration <= 1000; iteration++) {
+			tuner.update(a -> realized(tuner, a));
+			if (tuner.getLastMaxAbsResidual() < tolerance) {
+				for (int i = 0; i < alternatives.size(); i++) {
+					Assert.isTrue(Math.abs(realized(tuner, alternatives.get(i)) / targets[i] - 1.0) < 10 * tolerance);
+				}
+				Assert.equals(iteration, tuner.getUpdateCnt());
+				return iteration;
+			}
+		}
+		return Integer.MAX_VALUE;
+	}
+
+	@Test
+	void testAndersonConvergesFaster() {
+		final double tolerance = 1e-8;
+		final int fixedIterations = iterationsToConverge(0, tolerance);
+		final int secantIterations = iterationsToConverge(1, tolerance);
+		final int andersonIterations = iterationsToConverge(3, tolerance);
+		Assert.isTrue(fixedIterations < Integer.MAX_VALUE);
+		Assert.isTrue(secantIterations < fixedIterations);
+		Assert.isTrue(andersonIterations < fixedIterations);
+	}
+
+	@Test
+	void testRestoredHistorySurvivesNestedUpdates() {
+		final ASCTuner<String> reference = new ASCTuner<String>(null, 1.0).setAndersonDepth(3);
+		final ASCTuner<String> nested = new ASCTuner<String>(null, 1.0).setAndersonDepth(3);
+		for (int i = 0; i < alternatives.size(); i++) {
+			reference.setTarget(alternatives.get(i), targets[i]);
+			nested.setTarget(alternatives.get(i), targets[i]);
+		}
+		for (int iteration = 0; iteration < 3; iteration++) {
+			reference.update(a -> realized(reference, a));
+			nested.update(a -> realized(nested, a));
+		}
+
+		// Nested updates against some other function, then back to the outer state.
+		final Map<String, Double> outerASCs = new LinkedHashMap<>(nested.getAlternative2asc());
+		final ASCTuner.History outerHistory = nested.saveHistory();
+		nested.resetHistory();
+		for (int iteration = 0; iteration < 5; iteration++) {
+			nested.update(a -> 2.0 * realized(nested, a));
+		}
+		nested.getAlternative2asc().putAll(outerASCs);
+		nested.restoreHistory(outerHistory);
+
+		reference.update(a -> realized(reference, a));
+		nested.update(a -> realized(nested, a));
+		Assert.equals("anderson", nested.getLastUpdateType());
+		for (String alternative : alternatives) {
+			Assert.equals(reference.getAlternative2asc().get(alternative), nested.getAlternative2asc().get(alternative));
+		}
+	}
+
+	@Test
+	void testMaxStepSize() {
+		final ASCTuner<String> tuner = new ASCTuner<String>(null, 1.0).setMaxStepSize(0.1);
+		tuner.setTarget("a", 1000.0);
+		tuner.setTarget("b", 1.0);
+		tuner.update(a -> 1.0);
+		Assert.isTrue(Math.abs(tuner.getLastMaxAbsStep() - 0.1) < 1e-12);
+		Assert.isTrue(Math.abs(tuner.getAlternative2asc().get("a") - 0.1) < 1e-12);
+		Assert.equals("fixed", tuner.getLastUpdateType());
+	}
+}
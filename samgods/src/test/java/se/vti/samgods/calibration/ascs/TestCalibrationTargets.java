@@ -0,0 +1,55 @@
+/**
+ * se.vti.samgods.calibration.ascs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.calibration.ascs;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+
+import se.vti.samgods.calibration.ascs.TransportWorkAscCalibrator.VehicleGroup;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestCalibrationTargets {
+
+	@Test
+	void testFileRoundTrip() throws IOException {
+		final CalibrationTargets targets = CalibrationTargets.createDefault();
+		final File file = File.createTempFile("calibrationTargets", ".json");
+		file.deleteOnExit();
+		targets.writeToFile(file.getPath());
+
+		final CalibrationTargets reread = CalibrationTargets.createFromFile(file.getPath());
+		Assert.equals(targets.getVehicleTypeName2group(), reread.getVehicleTypeName2group());
+		Assert.equals(targets.getVehicleGroup2target_GTonKm(), reread.getVehicleGroup2target_GTonKm());
+		Assert.equals(targets.getRailCommodity2target_GTonKm(), reread.getRailCommodity2target_GTonKm());
+
+		Assert.equals(VehicleGroup.HGV40_X, reread.getVehicleTypeName2group().get("HGV40_CONTAINER"));
+		Assert.equals(39.1, reread.getVehicleGroup2target_GTonKm().get(VehicleGroup.HGV60_X));
+		Assert.equals(4.345, reread.getRailCommodity2target_GTonKm().get(Commodity.WOOD));
+		Assert.isTrue(!reread.getRailCommodity2target_GTonKm().containsKey(Commodity.TEXTILES));
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * se.vti.samgods.calibration.ascs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.calibration.ascs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Id;
+import org.matsim.vehicles.VehicleType;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.ShipmentSize;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.logistics.AnnualShipment;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.logistics.choice.BatchUtilityEvaluator;
+import se.vti.samgods.logistics.choice.ChoiceJob;
+import se.vti.samgods.logistics.choice.MonetaryChainAndShipmentSizeUtilityFunction;
+import se.vti.samgods.logistics.costs.NonTransportCostModel_v1_22;
+import se.vti.samgods.transportation.consolidation.ConsolidationJob;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+import se.vti.samgods.transportation.costs.DetailedTransportCost;
+import se.vti.samgods.transportation.costs.LinkUnitCostTable;
+import se.vti.samgods.transportation.costs.RouteCostAggregate;
+import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestTransportWorkSurrogate {
+
+	@Test
+	void testExpectedChainAmounts() {
+		final Random rnd = new Random(4711);
+		final Commodity commodity = Commodity.FOOD;
+		final OD od = new OD(Id.createNodeId("a"), Id.createNodeId("b"));
+
+		final Map<Commodity, Double> commodity2scale = new LinkedHashMap<>();
+		commodity2scale.put(commodity, 1e-4);
+		final Map<Commodity, Double> commodity2railASC = new LinkedHashMap<>();
+		commodity2railASC.put(commodity, -0.5);
+		final MonetaryChainAndShipmentSizeUtilityFunction utilityFunction = new MonetaryChainAndShipmentSizeUtilityFunction(
+				commodity2scale, commodity2railASC);
+		final NonTransportCostModel_v1_22 nonTransportCostModel = new NonTransportCostModel_v1_22();
+
+		final List<TransportChain> chains = new ArrayList<>();
+		final List<DetailedTransportCost> unitCosts = new ArrayList<>();
+		for (TransportMode mode : new TransportMode[] { TransportMode.Road, TransportMode.Rail, TransportMode.Sea }) {
+			final TransportChain chain = new TransportChain(commodity, false);
+			chain.addEpisode(new TransportEpisode(mode));
+			chains.add(chain);
+			unitCosts.add(new DetailedTransportCost.Builder().setToAllZeros().addAmount_ton(1.0)
+					.addMoveCost(100.0 * rnd.nextDouble()).addMoveDuration_h(48.0 * rnd.nextDouble())
+					.addDistance_km(500.0 * rnd.nextDouble()).build());
+		}
+
+		// Different numbers of feasible shipment sizes, and multiple instances.
+		final List<AnnualShipment> annualShipments = Arrays.asList(new AnnualShipment(commodity, od, 17.0, 1),
+				new AnnualShipment(commodity, od, 3000.0, 3), new AnnualShipment(commodity, od, 1e6, 2));
+		final ChoiceJob job = new ChoiceJob(commodity, od, chains, annualShipments);
+
+		final double[] chainAmounts_ton = TransportWorkSurrogate.computeExpectedChainAmounts_ton(
+				new BatchUtilityEvaluator(nonTransportCostModel, utilityFunction), job, unitCosts);
+
+		// Per-alternative reference, independent of the evaluator's array layout.
+		final double[] expectedChainAmounts_ton = new double[chains.size()];
+		for (AnnualShipment annualShipment : annualShipments) {
+			final double amount_ton = annualShipment.getSingleInstanceAnnualAmount_ton();
+			final double[][] utilities = new double[chains.size()][ShipmentSize.values().length];
+			double maxUtility = Double.NEGATIVE_INFINITY;
+			for (int c = 0; c < chains.size(); c++) {
+				for (ShipmentSize size : ShipmentSize.values()) {
+					if ((amount_ton >= size.getRepresentativeValue_ton())
+							|| ShipmentSize.getSmallestSize_ton().equals(size)) {
+						utilities[c][size.ordinal()] = utilityFunction.computeUtility(chains.get(c), amount_ton,
+								unitCosts.get(c), nonTransportCostModel.computeNonTransportCost(commodity, size,
+										amount_ton, unitCosts.get(c).duration_h));
+						maxUtility = Math.max(maxUtility, utilities[c][size.ordinal()]);
+					} else {
+						utilities[c][size.ordinal()] = Double.NEGATIVE_INFINITY;
+					}
+				}
+			}
+			final double[][] weights = new double[chains.size()][ShipmentSize.values().length];
+			double weightSum = 0.0;
+			for (int c = 0; c < chains.size(); c++) {
+				for (int s = 0; s < ShipmentSize.values().length; s++) {
+					weights[c][s] = Math.exp(utilities[c][s] - maxUtility);
+					weightSum += weights[c][s];
+				}
+			}
+			for (int c = 0; c < chains.size(); c++) {
+				expectedChainAmounts_ton[c] += Arrays.stream(weights[c]).sum() / weightSum
+						* annualShipment.getTotalAmount_ton();
+			}
+		}
+
+		final double totalAmount_ton = annualShipments.stream().mapToDouble(s -> s.getTotalAmount_ton()).sum();
+		Assert.isTrue(Math.abs(Arrays.stream(chainAmounts_ton).sum() - totalAmount_ton) < 1e-8 * totalAmount_ton);
+		for (int c = 0; c < chains.size(); c++) {
+			Assert.isTrue(Math.abs(chainAmounts_ton[c] - expectedChainAmounts_ton[c]) < 1e-8 * totalAmount_ton);
+		}
+	}
+
+	@Test
+	void testCorrections() {
+		final Map<String, Double> simulated = new LinkedHashMap<>();
+		simulated.put("a", 2.0);
+		simulated.put("b", 0.0);
+		simulated.put("c", 3.0);
+		final Map<String, Double> predicted = new LinkedHashMap<>();
+		predicted.put("a", 4.0);
+		predicted.put("b", 1.0);
+		predicted.put("d", 5.0);
+
+		final Map<String, Double> corrections = TransportWorkAscCalibrator.createCorrections(simulated, predicted,
+				Arrays.asList("a", "b", "c", "d", "e"));
+		Assert.equals(0.5, corrections.get("a"));
+		// Undefined ratios (nothing simulated or nothing predicted) fall back to one.
+		Assert.equals(1.0, corrections.get("b"));
+		Assert.equals(1.0, corrections.get("c"));
+		Assert.equals(1.0, corrections.get("d"));
+		Assert.equals(1.0, corrections.get("e"));
+		Assert.equals(5, corrections.size());
+	}
+
+	private static FleetAssignment createAssignment(String vehicleTypeName, double halfLoopCost,
+			double halfLoopLength_km) {
+		final VehicleType vehicleType = new SamgodsVehicleAttributes.Builder(vehicleTypeName)
+				.setMode(TransportMode.Road).setCost_1_km(1.0).setCost_1_h(1.0).setCapacity_ton(40.0)
+				.setContainer(false).buildVehicleType();
+		final RouteCostAggregate emptyRoute = RouteCostAggregate.create(
+				(SamgodsVehicleAttributes) vehicleType.getAttributes()
+						.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME),
+				Collections.emptyList(), new LinkUnitCostTable(0), Collections.emptySet(), Collections.emptyMap());
+		return new FleetAssignment(1000.0, vehicleType, 40.0,
+				new DetailedTransportCost.Builder().setToAllZeros().addAmount_ton(20.0).addMoveCost(halfLoopCost)
+						.addMoveDuration_h(5.0).addDistance_km(halfLoopLength_km).build(),
+				1.0, new ConsolidationJob(null, Collections.emptyList(), 7), emptyRoute);
+	}
+
+	@Test
+	void testExpectedVehicleTypeShares() {
+		final FleetAssignment cheap = createAssignment("cheap", 1000.0, 300.0);
+		final FleetAssignment expensive = createAssignment("expensive", 1500.0, 300.0);
+		final List<FleetAssignment> candidates = Arrays.asList(cheap, expensive);
+		final double demand_ton = 500.0;
+		final double scale = 1e-3;
+
+		final double cheapCostUtility = -scale * cheap.unitCost_1_tonKm * 0.5 * cheap.loopLength_km * demand_ton;
+		final double expensiveCostUtility = -scale * expensive.unitCost_1_tonKm * 0.5 * expensive.loopLength_km
+				* demand_ton;
+		Assert.isTrue(cheapCostUtility > expensiveCostUtility);
+
+		final double[] shares = TransportWorkSurrogate.computeExpectedVehicleTypeShares(candidates, demand_ton,
+				scale, Collections.emptyMap());
+		final double expectedCheapShare = 1.0 / (1.0 + Math.exp(expensiveCostUtility - cheapCostUtility));
+		Assert.isTrue(Math.abs(shares[0] - expectedCheapShare) < 1e-12);
+		Assert.isTrue(Math.abs(shares[0] + shares[1] - 1.0) < 1e-12);
+
+		// An ASC that exactly compensates the cost difference splits evenly.
+		final Map<VehicleType, Double> vehicleType2asc = new LinkedHashMap<>();
+		vehicleType2asc.put(expensive.vehicleType, cheapCostUtility - expensiveCostUtility);
+		final double[] compensatedShares = TransportWorkSurrogate.computeExpectedVehicleTypeShares(candidates,
+				demand_ton, scale, vehicleType2asc);
+		Assert.isTrue(Math.abs(compensatedShares[0] - 0.5) < 1e-12);
+		Assert.isTrue(Math.abs(compensatedShares[1] - 0.5) < 1e-12);
+	}
+}
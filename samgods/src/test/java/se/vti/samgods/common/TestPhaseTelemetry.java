@@ -0,0 +1,123 @@
+/**
+ * se.vti.samgods.common
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.common;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestPhaseTelemetry {
+
+	@Test
+	void testStatisticsPerJobType() throws IOException {
+		final List<PhaseStatistics> reported = new ArrayList<>();
+		final StringWriter out = new StringWriter();
+		try (SamgodsExecutor executor = new SamgodsExecutor(2);
+				PhaseTelemetryWriter telemetry = new PhaseTelemetryWriter(out)) {
+			executor.setPhaseListener(s -> {
+				reported.add(s);
+				telemetry.write(s);
+			});
+
+			final SamgodsExecutor.Phase phase = executor.startPhase("combined");
+			phase.submit("first", IntStream.range(0, 10).boxed().toList(), i -> {
+				if (i == 0) {
+					// Follow-up jobs of another type, submitted from within a job.
+					phase.submit("second", IntStream.range(0, 5).boxed().toList(), j -> {
+					});
+				}
+			});
+			final PhaseStatistics statistics = phase.awaitCompletion();
+
+			Assert.equals(1, reported.size());
+			Assert.isTrue(reported.get(0) == statistics);
+			Assert.equals(15L, statistics.getJobCnt());
+			Assert.equals(2, statistics.jobTypeStatistics.size());
+			Assert.equals("first", statistics.jobTypeStatistics.get(0).jobType);
+			Assert.equals(10L, statistics.jobTypeStatistics.get(0).jobCnt);
+			Assert.equals(5L, statistics.jobTypeStatistics.get(1).jobCnt);
+			Assert.isTrue(statistics.getUtilization() <= 1.0);
+			Assert.isTrue(statistics.threadName2busy_ns.size() <= 2);
+
+			telemetry.setIteration(3);
+			executor.runInCallingThread("sequential", () -> {
+			});
+			Assert.equals(2, reported.size());
+			Assert.equals(1L, reported.get(1).getJobCnt());
+			Assert.equals(Thread.currentThread().getName(),
+					reported.get(1).threadName2busy_ns.keySet().iterator().next());
+		}
+
+		final String[] lines = out.toString().split("\n");
+		Assert.equals(2, lines.length);
+		final ObjectMapper mapper = new ObjectMapper();
+		final JsonNode combined = mapper.readTree(lines[0]);
+		Assert.equals(-1, combined.get("iteration").asInt());
+		Assert.equals("combined", combined.get("phase").asText());
+		Assert.equals(15, combined.get("jobs").asInt());
+		Assert.equals(5, combined.get("jobTypes").get("second").get("jobs").asInt());
+		final JsonNode sequential = mapper.readTree(lines[1]);
+		Assert.equals(3, sequential.get("iteration").asInt());
+		Assert.equals("sequential", sequential.get("phase").asText());
+		Assert.isTrue(sequential.get("jobTypes") == null);
+	}
+
+	@Test
+	void testNestedPhasesNotCountedTwice() {
+		final List<PhaseStatistics> reported = Collections.synchronizedList(new ArrayList<>());
+		try (SamgodsExecutor executor = new SamgodsExecutor(2)) {
+			executor.setPhaseListener(s -> reported.add(s));
+			final PhaseStatistics outer = executor.processAll("outer", Arrays.asList(0, 1),
+					i -> executor.processAll("inner", IntStream.range(0, 4).boxed().toList(), j -> {
+						try {
+							Thread.sleep(20);
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+					}));
+
+			final List<PhaseStatistics> inner = reported.stream().filter(s -> "inner".equals(s.phase)).toList();
+			Assert.equals(2, inner.size());
+			for (PhaseStatistics statistics : inner) {
+				Assert.equals("outer", statistics.enclosingPhase);
+				Assert.isTrue(statistics.getBusy_ns() >= 4 * 20_000_000L);
+			}
+			Assert.isTrue(outer.enclosingPhase == null);
+			// The outer jobs do nothing but wait for their nested phases.
+			Assert.isTrue(outer.getBusy_ns() < 20_000_000L);
+			Assert.isTrue(outer.getUtilization() <= 1.0);
+		}
+	}
+}
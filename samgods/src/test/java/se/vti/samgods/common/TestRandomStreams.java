@@ -0,0 +1,120 @@
+/**
+ * se.vti.samgods.common
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Id;
+
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestRandomStreams {
+
+	private static OD od(long origin, long destination) {
+		return new OD(Id.createNodeId(origin), Id.createNodeId(destination));
+	}
+
+	private static long draw(Random rnd) {
+		long result = 0;
+		for (int i = 0; i < 10; i++) {
+			result = 31 * result + rnd.nextLong();
+		}
+		return result;
+	}
+
+	@Test
+	void testSameKeySameStream() throws Exception {
+		final RandomStreams streams = new RandomStreams(4711).forIteration(3);
+		final long expected = draw(streams.createRandom("choice", Commodity.FOOD, od(1, 2)));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final Future<Long> other = executor.submit(() -> draw(
+					new RandomStreams(4711).forIteration(3).createRandom("choice", Commodity.FOOD, od(1, 2))));
+			Assert.equals(expected, other.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void testDifferentKeysDifferentStreams() {
+		final RandomStreams streams = new RandomStreams(4711);
+		final long reference = draw(streams.forIteration(1).createRandom("choice", Commodity.FOOD, od(1, 2)));
+		Assert.isTrue(reference != draw(streams.forIteration(2).createRandom("choice", Commodity.FOOD, od(1, 2))));
+		Assert.isTrue(reference != draw(streams.forIteration(1).createRandom("choice", Commodity.WOOD, od(1, 2))));
+		Assert.isTrue(reference != draw(streams.forIteration(1).createRandom("choice", Commodity.FOOD, od(2, 1))));
+		Assert.isTrue(reference != draw(streams.forIteration(1).createRandom("sampling", Commodity.FOOD, od(1, 2))));
+		Assert.isTrue(reference != draw(new RandomStreams(4712).forIteration(1).createRandom("choice",
+				Commodity.FOOD, od(1, 2))));
+	}
+
+	private static Map<Integer, Long> drawPerJob(RandomStreams streams, List<Commodity> commodities, List<OD> ods,
+			List<Integer> jobOrder, int threadCnt) {
+		final Map<Integer, Long> job2draw = new ConcurrentHashMap<>();
+		try (SamgodsExecutor executor = new SamgodsExecutor(threadCnt)) {
+			executor.processAll("random streams", jobOrder, job -> job2draw.put(job,
+					draw(streams.createRandom("choice", commodities.get(job), ods.get(job)))));
+		}
+		return job2draw;
+	}
+
+	@Test
+	void testIndependentOfJobOrderAndThreadCount() {
+		final List<Commodity> commodities = new ArrayList<>();
+		final List<OD> ods = new ArrayList<>();
+		final List<Integer> jobOrder = new ArrayList<>();
+		for (Commodity commodity : Commodity.values()) {
+			for (int origin = 0; origin < 10; origin++) {
+				for (int destination = 0; destination < 10; destination++) {
+					jobOrder.add(commodities.size());
+					commodities.add(commodity);
+					ods.add(od(origin, destination));
+				}
+			}
+		}
+		final RandomStreams streams = new RandomStreams(4711).forIteration(2);
+
+		final Map<Integer, Long> reference = drawPerJob(streams, commodities, ods, jobOrder, 1);
+		Collections.shuffle(jobOrder, new Random(4711));
+		final Map<Integer, Long> shuffledParallel = drawPerJob(streams, commodities, ods, jobOrder, 4);
+		Collections.reverse(jobOrder);
+		final Map<Integer, Long> reversedParallel = drawPerJob(streams, commodities, ods, jobOrder, 3);
+
+		Assert.equals(jobOrder.size(), reference.size());
+		Assert.equals(reference, shuffledParallel);
+		Assert.equals(reference, reversedParallel);
+	}
+}
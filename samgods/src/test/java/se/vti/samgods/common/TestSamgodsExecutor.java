@@ -0,0 +1,57 @@
+/**
+ * se.vti.samgods.common
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.common;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestSamgodsExecutor {
+
+	@Test
+	void testWorkerLocal() {
+		try (SamgodsExecutor executor = new SamgodsExecutor(2)) {
+			final SamgodsExecutor.WorkerLocal<Set<Thread>> instance2users = new SamgodsExecutor.WorkerLocal<>(
+					() -> ConcurrentHashMap.newKeySet());
+			final Set<Set<Thread>> instances = Collections
+					.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>()));
+			executor.processAll("worker local", IntStream.range(0, 1000).boxed().toList(), i -> {
+				final Set<Thread> users = instance2users.get();
+				users.add(Thread.currentThread());
+				instances.add(users);
+			});
+			// At most the two workers and the awaiting thread, each with its own instance.
+			Assert.isTrue(instances.size() >= 1 && instances.size() <= 3);
+			for (Set<Thread> users : instances) {
+				Assert.equals(1, users.size());
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * se.vti.samgods.external.gis
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.external.gis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.transportation.consolidation.LinkIndexRoute;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestNetworkFlows {
+
+	private static NetworkFlows createFlows() {
+		final Id<Link> a = Id.createLinkId("networkFlowsTestA");
+		final Id<Link> b = Id.createLinkId("networkFlowsTestB");
+		// Created after the flows, hence outside of the initially allocated range.
+		final NetworkFlows flows = new NetworkFlows();
+		final Id<Link> c = Id.createLinkId("networkFlowsTestC");
+		flows.add(Commodity.FOOD, LinkIndexRoute.create(Arrays.asList(a, b)), 2.0);
+		flows.add(Commodity.FOOD, LinkIndexRoute.create(Arrays.asList(b, c)), 3.0);
+		flows.add(Commodity.WOOD, LinkIndexRoute.create(Arrays.asList(c)), 7.0);
+		return flows;
+	}
+
+	@Test
+	void testAccumulation() {
+		final NetworkFlows flows = createFlows();
+		Assert.equals(2.0, flows.getFlow_ton(Id.createLinkId("networkFlowsTestA"), Commodity.FOOD));
+		Assert.equals(5.0, flows.getFlow_ton(Id.createLinkId("networkFlowsTestB"), Commodity.FOOD));
+		Assert.equals(3.0, flows.getFlow_ton(Id.createLinkId("networkFlowsTestC"), Commodity.FOOD));
+		Assert.equals(7.0, flows.getFlow_ton(Id.createLinkId("networkFlowsTestC"), Commodity.WOOD));
+		Assert.equals(0.0, flows.getFlow_ton(Id.createLinkId("networkFlowsTestA"), Commodity.WOOD));
+	}
+
+	@Test
+	void testJson() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		createFlows().writeJson(out);
+		final Map<String, Map<String, Double>> link2commodity2flow = new ObjectMapper().readValue(out.toByteArray(),
+				new TypeReference<Map<String, Map<String, Double>>>() {
+				});
+		Assert.equals(5.0, link2commodity2flow.get("networkFlowsTestB").get(Commodity.FOOD.toString()));
+		Assert.equals(7.0, link2commodity2flow.get("networkFlowsTestC").get(Commodity.WOOD.toString()));
+		Assert.isTrue(!link2commodity2flow.get("networkFlowsTestA").containsKey(Commodity.WOOD.toString()));
+	}
+
+	@Test
+	void testCsv() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		createFlows().writeCsv(out);
+		final String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		Assert.equals(Commodity.values().length + 1, lines[0].split(",").length);
+		Assert.isTrue(Arrays.stream(lines).anyMatch(l -> l.startsWith("networkFlowsTestC,")));
+	}
+
+	@Test
+	void testBinary() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		createFlows().writeBinary(out);
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		Assert.equals(NetworkFlows.MAGIC, in.readInt());
+		Assert.equals(NetworkFlows.VERSION, in.readInt());
+		final int commodityCnt = in.readInt();
+		for (int c = 0; c < commodityCnt; c++) {
+			in.readUTF();
+		}
+		Assert.isTrue(in.readInt() >= 3);
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * se.vti.samgods.logistics
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.logistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Id;
+import org.matsim.vehicles.VehicleUtils;
+import org.matsim.vehicles.Vehicles;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestChainChoiReader {
+
+	private static OD od(long origin, long destination) {
+		return new OD(Id.createNodeId(origin), Id.createNodeId(destination));
+	}
+
+	@Test
+	void testParse() throws IOException {
+		final Commodity commodity = Commodity.WOOD;
+
+		final Vehicles vehicles = VehicleUtils.createVehiclesContainer();
+		vehicles.addVehicleType(new SamgodsVehicleAttributes.Builder("chainChoiTestTruck").setMode(TransportMode.Road)
+				.setCost_1_km(1.0).setCost_1_h(1.0).setCapacity_ton(40.0).setContainer(false)
+				.setLoadCost_1_ton(commodity, 1.0).setLoadTime_h(commodity, 1.0).setTransferCost_1_ton(commodity, 1.0)
+				.setTransferTime_h(commodity, 1.0).buildVehicleType());
+
+		final File file = File.createTempFile("ChainChoi", ".out");
+		file.deleteOnExit();
+		Files.write(file.toPath(),
+				Arrays.asList("Key AnnualVolume_(Tonnes) Prob NRelations ChainType Orig Orig2 Orig3 Dest",
+						"1 10.0 0.3 2 A 101 0 0 102", //
+						"1 10.0 0.7 2 A2 101 0 0 103", //
+						"2 5.5 1.0 1 APA 101 104 105 102", //
+						"3 1.0 1.0 3 DD 101 106 0 107", //
+						""));
+
+		final TransportDemandAndChains demand = new TransportDemandAndChains();
+		new ChainChoiReader(commodity, demand, vehicles).parse(file.getAbsolutePath());
+
+		final Map<OD, List<AnnualShipment>> od2shipments = demand.getCommodity2od2annualShipments().get(commodity);
+		Assert.equals(3, od2shipments.size());
+		// The OD with the largest probability represents a key.
+		Assert.equals(2, od2shipments.get(od(101, 103)).get(0).getNumberOfInstances());
+		Assert.equals(5.5, od2shipments.get(od(101, 102)).get(0).getSingleInstanceAnnualAmount_ton());
+		Assert.equals(3, od2shipments.get(od(101, 107)).get(0).getNumberOfInstances());
+
+		final Map<OD, List<TransportChain>> od2chains = demand.getCommodity2od2transportChains().get(commodity);
+
+		// Road, ferry, road is condensed into a single road segment.
+		final List<TransportChain> ferryChains = od2chains.get(od(101, 102));
+		Assert.equals(2, ferryChains.size());
+		final TransportEpisode ferryEpisode = ferryChains.get(1).getEpisodes().get(0);
+		Assert.equals(1, ferryChains.get(1).getEpisodes().size());
+		Assert.equals(TransportMode.Road, ferryEpisode.getMode());
+		Assert.equals(Arrays.asList(od(101, 102)), ferryEpisode.getSegmentODs());
+
+		// Consecutive rail segments form one episode.
+		final List<TransportChain> railChains = od2chains.get(od(101, 107));
+		Assert.equals(1, railChains.size());
+		Assert.equals(1, railChains.get(0).getEpisodes().size());
+		Assert.equals(Arrays.asList(od(101, 106), od(106, 107)),
+				railChains.get(0).getEpisodes().get(0).getSegmentODs());
+		Assert.isTrue(!railChains.get(0).isContainer());
+	}
+}
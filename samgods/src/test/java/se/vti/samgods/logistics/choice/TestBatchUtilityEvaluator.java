@@ -0,0 +1,95 @@
+/**
+ * se.vti.samgods.logistics.choice
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.logistics.choice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.ShipmentSize;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.logistics.costs.NonTransportCostModel_v1_22;
+import se.vti.samgods.transportation.costs.DetailedTransportCost;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestBatchUtilityEvaluator {
+
+	@Test
+	void testIdenticalToPerAlternativeUtility() {
+		final Random rnd = new Random(4711);
+		final Commodity commodity = Commodity.FOOD;
+
+		final Map<Commodity, Double> commodity2scale = new LinkedHashMap<>();
+		commodity2scale.put(commodity, 0.37);
+		final Map<Commodity, Double> commodity2railASC = new LinkedHashMap<>();
+		commodity2railASC.put(commodity, -123.4);
+		final MonetaryChainAndShipmentSizeUtilityFunction utilityFunction = new MonetaryChainAndShipmentSizeUtilityFunction(
+				commodity2scale, commodity2railASC);
+		final NonTransportCostModel_v1_22 nonTransportCostModel = new NonTransportCostModel_v1_22();
+
+		final List<TransportChain> chains = new ArrayList<>();
+		final List<DetailedTransportCost> unitCosts = new ArrayList<>();
+		for (TransportMode mode : new TransportMode[] { TransportMode.Road, TransportMode.Rail, TransportMode.Sea }) {
+			final TransportChain chain = new TransportChain(commodity, false);
+			chain.addEpisode(new TransportEpisode(mode));
+			chains.add(chain);
+			unitCosts.add(new DetailedTransportCost.Builder().setToAllZeros().addAmount_ton(1.0)
+					.addMoveCost(100.0 * rnd.nextDouble()).addMoveDuration_h(48.0 * rnd.nextDouble())
+					.addDistance_km(500.0 * rnd.nextDouble()).build());
+		}
+
+		final BatchUtilityEvaluator evaluator = new BatchUtilityEvaluator(nonTransportCostModel, utilityFunction);
+		evaluator.prepare(commodity, chains, unitCosts);
+		Assert.equals(chains.size(), evaluator.getChainCnt());
+
+		for (double amount_ton : new double[] { 1e-3, 17.0, 3000.0, 1e6, 1e7 }) {
+			final int sizeCnt = evaluator.computeFeasibleSizeCnt(amount_ton);
+			final double[] utilities = evaluator.computeUtilities(amount_ton, sizeCnt);
+			Assert.equals(chains.size() * sizeCnt, utilities.length);
+
+			int i = 0;
+			for (int c = 0; c < chains.size(); c++) {
+				for (ShipmentSize size : ShipmentSize.values()) {
+					if ((amount_ton >= size.getRepresentativeValue_ton())
+							|| ShipmentSize.getSmallestSize_ton().equals(size)) {
+						Assert.equals(size, evaluator.getSize(i % sizeCnt));
+						final double expected = utilityFunction.computeUtility(chains.get(c), amount_ton,
+								unitCosts.get(c), nonTransportCostModel.computeNonTransportCost(commodity, size,
+										amount_ton, unitCosts.get(c).duration_h));
+						Assert.equals(expected, utilities[i++]);
+					}
+				}
+			}
+			Assert.equals(utilities.length, i);
+		}
+	}
+}
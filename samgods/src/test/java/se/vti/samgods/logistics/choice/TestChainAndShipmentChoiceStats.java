@@ -0,0 +1,55 @@
+/**
+ * se.vti.samgods.logistics.choice
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.logistics.choice;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestChainAndShipmentChoiceStats {
+
+	@Test
+	void testWeightedMedian() {
+		// Expanded: 1, 2, 2, 3
+		Assert.equals(2.0, ChainAndShipmentChoiceStats.computeWeightedMedian(Arrays.asList(3.0, 1.0, 2.0),
+				Arrays.asList(1, 1, 2)));
+		// Expanded: 1, 4, interpolated
+		Assert.equals(2.5,
+				ChainAndShipmentChoiceStats.computeWeightedMedian(Arrays.asList(4.0, 1.0), Arrays.asList(1, 1)));
+		// Expanded: 1, 5, 5, 5
+		Assert.equals(5.0,
+				ChainAndShipmentChoiceStats.computeWeightedMedian(Arrays.asList(5.0, 1.0), Arrays.asList(3, 1)));
+		// Expanded: 1, 2, 3, 3, 3, 4
+		Assert.equals(3.0, ChainAndShipmentChoiceStats.computeWeightedMedian(Arrays.asList(1.0, 2.0, 3.0, 4.0),
+				Arrays.asList(1, 1, 3, 1)));
+		// Zero weights do not count.
+		Assert.equals(1.5, ChainAndShipmentChoiceStats.computeWeightedMedian(Arrays.asList(1.0, 10.0, 2.0),
+				Arrays.asList(1, 0, 1)));
+		Assert.isTrue(Double.isNaN(
+				ChainAndShipmentChoiceStats.computeWeightedMedian(Collections.emptyList(), Collections.emptyList())));
+	}
+}
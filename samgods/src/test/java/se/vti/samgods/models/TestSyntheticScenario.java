@@ -0,0 +1,119 @@
+/**
+ * se.vti.samgods.models
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.models;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+
+import se.vti.samgods.common.SamgodsConfigGroup;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsRunner;
+import se.vti.samgods.logistics.TransportDemandAndChains;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.logistics.choice.ChainAndShipmentSize;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestSyntheticScenario {
+
+	private SyntheticScenario createScenario() {
+		return new SyntheticScenario().setGridSize(6).setRailLineSpacing(3).setOdCntPerCommodity(20)
+				.setCommodities(Commodity.FOOD, Commodity.WOOD);
+	}
+
+	@Test
+	void testReproducibleDemand() {
+		final TransportDemandAndChains demand1 = this.createScenario().createTransportDemand();
+		final TransportDemandAndChains demand2 = this.createScenario().createTransportDemand();
+		Assert.equals(demand1.getCommodity2od2annualShipments().get(Commodity.FOOD).keySet(),
+				demand2.getCommodity2od2annualShipments().get(Commodity.FOOD).keySet());
+		Assert.equals(20, demand1.getCommodity2od2transportChains().get(Commodity.WOOD).size());
+	}
+
+	@Test
+	void testTooManyODs() {
+		// A 2x2 grid has 4 * 3 = 12 distinct ODs, all of which can be drawn.
+		Assert.equals(12, new SyntheticScenario().setGridSize(2).setOdCntPerCommodity(12)
+				.setCommodities(Commodity.FOOD).createTransportDemand().getCommodity2od2annualShipments()
+				.get(Commodity.FOOD).size());
+		boolean thrown = false;
+		try {
+			new SyntheticScenario().setGridSize(2).setOdCntPerCommodity(13).setCommodities(Commodity.FOOD)
+					.createTransportDemand();
+		} catch (IllegalArgumentException e) {
+			thrown = true;
+		}
+		Assert.isTrue(thrown);
+	}
+
+	/*
+	 * Describes the choices and fleet assignments of all iterations by content
+	 * only, such that runs with different object identities can be compared.
+	 */
+	private List<String> runAndDescribe(int maxThreads) throws IOException {
+		final SamgodsConfigGroup config = new SamgodsConfigGroup();
+		config.setMaxIterations(2);
+		config.setOutputDirectory(Files.createTempDirectory("samgods-test").toString());
+		config.setNtmCalcFileNamePrefix(null);
+
+		final List<String> result = new ArrayList<>();
+		final SamgodsRunner runner = this.createScenario().configure(new SamgodsRunner(config))
+				.setMaxThreads(maxThreads).setWritePhaseTelemetry(false)
+				.setIterationListener((iteration, choices, consolidationUnit2assignment) -> {
+					for (ChainAndShipmentSize choice : choices) {
+						final List<String> episodes = new ArrayList<>();
+						for (TransportEpisode episode : choice.transportChain.getEpisodes()) {
+							episodes.add(episode.getMode() + ":" + episode.getSegmentODs());
+						}
+						result.add(iteration + ",choice," + choice.annualShipment.getOD() + ","
+								+ choice.annualShipment.getSingleInstanceAnnualAmount_ton() + ","
+								+ choice.getNumberOfInstances() + "," + choice.sizeClass + "," + episodes + ","
+								+ choice.singleInstanceUtility);
+					}
+					for (Map.Entry<ConsolidationUnit, FleetAssignment> e : consolidationUnit2assignment.entrySet()) {
+						final FleetAssignment assignment = e.getValue();
+						result.add(iteration + ",assignment," + e.getKey() + "," + assignment.vehicleType.getId()
+								+ "," + assignment.payload_ton + "," + assignment.averageVehiclePassages_1_day);
+					}
+				});
+		runner.createOrLoadConsolidationUnits();
+		runner.run();
+		return result;
+	}
+
+	@Test
+	void testReproducibleChoicesAndFleetAssignments() throws IOException {
+		final List<String> singleThreaded = this.runAndDescribe(1);
+		final List<String> multiThreaded = this.runAndDescribe(4);
+		Assert.isTrue(singleThreaded.size() > 0);
+		Assert.equals(singleThreaded, multiThreaded);
+	}
+}
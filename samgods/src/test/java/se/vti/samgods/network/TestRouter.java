@@ -0,0 +1,177 @@
+/**
+ * se.vti.samgods.network
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.AStarLandmarksFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestRouter {
+
+	private static Network createGridNetwork(int gridSize, Random rnd) {
+		final Network network = NetworkUtils.createNetwork();
+		final Node[][] nodes = new Node[gridSize][gridSize];
+		for (int i = 0; i < gridSize; i++) {
+			for (int j = 0; j < gridSize; j++) {
+				nodes[i][j] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i + "_" + j),
+						new Coord(1000.0 * i, 1000.0 * j));
+			}
+		}
+		int linkCnt = 0;
+		for (int i = 0; i < gridSize; i++) {
+			for (int j = 0; j < gridSize; j++) {
+				for (int[] neighbor : new int[][] { { i + 1, j }, { i, j + 1 } }) {
+					if (neighbor[0] < gridSize && neighbor[1] < gridSize) {
+						final Node from = nodes[i][j];
+						final Node to = nodes[neighbor[0]][neighbor[1]];
+						// Detours up to factor three, speeds between 10 and 40 m/s.
+						for (Node[] fromTo : new Node[][] { { from, to }, { to, from } }) {
+							NetworkUtils.createAndAddLink(network, Id.createLinkId(linkCnt++), fromTo[0], fromTo[1],
+									1000.0 * (1.0 + 2.0 * rnd.nextDouble()), 10.0 + 30.0 * rnd.nextDouble(), 1000.0,
+									1.0);
+						}
+					}
+				}
+			}
+		}
+		return network;
+	}
+
+	private static TravelDisutility createTravelDisutility(double cost_1_s, double cost_1_m) {
+		return new TravelDisutility() {
+			@Override
+			public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+				return this.getLinkMinimumTravelDisutility(link);
+			}
+
+			@Override
+			public double getLinkMinimumTravelDisutility(Link link) {
+				return cost_1_s * link.getLength() / link.getFreespeed() + cost_1_m * link.getLength();
+			}
+		};
+	}
+
+	@Test
+	void testSharedNetworkWithDifferentCosts() {
+		final Random rnd = new Random(4711);
+		final Network network = createGridNetwork(10, rnd);
+		final List<Node> nodes = new ArrayList<>(network.getNodes().values());
+		final TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed();
+
+		/*
+		 * Two routing representatives on the same unimodal network with very
+		 * differently scaled link costs. The first one requested determines the
+		 * landmarks if these were shared per network.
+		 */
+		final VehicleType distanceType = VehicleUtils.createVehicleType(Id.create("distance", VehicleType.class));
+		final TravelDisutility distanceDisutility = createTravelDisutility(0.0, 100.0);
+		final VehicleType timeType = VehicleUtils.createVehicleType(Id.create("time", VehicleType.class));
+		final TravelDisutility timeDisutility = createTravelDisutility(1.0, 0.0);
+
+		final Router router = new Router(null);
+		final LeastCostPathCalculator sharedDistanceRouter = router.createPathCalculator(distanceType, network,
+				distanceDisutility, travelTime);
+		final LeastCostPathCalculator sharedTimeRouter = router.createPathCalculator(timeType, network,
+				timeDisutility, travelTime);
+		final LeastCostPathCalculator freshDistanceRouter = new AStarLandmarksFactory(4).createPathCalculator(network,
+				distanceDisutility, travelTime);
+		final LeastCostPathCalculator freshTimeRouter = new AStarLandmarksFactory(4).createPathCalculator(network,
+				timeDisutility, travelTime);
+
+		for (int r = 0; r < 200; r++) {
+			final Node from = nodes.get(rnd.nextInt(nodes.size()));
+			final Node to = nodes.get(rnd.nextInt(nodes.size()));
+			final Path sharedDistancePath = sharedDistanceRouter.calcLeastCostPath(from, to, 0, null, null);
+			final Path freshDistancePath = freshDistanceRouter.calcLeastCostPath(from, to, 0, null, null);
+			Assert.isTrue(Math.abs(freshDistancePath.travelCost - sharedDistancePath.travelCost) < 1e-6);
+			final Path sharedTimePath = sharedTimeRouter.calcLeastCostPath(from, to, 0, null, null);
+			final Path freshTimePath = freshTimeRouter.calcLeastCostPath(from, to, 0, null, null);
+			Assert.isTrue(Math.abs(freshTimePath.travelCost - sharedTimePath.travelCost) < 1e-6);
+		}
+	}
+
+	@Test
+	void testTreeEqualsPointToPoint() {
+		final Random rnd = new Random(4711);
+		final Network network = createGridNetwork(10, rnd);
+		final List<Node> gridNodes = new ArrayList<>(network.getNodes().values());
+
+		// Can reach the grid, but cannot be reached from it.
+		final Node source = NetworkUtils.createAndAddNode(network, Id.createNodeId("source"),
+				new Coord(-1000.0, -1000.0));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("sourceLink"), source, gridNodes.get(0), 1500.0, 20.0,
+				1000.0, 1.0);
+
+		final TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed();
+		// Random continuous link costs, hence unique least cost paths.
+		final TravelDisutility travelDisutility = createTravelDisutility(1.0, 0.01);
+		final VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("truck", VehicleType.class));
+		final LeastCostPathCalculator pointToPointRouter = new Router(null).createPathCalculator(vehicleType,
+				network, travelDisutility, travelTime);
+		final ShortestPathTree tree = new ShortestPathTree(travelDisutility);
+
+		// The same tree instance is reused for all origins, as in the Router.
+		final List<Node> origins = new ArrayList<>(gridNodes.subList(0, 20));
+		origins.add(source);
+		for (Node origin : origins) {
+			final List<Node> destinations = new ArrayList<>(gridNodes);
+			destinations.add(source);
+			tree.compute(origin, destinations);
+			for (Node destination : destinations) {
+				final List<Link> treeLinks = tree.getLinks(destination);
+				if (destination == origin) {
+					Assert.equals(0, treeLinks.size());
+					Assert.equals(0.0, tree.getCost(destination));
+				} else if (destination == source) {
+					Assert.equals(null, treeLinks);
+					Assert.equals(Double.POSITIVE_INFINITY, tree.getCost(destination));
+					Assert.equals(null, pointToPointRouter.calcLeastCostPath(origin, destination, 0, null, null));
+				} else {
+					final Path path = pointToPointRouter.calcLeastCostPath(origin, destination, 0, null, null);
+					Assert.equals(path.links, treeLinks);
+					Assert.isTrue(Math.abs(path.travelCost - tree.getCost(destination)) < 1e-6);
+				}
+			}
+		}
+	}
+}
@@ -101,4 +101,24 @@ class TestConsolidationUnit {
 		Assert.equals(route23, cu.getRoute(truck3));
 		Assert.equals(route23, cu.getRoute(truck4));
 	}
+
+	@Test
+	void testRouteManagement4() {
+		cu.setRouteFromLinkIds(truck1, route12);
+		cu.setRouteFromLinkIds(truck2, route12);
+		Assert.equals(route12, cu.getRoute(truck2));
+
+		// Lookups must see modifications made after an earlier lookup.
+		cu.setRouteFromLinkIds(truck2, route23);
+		Assert.equals(route12, cu.getRoute(truck1));
+		Assert.equals(route23, cu.getRoute(truck2));
+
+		cu.removeRoute(truck1);
+		Assert.isTrue(cu.getRoute(truck1) == null);
+		Assert.equals(route23, cu.getRoute(truck2));
+
+		cu.clearRoutes();
+		Assert.isTrue(cu.getRoute(truck2) == null);
+		Assert.equals(0, cu.distinctRoutes());
+	}
 }
@@ -0,0 +1,139 @@
+/**
+ * se.vti.samgods.transportation.consolidation
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.consolidation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+import org.matsim.vehicles.Vehicles;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestConsolidationUnitsIO {
+
+	final Vehicles vehicles = VehicleUtils.createVehiclesContainer();
+
+	final VehicleType truck1 = VehicleUtils.createVehicleType(Id.create("truck1", VehicleType.class));
+	final VehicleType truck2 = VehicleUtils.createVehicleType(Id.create("truck2", VehicleType.class));
+	final VehicleType truck3 = VehicleUtils.createVehicleType(Id.create("truck3", VehicleType.class));
+
+	final Id<Link> link1 = Id.createLinkId("link1");
+	final Id<Link> link2 = Id.createLinkId("link2");
+	final Id<Link> link3 = Id.createLinkId("link3");
+	final Id<Link> link4 = Id.createLinkId("link4");
+
+	final List<ConsolidationUnit> units = new ArrayList<>();
+
+	@BeforeEach
+	void init() {
+		this.vehicles.addVehicleType(this.truck1);
+		this.vehicles.addVehicleType(this.truck2);
+		this.vehicles.addVehicleType(this.truck3);
+
+		final ConsolidationUnit unit1 = new ConsolidationUnit(
+				new OD(Id.createNodeId("node1"), Id.createNodeId("node2")), Commodity.AGRICULTURE,
+				TransportMode.Road, false);
+		unit1.setRouteFromLinkIds(this.truck1, Arrays.asList(this.link1, this.link2, this.link3));
+		unit1.setRouteFromLinkIds(this.truck2, Arrays.asList(this.link1, this.link2, this.link3));
+		unit1.setRouteFromLinkIds(this.truck3, Arrays.asList(this.link4, this.link3));
+		this.units.add(unit1);
+
+		final ConsolidationUnit unit2 = new ConsolidationUnit(
+				new OD(Id.createNodeId("node2"), Id.createNodeId("node2")), Commodity.COAL, TransportMode.Road,
+				true);
+		unit2.setRouteFromLinkIds(this.truck1, Arrays.asList());
+		this.units.add(unit2);
+
+		final ConsolidationUnit unit3 = new ConsolidationUnit(
+				new OD(Id.createNodeId("node3"), Id.createNodeId("node1")), Commodity.AGRICULTURE,
+				TransportMode.Road, false);
+		unit3.setRouteFromLinkIds(this.truck2, Arrays.asList(this.link3, this.link2, this.link1, this.link4));
+		this.units.add(unit3);
+	}
+
+	void assertEqualUnits(List<ConsolidationUnit> expected, List<ConsolidationUnit> actual) {
+		Assert.equals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.equals(expected.get(i), actual.get(i));
+			Assert.equals(expected.get(i).distinctRoutes(), actual.get(i).distinctRoutes());
+			for (VehicleType vehicleType : this.vehicles.getVehicleTypes().values()) {
+				Assert.equals(expected.get(i).getRoute(vehicleType), actual.get(i).getRoute(vehicleType));
+			}
+		}
+	}
+
+	List<ConsolidationUnit> writeAndRead(String suffix) throws IOException {
+		final File file = File.createTempFile("consolidationUnits", suffix);
+		file.deleteOnExit();
+		Assert.equals((long) this.units.size(), ConsolidationUnitsIO.write(this.units, file.getPath()));
+		final List<ConsolidationUnit> result = new ArrayList<>();
+		ConsolidationUnitsIO.read(file.getPath(), this.vehicles, result::add);
+		return result;
+	}
+
+	@Test
+	void testJsonRoundTrip() throws IOException {
+		this.assertEqualUnits(this.units, this.writeAndRead(".json"));
+	}
+
+	@Test
+	void testBinaryRoundTrip() throws IOException {
+		this.assertEqualUnits(this.units, this.writeAndRead(ConsolidationUnitsBinaryWriter.FILE_SUFFIX));
+	}
+
+	@Test
+	void testConversion() throws IOException {
+		final File jsonFile = File.createTempFile("consolidationUnits", ".json");
+		final File binaryFile = File.createTempFile("consolidationUnits", ConsolidationUnitsBinaryWriter.FILE_SUFFIX);
+		final File jsonFile2 = File.createTempFile("consolidationUnits", ".json");
+		jsonFile.deleteOnExit();
+		binaryFile.deleteOnExit();
+		jsonFile2.deleteOnExit();
+
+		ConsolidationUnitsIO.write(this.units, jsonFile.getPath());
+		ConsolidationUnitsIO.convert(jsonFile.getPath(), binaryFile.getPath(), this.vehicles);
+		ConsolidationUnitsIO.convert(binaryFile.getPath(), jsonFile2.getPath(), this.vehicles);
+
+		final List<ConsolidationUnit> fromBinary = new ArrayList<>();
+		ConsolidationUnitsIO.read(binaryFile.getPath(), this.vehicles, fromBinary::add);
+		this.assertEqualUnits(this.units, fromBinary);
+
+		final List<ConsolidationUnit> fromJson = new ArrayList<>();
+		ConsolidationUnitsIO.read(jsonFile2.getPath(), this.vehicles, fromJson::add);
+		this.assertEqualUnits(this.units, fromJson);
+	}
+}
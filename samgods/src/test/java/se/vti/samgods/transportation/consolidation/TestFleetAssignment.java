@@ -0,0 +1,99 @@
+/**
+ * se.vti.samgods.transportation.consolidation
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.consolidation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.VehicleType;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.transportation.consolidation.HalfLoopConsolidationJobProcessor.FleetAssignment;
+import se.vti.samgods.transportation.costs.LinkUnitCostTable;
+import se.vti.samgods.transportation.costs.RouteCostAggregate;
+import se.vti.samgods.transportation.costs.TransportCostCalculator;
+import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestFleetAssignment {
+
+	@Test
+	void testReuseTakesCurrentDemand() {
+		final VehicleType vehicleType = new SamgodsVehicleAttributes.Builder("truck").setMode(TransportMode.Road)
+				.setCost_1_km(1.0).setCost_1_h(10.0).setOnFerryCost_1_km(0.5).setOnFerryCost_1_h(5.0)
+				.setCapacity_ton(40.0).setContainer(false).buildVehicleType();
+		final SamgodsVehicleAttributes vehicleAttrs = (SamgodsVehicleAttributes) vehicleType.getAttributes()
+				.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME);
+
+		final List<Id<Link>> route = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			route.add(Id.createLinkId("fleetAssignmentTestLink" + i));
+		}
+		final LinkUnitCostTable linkUnitCostTable = new LinkUnitCostTable(
+				1 + route.stream().mapToInt(id -> id.index()).max().getAsInt());
+		for (Id<Link> linkId : route) {
+			linkUnitCostTable.set(linkId, 10.0, 0.2, 15.0, false);
+		}
+
+		final TransportChain chain = new TransportChain(Commodity.AGRICULTURE, false);
+		final TransportEpisode episode = new TransportEpisode(TransportMode.Road);
+		episode.addSegmentOD(new OD(Id.createNodeId("a"), Id.createNodeId("b")));
+		chain.addEpisode(episode);
+		final ConsolidationUnit unit = ConsolidationUnit.createUnrouted(episode).get(0);
+		unit.setRouteFromLinkIds(vehicleType, route);
+		final RouteCostAggregate routeCostAggregate = RouteCostAggregate.create(vehicleAttrs,
+				unit.getRoute(vehicleType), linkUnitCostTable, Collections.emptySet(), Collections.emptyMap());
+		final ConsolidationJob job = new ConsolidationJob(unit, Collections.emptyList(), 7);
+
+		final TransportCostCalculator calculator = new TransportCostCalculator();
+		final double serviceIntervalActiveProba = 0.9;
+		final FleetAssignment previous = new FleetAssignment(100000.0, vehicleType, vehicleAttrs.capacity_ton,
+				calculator.computeInVehicleCost(routeCostAggregate, 20.0), serviceIntervalActiveProba, job,
+				routeCostAggregate);
+
+		final double newDemand_ton = 150000.0;
+		final FleetAssignment reused = previous.createWithDemand(newDemand_ton, serviceIntervalActiveProba, job,
+				routeCostAggregate, calculator);
+		final FleetAssignment expected = new FleetAssignment(newDemand_ton, vehicleType, vehicleAttrs.capacity_ton,
+				calculator.computeInVehicleCost(routeCostAggregate, previous.payload_ton), serviceIntervalActiveProba,
+				job, routeCostAggregate);
+
+		Assert.equals(newDemand_ton, reused.annualDemand_ton);
+		Assert.equals(expected.averageVehiclePassages_1_day, reused.averageVehiclePassages_1_day);
+		Assert.equals(expected.payload_ton, reused.payload_ton);
+		Assert.equals(expected.unitCost_1_tonKm, reused.unitCost_1_tonKm);
+		Assert.equals(expected.expectedSnapshotVehicleCnt, reused.expectedSnapshotVehicleCnt);
+		Assert.equals(previous.loopLength_km, reused.loopLength_km);
+		Assert.isTrue(reused.averageVehiclePassages_1_day > previous.averageVehiclePassages_1_day);
+	}
+}
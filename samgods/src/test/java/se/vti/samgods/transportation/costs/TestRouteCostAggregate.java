@@ -0,0 +1,133 @@
+/**
+ * se.vti.samgods.transportation.costs
+ *
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ *
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.samgods.transportation.costs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.util.Assert;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.vehicles.VehicleType;
+
+import se.vti.samgods.common.OD;
+import se.vti.samgods.common.SamgodsConstants.Commodity;
+import se.vti.samgods.common.SamgodsConstants.TransportMode;
+import se.vti.samgods.logistics.TransportChain;
+import se.vti.samgods.logistics.TransportEpisode;
+import se.vti.samgods.transportation.consolidation.ConsolidationUnit;
+import se.vti.samgods.transportation.fleet.SamgodsVehicleAttributes;
+
+/**
+ *
+ * @author GunnarF
+ *
+ */
+class TestRouteCostAggregate {
+
+	@Test
+	void testIdenticalToLinkByLinkCost() {
+		final Random rnd = new Random(4711);
+
+		final VehicleType vehicleType = new SamgodsVehicleAttributes.Builder("truck").setMode(TransportMode.Road)
+				.setCost_1_km(rnd.nextDouble()).setCost_1_h(rnd.nextDouble()).setOnFerryCost_1_km(rnd.nextDouble())
+				.setOnFerryCost_1_h(rnd.nextDouble()).setCapacity_ton(40.0).setContainer(false).buildVehicleType();
+		final SamgodsVehicleAttributes vehicleAttrs = (SamgodsVehicleAttributes) vehicleType.getAttributes()
+				.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME);
+
+		final Map<Id<Link>, BasicTransportCost> link2unitCost = new LinkedHashMap<>();
+		final Set<Id<Link>> ferryLinks = new LinkedHashSet<>();
+		final List<Id<Link>> route = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			final Id<Link> linkId = Id.createLinkId("aggregateTestLink" + i);
+			link2unitCost.put(linkId, new BasicTransportCost(1.0, 0.0, rnd.nextDouble(), 10.0 * rnd.nextDouble()));
+			if (rnd.nextDouble() < 0.1) {
+				ferryLinks.add(linkId);
+			}
+			route.add(linkId);
+		}
+		final LinkUnitCostTable linkUnitCostTable = new LinkUnitCostTable(
+				1 + route.stream().mapToInt(id -> id.index()).max().getAsInt());
+		for (Id<Link> linkId : route) {
+			final BasicTransportCost unitCost = link2unitCost.get(linkId);
+			linkUnitCostTable.set(linkId, unitCost.monetaryCost, unitCost.duration_h, unitCost.length_km,
+					ferryLinks.contains(linkId));
+		}
+
+		final TransportChain chain = new TransportChain(Commodity.AGRICULTURE, false);
+		final TransportEpisode episode = new TransportEpisode(TransportMode.Road);
+		episode.addSegmentOD(new OD(Id.createNodeId("a"), Id.createNodeId("b")));
+		chain.addEpisode(episode);
+		final ConsolidationUnit unit = ConsolidationUnit.createUnrouted(episode).get(0);
+		unit.setRouteFromLinkIds(vehicleType, route);
+
+		final TransportCostCalculator calculator = new TransportCostCalculator();
+		final RouteCostAggregate aggregate = RouteCostAggregate.create(vehicleAttrs, unit.getRoute(vehicleType),
+				linkUnitCostTable, Collections.emptySet(), Collections.emptyMap());
+		Assert.equals(route.size(), aggregate.linkCnt);
+		Assert.equals(link2unitCost.get(route.get(17)).duration_h,
+				linkUnitCostTable.getUnitCost(route.get(17)).duration_h);
+
+		for (double payload_ton : new double[] { 0.0, 1.0, 17.3, 40.0 }) {
+			final DetailedTransportCost expected = calculator.computeInVehicleCost(vehicleType, vehicleAttrs,
+					payload_ton, unit, link2unitCost, ferryLinks);
+			final DetailedTransportCost actual = calculator.computeInVehicleCost(aggregate, payload_ton);
+			Assert.equals(expected.amount_ton, actual.amount_ton);
+			Assert.equals(expected.monetaryCost, actual.monetaryCost);
+			Assert.equals(expected.moveCost, actual.moveCost);
+			Assert.equals(expected.duration_h, actual.duration_h);
+			Assert.equals(expected.moveDuration_h, actual.moveDuration_h);
+			Assert.equals(expected.length_km, actual.length_km);
+		}
+	}
+
+	@Test
+	void testMissingLinkFailsFast() {
+		final VehicleType vehicleType = new SamgodsVehicleAttributes.Builder("truck").setMode(TransportMode.Road)
+				.setCost_1_km(1.0).setCost_1_h(1.0).setCapacity_ton(40.0).setContainer(false).buildVehicleType();
+		final SamgodsVehicleAttributes vehicleAttrs = (SamgodsVehicleAttributes) vehicleType.getAttributes()
+				.getAttribute(SamgodsVehicleAttributes.ATTRIBUTE_NAME);
+
+		final Id<Link> coveredLinkId = Id.createLinkId("coveredTestLink");
+		final Id<Link> missingLinkId = Id.createLinkId("missingTestLink");
+		final LinkUnitCostTable linkUnitCostTable = new LinkUnitCostTable(
+				1 + Math.max(coveredLinkId.index(), missingLinkId.index()));
+		linkUnitCostTable.set(coveredLinkId, 1.0, 0.1, 5.0, false);
+		Assert.isTrue(linkUnitCostTable.contains(coveredLinkId.index()));
+		Assert.isTrue(!linkUnitCostTable.contains(missingLinkId.index()));
+		Assert.equals(null, linkUnitCostTable.getUnitCost(missingLinkId));
+
+		boolean failed = false;
+		try {
+			RouteCostAggregate.create(vehicleAttrs, List.of(coveredLinkId, missingLinkId), linkUnitCostTable,
+					Collections.emptySet(), Collections.emptyMap());
+		} catch (IllegalArgumentException e) {
+			failed = true;
+		}
+		Assert.isTrue(failed);
+	}
+}
@@ -85,6 +85,56 @@ public class LogitChoiceModel {
 				this.computeLogitProbabilities(this.computeUtilities(alternatives, alternative2utility)));
 	}
 
+	/**
+	 * Multinomial sampling: Returns how often each alternative is chosen in the
+	 * given number of independent draws, without materializing the draws.
+	 * 
+	 * @throws IllegalArgumentException if draws are requested but there are no
+	 *                                  alternatives
+	 */
+	public int[] chooseCountsFromProbabilities(final double[] probabilities, final int draws) {
+		if (probabilities.length == 0 && draws > 0) {
+			throw new IllegalArgumentException("Cannot draw " + draws + " times without alternatives.");
+		}
+		final double[] cumulativeProbabilities = new double[probabilities.length];
+		double probaSum = 0.0;
+		for (int i = 0; i < probabilities.length; i++) {
+			probaSum += probabilities[i];
+			cumulativeProbabilities[i] = probaSum;
+		}
+		final int[] counts = new int[probabilities.length];
+		for (int draw = 0; draw < draws; draw++) {
+			final double threshold = this.rnd.nextDouble();
+			// smallest index with threshold < cumulativeProbabilities[index]
+			int lower = 0;
+			int upper = cumulativeProbabilities.length;
+			while (lower < upper) {
+				final int middle = (lower + upper) >>> 1;
+				if (threshold < cumulativeProbabilities[middle]) {
+					upper = middle;
+				} else {
+					lower = middle + 1;
+				}
+			}
+			if (lower < counts.length) {
+				counts[lower]++;
+			} else {
+				// May end up here very rarely for numerical reasons.
+				counts[this.rnd.nextInt(counts.length)]++;
+			}
+		}
+		return counts;
+	}
+
+	public <A> int[] chooseCounts(final List<A> alternatives, final Function<A, Double> alternative2utility,
+			final int draws) {
+		if (alternatives.isEmpty()) {
+			return this.chooseCountsFromProbabilities(new double[0], draws);
+		}
+		return this.chooseCountsFromProbabilities(
+				this.computeLogitProbabilities(this.computeUtilities(alternatives, alternative2utility)), draws);
+	}
+
 	// -------------------- MAIN-FUNCTION, ONLY FOR TESTING --------------------
 
 	public static void main(String[] args) {
@@ -0,0 +1,86 @@
+/**
+ * se.vti.utils.misc.math
+ * 
+ * Copyright (C) 2025 by Gunnar Flötteröd (VTI, LiU).
+ * 
+ * VTI = Swedish National Road and Transport Institute
+ * LiU = Linköping University, Sweden
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms
+ * of the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program.
+ * If not, see <https://www.gnu.org/licenses/>. See also COPYING and WARRANTY file.
+ */
+package se.vti.utils.misc.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author GunnarF
+ *
+ */
+public class TestLogitChoiceModel {
+
+	@Test
+	public void testCountsMatchProbabilities() {
+		final double[] probabilities = new double[] { 0.1, 0.0, 0.2, 0.3, 0.4 };
+		final int draws = 100 * 1000;
+		final int[] counts = new LogitChoiceModel(new Random(4711)).chooseCountsFromProbabilities(probabilities,
+				draws);
+		assertEquals(draws, Arrays.stream(counts).sum());
+		assertEquals(0, counts[1]);
+		for (int i = 0; i < probabilities.length; i++) {
+			// Standard deviation of each frequency is below 0.002.
+			assertEquals(probabilities[i], ((double) counts[i]) / draws, 0.01);
+		}
+	}
+
+	@Test
+	public void testCountsFromUtilities() {
+		final List<Double> utilities = Arrays.asList(1.0, 2.0, -1.0);
+		final int draws = 100 * 1000;
+		final int[] counts = new LogitChoiceModel(new Random(4711)).chooseCounts(utilities, u -> u, draws);
+		assertEquals(draws, Arrays.stream(counts).sum());
+
+		final double denom = utilities.stream().mapToDouble(u -> Math.exp(u)).sum();
+		for (int i = 0; i < utilities.size(); i++) {
+			assertEquals(Math.exp(utilities.get(i)) / denom, ((double) counts[i]) / draws, 0.01);
+		}
+
+		// Same seed, same counts.
+		assertArrayEquals(counts, new LogitChoiceModel(new Random(4711)).chooseCounts(utilities, u -> u, draws));
+	}
+
+	@Test
+	public void testNoDraws() {
+		final LogitChoiceModel model = new LogitChoiceModel(new Random(4711));
+		assertArrayEquals(new int[] { 0, 0 }, model.chooseCountsFromProbabilities(new double[] { 0.5, 0.5 }, 0));
+		assertArrayEquals(new int[0], model.chooseCountsFromProbabilities(new double[0], 0));
+		assertArrayEquals(new int[0], model.chooseCounts(Collections.<Double>emptyList(), u -> u, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDrawsWithoutAlternatives() {
+		new LogitChoiceModel(new Random(4711)).chooseCountsFromProbabilities(new double[0], 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDrawsWithoutAlternativesFromUtilities() {
+		new LogitChoiceModel(new Random(4711)).chooseCounts(Collections.<Double>emptyList(), u -> u, 1);
+	}
+}